@@ -0,0 +1,633 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.Uninterruptibles;
+import eu.trentorise.opendata.jackan.exceptions.CkanException;
+import eu.trentorise.opendata.jackan.exceptions.JackanException;
+import eu.trentorise.opendata.jackan.model.CkanDataset;
+import eu.trentorise.opendata.jackan.model.CkanDatasetBase;
+import eu.trentorise.opendata.jackan.model.CkanResource;
+import eu.trentorise.opendata.jackan.model.CkanResourceBase;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
+
+/**
+ * Brings datasets on the server to a desired state with as few calls as
+ * possible. Synchronization happens in two steps:
+ *
+ * <ol>
+ * <li>{@link #plan(Iterable) plan} lists the datasets on the server within
+ * the {@link #setScope(CkanQuery) scope} fetching only their ids and names,
+ * then fetches in parallel only the existing datasets which may have changed
+ * and computes the {@link SyncAction actions} to perform. Nothing is written,
+ * so a plan can be used as a dry run.</li>
+ * <li>{@link #apply(SyncPlan) apply} executes the actions in parallel, one
+ * dataset per thread.</li>
+ * </ol>
+ *
+ * Desired datasets are matched to existing ones by name. Only their non-null
+ * fields are compared, so fields not managed by the desired state are left
+ * untouched. Lists are compared regardless of item order. If the desired
+ * resources are not null, they are matched to existing ones by id or else by
+ * url: missing resources are created, changed ones are updated and the others
+ * are deleted. Resource order is not synchronized. Updates send only the
+ * changed fields with {@code package_patch} and {@code resource_patch} when
+ * the server {@link CkanClient#isPatchSupported() supports them}, and else the
+ * whole merged object with {@code package_update} and
+ * {@code resource_update}.
+ *
+ * <p>
+ * Datasets found unchanged or successfully written have their
+ * {@link CkanClient#fingerprint(CkanDatasetBase) fingerprint} stored in the
+ * client, so next plans won't even fetch them if they stay the same (see
+ * {@link #setTrustKnownFingerprints(boolean)}).
+ * </p>
+ *
+ * @see CkanClient#newCatalogSync()
+ * @since 0.4.3
+ */
+public final class CatalogSync {
+
+    /**
+     * Number of datasets per listing call
+     */
+    public static final int LIST_PAGE_SIZE = 1000;
+
+    private static final Logger LOG = Logger.getLogger(CatalogSync.class.getName());
+
+    private final CkanClient client;
+    private CkanQuery scope = CkanQuery.filter();
+    private boolean deleteMissing = false;
+    private boolean trustKnownFingerprints = true;
+    private int concurrency = CkanClient.DEFAULT_BULK_CONCURRENCY;
+    @Nullable
+    private RateLimiter rateLimiter;
+
+    CatalogSync(CkanClient client) {
+        checkNotNull(client);
+        this.client = client;
+    }
+
+    /**
+     * Sets the query selecting the existing datasets managed by the desired
+     * state, by default all the datasets of the catalog. The query is copied.
+     * Its fields and sort are ignored, and private and draft datasets are
+     * always included, as desired datasets may clash with their names.
+     */
+    public CatalogSync setScope(CkanQuery scope) {
+        checkNotNull(scope);
+        this.scope = CkanQuery.copyOf(scope);
+        return this;
+    }
+
+    /**
+     * If true, datasets within the scope which are not in the desired state
+     * are deleted. Default is false.
+     */
+    public CatalogSync setDeleteMissing(boolean deleteMissing) {
+        this.deleteMissing = deleteMissing;
+        return this;
+    }
+
+    /**
+     * If true (the default), existing datasets whose desired fingerprint
+     * equals the one known by the client are considered unchanged without
+     * fetching them. Set it to false when datasets might also be modified by
+     * others.
+     */
+    public CatalogSync setTrustKnownFingerprints(boolean trustKnownFingerprints) {
+        this.trustKnownFingerprints = trustKnownFingerprints;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of parallel requests, by default
+     * {@link CkanClient#DEFAULT_BULK_CONCURRENCY}
+     */
+    public CatalogSync setConcurrency(int concurrency) {
+        checkArgument(concurrency > 0, "Concurrency must be positive, found %s instead", concurrency);
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Limits the rate of requests to the server. A non-positive value means no
+     * limit, which is the default.
+     */
+    public CatalogSync setMaxRequestsPerSecond(double maxRequestsPerSecond) {
+        this.rateLimiter = maxRequestsPerSecond > 0 ? RateLimiter.create(maxRequestsPerSecond) : null;
+        return this;
+    }
+
+    /**
+     * Computes the actions needed to bring the catalog to the desired state,
+     * without writing anything.
+     *
+     * @param desired
+     *            datasets with unique names
+     * @throws CkanException
+     *             if the server can't be read
+     */
+    public SyncPlan plan(Iterable<? extends CkanDatasetBase> desired) {
+        checkNotNull(desired);
+        Map<String, CkanDatasetBase> desiredByName = new LinkedHashMap();
+        for (CkanDatasetBase dataset : desired) {
+            checkNotNull(dataset, "Found null desired dataset!");
+            checkNotEmpty(dataset.getName(), "Desired datasets need a name!");
+            checkArgument(desiredByName.put(dataset.getName(), dataset) == null, "Found duplicate desired dataset %s",
+                    dataset.getName());
+        }
+
+        Map<String, String> remoteIds = listRemote();
+        Map<String, String> known = client.getKnownFingerprints();
+
+        List<SyncAction> actions = new ArrayList();
+        List<String> unchanged = new ArrayList();
+        Map<String, String> fingerprints = new HashMap();
+        List<String> toFetch = new ArrayList();
+
+        for (CkanDatasetBase dataset : desiredByName.values()) {
+            String name = dataset.getName();
+            String fingerprint = CkanClient.fingerprint(dataset);
+            fingerprints.put(name, fingerprint);
+            if (!remoteIds.containsKey(name)) {
+                actions.add(new SyncAction(SyncAction.Type.CREATE_DATASET, name, null,
+                        Collections.<String> emptyList(), dataset, null));
+            } else if (trustKnownFingerprints && fingerprint.equals(known.get(name))) {
+                unchanged.add(name);
+            } else {
+                toFetch.add(name);
+            }
+        }
+
+        Map<String, CkanDataset> remote = fetchAll(toFetch, remoteIds);
+        for (String name : toFetch) {
+            List<SyncAction> datasetActions = diff(desiredByName.get(name), remote.get(name));
+            if (datasetActions.isEmpty()) {
+                unchanged.add(name);
+            } else {
+                actions.addAll(datasetActions);
+            }
+        }
+
+        if (deleteMissing) {
+            for (Map.Entry<String, String> entry : remoteIds.entrySet()) {
+                if (!desiredByName.containsKey(entry.getKey())) {
+                    actions.add(new SyncAction(SyncAction.Type.DELETE_DATASET, entry.getKey(), entry.getValue(),
+                            Collections.<String> emptyList(), null, null));
+                }
+            }
+        }
+
+        SyncPlan ret = new SyncPlan(actions, unchanged, fingerprints);
+        LOG.log(Level.INFO, "Computed {0}", ret);
+        return ret;
+    }
+
+    /**
+     * Executes the plan actions in parallel. Failures are reported in the
+     * result.
+     *
+     * @throws CkanException
+     *             if the client has no token
+     */
+    public SyncReport apply(SyncPlan plan) {
+        checkNotNull(plan);
+        if (client.getCkanToken() == null) {
+            throw new CkanException("Tried to apply a sync plan, but ckan token was not set!", client);
+        }
+        long start = System.nanoTime();
+
+        // object mappers are lazily built in a map which is not thread safe
+        CkanClient.getObjectMapperForPosting(CkanDatasetBase.class);
+        CkanClient.getObjectMapperForPosting(CkanResourceBase.class);
+
+        for (String name : plan.getUnchanged()) {
+            client.putKnownFingerprint(name, plan.getFingerprints()
+                                                 .get(name));
+        }
+
+        Map<String, List<SyncAction>> actionsByDataset = new LinkedHashMap();
+        for (SyncAction action : plan.getActions()) {
+            List<SyncAction> datasetActions = actionsByDataset.get(action.getDatasetName());
+            if (datasetActions == null) {
+                datasetActions = new ArrayList();
+                actionsByDataset.put(action.getDatasetName(), datasetActions);
+            }
+            datasetActions.add(action);
+        }
+
+        final List<SyncAction> applied = Collections.synchronizedList(new ArrayList<SyncAction>());
+        final Map<SyncAction, CkanException> failures = new ConcurrentHashMap();
+        final List<SyncAction> skipped = Collections.synchronizedList(new ArrayList<SyncAction>());
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<?>> futures = new ArrayList();
+            for (final Map.Entry<String, List<SyncAction>> entry : actionsByDataset.entrySet()) {
+                final String fingerprint = plan.getFingerprints()
+                                               .get(entry.getKey());
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        applyDataset(entry.getKey(), entry.getValue(), fingerprint, applied, failures, skipped);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    Uninterruptibles.getUninterruptibly(future);
+                } catch (ExecutionException ex) {
+                    throw new JackanException("Error while applying sync plan!", ex.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        SyncReport ret = new SyncReport(applied, failures, skipped, System.nanoTime() - start);
+        LOG.log(Level.INFO, "Sync done: {0}", ret);
+        return ret;
+    }
+
+    /**
+     * Plans and applies in one go.
+     *
+     * @see #plan(Iterable)
+     * @see #apply(SyncPlan)
+     */
+    public SyncReport sync(Iterable<? extends CkanDatasetBase> desired) {
+        return apply(plan(desired));
+    }
+
+    /**
+     * Executes actions of a dataset in order, stopping at first failure.
+     *
+     * @param fingerprint
+     *            fingerprint of the desired dataset, null for deletions
+     */
+    private void applyDataset(String name, List<SyncAction> actions, @Nullable String fingerprint,
+            List<SyncAction> applied, Map<SyncAction, CkanException> failures, List<SyncAction> skipped) {
+        for (int i = 0; i < actions.size(); i++) {
+            SyncAction action = actions.get(i);
+            try {
+                execute(action);
+                applied.add(action);
+            } catch (CkanException ex) {
+                LOG.log(Level.WARNING, "Couldn't apply " + action, ex);
+                failures.put(action, ex);
+                skipped.addAll(actions.subList(i + 1, actions.size()));
+                client.putKnownFingerprint(name, null);
+                return;
+            }
+        }
+        client.putKnownFingerprint(name, fingerprint);
+    }
+
+    private void execute(SyncAction action) {
+        acquire();
+        switch (action.getType()) {
+        case CREATE_DATASET:
+            client.postDataset("package_create", action.getDataset());
+            break;
+        case UPDATE_DATASET:
+            if (!patch("package_patch", action)) {
+                client.postDataset("package_update", action.getDataset());
+            }
+            break;
+        case DELETE_DATASET:
+            client.postDelete("package_delete", action.getId());
+            break;
+        case CREATE_RESOURCE:
+            client.postResource("resource_create", action.getResource());
+            break;
+        case UPDATE_RESOURCE:
+            if (!patch("resource_patch", action)) {
+                client.postResource("resource_update", action.getResource());
+            }
+            break;
+        case DELETE_RESOURCE:
+            client.postDelete("resource_delete", action.getId());
+            break;
+        default:
+            throw new IllegalStateException("Unknown action type " + action.getType());
+        }
+    }
+
+    /**
+     * If the server {@link CkanClient#isPatchSupported() supports it}, sends
+     * only the id and the changed fields of an update action, so other fields
+     * are not sent again and edits made meanwhile on the server to them are
+     * kept.
+     *
+     * @return false if the server doesn't support patching and a full update
+     *         must be sent instead.
+     */
+    private boolean patch(String patchAction, SyncAction action) {
+        if (!client.isPatchSupported()) {
+            return false;
+        }
+        boolean dataset = action.getType() == SyncAction.Type.UPDATE_DATASET;
+        Class<?> clazz = dataset ? CkanDatasetBase.class : CkanResourceBase.class;
+        ObjectNode tree = CkanClient.getObjectMapperForPosting(clazz)
+                                    .valueToTree(dataset ? action.getDataset() : action.getResource());
+        List<String> fields = new ArrayList(action.getChangedFields());
+        fields.add("id");
+        tree.retain(fields);
+        try {
+            if (dataset) {
+                client.postDataset(patchAction, treeToValue(tree, CkanDatasetBase.class));
+            } else {
+                client.postResource(patchAction, treeToValue(tree, CkanResourceBase.class));
+            }
+            return true;
+        } catch (CkanException ex) {
+            if (!CkanClient.isUnknownAction(ex)) {
+                throw ex;
+            }
+            LOG.log(Level.WARNING, "Server doesn't support " + patchAction + ", falling back to full update", ex);
+            client.disablePatch();
+            return false;
+        }
+    }
+
+    private void acquire() {
+        if (rateLimiter != null) {
+            rateLimiter.acquire();
+        }
+    }
+
+    /**
+     * Returns the ids of datasets in scope, indexed by name. Pages are not
+     * taken from the client search cache, and are fetched by ascending id
+     * starting after the last id seen instead of by offset, so datasets
+     * created or deleted meanwhile can't make other ones be skipped.
+     */
+    private Map<String, String> listRemote() {
+        Map<String, String> ret = new HashMap();
+        String lastId = null;
+        while (true) {
+            CkanQuery query = CkanQuery.copyOf(scope)
+                                       .withFields("id", "name")
+                                       .includingPrivate()
+                                       .includingDrafts();
+            query.getSort()
+                 .clear();
+            query.sortBy("id", true);
+            if (lastId != null) {
+                query.byRawFilter("id:{" + CkanQuery.phrase(lastId) + " TO *]");
+            }
+            acquire();
+            SearchResults<Map<String, Object>> page = client.searchDatasetFields(query, LIST_PAGE_SIZE, 0, false);
+            for (Map<String, Object> fields : page.getResults()) {
+                lastId = String.valueOf(fields.get("id"));
+                ret.put(String.valueOf(fields.get("name")), lastId);
+            }
+            if (page.getResults()
+                    .size() < LIST_PAGE_SIZE) {
+                return ret;
+            }
+        }
+    }
+
+    /**
+     * Fetches given datasets in parallel, returning them indexed by name
+     */
+    private Map<String, CkanDataset> fetchAll(List<String> names, final Map<String, String> remoteIds) {
+        Map<String, CkanDataset> ret = new HashMap();
+        if (names.isEmpty()) {
+            return ret;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, names.size()));
+        try {
+            Map<String, Future<CkanDataset>> futures = new LinkedHashMap();
+            for (final String name : names) {
+                futures.put(name, executor.submit(new Callable<CkanDataset>() {
+                    @Override
+                    public CkanDataset call() {
+                        acquire();
+                        return client.fetchDataset(remoteIds.get(name));
+                    }
+                }));
+            }
+            for (Map.Entry<String, Future<CkanDataset>> entry : futures.entrySet()) {
+                try {
+                    ret.put(entry.getKey(), Uninterruptibles.getUninterruptibly(entry.getValue()));
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof CkanException) {
+                        throw (CkanException) ex.getCause();
+                    }
+                    throw new JackanException("Error while fetching dataset " + entry.getKey(), ex.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return ret;
+    }
+
+    /**
+     * Computes the actions to bring {@code remote} dataset to the
+     * {@code desired} state.
+     */
+    static List<SyncAction> diff(CkanDatasetBase desired, CkanDataset remote) {
+        ObjectMapper om = CkanClient.getObjectMapperForPosting(CkanDatasetBase.class);
+        String name = desired.getName();
+        List<SyncAction> ret = new ArrayList();
+
+        ObjectNode desiredTree = om.valueToTree(desired);
+        ObjectNode remoteTree = om.valueToTree(remote);
+        desiredTree.remove("id");
+        desiredTree.remove("resources");
+        List<String> changed = changedFields(desiredTree, remoteTree);
+        if (!changed.isEmpty()) {
+            for (String field : changed) {
+                remoteTree.set(field, desiredTree.get(field));
+            }
+            ret.add(new SyncAction(SyncAction.Type.UPDATE_DATASET, name, remote.getId(), changed,
+                    treeToValue(remoteTree, CkanDatasetBase.class), null));
+        }
+
+        if (desired.getResources() != null) {
+            diffResources(desired.getResources(), remote, ret);
+        }
+        return ret;
+    }
+
+    private static void diffResources(List<CkanResource> desiredResources, CkanDataset remote,
+            List<SyncAction> ret) {
+        ObjectMapper om = CkanClient.getObjectMapperForPosting(CkanResourceBase.class);
+        String name = remote.getName();
+        List<CkanResource> remoteResources = remote.getResources() == null ? Collections.<CkanResource> emptyList()
+                : remote.getResources();
+        boolean[] matched = new boolean[remoteResources.size()];
+
+        for (CkanResource resource : desiredResources) {
+            int i = matchResource(resource, remoteResources, matched);
+            ObjectNode desiredTree = om.valueToTree(resource);
+            desiredTree.put("package_id", remote.getId());
+            if (i < 0) {
+                ret.add(new SyncAction(SyncAction.Type.CREATE_RESOURCE, name, null,
+                        Collections.<String> emptyList(), null, treeToValue(desiredTree, CkanResourceBase.class)));
+            } else {
+                matched[i] = true;
+                CkanResource remoteResource = remoteResources.get(i);
+                desiredTree.remove("id");
+                ObjectNode remoteTree = om.valueToTree(remoteResource);
+                List<String> changed = changedFields(desiredTree, remoteTree);
+                if (!changed.isEmpty()) {
+                    for (String field : changed) {
+                        remoteTree.set(field, desiredTree.get(field));
+                    }
+                    ret.add(new SyncAction(SyncAction.Type.UPDATE_RESOURCE, name, remoteResource.getId(), changed,
+                            null, treeToValue(remoteTree, CkanResourceBase.class)));
+                }
+            }
+        }
+
+        for (int i = 0; i < matched.length; i++) {
+            if (!matched[i]) {
+                ret.add(new SyncAction(SyncAction.Type.DELETE_RESOURCE, name, remoteResources.get(i)
+                                                                                     .getId(),
+                        Collections.<String> emptyList(), null, null));
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first unmatched remote resource with the same
+     * id of given resource or, if it has no id, with the same url. If not
+     * found returns -1.
+     */
+    private static int matchResource(CkanResourceBase resource, List<CkanResource> remoteResources,
+            boolean[] matched) {
+        for (int i = 0; i < remoteResources.size(); i++) {
+            if (!matched[i]) {
+                CkanResource remoteResource = remoteResources.get(i);
+                if (resource.getId() == null ? resource.getUrl() != null && resource.getUrl()
+                                                                                    .equals(remoteResource.getUrl())
+                        : resource.getId()
+                                  .equals(remoteResource.getId())) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the names of the fields of {@code desired} whose values are not
+     * {@link #covers(JsonNode, JsonNode) covered} by the ones in
+     * {@code remote}.
+     */
+    static List<String> changedFields(ObjectNode desired, ObjectNode remote) {
+        List<String> ret = new ArrayList();
+        Iterator<String> iter = desired.fieldNames();
+        while (iter.hasNext()) {
+            String field = iter.next();
+            if (!CkanClient.FINGERPRINT_IGNORED_FIELDS.contains(field)
+                    && !covers(desired.get(field), remote.get(field))) {
+                ret.add(field);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns true if {@code remote} has all the non-null values of
+     * {@code desired}. Objects may have more fields, arrays must have the same
+     * size and their items can be in any order. Values are compared as text,
+     * so the number 1 covers the string "1". Server managed
+     * {@link CkanClient#FINGERPRINT_IGNORED_FIELDS} are not compared.
+     */
+    static boolean covers(@Nullable JsonNode desired, @Nullable JsonNode remote) {
+        if (desired == null || desired.isNull()) {
+            return true;
+        }
+        if (remote == null || remote.isNull()) {
+            return desired.isArray() && desired.size() == 0;
+        }
+        if (desired.isObject()) {
+            if (!remote.isObject()) {
+                return false;
+            }
+            Iterator<String> iter = desired.fieldNames();
+            while (iter.hasNext()) {
+                String field = iter.next();
+                if (!CkanClient.FINGERPRINT_IGNORED_FIELDS.contains(field)
+                        && !covers(desired.get(field), remote.get(field))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (desired.isArray()) {
+            if (!remote.isArray() || desired.size() != remote.size()) {
+                return false;
+            }
+            boolean[] used = new boolean[remote.size()];
+            for (JsonNode item : desired) {
+                boolean found = false;
+                for (int i = 0; i < used.length && !found; i++) {
+                    if (!used[i] && covers(item, remote.get(i))) {
+                        used[i] = true;
+                        found = true;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return !remote.isContainerNode() && desired.asText()
+                                                   .equals(remote.asText());
+    }
+
+    private static <T> T treeToValue(ObjectNode tree, Class<T> clazz) {
+        try {
+            return CkanClient.getObjectMapper()
+                             .treeToValue(tree, clazz);
+        } catch (JsonProcessingException ex) {
+            throw new JackanException("Couldn't convert json to " + clazz.getSimpleName(), ex);
+        }
+    }
+
+}
@@ -15,6 +15,7 @@
  */
 package eu.trentorise.opendata.jackan;
 
+import eu.trentorise.opendata.jackan.KnownIdsIndex.Kind;
 import eu.trentorise.opendata.jackan.exceptions.CkanNotFoundException;
 import eu.trentorise.opendata.jackan.exceptions.CkanValidationException;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -23,6 +24,7 @@ import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEm
 import eu.trentorise.opendata.jackan.model.CkanDataset;
 import eu.trentorise.opendata.jackan.model.CkanDatasetBase;
 import eu.trentorise.opendata.jackan.model.CkanGroup;
+import eu.trentorise.opendata.jackan.model.CkanGroupOrgBase;
 import eu.trentorise.opendata.jackan.model.CkanLicense;
 import eu.trentorise.opendata.jackan.model.CkanOrganization;
 import eu.trentorise.opendata.jackan.model.CkanResource;
@@ -30,6 +32,7 @@ import eu.trentorise.opendata.jackan.model.CkanResourceBase;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import javax.annotation.Nullable;
@@ -47,11 +50,25 @@ import javax.annotation.Nullable;
  * {@code upsert} behaviour (update an existing) to prevent misuse.
  * </p>
  *
+ * <p>
+ * Existence checks need a call to the server, unless a
+ * {@link #setKnownIdsIndex(KnownIdsIndex) known ids index} can tell the
+ * answer.
+ * </p>
+ *
  * @author David Leoni
  * @since 0.4.1
  */
 public class CheckedCkanClient extends CkanClient {
 
+    /**
+     * Number of datasets per call when listing resource ids
+     */
+    private static final int SEED_PAGE_SIZE = 1000;
+
+    @Nullable
+    private KnownIdsIndex knownIds;
+
     protected CheckedCkanClient() {
         super();
     }
@@ -81,6 +98,157 @@ public class CheckedCkanClient extends CkanClient {
         }
     }
 
+    /**
+     * Sets the index of ids known to exist on the server, which spares
+     * existence checks of {@code create} operations. Null means no index,
+     * which is the default.
+     *
+     * @since 0.4.3
+     */
+    public synchronized void setKnownIdsIndex(@Nullable KnownIdsIndex knownIds) {
+        this.knownIds = knownIds;
+    }
+
+    /**
+     * @see #setKnownIdsIndex(KnownIdsIndex)
+     * @since 0.4.3
+     */
+    @Nullable
+    public synchronized KnownIdsIndex getKnownIdsIndex() {
+        return knownIds;
+    }
+
+    /**
+     * Builds a new known ids index by listing all organizations, groups and
+     * resources on the server, and sets it in this client. Resources are
+     * listed from uncached dataset searches including private and draft
+     * datasets, so the token should belong to a sysadmin: resources of
+     * datasets the token can't see are not seeded, and their ids would be
+     * taken as free.
+     *
+     * @return the new index
+     * @throws CkanException
+     *             on error
+     * @since 0.4.3
+     */
+    public synchronized KnownIdsIndex seedKnownIds() {
+        KnownIdsIndex index = new KnownIdsIndex();
+
+        // groups and organizations share the same table on the server
+        List<String> groupIds = new ArrayList();
+        for (CkanOrganization org : getOrganizationList()) {
+            addIdAndName(org, groupIds);
+        }
+        for (CkanGroup group : getGroupList()) {
+            addIdAndName(group, groupIds);
+        }
+        index.seed(Kind.ORGANIZATION, groupIds);
+        index.seed(Kind.GROUP, groupIds);
+
+        // pages by ascending dataset id, starting after the last id seen, so
+        // datasets created or deleted meanwhile can't make others be skipped
+        List<String> resourceIds = new ArrayList();
+        String lastId = null;
+        while (true) {
+            CkanQuery query = CkanQuery.filter()
+                                       .includingPrivate()
+                                       .includingDrafts()
+                                       .sortBy("id", true);
+            if (lastId != null) {
+                query.byRawFilter("id:{" + CkanQuery.phrase(lastId) + " TO *]");
+            }
+            SearchResults<CkanDataset> page = searchDatasets(query, SEED_PAGE_SIZE, 0, false);
+            for (CkanDataset dataset : page.getResults()) {
+                lastId = dataset.getId();
+                resourceIds.addAll(resourceIds(dataset));
+            }
+            if (page.getResults()
+                    .size() < SEED_PAGE_SIZE) {
+                break;
+            }
+        }
+        index.seed(Kind.RESOURCE, resourceIds);
+
+        this.knownIds = index;
+        return index;
+    }
+
+    private static List<String> resourceIds(CkanDataset dataset) {
+        List<String> ret = new ArrayList();
+        if (dataset.getResources() != null) {
+            for (CkanResource resource : dataset.getResources()) {
+                if (resource.getId() != null) {
+                    ret.add(resource.getId());
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Records in the known ids index, if any, the resources of a dataset just
+     * written, as they might have been created along with it.
+     */
+    private CkanDataset addKnownResources(CkanDataset dataset) {
+        for (String id : resourceIds(dataset)) {
+            addKnownId(Kind.RESOURCE, id);
+        }
+        return dataset;
+    }
+
+    private static void addIdAndName(CkanGroupOrgBase groupOrg, List<String> target) {
+        if (groupOrg.getId() != null) {
+            target.add(groupOrg.getId());
+        }
+        if (groupOrg.getName() != null) {
+            target.add(groupOrg.getName());
+        }
+    }
+
+    /**
+     * Throws CkanValidationException if an item with given id already exists,
+     * asking the server only if the known ids index can't tell.
+     */
+    private void checkNotExisting(Kind kind, String id, String prependedErrorMessage) {
+        KnownIdsIndex.Presence presence = knownIds == null ? KnownIdsIndex.Presence.UNKNOWN
+                : knownIds.check(kind, id);
+        if (presence == KnownIdsIndex.Presence.ABSENT) {
+            return;
+        }
+        if (presence == KnownIdsIndex.Presence.UNKNOWN) {
+            try {
+                switch (kind) {
+                case RESOURCE:
+                    getResource(id);
+                    break;
+                case ORGANIZATION:
+                    getOrganization(id);
+                    break;
+                default:
+                    getGroup(id);
+                }
+            } catch (CkanNotFoundException ex) {
+                if (knownIds != null) {
+                    knownIds.confirm(kind, id, false);
+                }
+                return;
+            }
+            if (knownIds != null) {
+                knownIds.confirm(kind, id, true);
+            }
+        }
+        throw new CkanValidationException(prependedErrorMessage + id, this);
+    }
+
+    /**
+     * Records a newly created item in the known ids index, if any.
+     */
+    private void addKnownId(Kind kind, @Nullable String id) {
+        if (knownIds != null && id != null) {
+            knownIds.add(kind, id);
+        }
+    }
+
     private void checkUuid(String uuid, String prependedErrorMessage) {
         try {
             UUID.fromString(uuid);
@@ -107,17 +275,14 @@ public class CheckedCkanClient extends CkanClient {
             checkUuid(org.getId(),
                     "Jackan validation failed! Tried to create organization with invalid id:" + org.getId());
 
-            try {
-                getOrganization(org.getId());
-                throw new CkanValidationException(
-                        "Jackan validation failed! Tried to create organization with existing id! " + org.getId(),
-                        this);
-            } catch (CkanNotFoundException ex) {
-
-            }
+            checkNotExisting(Kind.ORGANIZATION, org.getId(),
+                    "Jackan validation failed! Tried to create organization with existing id! ");
         }
 
-        return super.createOrganization(org);
+        CkanOrganization ret = super.createOrganization(org);
+        addKnownId(Kind.ORGANIZATION, ret.getId());
+        addKnownId(Kind.ORGANIZATION, ret.getName());
+        return ret;
     }
 
     /**
@@ -136,14 +301,8 @@ public class CheckedCkanClient extends CkanClient {
             checkUuid(resource.getId(),
                     "Jackan validation failed! Tried to create resource with invalid id:" + resource.getId());
 
-            try {
-                getResource(resource.getId());
-                throw new CkanValidationException(
-                        "Jackan validation failed! Tried to create resource with existing id! " + resource.getId(),
-                        this);
-            } catch (CkanNotFoundException ex) {
-
-            }
+            checkNotExisting(Kind.RESOURCE, resource.getId(),
+                    "Jackan validation failed! Tried to create resource with existing id! ");
         }
 
         // Only check for URL if no file is given
@@ -152,7 +311,17 @@ public class CheckedCkanClient extends CkanClient {
            checkUrl(resource.getUrl(),
                     "Jackan validation error! Tried to create resource " + resource.getId() + " with wrong url!");
 
-        return super.createResource(resource);
+        CkanResource ret = super.createResource(resource);
+        addKnownId(Kind.RESOURCE, ret.getId());
+        return ret;
+    }
+
+    @Override
+    public synchronized void deleteResource(String id) {
+        super.deleteResource(id);
+        if (knownIds != null) {
+            knownIds.remove(Kind.RESOURCE, id);
+        }
     }
 
     @Override
@@ -190,16 +359,14 @@ public class CheckedCkanClient extends CkanClient {
             checkUuid(group.getId(),
                     "Jackan validation failed! Tried to create group with invalid id:" + group.getId());
 
-            try {
-                getGroup(group.getId());
-                throw new CkanValidationException(
-                        "Jackan validation failed! Tried to create group with existing id! " + group.getId(), this);
-            } catch (CkanNotFoundException ex) {
-
-            }
+            checkNotExisting(Kind.GROUP, group.getId(),
+                    "Jackan validation failed! Tried to create group with existing id! ");
         }
 
-        return super.createGroup(group);
+        CkanGroup ret = super.createGroup(group);
+        addKnownId(Kind.GROUP, ret.getId());
+        addKnownId(Kind.GROUP, ret.getName());
+        return ret;
     }
 
     private void checkGroupsExist(Iterable<CkanGroup> groups, String prependedErrorMessage) {
@@ -209,8 +376,12 @@ public class CheckedCkanClient extends CkanClient {
                 checkNotEmpty(group.idOrName(),
                         String.valueOf(prependedErrorMessage) + " -- Found group with both id and name invalid!");
 
+                if (knownIds != null && knownIds.isPresent(Kind.GROUP, group.idOrName())) {
+                    continue;
+                }
                 try {
                     getGroup(group.idOrName());
+                    addKnownId(Kind.GROUP, group.idOrName());
                 } catch (CkanNotFoundException ex) {
                     throw new CkanValidationException(
                             prependedErrorMessage + " -- Tried to refer to non existing group " + group.idOrName(),
@@ -254,7 +425,7 @@ public class CheckedCkanClient extends CkanClient {
 
         checkLicenseExist(dataset.getLicenseId(), "Jackan validation error when creating dataset " + dataset.getName());
 
-        return super.createDataset(dataset);
+        return addKnownResources(super.createDataset(dataset));
     }
 
     @Override
@@ -264,7 +435,7 @@ public class CheckedCkanClient extends CkanClient {
 
         checkLicenseExist(dataset.getLicenseId(), "Jackan validation error updating dataset " + dataset.getName());
 
-        return super.updateDataset(dataset);
+        return addKnownResources(super.updateDataset(dataset));
     }
 
     @Override
@@ -276,7 +447,7 @@ public class CheckedCkanClient extends CkanClient {
         checkLicenseExist(dataset.getLicenseId(),
                 "Jackan validation error when patch updating dataset " + dataset.getName());
 
-        return super.patchUpdateDataset(dataset);
+        return addKnownResources(super.patchUpdateDataset(dataset));
     }
 
 }
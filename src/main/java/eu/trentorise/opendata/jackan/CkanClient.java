@@ -25,6 +25,8 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.ParseException;
@@ -32,10 +34,22 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,13 +63,28 @@ import org.apache.http.entity.ContentType;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Ordering;
+import com.google.common.hash.Hashing;
 import com.google.common.io.CharStreams;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import eu.trentorise.opendata.commons.TodUtils;
 import eu.trentorise.opendata.commons.internal.org.apache.commons.lang3.time.FastDateFormat;
@@ -143,6 +172,36 @@ public class CkanClient {
     /** Default timeout in millisecs */
     public static final int DEFAULT_TIMEOUT = 15000;
 
+    /**
+     * Default number of parallel requests of
+     * {@link #bulkUpsertDatasets(Iterable)}
+     *
+     * @since 0.4.3
+     */
+    public static final int DEFAULT_BULK_CONCURRENCY = 4;
+
+    /**
+     * Default number of retries of a failed upsert in
+     * {@link #bulkUpsertDatasets(Iterable)}
+     *
+     * @since 0.4.3
+     */
+    public static final int DEFAULT_BULK_RETRIES = 2;
+
+    /** Delay in millisecs before the first retry of a bulk upsert, doubled at each retry */
+    static final long BULK_RETRY_DELAY = 500;
+
+    /**
+     * Fields set by the server on its own, which are ignored at any nesting
+     * level when computing a {@link #fingerprint(CkanDatasetBase) fingerprint}
+     *
+     * @since 0.4.3
+     */
+    public static final ImmutableSet<String> FINGERPRINT_IGNORED_FIELDS = ImmutableSet.of("revision_id",
+            "revision_timestamp", "metadata_created", "metadata_modified", "creator_user_id", "num_resources",
+            "num_tags", "tracking_summary", "display_name", "created", "cache_last_updated",
+            "webstore_last_updated", "position", "package_id");
+
     /**
      * Sometimes we get back Python "None" as a string instead of proper JSON
      * null
@@ -155,6 +214,11 @@ public class CkanClient {
 
     private static final String COULDNT_JSONIZE = "Couldn't jsonize the provided ";
 
+    /**
+     * Start of the text CKAN api returns when it can't decode the request body
+     */
+    private static final String BAD_REQUEST_JSON_ERROR = "Bad request - JSON Error";
+
     @Nullable
     private static ObjectMapper objectMapper;
 
@@ -171,6 +235,50 @@ public class CkanClient {
     /** connection timeout in millisecs */
     private int timeout;
 
+    /**
+     * Raw json of dataset search pages, by url
+     */
+    @Nullable
+    private Cache<String, String> searchCache;
+
+    /**
+     * Raw json of facet and count-only dataset searches, by url
+     */
+    @Nullable
+    private Cache<String, String> facetCache;
+
+    /**
+     * Whether the server accepts file uploads in resource_create calls, null
+     * if unknown.
+     */
+    @Nullable
+    private Boolean multipartCreateSupported;
+
+    /**
+     * Whether the server supports package_patch and resource_patch, null if
+     * unknown.
+     */
+    @Nullable
+    private Boolean patchSupported;
+
+    /**
+     * Fingerprints of dataset contents last written by
+     * {@link #updateDatasetIfChanged(CkanDatasetBase)}, indexed both by id and
+     * name.
+     */
+    private final Map<String, String> knownFingerprints = new ConcurrentHashMap();
+
+    /**
+     * Keys of each fingerprint in {@link #knownFingerprints}, so a dataset is
+     * forgotten under all its aliases without scanning the whole map. Guarded
+     * by {@link #knownFingerprints}.
+     */
+    private final Map<String, Set<String>> fingerprintKeys = new HashMap();
+
+    private final AtomicLong skippedWrites = new AtomicLong();
+
+    private final AtomicLong sentWrites = new AtomicLong();
+
     @JsonSerialize(as = CkanResourceBase.class)
     private abstract static class CkanResourceForPosting {
     }
@@ -425,6 +533,46 @@ public class CkanClient {
             return this;
         }
 
+        /**
+         * Enables caching of dataset search pages, see
+         * {@link CkanClient#searchDatasets(CkanQuery, int, int)}. Queries
+         * differing only in the order of names within their lists share the
+         * same cache entry. The whole cache is emptied each time the client
+         * writes to the server. By default there is no cache.
+         *
+         * @param maxBytes
+         *            approximate maximum memory taken by cached responses
+         * @param ttl
+         *            time to live of cached responses, in milliseconds
+         * @since 0.4.3
+         */
+        public Builder setSearchCache(long maxBytes, long ttl) {
+            checkNotCreated();
+            this.client.searchCache = makeSearchCache(maxBytes, ttl);
+            return this;
+        }
+
+        /**
+         * Enables caching of facet and count-only dataset searches (see
+         * {@link CkanClient#searchDatasetFacets(CkanQuery)}), in a cache
+         * separate from the one of
+         * {@link #setSearchCache(long, long) search pages}, so that big
+         * pages don't evict small and frequently requested counts. The whole
+         * cache is emptied each time the client writes to the server. By
+         * default there is no cache.
+         *
+         * @param maxBytes
+         *            approximate maximum memory taken by cached responses
+         * @param ttl
+         *            time to live of cached responses, in milliseconds
+         * @since 0.4.3
+         */
+        public Builder setFacetCache(long maxBytes, long ttl) {
+            checkNotCreated();
+            this.client.facetCache = makeSearchCache(maxBytes, ttl);
+            return this;
+        }
+
         public CkanClient build() {
             checkNotCreated();
             checkNotEmpty(this.client.catalogUrl, "Invalid catalog url!");
@@ -433,6 +581,42 @@ public class CkanClient {
         }
     }
 
+    /**
+     * Creates a cache of response texts weighted by their approximate size in
+     * bytes.
+     */
+    private static Cache<String, String> makeSearchCache(long maxBytes, long ttl) {
+        checkArgument(maxBytes > 0, "Cache size must be > 0 ! Found instead %s", maxBytes);
+        checkArgument(ttl > 0, "Cache time to live must be > 0 ! Found instead %s", ttl);
+        return CacheBuilder.newBuilder()
+                           .maximumWeight(maxBytes)
+                           .weigher(new Weigher<String, String>() {
+                               @Override
+                               public int weigh(String key, String value) {
+                                   return 2 * (key.length() + value.length());
+                               }
+                           })
+                           .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                           .build();
+    }
+
+    /**
+     * Empties search caches, if any. Called automatically each time the client
+     * writes to the server, call it if the catalog is modified by other means.
+     *
+     * @see Builder#setSearchCache(long, long)
+     * @see Builder#setFacetCache(long, long)
+     * @since 0.4.3
+     */
+    public void invalidateSearchCaches() {
+        if (searchCache != null) {
+            searchCache.invalidateAll();
+        }
+        if (facetCache != null) {
+            facetCache.invalidateAll();
+        }
+    }
+
     @Override
     public String toString() {
         String maskedToken = ckanToken == null ? null : "*****MASKED_TOKEN*******";
@@ -508,9 +692,51 @@ public class CkanClient {
 
         String fullUrl = calcFullUrl(path, params);
 
-        T ckanResponse;
-        String returnedText;
+        String returnedText = getHttpText(fullUrl);
+        return parseResponse(responseType, returnedText, "Error while performing GET. Request url was: " + fullUrl);
+    }
+
+    /**
+     * Like {@link #getHttp(java.lang.Class, java.lang.String, java.lang.Object...)
+     * } but first looks for the returned text into provided cache. Only
+     * successful responses are cached.
+     *
+     * @param cache
+     *            if null, no caching is done.
+     * @throws CkanException
+     *             on error
+     */
+    private <T extends CkanResponse> T getHttpCached(Class<T> responseType, @Nullable Cache<String, String> cache,
+            String path) {
+        checkNotNull(responseType);
+        checkNotNull(path);
 
+        String fullUrl = calcFullUrl(path, new Object[] {});
+        String errorMsg = "Error while performing GET. Request url was: " + fullUrl;
+
+        if (cache != null) {
+            String cachedText = cache.getIfPresent(fullUrl);
+            if (cachedText != null) {
+                LOG.log(Level.FINE, "found in cache {0}", fullUrl);
+                return parseResponse(responseType, cachedText, errorMsg);
+            }
+        }
+
+        String returnedText = getHttpText(fullUrl);
+        T ret = parseResponse(responseType, returnedText, errorMsg);
+        if (cache != null) {
+            cache.put(fullUrl, returnedText);
+        }
+        return ret;
+    }
+
+    /**
+     * Performs a GET and returns the body as text.
+     *
+     * @throws CkanException
+     *             on error
+     */
+    private String getHttpText(String fullUrl) {
         try {
             LOG.log(Level.FINE, "getting {0}", fullUrl);
             Request request = Request.Get(fullUrl);
@@ -524,11 +750,24 @@ public class CkanClient {
                                          .getContent();
 
             try (InputStreamReader reader = new InputStreamReader(stream, Charsets.UTF_8)) {
-                returnedText = CharStreams.toString(reader);
+                return CharStreams.toString(reader);
             }
         } catch (Exception ex) {
             throw new CkanException("Error while performing GET. Request url was: " + fullUrl, this, ex);
         }
+    }
+
+    /**
+     * Parses text returned by the server. If {@link CkanResponse#isSuccess()}
+     * is false throws {@link CkanException}.
+     *
+     * @param errorMsg
+     *            message for the exception thrown on unsuccessful response.
+     * @throws CkanException
+     *             on error
+     */
+    private <T extends CkanResponse> T parseResponse(Class<T> responseType, String returnedText, String errorMsg) {
+        T ckanResponse;
         try {
             ckanResponse = getObjectMapper().readValue(returnedText, responseType);
         } catch (Exception ex) {
@@ -537,7 +776,7 @@ public class CkanClient {
         }
 
         if (!ckanResponse.isSuccess()) {
-            throwCkanException("Error while performing GET. Request url was: " + fullUrl, ckanResponse);
+            throwCkanException(errorMsg, ckanResponse);
         }
         return ckanResponse;
     }
@@ -615,8 +854,10 @@ public class CkanClient {
                 returnedText = CharStreams.toString(reader);
             }
         } catch (Exception ex) {
+            invalidateSearchCaches();
             throw new CkanException("Error while performing a POST! Request url is:" + fullUrl, this, ex);
         }
+        invalidateSearchCaches();
 
         try {
             ckanResponse = getObjectMapper().readValue(returnedText, responseType);
@@ -640,22 +881,85 @@ public class CkanClient {
      * @param path
      *            something like /api/3/action/package_create
      * @param resource
-     *            a {@link CkanResourceBase} object with a data file set in the
-     *            {@link CkanResourceBase#upload} field
+     *            the resource to update, its
+     *            {@link CkanResourceBase#getUpload() upload} field is ignored
+     * @param source
+     *            the data to send
+     * @param listener
+     *            if not null, it will be notified of upload progress
      *
      * @throws CkanException
      */
     private <T extends CkanResponse> T postHttpResourceFile(Class<T> responseType, String path,
-            CkanResourceBase resource) {
+            CkanResourceBase resource, UploadSource source, @Nullable TransferListener listener) {
         checkNotNull(responseType);
         checkNotNull(path);
         checkNotNull(resource);
-        checkNotNull(resource.getUpload());
+        checkNotNull(source);
         checkNotNull(resource.getPackageId());
 
+        Map<String, String> fields = new LinkedHashMap();
+        fields.put("size", resource.getSize() != null ? resource.getSize() : makeSize(source));
+        fields.put("id", resource.getId());
+        fields.put("url", "upload");
+        fields.put("package_id", resource.getPackageId());
+
+        if (resource.getFormat() != null)
+            fields.put("format", resource.getFormat());
+        if (resource.getMimetype() != null)
+            fields.put("mimetype", resource.getMimetype());
+        if (resource.getLastModified() != null)
+            fields.put("last_modified", resource.getLastModified());
+
+        return postHttpMultipart(responseType, path, fields, source, listener);
+    }
+
+    /**
+     * Returns the length of the source as string, or null if unknown.
+     */
+    @Nullable
+    private static String makeSize(UploadSource source) {
+        return source.getLength() == TransferProgress.UNKNOWN_LENGTH ? null : Long.toString(source.getLength());
+    }
+
+    /**
+     * POSTs a multipart form holding the provided text fields and file. If
+     * {@link CkanResponse#isSuccess()} is false throws {@link CkanException}.
+     *
+     * @param fields
+     *            text fields of the form, in sending order. Null values are
+     *            not sent.
+     * @param source
+     *            the data to send as 'upload' field
+     * @param listener
+     *            if not null, it will be notified of upload progress
+     * @throws CkanException
+     *             on error
+     */
+    private <T extends CkanResponse> T postHttpMultipart(Class<T> responseType, String path,
+            Map<String, String> fields, UploadSource source, @Nullable TransferListener listener) {
+        checkNotNull(responseType);
+        return parseResponse(responseType, postMultipart(path, fields, source, listener),
+                "Error while performing a POST! Request url is:" + calcFullUrl(path, new Object[] {}));
+    }
+
+    /**
+     * POSTs a multipart form holding the provided text fields and file,
+     * returning the text returned by the server without interpreting it.
+     *
+     * @see #postHttpMultipart(Class, String, Map, UploadSource,
+     *      TransferListener)
+     * @throws CkanException
+     *             on transport error
+     */
+    private String postMultipart(String path, Map<String, String> fields, UploadSource source,
+            @Nullable TransferListener listener) {
+        checkNotNull(path);
+        checkNotNull(fields);
+        checkNotNull(source);
+
         String fullUrl = calcFullUrl(path, new Object[] {});
 
-        T ckanResponse;
         String returnedText;
 
         try {
@@ -665,28 +969,19 @@ public class CkanClient {
             configureRequest(request);
 
             MultipartEntityBuilder entityBuilder = MultipartEntityBuilder.create()
-                                                                         .addBinaryBody("upload", resource.getUpload(),
-                                                                                 ContentType.create(
-                                                                                         "application/octet-stream",
-                                                                                         Charset.forName("UTF-8")),
-                                                                                 resource.getUpload()
-                                                                                         .getName())
-                                                                         .addTextBody("size", resource.getSize(),
-                                                                                 ContentType.TEXT_PLAIN)
-                                                                         .addTextBody("id", resource.getId(),
-                                                                                 ContentType.TEXT_PLAIN)
-                                                                         .addTextBody("url", "upload",
-                                                                                 ContentType.TEXT_PLAIN)
-                                                                         .addTextBody("package_id",
-                                                                                 resource.getPackageId(),
-                                                                                 ContentType.TEXT_PLAIN);
-
-            if (resource.getFormat() != null)
-                entityBuilder.addTextBody("format", resource.getFormat(), ContentType.TEXT_PLAIN);
-            if (resource.getMimetype() != null)
-                entityBuilder.addTextBody("mimetype", resource.getMimetype(), ContentType.TEXT_PLAIN);
-            if (resource.getLastModified() != null)
-                entityBuilder.addTextBody("last_modified", resource.getLastModified(), ContentType.TEXT_PLAIN);
+                                                                         .addPart("upload",
+                                                                                 new UploadSourceBody(source,
+                                                                                         ContentType.create(
+                                                                                                 "application/octet-stream",
+                                                                                                 Charset.forName(
+                                                                                                         "UTF-8")),
+                                                                                         listener));
+            ContentType textType = ContentType.create("text/plain", Charset.forName("UTF-8"));
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                if (field.getValue() != null) {
+                    entityBuilder.addTextBody(field.getKey(), field.getValue(), textType);
+                }
+            }
 
             entityBuilder.setCharset(Charset.forName("UTF-8"));
 
@@ -701,21 +996,12 @@ public class CkanClient {
                 returnedText = CharStreams.toString(reader);
             }
         } catch (Exception ex) {
+            invalidateSearchCaches();
             throw new CkanException("Error while performing a POST! Request url is:" + fullUrl, this, ex);
         }
+        invalidateSearchCaches();
 
-        try {
-            ckanResponse = getObjectMapper().readValue(returnedText, responseType);
-        } catch (Exception ex) {
-            throw new CkanException(
-                    "Couldn't interpret json returned by the server! Returned text was: " + returnedText, this, ex);
-        }
-
-        if (!ckanResponse.isSuccess()) {
-            throwCkanException("Error while performing a POST! Request url is:" + fullUrl, ckanResponse);
-        }
-        return ckanResponse;
-
+        return returnedText;
     }
 
     /**
@@ -999,7 +1285,13 @@ public class CkanClient {
     }
 
     /**
-     * Creates ckan resource on the server.
+     * Creates ckan resource on the server. If the resource has an
+     * {@link CkanResourceBase#getUpload() upload} file, it is sent together
+     * with all the resource fields in a single multipart call. If the server
+     * answers it doesn't accept uploads in resource creation, the client falls
+     * back to creating the resource first and then uploading the file, and
+     * keeps doing so for subsequent calls. Other errors, i.e. validation errors
+     * on resource fields, are just thrown.
      *
      * @param resource
      *            ckan resource object with the minimal set of parameters
@@ -1012,33 +1304,143 @@ public class CkanClient {
     public synchronized CkanResource createResource(CkanResourceBase resource) {
         checkNotNull(resource, "Need a valid resource!");
 
+        if (resource.getUpload() == null) {
+            checkToken("Tried to create resource " + resource.getName());
+            forgetResourceDataset(resource);
+            return forgetResourceDataset(postHttp(ResourceResponse.class, "/api/3/action/resource_create",
+                    jsonizeResource(resource), ContentType.APPLICATION_JSON).result);
+        } else {
+            return createResource(resource, UploadSource.of(resource.getUpload()), null);
+        }
+    }
+
+    /**
+     * Creates ckan resource on the server, uploading provided data as resource
+     * file. If the source {@link UploadSource#isRepeatable() is repeatable} or
+     * the server is known to support it, the resource is created in a single
+     * multipart call. Otherwise the resource is created first, and data is
+     * uploaded with a second call.
+     *
+     * @param resource
+     *            ckan resource object with the minimal set of parameters
+     *            required. See
+     *            {@link CkanResource#CkanResource(String, String)}. Its
+     *            {@link CkanResourceBase#getUpload() upload} field is ignored.
+     * @param source
+     *            the data to upload
+     * @param listener
+     *            if not null, it will be notified of upload progress
+     * @return the newly created resource
+     * @throws JackanException
+     * @since 0.4.3
+     */
+    public synchronized CkanResource createResource(CkanResourceBase resource, UploadSource source,
+            @Nullable TransferListener listener) {
+        checkNotNull(resource, "Need a valid resource!");
+        checkNotNull(source, "Need a valid upload source!");
+
         checkToken("Tried to create resource " + resource.getName());
 
-        ObjectMapper om = CkanClient.getObjectMapperForPosting(CkanResourceBase.class);
-        String json = null;
+        String json = jsonizeResource(resource);
+        forgetResourceDataset(resource);
+
+        boolean uploadNotAccepted = false;
+        if (Boolean.TRUE.equals(multipartCreateSupported)
+                || (multipartCreateSupported == null && source.isRepeatable())) {
+            Map<String, String> fields = makeMultipartFields(getObjectMapperForPosting(CkanResourceBase.class),
+                    resource);
+            if (!fields.containsKey("size")) {
+                fields.put("size", makeSize(source));
+            }
+            String returnedText = postMultipart("/api/3/action/resource_create", fields, source, listener);
+            if (Boolean.TRUE.equals(multipartCreateSupported) || !isUploadNotAccepted(returnedText)) {
+                CkanResource ret = parseResponse(ResourceResponse.class, returnedText,
+                        "Error while performing a POST! Request url is:"
+                                + calcFullUrl("/api/3/action/resource_create", new Object[] {})).result;
+                multipartCreateSupported = true;
+                return forgetResourceDataset(ret);
+            }
+            LOG.log(Level.WARNING,
+                    "Server doesn''t accept file uploads in resource creation, trying again in two steps. Returned text was: {0}",
+                    returnedText);
+            uploadNotAccepted = true;
+        }
+
+        // Fallback for servers not accepting uploads in resource_create:
+        // first create the resource as usual, then update it with the file
+        CkanResource resourceResponse = postHttp(ResourceResponse.class, "/api/3/action/resource_create", json,
+                ContentType.APPLICATION_JSON).result;
+        if (uploadNotAccepted) {
+            multipartCreateSupported = false;
+        }
+        resource.setId(resourceResponse.getId());
+        return forgetResourceDataset(postHttpResourceFile(ResourceResponse.class, "/api/3/action/resource_update",
+                resource, source, listener).result);
+    }
+
+    /**
+     * @throws CkanException
+     *             if resource can't be serialized
+     */
+    private String jsonizeResource(CkanResourceBase resource) {
         try {
-            json = om.writeValueAsString(resource);
+            return getObjectMapperForPosting(CkanResourceBase.class).writeValueAsString(resource);
         } catch (IOException e) {
             throw new CkanException(COULDNT_JSONIZE + resource.getClass()
                                                               .getSimpleName(),
                     this, e);
+        }
+    }
 
+    /**
+     * Converts all the fields the posting object mapper would send for the
+     * resource (including {@link CkanResourceBase#getOthers() others}) to
+     * multipart text fields. Non-textual values are sent as json.
+     */
+    static Map<String, String> makeMultipartFields(ObjectMapper om, CkanResourceBase resource) {
+        JsonNode tree = om.valueToTree(resource);
+        Map<String, String> ret = new LinkedHashMap();
+        Iterator<Map.Entry<String, JsonNode>> iter = tree.fields();
+        while (iter.hasNext()) {
+            Map.Entry<String, JsonNode> field = iter.next();
+            JsonNode value = field.getValue();
+            if (value.isNull()) {
+                continue;
+            }
+            ret.put(field.getKey(), value.isValueNode() ? value.asText() : value.toString());
         }
+        ret.put("url", "upload");
+        return ret;
+    }
 
-        if (resource.getUpload() == null) {
-            return postHttp(ResourceResponse.class, "/api/3/action/resource_create", json,
-                    ContentType.APPLICATION_JSON).result;
-        } else {
-            // Could not find a way to create a resource with an attached file
-            // without enumerating all the resource
-            // fields so doing it in two steps :
-            // First, create the resource as usual
-            // Then, update it with the file
-            CkanResource resourceResponse = postHttp(ResourceResponse.class, "/api/3/action/resource_create", json,
-                    ContentType.APPLICATION_JSON).result;
-            resource.setId(resourceResponse.getId());
-            return postHttpResourceFile(ResourceResponse.class, "/api/3/action/resource_update", resource).result;
+    /**
+     * Returns true if the text returned by the server for a multipart
+     * {@code resource_create} tells the server can't take the file upload in
+     * the same call, so the resource was certainly not created: either the
+     * api couldn't decode the multipart body at all (older CKANs only accept
+     * json), or the only validation errors are about the 'upload' field. Any
+     * other error, i.e. on the resource data, is not considered a rejection of
+     * the upload.
+     */
+    static boolean isUploadNotAccepted(String returnedText) {
+        if (returnedText.startsWith(BAD_REQUEST_JSON_ERROR)) {
+            return true;
+        }
+        CkanResponse response;
+        try {
+            response = getObjectMapper().readValue(returnedText, CkanResponse.class);
+        } catch (Exception ex) {
+            return false;
         }
+        if (response.isSuccess() || response.getError() == null
+                || !CkanError.VALIDATION_ERROR.equals(response.getError()
+                                                              .getType())) {
+            return false;
+        }
+        Set<String> fields = response.getError()
+                                     .getOthers()
+                                     .keySet();
+        return fields.size() == 1 && fields.contains("upload");
     }
 
     /**
@@ -1066,15 +1468,18 @@ public class CkanClient {
 
         }
 
-        return postHttp(ResourceResponse.class, "/api/3/action/resource_update", json,
-                ContentType.APPLICATION_JSON).result;
+        forgetResourceDataset(resource);
+        return forgetResourceDataset(postHttp(ResourceResponse.class, "/api/3/action/resource_update", json,
+                ContentType.APPLICATION_JSON).result);
 
     }
 
     /**
-     * Jackan specific. Patches a resource on the ckan server using a
-     * {@code resource_update} call. Todo: this is a temporary solution until we
-     * implement new {@code patch} api of CKAN 2.3
+     * Jackan specific. Patches a resource on the ckan server. If the server
+     * {@link #isPatchSupported() supports it}, only non-null fields are sent
+     * with a single {@code resource_patch} call. Otherwise, the resource is
+     * read from the server, merged and sent with a {@code resource_update}
+     * call.
      *
      * @param resource
      *            ckan resource object. Fields set to {@code null} won't be
@@ -1093,6 +1498,29 @@ public class CkanClient {
         checkNotNull(resource, "Need a valid resource!");
         checkToken("Tried to update resource" + resource.getName());
 
+        if (isPatchSupported()) {
+            checkNotNull(resource.getId(), "Need a resource id to patch it!");
+            String json = null;
+            try {
+                json = getObjectMapperForPosting(CkanResourceBase.class).writeValueAsString(resource);
+            } catch (IOException ex) {
+                throw new CkanException(COULDNT_JSONIZE + resource.getClass()
+                                                                  .getSimpleName(),
+                        this, ex);
+            }
+            forgetResourceDataset(resource);
+            try {
+                return forgetResourceDataset(postHttp(ResourceResponse.class, "/api/3/action/resource_patch", json,
+                        ContentType.APPLICATION_JSON).result);
+            } catch (CkanException ex) {
+                if (!isUnknownAction(ex)) {
+                    throw ex;
+                }
+                LOG.log(Level.WARNING, "Server doesn't support resource_patch, falling back to resource_update", ex);
+                patchSupported = false;
+            }
+        }
+
         CkanResource origResource = getResource(resource.getId());
         // others
         Map<String, Object> newOthers = new HashMap();
@@ -1115,8 +1543,10 @@ public class CkanClient {
 
         }
 
-        return postHttp(ResourceResponse.class, "/api/3/action/resource_update", json,
-                ContentType.APPLICATION_JSON).result;
+        forgetResourceDataset(resource);
+        forgetResourceDataset(origResource);
+        return forgetResourceDataset(postHttp(ResourceResponse.class, "/api/3/action/resource_update", json,
+                ContentType.APPLICATION_JSON).result);
 
     }
 
@@ -1134,9 +1564,97 @@ public class CkanClient {
     public synchronized CkanResource updateResourceData(CkanResourceBase resource) {
         checkNotNull(resource);
         checkNotNull(resource.getUpload(), "Need a non null file in resource.getUpload() !");
+
+        return updateResourceData(resource, UploadSource.of(resource.getUpload()), null);
+    }
+
+    /**
+     * Update the data file associated to this resource, streaming it from
+     * provided source.
+     *
+     * @param resource
+     *            the resource to update, its
+     *            {@link CkanResourceBase#getUpload() upload} field is ignored.
+     *            If its {@link CkanResourceBase#getSize() size} is null, source
+     *            length is sent instead (if known).
+     * @param source
+     *            the data to upload
+     * @param listener
+     *            if not null, it will be notified of upload progress
+     * @throws CkanException
+     *             on error
+     *
+     * @since 0.4.3
+     */
+    public synchronized CkanResource updateResourceData(CkanResourceBase resource, UploadSource source,
+            @Nullable TransferListener listener) {
+        checkNotNull(resource);
+        checkNotNull(source, "Need a valid upload source!");
         checkToken("Tried to update resource" + resource.getName());
 
-        return postHttpResourceFile(ResourceResponse.class, "/api/3/action/resource_update", resource).result;
+        forgetResourceDataset(resource);
+        return forgetResourceDataset(postHttpResourceFile(ResourceResponse.class, "/api/3/action/resource_update",
+                resource, source, listener).result);
+    }
+
+    /**
+     * Returns a new downloader of resource data using this client connection
+     * settings, which can be configured further.
+     *
+     * @since 0.4.3
+     */
+    public ResourceDownloader newResourceDownloader() {
+        return new ResourceDownloader(this);
+    }
+
+    /**
+     * Returns a new engine to synchronize datasets on the server with a
+     * desired state, which can be configured further.
+     *
+     * @since 0.4.3
+     */
+    public CatalogSync newCatalogSync() {
+        return new CatalogSync(this);
+    }
+
+    /**
+     * Downloads resource data into target file with default
+     * {@link ResourceDownloader} settings. Big files are fetched in parallel
+     * segments and data is checked against resource size and hash, if
+     * present.
+     *
+     * Note this method is not synchronized, so other client calls can proceed
+     * during long downloads.
+     *
+     * @param listener
+     *            if not null, it will be notified of download progress
+     * @throws JackanException
+     *             on error, or if data doesn't match resource size or hash
+     *
+     * @since 0.4.3
+     */
+    public DownloadResult downloadResource(CkanResourceBase resource, Path target,
+            @Nullable TransferListener listener) {
+        return newResourceDownloader().download(resource, target, listener);
+    }
+
+    /**
+     * Downloads resource data into target channel, which is not closed, with
+     * default {@link ResourceDownloader} settings.
+     *
+     * Note this method is not synchronized, so other client calls can proceed
+     * during long downloads.
+     *
+     * @param listener
+     *            if not null, it will be notified of download progress
+     * @throws JackanException
+     *             on error, or if data doesn't match resource size or hash
+     *
+     * @since 0.4.3
+     */
+    public DownloadResult downloadResource(CkanResourceBase resource, WritableByteChannel target,
+            @Nullable TransferListener listener) {
+        return newResourceDownloader().download(resource, target, listener);
     }
 
     /**
@@ -1161,6 +1679,12 @@ public class CkanClient {
         checkNotNull(id, "Need a valid id!");
         checkToken("Tried to delete resource with id " + id);
 
+        if (!knownFingerprints.isEmpty()) {
+            // the dataset content changes, but resource_delete doesn't tell
+            // which dataset the resource belonged to
+            forgetResourceDataset(getResource(id));
+        }
+
         String json = "{\"id\":\"" + id + "\"}";
         postHttp(ResourceResponse.class, "/api/3/action/resource_delete", json, ContentType.APPLICATION_JSON);
     }
@@ -1367,8 +1891,11 @@ public class CkanClient {
      *            either "" or " AND "
      * @param list
      *            list of names of ckan objects
+     * @param operator
+     *            either " AND " or " OR "
      */
-    private static String appendNamesList(String fqPrefix, String key, List<String> list, StringBuilder fq) {
+    private static String appendNamesList(String fqPrefix, String key, List<String> list, String operator,
+            StringBuilder fq) {
         checkNotNull(fqPrefix, "Need a valid prefix!");
         checkNotNull(key, "Need a valid key!");
         checkNotNull(list, "Need a valid list!");
@@ -1378,35 +1905,93 @@ public class CkanClient {
             fq.append(fqPrefix)
               .append("(");
             String prefix = "";
-            for (String n : list) {
+            for (String n : Ordering.natural()
+                                    .sortedCopy(list)) {
                 fq.append(prefix)
                   .append(key)
                   .append(":");
-                fq.append('"' + n + '"');
-                prefix = " AND ";
+                fq.append(CkanQuery.phrase(n));
+                prefix = operator;
             }
             fq.append(")");
             return " AND ";
         } else {
-            return "";
+            return fqPrefix;
         }
 
     }
 
     /**
-     * Parses a {@link #CKAN_TIMESTAMP_PATTERN Ckan timestamp} into a Java Timestamp.
-     * For resilience, it also accepts patterns without fractional part and with 
-     * only millisecs.
-     * 
-     * @throws IllegalArgumentException
-     *             if timestamp can't be parsed.
-     * @see #formatTimestamp(java.sql.Timestamp) for the inverse process.
-     * @since 0.4.1
+     * Appends a clause excluding all given names. Note purely negative clauses
+     * need to be subtracted from all documents ('*:*') to work within
+     * parenthesis.
+     *
+     * @param fqPrefix
+     *            either "" or " AND "
      */
-    // NOTE: 
-    // - Timestamp.valueOf can't be used as it is locale timezone dependent...
-    // - new Timestamp(long) internally stores time without millisecs, and millisecs go to nano part  
-    public static Timestamp parseTimestamp(String timestamp) {
+    private static String appendExcludedNames(String fqPrefix, String key, List<String> list, StringBuilder fq) {
+        if (list.size() > 0) {
+            fq.append(fqPrefix)
+              .append("(*:*");
+            for (String n : Ordering.natural()
+                                    .sortedCopy(list)) {
+                fq.append(" -")
+                  .append(key)
+                  .append(":")
+                  .append(CkanQuery.phrase(n));
+            }
+            fq.append(")");
+            return " AND ";
+        } else {
+            return fqPrefix;
+        }
+    }
+
+    /**
+     * Appends a Solr range clause, if at least one of the bounds is not null.
+     *
+     * @param fqPrefix
+     *            either "" or " AND "
+     */
+    private static String appendRange(String fqPrefix, String key, @Nullable Timestamp from, @Nullable Timestamp to,
+            StringBuilder fq) {
+        if (from == null && to == null) {
+            return fqPrefix;
+        }
+        fq.append(fqPrefix)
+          .append(key)
+          .append(":[")
+          .append(from == null ? "*" : formatSolrTimestamp(from))
+          .append(" TO ")
+          .append(to == null ? "*" : formatSolrTimestamp(to))
+          .append("]");
+        return " AND ";
+    }
+
+    /**
+     * Formats a timestamp in the UTC format expected by Solr date ranges, i.e.
+     * "2015-03-21T10:55:01.123Z"
+     */
+    private static String formatSolrTimestamp(Timestamp timestamp) {
+        DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return formatter.format(timestamp);
+    }
+
+    /**
+     * Parses a {@link #CKAN_TIMESTAMP_PATTERN Ckan timestamp} into a Java Timestamp.
+     * For resilience, it also accepts patterns without fractional part and with 
+     * only millisecs.
+     * 
+     * @throws IllegalArgumentException
+     *             if timestamp can't be parsed.
+     * @see #formatTimestamp(java.sql.Timestamp) for the inverse process.
+     * @since 0.4.1
+     */
+    // NOTE: 
+    // - Timestamp.valueOf can't be used as it is locale timezone dependent...
+    // - new Timestamp(long) internally stores time without millisecs, and millisecs go to nano part  
+    public static Timestamp parseTimestamp(String timestamp) {
         if (timestamp == null) {
             throw new IllegalArgumentException("Found null timestamp!");
         }
@@ -1500,20 +2085,137 @@ public class CkanClient {
     }
 
     /**
-     * Search datasets according to the provided query.
+     * Search datasets according to the provided query. If the query has
+     * facet fields, returned results are a {@link FacetedSearchResults}.
+     *
+     * @param query
+     *            The query object
+     * @param limit
+     *            maximum results to return
+     * @param offset
+     *            search begins from offset
+     * @throws CkanException
+     *             on error
+     */
+    public SearchResults<CkanDataset> searchDatasets(CkanQuery query, int limit, int offset) {
+        return searchDatasets(query, limit, offset, true);
+    }
+
+    /**
+     * @param cached
+     *            if false the search cache is neither read nor filled
+     * @see #searchDatasets(CkanQuery, int, int)
+     */
+    synchronized SearchResults<CkanDataset> searchDatasets(CkanQuery query, int limit, int offset, boolean cached) {
+        checkNotNull(query, "Need a valid query!");
+
+        String params = makeSearchParams(query, limit, offset, false);
+
+        DatasetSearchResponse dsr;
+        dsr = getHttpCached(DatasetSearchResponse.class, cached ? searchCache : null,
+                "/api/3/action/package_search?" + params);
+
+        for (CkanDataset ds : dsr.result.getResults()) {
+            for (CkanResource cr : ds.getResources()) {
+                cr.setPackageId(ds.getId());
+            }
+        }
+
+        return dsr.result;
+    }
+
+    /**
+     * Counts datasets matching the query and computes the facets set with
+     * {@link CkanQuery#withFacetFields(java.lang.String...)}, without
+     * downloading any dataset (the search is done with 'rows=0').
      *
      * @param query
      *            The query object
+     * @return results with no datasets, but with total
+     *         {@link SearchResults#getCount() count} and
+     *         {@link FacetedSearchResults#getFacets() facets}
+     * @throws CkanException
+     *             on error
+     * @since 0.4.3
+     */
+    public synchronized FacetedSearchResults<CkanDataset> searchDatasetFacets(CkanQuery query) {
+        checkNotNull(query, "Need a valid query!");
+
+        String params = makeSearchParams(query, 0, 0, false);
+
+        DatasetSearchResponse dsr;
+        dsr = getHttpCached(DatasetSearchResponse.class, facetCache, "/api/3/action/package_search?" + params);
+        return dsr.result;
+    }
+
+    /**
+     * Search datasets according to the provided query, returning only the
+     * fields set with {@link CkanQuery#withFields(java.lang.String...)}. Much
+     * lighter than {@link #searchDatasets(CkanQuery, int, int)} for listing
+     * jobs which don't need full datasets.
+     *
+     * @param query
+     *            The query object, must have at least one field
      * @param limit
      *            maximum results to return
      * @param offset
      *            search begins from offset
+     * @return a list of field maps, one per dataset. Values are plain JSON
+     *         types, so for example timestamps are strings, parseable with
+     *         {@link #parseTimestamp(java.lang.String)}
      * @throws CkanException
      *             on error
+     * @since 0.4.3
      */
-    public synchronized SearchResults<CkanDataset> searchDatasets(CkanQuery query, int limit, int offset) {
+    public SearchResults<Map<String, Object>> searchDatasetFields(CkanQuery query, int limit, int offset) {
+        return searchDatasetFields(query, limit, offset, true);
+    }
+
+    /**
+     * @param cached
+     *            if false the search cache is neither read nor filled, i.e.
+     *            to plan writes on fresh data
+     * @see #searchDatasetFields(CkanQuery, int, int)
+     */
+    synchronized SearchResults<Map<String, Object>> searchDatasetFields(CkanQuery query, int limit, int offset,
+            boolean cached) {
         checkNotNull(query, "Need a valid query!");
+        checkArgument(query.getFields()
+                           .size() > 0,
+                "Need at least one field to return!");
+
+        String params = makeSearchParams(query, limit, offset, true);
+
+        DatasetFieldsSearchResponse dsr;
+        dsr = getHttpCached(DatasetFieldsSearchResponse.class, cached ? searchCache : null,
+                "/api/3/action/package_search?" + params);
 
+        List<Map<String, Object>> results = new ArrayList<>(dsr.result.getResults()
+                                                                       .size());
+        for (JsonNode node : dsr.result.getResults()) {
+            if (node.isObject()) {
+                results.add(getObjectMapper().convertValue(node, Map.class));
+            } else {
+                // with a single field some CKAN versions return bare values
+                Map<String, Object> m = new HashMap<>();
+                m.put(query.getFields()
+                           .get(0),
+                        getObjectMapper().convertValue(node, Object.class));
+                results.add(m);
+            }
+        }
+        return new SearchResults(results, dsr.result.getCount());
+    }
+
+    /**
+     * Builds the url parameters for a package_search call. Parameters are
+     * canonical, that is, the order of names within lists doesn't matter, so
+     * they can be used as cache keys.
+     *
+     * @param withFields
+     *            if true, fields of the query are added as 'fl' parameter.
+     */
+    static String makeSearchParams(CkanQuery query, int limit, int offset, boolean withFields) {
         StringBuilder params = new StringBuilder();
 
         params.append("rows=")
@@ -1530,10 +2232,42 @@ public class CkanClient {
         StringBuilder fq = new StringBuilder();
         String fqPrefix = "";
 
-        fqPrefix = appendNamesList(fqPrefix, "groups", query.getGroupNames(), fq);
-        fqPrefix = appendNamesList(fqPrefix, "organization", query.getOrganizationNames(), fq);
-        fqPrefix = appendNamesList(fqPrefix, "tags", query.getTagNames(), fq);
-        fqPrefix = appendNamesList(fqPrefix, "license_id", query.getLicenseIds(), fq);
+        fqPrefix = appendNamesList(fqPrefix, "groups", query.getGroupNames(), " AND ", fq);
+        fqPrefix = appendNamesList(fqPrefix, "organization", query.getOrganizationNames(), " AND ", fq);
+        fqPrefix = appendNamesList(fqPrefix, "tags", query.getTagNames(), " AND ", fq);
+        fqPrefix = appendNamesList(fqPrefix, "license_id", query.getLicenseIds(), " AND ", fq);
+
+        fqPrefix = appendNamesList(fqPrefix, "groups", query.getAnyGroupNames(), " OR ", fq);
+        fqPrefix = appendNamesList(fqPrefix, "organization", query.getAnyOrganizationNames(), " OR ", fq);
+        fqPrefix = appendNamesList(fqPrefix, "tags", query.getAnyTagNames(), " OR ", fq);
+        fqPrefix = appendNamesList(fqPrefix, "license_id", query.getAnyLicenseIds(), " OR ", fq);
+
+        fqPrefix = appendExcludedNames(fqPrefix, "groups", query.getExcludedGroupNames(), fq);
+        fqPrefix = appendExcludedNames(fqPrefix, "organization", query.getExcludedOrganizationNames(), fq);
+        fqPrefix = appendExcludedNames(fqPrefix, "tags", query.getExcludedTagNames(), fq);
+        fqPrefix = appendExcludedNames(fqPrefix, "license_id", query.getExcludedLicenseIds(), fq);
+
+        fqPrefix = appendRange(fqPrefix, "metadata_modified", query.getModifiedFrom(), query.getModifiedTo(), fq);
+        fqPrefix = appendRange(fqPrefix, "metadata_created", query.getCreatedFrom(), query.getCreatedTo(), fq);
+
+        for (Map.Entry<String, String> extra : query.getExtras()
+                                                    .entrySet()) {
+            fq.append(fqPrefix)
+              .append("extras_")
+              .append(CkanQuery.escape(extra.getKey()))
+              .append(":")
+              .append(CkanQuery.phrase(extra.getValue()));
+            fqPrefix = " AND ";
+        }
+
+        for (String rawFilter : Ordering.natural()
+                                        .sortedCopy(query.getRawFilters())) {
+            fq.append(fqPrefix)
+              .append("(")
+              .append(rawFilter)
+              .append(")");
+            fqPrefix = " AND ";
+        }
 
         if (fq.length() > 0) {
             params.append("&fq=")
@@ -1542,16 +2276,45 @@ public class CkanClient {
                                       .toString()));
         }
 
-        DatasetSearchResponse dsr;
-        dsr = getHttp(DatasetSearchResponse.class, "/api/3/action/package_search?" + params.toString());
+        if (query.getSort()
+                 .size() > 0) {
+            params.append("&sort=")
+                  .append(urlEncode(Joiner.on(", ")
+                                          .join(query.getSort())));
+        }
 
-        for (CkanDataset ds : dsr.result.getResults()) {
-            for (CkanResource cr : ds.getResources()) {
-                cr.setPackageId(ds.getId());
+        if (withFields && query.getFields()
+                               .size() > 0) {
+            params.append("&fl=")
+                  .append(urlEncode(Joiner.on(' ')
+                                          .join(Ordering.natural()
+                                                        .sortedCopy(query.getFields()))));
+        }
+
+        if (query.getFacetFields()
+                 .size() > 0) {
+            try {
+                params.append("&facet.field=")
+                      .append(urlEncode(getObjectMapper().writeValueAsString(Ordering.natural()
+                                                                                    .sortedCopy(
+                                                                                            query.getFacetFields()))));
+            } catch (IOException ex) {
+                throw new JackanException("Couldn't serialize facet fields " + query.getFacetFields(), ex);
+            }
+            if (query.getFacetLimit() != null) {
+                params.append("&facet.limit=")
+                      .append(query.getFacetLimit());
             }
         }
 
-        return dsr.result;
+        if (query.isIncludingPrivate()) {
+            params.append("&include_private=True");
+        }
+        if (query.isIncludingDrafts()) {
+            params.append("&include_drafts=True");
+        }
+
+        return params.toString();
     }
 
     /**
@@ -1621,106 +2384,543 @@ public class CkanClient {
 
         }
 
+        forgetFingerprint(dataset.idOrName());
         return postHttp(DatasetResponse.class, "/api/3/action/package_update", json,
                 ContentType.APPLICATION_JSON).result;
 
     }
 
-    public static List<CkanPair> extrasMapToList(Map<String, String> map) {
-        ArrayList ret = new ArrayList();
+    /**
+     * Updates a dataset like {@link #updateDataset(CkanDatasetBase)}, unless
+     * its {@link #fingerprint(CkanDatasetBase) fingerprint} equals the one of
+     * the content last written by this method for the same dataset, in which
+     * case no call is made and no new revision gets created on the server.
+     * Known fingerprints can be saved and restored among runs with
+     * {@link #getKnownFingerprints()} and
+     * {@link #putKnownFingerprint(String, String)}. Any other write of the
+     * dataset or of its resources through this client forgets its
+     * fingerprint.
+     *
+     * @param dataset
+     *            dataset with id or name
+     * @return the updated dataset, or {@code null} if the write was skipped
+     * @throws CkanException
+     *             on error
+     * @see #getSkippedWrites()
+     * @see #getSentWrites()
+     * @since 0.4.3
+     */
+    @Nullable
+    public synchronized CkanDataset updateDatasetIfChanged(CkanDatasetBase dataset) {
+        checkNotNull(dataset, "Need a valid dataset!");
+        String idOrName = dataset.idOrName();
+        checkNotEmpty(idOrName, "Need a dataset with id or name!");
+
+        String fingerprint = fingerprint(dataset);
+        if (fingerprint.equals(knownFingerprints.get(idOrName))) {
+            skippedWrites.incrementAndGet();
+            LOG.log(Level.FINE, "Dataset {0} is unchanged, skipping update", idOrName);
+            return null;
+        }
 
-        for (String key : map.keySet()) {
-            ret.add(new CkanPair(key, map.get(key)));
+        CkanDataset ret = updateDataset(dataset);
+        sentWrites.incrementAndGet();
+        rememberFingerprint(idOrName, fingerprint);
+        if (ret.getId() != null) {
+            rememberFingerprint(ret.getId(), fingerprint);
+        }
+        if (ret.getName() != null) {
+            rememberFingerprint(ret.getName(), fingerprint);
         }
         return ret;
     }
 
-    private void mergeResources(@Nullable List<CkanResource> resourcesToMerge, List<CkanResource> targetResources) {
-        if (resourcesToMerge != null) {
-            for (CkanResource resourceToMerge : resourcesToMerge) {
-                boolean replaced = false;
-                for (int i = 0; i < targetResources.size(); i++) {
-                    CkanResource targetRes = targetResources.get(i);
-                    if (resourceToMerge.getId() != null && resourceToMerge.getId()
-                                                                          .equals(targetRes.getId())) {
-                        targetResources.set(i, resourceToMerge);
-                        replaced = true;
-                        break;
-                    }
-                }
-                if (!replaced) {
-                    targetResources.add(resourceToMerge);
+    /**
+     * Number of updates skipped by
+     * {@link #updateDatasetIfChanged(CkanDatasetBase)} because content was
+     * unchanged.
+     *
+     * @since 0.4.3
+     */
+    public long getSkippedWrites() {
+        return skippedWrites.get();
+    }
+
+    /**
+     * Number of updates actually sent by
+     * {@link #updateDatasetIfChanged(CkanDatasetBase)}
+     *
+     * @since 0.4.3
+     */
+    public long getSentWrites() {
+        return sentWrites.get();
+    }
+
+    /**
+     * Returns a snapshot of the fingerprints known by
+     * {@link #updateDatasetIfChanged(CkanDatasetBase)}, indexed by dataset id
+     * and name.
+     *
+     * @since 0.4.3
+     */
+    public ImmutableMap<String, String> getKnownFingerprints() {
+        return ImmutableMap.copyOf(knownFingerprints);
+    }
+
+    /**
+     * Sets the fingerprint of the content the server holds for a dataset, i.e.
+     * as restored from a previous run. If {@code fingerprint} is null, the
+     * dataset fingerprint is forgotten.
+     *
+     * @since 0.4.3
+     */
+    public void putKnownFingerprint(String idOrName, @Nullable String fingerprint) {
+        checkNotEmpty(idOrName, "Invalid dataset id or name!");
+        if (fingerprint == null) {
+            forgetFingerprint(idOrName);
+        } else {
+            rememberFingerprint(idOrName, fingerprint);
+        }
+    }
+
+    /**
+     * Records the fingerprint of a dataset under given key
+     */
+    private void rememberFingerprint(String idOrName, String fingerprint) {
+        synchronized (knownFingerprints) {
+            String old = knownFingerprints.put(idOrName, fingerprint);
+            if (old != null && !old.equals(fingerprint)) {
+                Set<String> oldKeys = fingerprintKeys.get(old);
+                oldKeys.remove(idOrName);
+                if (oldKeys.isEmpty()) {
+                    fingerprintKeys.remove(old);
                 }
             }
+            Set<String> keys = fingerprintKeys.get(fingerprint);
+            if (keys == null) {
+                keys = new HashSet();
+                fingerprintKeys.put(fingerprint, keys);
+            }
+            keys.add(idOrName);
         }
     }
 
-    private void mergeGroups(@Nullable List<CkanGroup> groupsToMerge, List<CkanGroup> targetGroups) {
-        if (groupsToMerge != null) {
-            for (CkanGroup groupToMerge : groupsToMerge) {
-                boolean replaced = false;
-                for (int i = 0; i < targetGroups.size(); i++) {
-                    CkanGroup targetRes = targetGroups.get(i);
-                    if (groupToMerge.getId() != null && groupToMerge.getId()
-                                                                    .equals(targetRes.getId())) {
-                        targetGroups.set(i, groupToMerge);
-                        replaced = true;
-                        break;
-                    }
+    /**
+     * Forgets the fingerprint of given dataset, both under provided key and
+     * its aliases (dataset fingerprints include the name, so the same
+     * fingerprint can't belong to different datasets).
+     */
+    private void forgetFingerprint(@Nullable String idOrName) {
+        if (idOrName == null) {
+            return;
+        }
+        synchronized (knownFingerprints) {
+            String fingerprint = knownFingerprints.remove(idOrName);
+            if (fingerprint != null) {
+                for (String key : fingerprintKeys.remove(fingerprint)) {
+                    knownFingerprints.remove(key);
                 }
-                if (!replaced) {
-                    targetGroups.add(groupToMerge);
+            }
+        }
+    }
+
+    /**
+     * Forgets the fingerprint of the dataset owning given resource, as
+     * resources are part of dataset content. Resource writes call this both
+     * with the resource sent, before the call, and with the one returned by
+     * the server, as package id may be missing from the former.
+     *
+     * @return the provided resource
+     */
+    private <T extends CkanResourceBase> T forgetResourceDataset(@Nullable T resource) {
+        if (resource != null) {
+            forgetFingerprint(resource.getPackageId());
+        }
+        return resource;
+    }
+
+    /**
+     * Returns the SHA-256 hex digest of the dataset content as it would be
+     * sent to the server. Json is produced by the same object mapper used for
+     * posting, then object keys are sorted, nulls are dropped and
+     * {@link #FINGERPRINT_IGNORED_FIELDS} are removed at any level. Order of
+     * list items is significant.
+     *
+     * @throws JackanException
+     *             if the dataset can't be serialized
+     * @since 0.4.3
+     */
+    public static String fingerprint(CkanDatasetBase dataset) {
+        checkNotNull(dataset, "Need a valid dataset!");
+        ObjectMapper om = getObjectMapperForPosting(CkanDatasetBase.class);
+        try {
+            JsonNode canonical = canonicalJson(om.<JsonNode> valueToTree(dataset));
+            return Hashing.sha256()
+                          .hashBytes(om.writeValueAsBytes(canonical))
+                          .toString();
+        } catch (IllegalArgumentException | JsonProcessingException ex) {
+            throw new JackanException(COULDNT_JSONIZE + dataset.getClass()
+                                                               .getSimpleName(),
+                    ex);
+        }
+    }
+
+    /**
+     * Returns a copy of the json tree with object keys sorted, without nulls
+     * and without {@link #FINGERPRINT_IGNORED_FIELDS}
+     */
+    static JsonNode canonicalJson(JsonNode node) {
+        if (node.isObject()) {
+            ObjectNode ret = JsonNodeFactory.instance.objectNode();
+            for (String field : Ordering.natural()
+                                        .sortedCopy(ImmutableList.copyOf(node.fieldNames()))) {
+                JsonNode value = node.get(field);
+                if (!value.isNull() && !FINGERPRINT_IGNORED_FIELDS.contains(field)) {
+                    ret.set(field, canonicalJson(value));
                 }
             }
+            return ret;
+        } else if (node.isArray()) {
+            ArrayNode ret = JsonNodeFactory.instance.arrayNode();
+            for (JsonNode item : node) {
+                ret.add(canonicalJson(item));
+            }
+            return ret;
+        } else {
+            return node;
         }
     }
 
-    private void mergeRelationships(@Nullable List<CkanDatasetRelationship> relationshipsToMerge,
-            List<CkanDatasetRelationship> targetDatasetRelationships) {
-        if (relationshipsToMerge != null) {
-            for (CkanDatasetRelationship relationshipToMerge : relationshipsToMerge) {
-                boolean replaced = false;
-                for (int i = 0; i < targetDatasetRelationships.size(); i++) {
-                    CkanDatasetRelationship targetRes = targetDatasetRelationships.get(i);
-                    if (relationshipToMerge.getId() != null && relationshipToMerge.getId()
-                                                                                  .equals(targetRes.getId())) {
-                        targetDatasetRelationships.set(i, relationshipToMerge);
-                        replaced = true;
-                        break;
+    /**
+     * Creates or updates many datasets in parallel, with
+     * {@link #DEFAULT_BULK_CONCURRENCY} parallel requests and
+     * {@link #DEFAULT_BULK_RETRIES} retries.
+     *
+     * @see #bulkUpsertDatasets(Iterable, int, int)
+     * @since 0.4.3
+     */
+    public UpsertReport bulkUpsertDatasets(Iterable<? extends CkanDatasetBase> datasets) {
+        return bulkUpsertDatasets(datasets, DEFAULT_BULK_CONCURRENCY, DEFAULT_BULK_RETRIES);
+    }
 
-                    }
+    /**
+     * Creates or updates many datasets in parallel. Datasets with an id are
+     * updated with {@code package_update}; datasets without an id are created,
+     * and if creation fails because their name is already taken the existing
+     * dataset is updated instead.
+     *
+     * <p>
+     * Serialization and requests are done by {@code concurrency} threads, and
+     * input datasets are consumed only as threads become free. Note the
+     * returned report holds each input dataset together with its result, so
+     * memory grows with the input: to upsert huge sequences, call this method
+     * on batches of them. Failures don't stop the
+     * operation: each of them is reported in the result. Requests failing
+     * without an answer from the server (i.e. for network errors) are retried
+     * with exponential backoff, while errors reported by the server are not.
+     * </p>
+     *
+     * <p>
+     * Note this method is not synchronized, so it doesn't block other client
+     * calls, and it doesn't perform additional checks of
+     * {@link CheckedCkanClient}. As for {@link #updateDataset(CkanDatasetBase)}
+     * list fields which are not sent will be erased on the server.
+     * </p>
+     *
+     * @param concurrency
+     *            maximum number of parallel requests
+     * @param maxRetries
+     *            maximum number of retries of a failed upsert
+     * @return a report with a result for each input dataset, in input order
+     * @throws CkanException
+     *             if ckan token is not set
+     * @since 0.4.3
+     */
+    public UpsertReport bulkUpsertDatasets(Iterable<? extends CkanDatasetBase> datasets, int concurrency,
+            final int maxRetries) {
+        checkNotNull(datasets, "Need valid datasets!");
+        checkArgument(concurrency > 0, "Concurrency must be > 0, found instead %s", concurrency);
+        checkArgument(maxRetries >= 0, "Max retries must be >= 0, found instead %s", maxRetries);
+        checkToken("Tried to bulk upsert datasets");
+
+        long start = System.nanoTime();
+
+        // mappers are lazily created in maps which are not thread safe
+        getObjectMapper();
+        getObjectMapperForPosting(CkanDatasetBase.class);
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        final Semaphore free = new Semaphore(concurrency);
+        List<Future<UpsertResult>> futures = new ArrayList();
+        try {
+            int i = 0;
+            for (final CkanDatasetBase dataset : datasets) {
+                checkNotNull(dataset, "Found null dataset at position %s", i);
+                final int index = i++;
+                try {
+                    free.acquire();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread()
+                          .interrupt();
+                    throw new JackanException("Interrupted while upserting datasets!", ex);
                 }
-                if (!replaced) {
-                    targetDatasetRelationships.add(relationshipToMerge);
+                futures.add(executor.submit(new Callable<UpsertResult>() {
+                    @Override
+                    public UpsertResult call() {
+                        try {
+                            return upsertDataset(index, dataset, maxRetries);
+                        } finally {
+                            free.release();
+                        }
+                    }
+                }));
+            }
+
+            List<UpsertResult> results = new ArrayList(futures.size());
+            for (Future<UpsertResult> future : futures) {
+                try {
+                    results.add(Uninterruptibles.getUninterruptibly(future));
+                } catch (ExecutionException ex) {
+                    throw new JackanException("Unexpected error while upserting datasets!", ex.getCause());
                 }
             }
+            UpsertReport ret = new UpsertReport(results, System.nanoTime() - start);
+            LOG.log(Level.FINE, "Bulk upsert done: {0}", ret);
+            return ret;
+        } finally {
+            executor.shutdownNow();
         }
     }
 
-    private void mergeTags(@Nullable List<CkanTag> tagsToMerge, List<CkanTag> targetTags) {
-        if (tagsToMerge != null) {
-            for (CkanTag tagToMerge : tagsToMerge) {
-                boolean replaced = false;
-                for (int i = 0; i < targetTags.size(); i++) {
-                    CkanTag targetRes = targetTags.get(i);
-                    if (tagToMerge.getId() != null && tagToMerge.getId()
-                                                                .equals(targetRes.getId())) {
-                        targetTags.set(i, tagToMerge);
-                        replaced = true;
-                        break;
+    /**
+     * Creates or updates a dataset, retrying on network errors. Never throws
+     * CkanException, errors are reported in the result instead.
+     */
+    private UpsertResult upsertDataset(int index, CkanDatasetBase dataset, int maxRetries) {
+        String json;
+        try {
+            json = getObjectMapperForPosting(CkanDatasetBase.class).writeValueAsString(dataset);
+        } catch (IOException ex) {
+            return new UpsertResult(index, dataset, UpsertResult.Outcome.FAILED, null,
+                    new CkanException(COULDNT_JSONIZE + dataset.getClass()
+                                                               .getSimpleName(),
+                            this, ex),
+                    0);
+        }
+
+        forgetFingerprint(dataset.idOrName());
+        boolean create = dataset.getId() == null;
+        int attempts = 0;
+        int retries = 0;
+        while (true) {
+            try {
+                if (create) {
+                    attempts++;
+                    try {
+                        return new UpsertResult(index, dataset, UpsertResult.Outcome.CREATED,
+                                postHttp(DatasetResponse.class, "/api/3/action/package_create", json,
+                                        ContentType.APPLICATION_JSON).result,
+                                null, attempts);
+                    } catch (CkanValidationException ex) {
+                        if (dataset.getName() == null) {
+                            throw ex;
+                        }
+                        // maybe name is already taken
+                        CkanDataset existing;
+                        try {
+                            existing = getHttp(DatasetResponse.class, "/api/3/action/package_show", "id",
+                                    dataset.getName()).result;
+                        } catch (CkanNotFoundException ex2) {
+                            throw ex;
+                        }
+                        json = jsonWithId(json, existing.getId());
+                        create = false;
                     }
                 }
-                if (!replaced) {
-                    targetTags.add(tagToMerge);
+                attempts++;
+                return new UpsertResult(index, dataset, UpsertResult.Outcome.UPDATED,
+                        postHttp(DatasetResponse.class, "/api/3/action/package_update", json,
+                                ContentType.APPLICATION_JSON).result,
+                        null, attempts);
+            } catch (CkanException ex) {
+                if (ex.getCkanResponse() != null || retries >= maxRetries) {
+                    return new UpsertResult(index, dataset, UpsertResult.Outcome.FAILED, null, ex, attempts);
+                }
+                LOG.log(Level.WARNING, "Upsert of dataset " + dataset.getName() + " failed, retrying", ex);
+                try {
+                    Thread.sleep(BULK_RETRY_DELAY << retries);
+                } catch (InterruptedException iex) {
+                    Thread.currentThread()
+                          .interrupt();
+                    return new UpsertResult(index, dataset, UpsertResult.Outcome.FAILED, null, ex, attempts);
                 }
+                retries++;
             }
         }
     }
 
     /**
-     * Jackan specific. Patches a dataset on the ckan server using a
-     * {@code package_update} call. Todo: this is a temporary solution until we
-     * implement new {@code patch} api of CKAN 2.3
+     * Returns the json object with given id set.
+     */
+    private String jsonWithId(String json, String id) {
+        try {
+            ObjectNode node = (ObjectNode) getObjectMapper().readTree(json);
+            node.put("id", id);
+            return getObjectMapper().writeValueAsString(node);
+        } catch (IOException ex) {
+            throw new CkanException("Couldn't set id in json: " + json, this, ex);
+        }
+    }
+
+    /**
+     * Unsynchronized {@code package_show}, for parallel jobs.
+     */
+    CkanDataset fetchDataset(String idOrName) {
+        return getHttp(DatasetResponse.class, "/api/3/action/package_show", "id", idOrName).result;
+    }
+
+    /**
+     * Unsynchronized post of a dataset, for parallel jobs.
+     *
+     * @param action
+     *            i.e. "package_update"
+     */
+    CkanDataset postDataset(String action, CkanDatasetBase dataset) {
+        String json;
+        try {
+            json = getObjectMapperForPosting(CkanDatasetBase.class).writeValueAsString(dataset);
+        } catch (IOException ex) {
+            throw new CkanException(COULDNT_JSONIZE + dataset.getClass()
+                                                             .getSimpleName(),
+                    this, ex);
+        }
+        return postHttp(DatasetResponse.class, "/api/3/action/" + action, json, ContentType.APPLICATION_JSON).result;
+    }
+
+    /**
+     * Unsynchronized post of a resource, for parallel jobs.
+     *
+     * @param action
+     *            i.e. "resource_create"
+     */
+    CkanResource postResource(String action, CkanResourceBase resource) {
+        String json;
+        try {
+            json = getObjectMapperForPosting(CkanResourceBase.class).writeValueAsString(resource);
+        } catch (IOException ex) {
+            throw new CkanException(COULDNT_JSONIZE + resource.getClass()
+                                                              .getSimpleName(),
+                    this, ex);
+        }
+        return postHttp(ResourceResponse.class, "/api/3/action/" + action, json, ContentType.APPLICATION_JSON).result;
+    }
+
+    /**
+     * Unsynchronized delete call, for parallel jobs.
+     *
+     * @param action
+     *            i.e. "package_delete"
+     */
+    void postDelete(String action, String id) {
+        String json = "{\"id\":\"" + id + "\"}";
+        postHttp(CkanResponse.class, "/api/3/action/" + action, json, ContentType.APPLICATION_JSON);
+    }
+
+    public static List<CkanPair> extrasMapToList(Map<String, String> map) {
+        ArrayList ret = new ArrayList();
+
+        for (String key : map.keySet()) {
+            ret.add(new CkanPair(key, map.get(key)));
+        }
+        return ret;
+    }
+
+    private static final Function<CkanResource, String> RESOURCE_ID = new Function<CkanResource, String>() {
+        @Override
+        public String apply(CkanResource input) {
+            return input.getId();
+        }
+    };
+
+    private static final Function<CkanGroup, String> GROUP_ID = new Function<CkanGroup, String>() {
+        @Override
+        public String apply(CkanGroup input) {
+            return input.getId();
+        }
+    };
+
+    private static final Function<CkanDatasetRelationship, String> RELATIONSHIP_ID = new Function<CkanDatasetRelationship, String>() {
+        @Override
+        public String apply(CkanDatasetRelationship input) {
+            return input.getId();
+        }
+    };
+
+    private static final Function<CkanTag, String> TAG_ID = new Function<CkanTag, String>() {
+        @Override
+        public String apply(CkanTag input) {
+            return input.getId();
+        }
+    };
+
+    /**
+     * Merges items into target list: an item replaces the first target item
+     * with the same id, and is appended if there is none or its id is null.
+     * Items are looked up by id in a map, so merging takes linear time.
+     *
+     * @param idFunction
+     *            extracts the id of an item, which may be null
+     * @since 0.4.3
+     */
+    public static <T> void mergeById(@Nullable List<? extends T> itemsToMerge, List<T> target,
+            Function<? super T, String> idFunction) {
+        if (itemsToMerge == null) {
+            return;
+        }
+        Map<String, Integer> positions = new HashMap(target.size() + itemsToMerge.size());
+        for (int i = 0; i < target.size(); i++) {
+            String id = idFunction.apply(target.get(i));
+            if (id != null && !positions.containsKey(id)) {
+                positions.put(id, i);
+            }
+        }
+        for (T item : itemsToMerge) {
+            String id = idFunction.apply(item);
+            Integer pos = id == null ? null : positions.get(id);
+            if (pos == null) {
+                if (id != null) {
+                    positions.put(id, target.size());
+                }
+                target.add(item);
+            } else {
+                target.set(pos, item);
+            }
+        }
+    }
+
+    private void mergeResources(@Nullable List<CkanResource> resourcesToMerge, List<CkanResource> targetResources) {
+        mergeById(resourcesToMerge, targetResources, RESOURCE_ID);
+    }
+
+    private void mergeGroups(@Nullable List<CkanGroup> groupsToMerge, List<CkanGroup> targetGroups) {
+        mergeById(groupsToMerge, targetGroups, GROUP_ID);
+    }
+
+    private void mergeRelationships(@Nullable List<CkanDatasetRelationship> relationshipsToMerge,
+            List<CkanDatasetRelationship> targetDatasetRelationships) {
+        mergeById(relationshipsToMerge, targetDatasetRelationships, RELATIONSHIP_ID);
+    }
+
+    private void mergeTags(@Nullable List<CkanTag> tagsToMerge, List<CkanTag> targetTags) {
+        mergeById(tagsToMerge, targetTags, TAG_ID);
+    }
+
+    /**
+     * Jackan specific. Patches a dataset on the ckan server. If the server
+     * {@link #isPatchSupported() supports it}, only non-null fields are sent
+     * with a {@code package_patch} call, and the dataset is read from the
+     * server only if it holds lists to merge. Otherwise, the dataset is read
+     * from the server, merged and sent with a {@code package_update} call.
      *
      * @param dataset
      *            ckan dataset object. Fields set to {@code null} won't be
@@ -1739,6 +2939,19 @@ public class CkanClient {
 
         checkToken("Tried to patch update dataset" + dataset.getName());
 
+        forgetFingerprint(dataset.idOrName());
+        if (isPatchSupported()) {
+            try {
+                return patchDataset(dataset);
+            } catch (CkanException ex) {
+                if (!isUnknownAction(ex)) {
+                    throw ex;
+                }
+                LOG.log(Level.WARNING, "Server doesn't support package_patch, falling back to package_update", ex);
+                patchSupported = false;
+            }
+        }
+
         CkanDataset origDataset = getDataset(dataset.idOrName());
 
         // others
@@ -1752,64 +2965,178 @@ public class CkanClient {
         }
         dataset.setOthers(newOthers);
 
+        mergeDatasetLists(dataset, origDataset, false);
+
+        String json = null;
+        try {
+            json = getObjectMapperForPosting(CkanDatasetBase.class).writeValueAsString(dataset);
+        } catch (IOException ex) {
+            throw new JackanException(COULDNT_JSONIZE + dataset.getClass()
+                                                               .getSimpleName(),
+                    ex);
+
+        }
+
+        return postHttp(DatasetResponse.class, "/api/3/action/package_update", json,
+                ContentType.APPLICATION_JSON).result;
+
+    }
+
+    /**
+     * Sends non-null fields of the dataset with a {@code package_patch} call,
+     * first merging its lists with those on the server.
+     */
+    private CkanDataset patchDataset(CkanDatasetBase dataset) {
+        String id = dataset.idOrName();
+        if (dataset.getExtras() != null || dataset.getResources() != null || dataset.getGroups() != null
+                || dataset.getTags() != null || dataset.getRelationshipsAsSubject() != null
+                || dataset.getRelationshipsAsObject() != null) {
+            CkanDataset origDataset = getDataset(id);
+            mergeDatasetLists(dataset, origDataset, true);
+            id = origDataset.getId();
+        }
+
+        String json = null;
+        try {
+            json = getObjectMapperForPosting(CkanDatasetBase.class).writeValueAsString(dataset);
+        } catch (IOException ex) {
+            throw new CkanException(COULDNT_JSONIZE + dataset.getClass()
+                                                             .getSimpleName(),
+                    this, ex);
+        }
+        if (dataset.getId() == null) {
+            json = jsonWithId(json, id);
+        }
+        return postHttp(DatasetResponse.class, "/api/3/action/package_patch", json,
+                ContentType.APPLICATION_JSON).result;
+    }
+
+    /**
+     * Merges list fields of provided dataset with those of the original one
+     * on the server, setting the result into the dataset.
+     *
+     * @param onlySet
+     *            if true only lists which are not null in {@code dataset} are
+     *            merged, otherwise null lists are set to original ones.
+     */
+    private void mergeDatasetLists(CkanDatasetBase dataset, CkanDataset origDataset, boolean onlySet) {
         // extras
         if (dataset.getExtras() == null) {
-            dataset.setExtras(origDataset.getExtras());
+            if (!onlySet) {
+                dataset.setExtras(origDataset.getExtras());
+            }
         } else {
             Map<String, String> newExtras = new HashMap();
 
             if (origDataset.getExtras() != null) {
                 newExtras.putAll(origDataset.getExtrasAsHashMap());
             }
-            if (dataset.getExtras() != null) {
-                newExtras.putAll(dataset.getExtrasAsHashMap());
-            }
+            newExtras.putAll(dataset.getExtrasAsHashMap());
             dataset.setExtras(extrasMapToList(newExtras));
         }
 
         // resources
-        List<CkanResource> newResources = new ArrayList();
-        mergeResources(origDataset.getResources(), newResources);
-        mergeResources(dataset.getResources(), newResources);
-        dataset.setResources(newResources);
+        if (!onlySet || dataset.getResources() != null) {
+            List<CkanResource> newResources = new ArrayList();
+            mergeResources(origDataset.getResources(), newResources);
+            mergeResources(dataset.getResources(), newResources);
+            dataset.setResources(newResources);
+        }
 
         // groups
-        List<CkanGroup> newGroups = new ArrayList();
-        mergeGroups(origDataset.getGroups(), newGroups);
-        mergeGroups(dataset.getGroups(), newGroups);
-        dataset.setGroups(newGroups);
+        if (!onlySet || dataset.getGroups() != null) {
+            List<CkanGroup> newGroups = new ArrayList();
+            mergeGroups(origDataset.getGroups(), newGroups);
+            mergeGroups(dataset.getGroups(), newGroups);
+            dataset.setGroups(newGroups);
+        }
 
         // tags
-        List<CkanTag> newTags = new ArrayList();
-        mergeTags(origDataset.getTags(), newTags);
-        mergeTags(dataset.getTags(), newTags);
-        dataset.setTags(newTags);
+        if (!onlySet || dataset.getTags() != null) {
+            List<CkanTag> newTags = new ArrayList();
+            mergeTags(origDataset.getTags(), newTags);
+            mergeTags(dataset.getTags(), newTags);
+            dataset.setTags(newTags);
+        }
 
         // relationships as subject
-        List<CkanDatasetRelationship> newRelationshipsAsSubject = new ArrayList();
-        mergeRelationships(origDataset.getRelationshipsAsSubject(), newRelationshipsAsSubject);
-        mergeRelationships(dataset.getRelationshipsAsSubject(), newRelationshipsAsSubject);
-        dataset.setRelationshipsAsSubject(newRelationshipsAsSubject);
+        if (!onlySet || dataset.getRelationshipsAsSubject() != null) {
+            List<CkanDatasetRelationship> newRelationshipsAsSubject = new ArrayList();
+            mergeRelationships(origDataset.getRelationshipsAsSubject(), newRelationshipsAsSubject);
+            mergeRelationships(dataset.getRelationshipsAsSubject(), newRelationshipsAsSubject);
+            dataset.setRelationshipsAsSubject(newRelationshipsAsSubject);
+        }
 
         // relationships as object
-        List<CkanDatasetRelationship> newRelationshipsAsObject = new ArrayList();
-        mergeRelationships(origDataset.getRelationshipsAsObject(), newRelationshipsAsObject);
-        mergeRelationships(dataset.getRelationshipsAsObject(), newRelationshipsAsObject);
-        dataset.setRelationshipsAsObject(newRelationshipsAsObject);
+        if (!onlySet || dataset.getRelationshipsAsObject() != null) {
+            List<CkanDatasetRelationship> newRelationshipsAsObject = new ArrayList();
+            mergeRelationships(origDataset.getRelationshipsAsObject(), newRelationshipsAsObject);
+            mergeRelationships(dataset.getRelationshipsAsObject(), newRelationshipsAsObject);
+            dataset.setRelationshipsAsObject(newRelationshipsAsObject);
+        }
+    }
 
-        String json = null;
-        try {
-            json = getObjectMapperForPosting(CkanDatasetBase.class).writeValueAsString(dataset);
-        } catch (IOException ex) {
-            throw new JackanException(COULDNT_JSONIZE + dataset.getClass()
-                                                               .getSimpleName(),
-                    ex);
+    /**
+     * Returns true if the server supports {@code package_patch} and
+     * {@code resource_patch} calls, which were introduced in CKAN 2.3. Support
+     * is detected at first call by reading the version from
+     * {@code status_show}, and then cached.
+     *
+     * @since 0.4.3
+     */
+    public synchronized boolean isPatchSupported() {
+        if (patchSupported == null) {
+            try {
+                JsonNode status = getHttp(StatusResponse.class, "/api/3/action/status_show").result;
+                String version = status.path("ckan_version")
+                                       .asText();
+                patchSupported = isPatchVersion(version);
+                LOG.log(Level.FINE, "Detected CKAN version {0}, patch supported: {1}",
+                        new Object[] { version, patchSupported });
+            } catch (CkanException ex) {
+                LOG.log(Level.FINE, "Couldn't detect CKAN version, assuming patch is not supported", ex);
+                patchSupported = false;
+            }
+        }
+        return patchSupported;
+    }
 
+    /**
+     * Returns true if given CKAN version (like '2.3' or '2.5.2') is at least
+     * 2.3
+     */
+    static boolean isPatchVersion(@Nullable String version) {
+        if (version == null) {
+            return false;
         }
+        String[] parts = version.trim()
+                                .split("\\.");
+        if (parts.length < 2) {
+            return false;
+        }
+        try {
+            int major = Integer.parseInt(parts[0]);
+            int minor = Integer.parseInt(parts[1].replaceAll("\\D.*", ""));
+            return major > 2 || (major == 2 && minor >= 3);
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
 
-        return postHttp(DatasetResponse.class, "/api/3/action/package_update", json,
-                ContentType.APPLICATION_JSON).result;
+    /**
+     * Returns true if the server answered with something which is not json,
+     * like old CKANs do for unknown actions.
+     */
+    static boolean isUnknownAction(CkanException ex) {
+        return ex.getCkanResponse() == null && ex.getCause() instanceof JsonProcessingException;
+    }
 
+    /**
+     * Records the server doesn't know patch actions, after
+     * {@link #isUnknownAction(CkanException) finding out} the hard way.
+     */
+    synchronized void disablePatch() {
+        patchSupported = false;
     }
 
     /**
@@ -1835,6 +3162,8 @@ public class CkanClient {
 
         checkToken("Tried to delete dataset" + nameOrId);
 
+        forgetFingerprint(nameOrId);
+
         String json = "{\"id\":\"" + nameOrId + "\"}";
         postHttp(CkanResponse.class, "/api/3/action/package_delete", json, ContentType.APPLICATION_JSON);
     }
@@ -1996,7 +3325,12 @@ class VocabularyResponse extends CkanResponse {
 
 class DatasetSearchResponse extends CkanResponse {
 
-    public SearchResults<CkanDataset> result;
+    public FacetedSearchResults<CkanDataset> result;
+}
+
+class DatasetFieldsSearchResponse extends CkanResponse {
+
+    public SearchResults<JsonNode> result;
 }
 
 class LicenseListResponse extends CkanResponse {
@@ -2009,6 +3343,11 @@ class FormatListResponse extends CkanResponse {
     public Set<String> result;
 }
 
+class StatusResponse extends CkanResponse {
+
+    public JsonNode result;
+}
+
 class ApiVersionResponse {
 
     public int version;
@@ -16,24 +16,61 @@
 package eu.trentorise.opendata.jackan;
 
 import com.google.common.collect.Lists;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
 
 /**
  * Usage example:  {@code
  *      CkanQuery.filter().byText("litigations").byGroupNames("justice")
  * }
  *
+ * All filters are sent to the server as Solr filter queries and ANDed
+ * together. Names are escaped as needed.
+ *
  * @author David Leoni
  */
 public final class CkanQuery {
 
+    private static final String SOLR_SPECIAL_CHARS = "\\+-!():^[]\"{}~*?|&;/";
+
     private String text;
     private List<String> groupNames;
     private List<String> organizationNames;
     private List<String> tagNames;
     private List<String> licenseIds;
+    private List<String> fields;
+    private List<String> facetFields;
+    @Nullable
+    private Integer facetLimit;
+    private List<String> anyGroupNames;
+    private List<String> anyOrganizationNames;
+    private List<String> anyTagNames;
+    private List<String> anyLicenseIds;
+    private List<String> excludedGroupNames;
+    private List<String> excludedOrganizationNames;
+    private List<String> excludedTagNames;
+    private List<String> excludedLicenseIds;
+    private Map<String, String> extras;
+    @Nullable
+    private Timestamp modifiedFrom;
+    @Nullable
+    private Timestamp modifiedTo;
+    @Nullable
+    private Timestamp createdFrom;
+    @Nullable
+    private Timestamp createdTo;
+    private List<String> rawFilters;
+    private List<String> sort;
+    private boolean includingPrivate;
+    private boolean includingDrafts;
 
     private CkanQuery() {
         this.text = "";
@@ -41,6 +78,20 @@ public final class CkanQuery {
         this.organizationNames = new ArrayList();
         this.tagNames = new ArrayList();
         this.licenseIds = new ArrayList();
+        this.fields = new ArrayList();
+        this.facetFields = new ArrayList();
+        this.facetLimit = null;
+        this.anyGroupNames = new ArrayList();
+        this.anyOrganizationNames = new ArrayList();
+        this.anyTagNames = new ArrayList();
+        this.anyLicenseIds = new ArrayList();
+        this.excludedGroupNames = new ArrayList();
+        this.excludedOrganizationNames = new ArrayList();
+        this.excludedTagNames = new ArrayList();
+        this.excludedLicenseIds = new ArrayList();
+        this.extras = new TreeMap();
+        this.rawFilters = new ArrayList();
+        this.sort = new ArrayList();
     }
 
     /**
@@ -112,6 +163,360 @@ public final class CkanQuery {
         return this;
     }
 
+    /**
+     * Restricts the returned fields to the given ones (Solr 'fl' parameter).
+     * Only honoured by
+     * {@link CkanClient#searchDatasetFields(CkanQuery, int, int)}, which
+     * returns field maps instead of full datasets.
+     *
+     * @param fields i.e. "id", "name", "metadata_modified", "num_resources".
+     * Custom extras can be requested with 'extras_' prefix, i.e.
+     * "extras_frequency"
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery withFields(Iterable<String> fields) {
+        this.fields = Lists.newArrayList(fields);
+        return this;
+    }
+
+    /**
+     * See {@link #withFields(java.lang.Iterable)}
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery withFields(String... fields) {
+        this.fields = Arrays.asList(fields);
+        return this;
+    }
+
+    /**
+     * Asks the server to count matching datasets by each value of the given
+     * fields. Counts are returned by
+     * {@link FacetedSearchResults#getFacets()}.
+     *
+     * @param facetFields i.e. "organization", "license_id", "res_format",
+     * "tags"
+     *
+     * @see CkanClient#searchDatasetFacets(CkanQuery)
+     * @since 0.4.3
+     */
+    public CkanQuery withFacetFields(Iterable<String> facetFields) {
+        this.facetFields = Lists.newArrayList(facetFields);
+        return this;
+    }
+
+    /**
+     * See {@link #withFacetFields(java.lang.Iterable)}
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery withFacetFields(String... facetFields) {
+        this.facetFields = Arrays.asList(facetFields);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of values returned for each facet field. A
+     * negative value means no limit. If not set, the server default is used
+     * (50 in default CKAN installations).
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery withFacetLimit(int facetLimit) {
+        this.facetLimit = facetLimit < 0 ? -1 : facetLimit;
+        return this;
+    }
+
+    /**
+     * Each filtered dataset must belong to at least one of the given groups
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery byAnyGroupNames(Iterable<String> anyGroupNames) {
+        this.anyGroupNames = Lists.newArrayList(anyGroupNames);
+        return this;
+    }
+
+    /**
+     * See {@link #byAnyGroupNames(java.lang.Iterable)}
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery byAnyGroupNames(String... anyGroupNames) {
+        this.anyGroupNames = Arrays.asList(anyGroupNames);
+        return this;
+    }
+
+    /**
+     * Each filtered dataset must belong to one of the given organizations
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery byAnyOrganizationNames(Iterable<String> anyOrganizationNames) {
+        this.anyOrganizationNames = Lists.newArrayList(anyOrganizationNames);
+        return this;
+    }
+
+    /**
+     * See {@link #byAnyOrganizationNames(java.lang.Iterable)}
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery byAnyOrganizationNames(String... anyOrganizationNames) {
+        this.anyOrganizationNames = Arrays.asList(anyOrganizationNames);
+        return this;
+    }
+
+    /**
+     * Each filtered dataset must have at least one of the given tags
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery byAnyTagNames(Iterable<String> anyTagNames) {
+        this.anyTagNames = Lists.newArrayList(anyTagNames);
+        return this;
+    }
+
+    /**
+     * See {@link #byAnyTagNames(java.lang.Iterable)}
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery byAnyTagNames(String... anyTagNames) {
+        this.anyTagNames = Arrays.asList(anyTagNames);
+        return this;
+    }
+
+    /**
+     * Each filtered dataset must have one of the given licenses
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery byAnyLicenseIds(Iterable<String> anyLicenseIds) {
+        this.anyLicenseIds = Lists.newArrayList(anyLicenseIds);
+        return this;
+    }
+
+    /**
+     * See {@link #byAnyLicenseIds(java.lang.Iterable)}
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery byAnyLicenseIds(String... anyLicenseIds) {
+        this.anyLicenseIds = Arrays.asList(anyLicenseIds);
+        return this;
+    }
+
+    /**
+     * Filtered datasets must not belong to any of the given groups
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery excludingGroupNames(Iterable<String> excludedGroupNames) {
+        this.excludedGroupNames = Lists.newArrayList(excludedGroupNames);
+        return this;
+    }
+
+    /**
+     * See {@link #excludingGroupNames(java.lang.Iterable)}
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery excludingGroupNames(String... excludedGroupNames) {
+        this.excludedGroupNames = Arrays.asList(excludedGroupNames);
+        return this;
+    }
+
+    /**
+     * Filtered datasets must not belong to any of the given organizations
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery excludingOrganizationNames(Iterable<String> excludedOrganizationNames) {
+        this.excludedOrganizationNames = Lists.newArrayList(excludedOrganizationNames);
+        return this;
+    }
+
+    /**
+     * See {@link #excludingOrganizationNames(java.lang.Iterable)}
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery excludingOrganizationNames(String... excludedOrganizationNames) {
+        this.excludedOrganizationNames = Arrays.asList(excludedOrganizationNames);
+        return this;
+    }
+
+    /**
+     * Filtered datasets must not have any of the given tags
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery excludingTagNames(Iterable<String> excludedTagNames) {
+        this.excludedTagNames = Lists.newArrayList(excludedTagNames);
+        return this;
+    }
+
+    /**
+     * See {@link #excludingTagNames(java.lang.Iterable)}
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery excludingTagNames(String... excludedTagNames) {
+        this.excludedTagNames = Arrays.asList(excludedTagNames);
+        return this;
+    }
+
+    /**
+     * Filtered datasets must not have any of the given licenses
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery excludingLicenseIds(Iterable<String> excludedLicenseIds) {
+        this.excludedLicenseIds = Lists.newArrayList(excludedLicenseIds);
+        return this;
+    }
+
+    /**
+     * See {@link #excludingLicenseIds(java.lang.Iterable)}
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery excludingLicenseIds(String... excludedLicenseIds) {
+        this.excludedLicenseIds = Arrays.asList(excludedLicenseIds);
+        return this;
+    }
+
+    /**
+     * Each filtered dataset must have been modified within the given range,
+     * bounds included.
+     *
+     * @param from lower bound, if null there is no lower bound
+     * @param to upper bound, if null there is no upper bound
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery byMetadataModified(@Nullable Timestamp from, @Nullable Timestamp to) {
+        this.modifiedFrom = from;
+        this.modifiedTo = to;
+        return this;
+    }
+
+    /**
+     * Each filtered dataset must have been created within the given range,
+     * bounds included.
+     *
+     * @param from lower bound, if null there is no lower bound
+     * @param to upper bound, if null there is no upper bound
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery byMetadataCreated(@Nullable Timestamp from, @Nullable Timestamp to) {
+        this.createdFrom = from;
+        this.createdTo = to;
+        return this;
+    }
+
+    /**
+     * Each filtered dataset must have an extra with the given key and value.
+     * Can be called more than once to filter on several extras.
+     *
+     * @param key the extra key, i.e. "frequency". On the server it is searched
+     * in Solr field 'extras_' + key
+     * @param value the exact value, i.e. "monthly"
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery byExtra(String key, String value) {
+        checkNotEmpty(key, "Invalid extra key!");
+        checkNotNull(value, "Invalid extra value!");
+        this.extras.put(key, value);
+        return this;
+    }
+
+    /**
+     * Adds a Solr filter query which is sent as is, i.e.
+     * {@code "num_resources:[2 TO *]"}. Can be called more than once, filters
+     * are ANDed together. Use {@link #escape(java.lang.String)} and
+     * {@link #phrase(java.lang.String)} to put user provided values into it.
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery byRawFilter(String fq) {
+        checkNotEmpty(fq, "Invalid filter query!");
+        this.rawFilters.add(fq);
+        return this;
+    }
+
+    /**
+     * Sorts results by given field. Can be called more than once, subsequent
+     * fields are used to break ties. If never called, server default is used
+     * (relevance, then last modified).
+     *
+     * @param field i.e. "metadata_modified", "name", "score"
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery sortBy(String field, boolean ascending) {
+        checkNotEmpty(field, "Invalid sort field!");
+        this.sort.add(field + (ascending ? " asc" : " desc"));
+        return this;
+    }
+
+    /**
+     * Also returns private datasets of the organizations the user of the
+     * client token belongs to. Ignored by servers older than CKAN 2.6.
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery includingPrivate() {
+        this.includingPrivate = true;
+        return this;
+    }
+
+    /**
+     * Also returns draft datasets the user of the client token can edit.
+     * Ignored by servers older than CKAN 2.6.
+     *
+     * @since 0.4.3
+     */
+    public CkanQuery includingDrafts() {
+        this.includingDrafts = true;
+        return this;
+    }
+
+    /**
+     * Escapes Solr special characters in the given string, so it can be used
+     * as a literal term in a filter query.
+     *
+     * @since 0.4.3
+     */
+    public static String escape(String s) {
+        checkNotNull(s);
+        StringBuilder sb = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (SOLR_SPECIAL_CHARS.indexOf(c) >= 0 || Character.isWhitespace(c)) {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the given string as a quoted Solr phrase, i.e. {@code
+     * my "big" data} becomes {@code "my \"big\" data"}
+     *
+     * @since 0.4.3
+     */
+    public static String phrase(String s) {
+        checkNotNull(s);
+        return '"' + s.replace("\\", "\\\\")
+                      .replace("\"", "\\\"") + '"';
+    }
+
     /**
      * Factory method to start creating the query.
      */
@@ -119,6 +524,43 @@ public final class CkanQuery {
         return new CkanQuery();
     }
 
+    /**
+     * Returns a new query equal to the given one, which can be changed without
+     * affecting the original.
+     *
+     * @since 0.4.3
+     */
+    public static CkanQuery copyOf(CkanQuery query) {
+        checkNotNull(query);
+        CkanQuery ret = new CkanQuery();
+        ret.text = query.text;
+        ret.groupNames = new ArrayList(query.groupNames);
+        ret.organizationNames = new ArrayList(query.organizationNames);
+        ret.tagNames = new ArrayList(query.tagNames);
+        ret.licenseIds = new ArrayList(query.licenseIds);
+        ret.fields = new ArrayList(query.fields);
+        ret.facetFields = new ArrayList(query.facetFields);
+        ret.facetLimit = query.facetLimit;
+        ret.anyGroupNames = new ArrayList(query.anyGroupNames);
+        ret.anyOrganizationNames = new ArrayList(query.anyOrganizationNames);
+        ret.anyTagNames = new ArrayList(query.anyTagNames);
+        ret.anyLicenseIds = new ArrayList(query.anyLicenseIds);
+        ret.excludedGroupNames = new ArrayList(query.excludedGroupNames);
+        ret.excludedOrganizationNames = new ArrayList(query.excludedOrganizationNames);
+        ret.excludedTagNames = new ArrayList(query.excludedTagNames);
+        ret.excludedLicenseIds = new ArrayList(query.excludedLicenseIds);
+        ret.extras = new TreeMap(query.extras);
+        ret.modifiedFrom = query.modifiedFrom;
+        ret.modifiedTo = query.modifiedTo;
+        ret.createdFrom = query.createdFrom;
+        ret.createdTo = query.createdTo;
+        ret.rawFilters = new ArrayList(query.rawFilters);
+        ret.sort = new ArrayList(query.sort);
+        ret.includingPrivate = query.includingPrivate;
+        ret.includingDrafts = query.includingDrafts;
+        return ret;
+    }
+
     public String getText() {
         return text;
     }
@@ -139,4 +581,163 @@ public final class CkanQuery {
         return licenseIds;
     }
 
+    /**
+     * The fields to return, empty list means all of them.
+     *
+     * @since 0.4.3
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * The fields to compute facets on, empty list means no facets.
+     *
+     * @since 0.4.3
+     */
+    public List<String> getFacetFields() {
+        return facetFields;
+    }
+
+    /**
+     * The maximum number of values for each facet field, -1 means no limit and
+     * null means server default.
+     *
+     * @since 0.4.3
+     */
+    @Nullable
+    public Integer getFacetLimit() {
+        return facetLimit;
+    }
+
+    /**
+     * @since 0.4.3
+     */
+    public List<String> getAnyGroupNames() {
+        return anyGroupNames;
+    }
+
+    /**
+     * @since 0.4.3
+     */
+    public List<String> getAnyOrganizationNames() {
+        return anyOrganizationNames;
+    }
+
+    /**
+     * @since 0.4.3
+     */
+    public List<String> getAnyTagNames() {
+        return anyTagNames;
+    }
+
+    /**
+     * @since 0.4.3
+     */
+    public List<String> getAnyLicenseIds() {
+        return anyLicenseIds;
+    }
+
+    /**
+     * @since 0.4.3
+     */
+    public List<String> getExcludedGroupNames() {
+        return excludedGroupNames;
+    }
+
+    /**
+     * @since 0.4.3
+     */
+    public List<String> getExcludedOrganizationNames() {
+        return excludedOrganizationNames;
+    }
+
+    /**
+     * @since 0.4.3
+     */
+    public List<String> getExcludedTagNames() {
+        return excludedTagNames;
+    }
+
+    /**
+     * @since 0.4.3
+     */
+    public List<String> getExcludedLicenseIds() {
+        return excludedLicenseIds;
+    }
+
+    /**
+     * Extras to filter by, sorted by key.
+     *
+     * @since 0.4.3
+     */
+    public Map<String, String> getExtras() {
+        return extras;
+    }
+
+    /**
+     * @since 0.4.3
+     */
+    @Nullable
+    public Timestamp getModifiedFrom() {
+        return modifiedFrom;
+    }
+
+    /**
+     * @since 0.4.3
+     */
+    @Nullable
+    public Timestamp getModifiedTo() {
+        return modifiedTo;
+    }
+
+    /**
+     * @since 0.4.3
+     */
+    @Nullable
+    public Timestamp getCreatedFrom() {
+        return createdFrom;
+    }
+
+    /**
+     * @since 0.4.3
+     */
+    @Nullable
+    public Timestamp getCreatedTo() {
+        return createdTo;
+    }
+
+    /**
+     * @since 0.4.3
+     */
+    public List<String> getRawFilters() {
+        return rawFilters;
+    }
+
+    /**
+     * Sort clauses like "metadata_modified desc", empty list means server
+     * default.
+     *
+     * @since 0.4.3
+     */
+    public List<String> getSort() {
+        return sort;
+    }
+
+    /**
+     * @see #includingPrivate()
+     * @since 0.4.3
+     */
+    public boolean isIncludingPrivate() {
+        return includingPrivate;
+    }
+
+    /**
+     * @see #includingDrafts()
+     * @since 0.4.3
+     */
+    public boolean isIncludingDrafts() {
+        return includingDrafts;
+    }
+
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Outcome of a resource data download, see {@link ResourceDownloader}
+ *
+ * @since 0.4.3
+ */
+@Immutable
+public final class DownloadResult {
+
+    private final String url;
+    private final long bytes;
+    @Nullable
+    private final String etag;
+    @Nullable
+    private final String lastModified;
+    private final boolean notModified;
+    private final boolean hashVerified;
+    @Nullable
+    private final String sha256;
+    private final int segments;
+    private final long elapsedNanos;
+
+    DownloadResult(String url, long bytes, @Nullable String etag, @Nullable String lastModified,
+            boolean notModified, boolean hashVerified, @Nullable String sha256, int segments, long elapsedNanos) {
+        this.url = url;
+        this.bytes = bytes;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.notModified = notModified;
+        this.hashVerified = hashVerified;
+        this.sha256 = sha256;
+        this.segments = segments;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * The downloaded url
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Length of the downloaded data, or 0 if {@link #isNotModified() not
+     * modified}
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * The ETag header sent by the server, if any.
+     */
+    @Nullable
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * The Last-Modified header sent by the server, if any.
+     */
+    @Nullable
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * True if a conditional download was requested and the server reported
+     * data didn't change. In this case nothing was written.
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    /**
+     * True if data was checked against the resource
+     * {@link eu.trentorise.opendata.jackan.model.CkanResourceBase#getHash() hash}.
+     */
+    public boolean isHashVerified() {
+        return hashVerified;
+    }
+
+    /**
+     * Hex SHA-256 of the data, if it was requested with
+     * {@link ResourceDownloader#setComputeSha256(boolean)}
+     */
+    @Nullable
+    public String getSha256() {
+        return sha256;
+    }
+
+    /**
+     * Number of parallel segments used, 1 for plain downloads.
+     */
+    public int getSegments() {
+        return segments;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "DownloadResult{" + "url=" + url + ", bytes=" + bytes + ", etag=" + etag + ", lastModified="
+                + lastModified + ", notModified=" + notModified + ", hashVerified=" + hashVerified + ", sha256="
+                + sha256 + ", segments=" + segments + ", elapsedNanos=" + elapsedNanos + '}';
+    }
+
+}
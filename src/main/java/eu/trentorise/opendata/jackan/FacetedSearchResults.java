@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Search results also holding the facet counts requested with
+ * {@link CkanQuery#withFacetFields(java.lang.String...)}
+ *
+ * @param <T> the type of the results
+ * @since 0.4.3
+ */
+@Immutable
+public class FacetedSearchResults<T> extends SearchResults<T> {
+
+    private Map<String, Map<String, Integer>> facets;
+
+    /**
+     * @param count The number of matches on the server, which may be greater
+     * than the search results.
+     * @param facets for each facet field, the count of matching datasets for
+     * each value.
+     */
+    public FacetedSearchResults(List<T> results, int count, Map<String, Map<String, Integer>> facets) {
+        super(results, count);
+        this.facets = facets;
+    }
+
+    protected FacetedSearchResults() {
+    }
+
+    /**
+     * Returns, for each requested facet field, the number of matching datasets
+     * for each value, i.e. { "license_id" : { "cc-by" : 10, "cc-zero" : 4}}.
+     * Never returns null.
+     */
+    public Map<String, Map<String, Integer>> getFacets() {
+        if (facets == null) {
+            return Collections.emptyMap();
+        }
+        return facets;
+    }
+
+    /**
+     * Returns the counts for the given facet field, or an empty map if there
+     * are none.
+     */
+    public Map<String, Integer> getFacet(String field) {
+        Map<String, Integer> ret = getFacets().get(field);
+        if (ret == null) {
+            return Collections.emptyMap();
+        }
+        return ret;
+    }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Index of ids known to exist on the server, used by
+ * {@link CheckedCkanClient} to avoid a remote existence check before each
+ * creation.
+ *
+ * <p>
+ * For each {@link Kind kind} of item the index holds:
+ * <ul>
+ * <li>a Bloom filter of all the ids found on the server by a single bulk
+ * listing ({@link #seed(Kind, Iterable) seed}), plus the ids added later. It
+ * takes about a byte per id, so it fits also big catalogs. If the filter
+ * doesn't contain an id, the id is surely free. Otherwise the id
+ * <i>might</i> exist, and a remote check is needed to tell.</li>
+ * <li>the exact set of ids written through the client or confirmed by remote
+ * checks, which surely exist.</li>
+ * </ul>
+ * For kinds which were never seeded every id not in the exact set needs a
+ * remote check. Since ids created by others after seeding are not known, an
+ * index should be used only when the client is the only writer, i.e. during
+ * bulk loads.
+ * </p>
+ *
+ * @see CheckedCkanClient#seedKnownIds()
+ * @since 0.4.3
+ */
+@ThreadSafe
+public final class KnownIdsIndex {
+
+    /**
+     * Kind of indexed item
+     */
+    public enum Kind {
+        RESOURCE, ORGANIZATION, GROUP
+    }
+
+    /**
+     * Answer of the index about an id
+     */
+    public enum Presence {
+        /**
+         * The id surely exists on the server
+         */
+        PRESENT,
+        /**
+         * The id surely doesn't exist on the server
+         */
+        ABSENT,
+        /**
+         * The id might exist, server must be checked
+         */
+        UNKNOWN
+    }
+
+    /**
+     * Default false positive probability of Bloom filters
+     */
+    public static final double DEFAULT_FPP = 0.01;
+
+    /**
+     * Minimum number of ids Bloom filters are sized for, so some ids can be
+     * added after seeding without raising the false positive probability too
+     * much.
+     */
+    static final int MIN_EXPECTED_IDS = 1000;
+
+    private final double fpp;
+    private final Map<Kind, BloomFilter<CharSequence>> filters = new EnumMap(Kind.class);
+    private final Map<Kind, Set<String>> present = new EnumMap(Kind.class);
+
+    private long localAnswers;
+    private long remoteChecks;
+    private long falsePositives;
+
+    /**
+     * Creates an empty index with {@link #DEFAULT_FPP}
+     */
+    public KnownIdsIndex() {
+        this(DEFAULT_FPP);
+    }
+
+    /**
+     * Creates an empty index
+     *
+     * @param fpp
+     *            false positive probability of Bloom filters, i.e. the
+     *            fraction of free ids which will need a remote check
+     */
+    public KnownIdsIndex(double fpp) {
+        checkArgument(fpp > 0 && fpp < 1, "False positive probability must be in (0,1), found %s instead", fpp);
+        this.fpp = fpp;
+        for (Kind kind : Kind.values()) {
+            present.put(kind, new HashSet<String>());
+        }
+    }
+
+    /**
+     * Sets all the ids of given kind existing on the server, as found by a
+     * bulk listing. Ids are only stored in a Bloom filter, sized for twice
+     * their number.
+     */
+    public synchronized void seed(Kind kind, Iterable<String> ids) {
+        checkNotNull(kind);
+        ImmutableList<String> list = ImmutableList.copyOf(ids);
+        BloomFilter<CharSequence> filter = BloomFilter.create(Funnels.stringFunnel(Charsets.UTF_8),
+                Math.max(MIN_EXPECTED_IDS, 2 * list.size()), fpp);
+        for (String id : list) {
+            filter.put(id);
+        }
+        filters.put(kind, filter);
+    }
+
+    /**
+     * Returns true if given kind was seeded
+     */
+    public synchronized boolean isSeeded(Kind kind) {
+        return filters.containsKey(kind);
+    }
+
+    /**
+     * Records an id known to exist on the server, i.e. because it was just
+     * created.
+     */
+    public synchronized void add(Kind kind, String id) {
+        checkNotNull(kind);
+        checkNotNull(id);
+        present.get(kind)
+               .add(id);
+        BloomFilter<CharSequence> filter = filters.get(kind);
+        if (filter != null) {
+            filter.put(id);
+        }
+    }
+
+    /**
+     * Records an id was deleted on the server. The id stays in the Bloom
+     * filter, so next checks will be confirmed remotely.
+     */
+    public synchronized void remove(Kind kind, String id) {
+        present.get(kind)
+               .remove(id);
+    }
+
+    /**
+     * Tells what the index knows about given id.
+     */
+    public synchronized Presence check(Kind kind, String id) {
+        checkNotNull(kind);
+        checkNotNull(id);
+        if (present.get(kind)
+                   .contains(id)) {
+            localAnswers++;
+            return Presence.PRESENT;
+        }
+        BloomFilter<CharSequence> filter = filters.get(kind);
+        if (filter != null && !filter.mightContain(id)) {
+            localAnswers++;
+            return Presence.ABSENT;
+        }
+        remoteChecks++;
+        return Presence.UNKNOWN;
+    }
+
+    /**
+     * Returns true if the id surely exists. Unlike {@link #check(Kind, String)}
+     * it doesn't rely on the Bloom filter, so it suits checks of references to
+     * existing items, where an absent id is an error to be confirmed remotely.
+     */
+    synchronized boolean isPresent(Kind kind, String id) {
+        if (present.get(kind)
+                   .contains(id)) {
+            localAnswers++;
+            return true;
+        }
+        remoteChecks++;
+        return false;
+    }
+
+    /**
+     * Records the outcome of a remote check of an {@link Presence#UNKNOWN}
+     * id.
+     */
+    synchronized void confirm(Kind kind, String id, boolean exists) {
+        if (exists) {
+            add(kind, id);
+        } else if (filters.containsKey(kind)) {
+            falsePositives++;
+        }
+    }
+
+    /**
+     * Number of checks answered without calling the server
+     */
+    public synchronized long getLocalAnswers() {
+        return localAnswers;
+    }
+
+    /**
+     * Number of checks which needed a call to the server
+     */
+    public synchronized long getRemoteChecks() {
+        return remoteChecks;
+    }
+
+    /**
+     * Number of remote checks of seeded kinds which found the id didn't exist
+     */
+    public synchronized long getFalsePositives() {
+        return falsePositives;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "KnownIdsIndex{" + "seeded=" + filters.keySet() + ", localAnswers=" + localAnswers
+                + ", remoteChecks=" + remoteChecks + ", falsePositives=" + falsePositives + '}';
+    }
+
+}
@@ -0,0 +1,502 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Objects;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import eu.trentorise.opendata.jackan.exceptions.JackanException;
+import eu.trentorise.opendata.jackan.model.CkanResourceBase;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
+
+/**
+ * Local content-addressed store of resource data files.
+ *
+ * <p>
+ * Files are stored once per content under {@code blobs/} named by their
+ * SHA-256, so resources of different datasets pointing to identical data
+ * share the same file. An index in {@code index.json} maps each resource url
+ * to its content hash, the ETag and Last-Modified sent by the server and the
+ * resource {@code hash}, {@code last_modified} and {@code size} found in
+ * CKAN. When fetching a resource whose CKAN fields didn't change, no request
+ * is made at all; otherwise a conditional download is made, which is skipped
+ * if the server reports data didn't change.
+ * </p>
+ *
+ * <p>
+ * When total size of stored files exceeds the byte budget, least recently
+ * used files are deleted. Paths returned by {@link #fetch(CkanResourceBase)}
+ * may hence be deleted by later fetches, copy them if you need to keep them.
+ * </p>
+ *
+ * Instances are thread safe, but a directory must be used by only one
+ * instance at a time.
+ *
+ * @since 0.4.3
+ */
+public final class ResourceCache {
+
+    private static final Logger LOG = Logger.getLogger(ResourceCache.class.getName());
+
+    static final String INDEX_FILE = "index.json";
+    static final String BLOBS_DIR = "blobs";
+    static final String TMP_DIR = "tmp";
+
+    private final CkanClient client;
+    private final Path dir;
+    private final long maxBytes;
+
+    private final Map<String, Entry> index;
+    /**
+     * Blob hashes to sizes, in least recently used order
+     */
+    private final LinkedHashMap<String, Long> blobs;
+    private final Set<String> inFlight;
+    private long totalBytes;
+
+    private long skipped;
+    private long revalidated;
+    private long downloaded;
+    private long deduplicated;
+    private long evicted;
+
+    /**
+     * Opens a cache in given directory, which is created if missing.
+     *
+     * @param maxBytes
+     *            byte budget of stored files
+     * @throws JackanException
+     *             if the directory or the index can't be read
+     */
+    public ResourceCache(CkanClient client, Path dir, long maxBytes) {
+        checkNotNull(client);
+        checkNotNull(dir);
+        checkArgument(maxBytes > 0, "Max bytes must be > 0, found instead %s", maxBytes);
+        this.client = client;
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.index = new HashMap();
+        this.blobs = new LinkedHashMap(16, 0.75f, true);
+        this.inFlight = new HashSet();
+        try {
+            Files.createDirectories(dir.resolve(BLOBS_DIR));
+            Files.createDirectories(dir.resolve(TMP_DIR));
+            load();
+        } catch (IOException ex) {
+            throw new JackanException("Error while opening resource cache at " + dir, ex);
+        }
+    }
+
+    /**
+     * Returns a local file with the resource data, downloading it only if
+     * needed.
+     *
+     * @throws JackanException
+     *             on error
+     */
+    public Path fetch(CkanResourceBase resource) {
+        return fetch(resource, null);
+    }
+
+    /**
+     * Returns a local file with the resource data, downloading it only if
+     * needed.
+     *
+     * @param listener
+     *            if not null, it will be notified of download progress
+     * @throws JackanException
+     *             on error
+     */
+    public Path fetch(CkanResourceBase resource, @Nullable TransferListener listener) {
+        checkNotNull(resource);
+        String url = checkNotEmpty(resource.getUrl(), "Invalid resource url!");
+
+        while (true) {
+            Entry old;
+            synchronized (this) {
+                while (inFlight.contains(url)) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread()
+                              .interrupt();
+                        throw new JackanException("Interrupted while waiting for download of " + url, ex);
+                    }
+                }
+                old = index.get(url);
+                if (old != null && !blobs.containsKey(old.sha256)) {
+                    index.remove(url);
+                    old = null;
+                }
+                if (old != null && old.matches(resource)) {
+                    skipped++;
+                    return touch(url, old);
+                }
+                inFlight.add(url);
+            }
+
+            Path ret;
+            try {
+                ret = download(resource, url, old, listener);
+            } catch (IOException ex) {
+                throw new JackanException("Error while storing " + url + " in resource cache", ex);
+            } finally {
+                synchronized (this) {
+                    inFlight.remove(url);
+                    notifyAll();
+                }
+            }
+            if (ret != null) {
+                return ret;
+            }
+        }
+    }
+
+    /**
+     * Downloads the resource, conditionally if old entry is not null.
+     *
+     * @return the blob path, or null if the server reported data didn't change
+     *         but the old blob was evicted meanwhile.
+     */
+    @Nullable
+    private Path download(CkanResourceBase resource, String url, @Nullable Entry old,
+            @Nullable TransferListener listener) throws IOException {
+        ResourceDownloader downloader = client.newResourceDownloader()
+                                              .setComputeSha256(true);
+        if (old != null) {
+            downloader.setIfNoneMatch(old.etag)
+                      .setIfModifiedSince(old.lastModified);
+        }
+        Path tmp = dir.resolve(TMP_DIR)
+                      .resolve(Hashing.sha256()
+                                      .hashString(url, Charset.forName("UTF-8"))
+                                      .toString());
+        DownloadResult result = downloader.download(resource, tmp, listener);
+
+        synchronized (this) {
+            if (result.isNotModified()) {
+                if (old == null) {
+                    throw new JackanException("Server reported " + url + " as not modified on plain download!");
+                }
+                if (!blobs.containsKey(old.sha256)) {
+                    index.remove(url);
+                    return null;
+                }
+                revalidated++;
+                Entry entry = new Entry(old.sha256, result.getEtag() == null ? old.etag : result.getEtag(),
+                        result.getLastModified() == null ? old.lastModified : result.getLastModified(), resource);
+                return touch(url, entry);
+            }
+            downloaded++;
+            String sha256 = result.getSha256();
+            Path blob = blobPath(sha256);
+            if (blobs.containsKey(sha256)) {
+                deduplicated++;
+                Files.delete(tmp);
+            } else {
+                Files.createDirectories(blob.getParent());
+                Files.move(tmp, blob, StandardCopyOption.REPLACE_EXISTING);
+                blobs.put(sha256, result.getBytes());
+                totalBytes += result.getBytes();
+            }
+            Path ret = touch(url, new Entry(sha256, result.getEtag(), result.getLastModified(), resource));
+            evict(sha256);
+            save();
+            return ret;
+        }
+    }
+
+    /**
+     * Returns the stored file for given url without any check, or null if not
+     * present.
+     */
+    @Nullable
+    public synchronized Path getCached(String url) {
+        Entry entry = index.get(url);
+        if (entry == null || !blobs.containsKey(entry.sha256)) {
+            return null;
+        }
+        return touch(url, entry);
+    }
+
+    /**
+     * Total size of stored files
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Number of fetches served without any request because CKAN resource
+     * fields didn't change
+     */
+    public synchronized long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Number of fetches served after the server reported data didn't change
+     */
+    public synchronized long getRevalidated() {
+        return revalidated;
+    }
+
+    /**
+     * Number of fetches which downloaded data
+     */
+    public synchronized long getDownloaded() {
+        return downloaded;
+    }
+
+    /**
+     * Number of downloads whose content was already stored
+     */
+    public synchronized long getDeduplicated() {
+        return deduplicated;
+    }
+
+    /**
+     * Number of files deleted to respect the byte budget
+     */
+    public synchronized long getEvicted() {
+        return evicted;
+    }
+
+    /**
+     * Saves the index. It is also saved after every download.
+     *
+     * @throws JackanException
+     *             on error
+     */
+    public synchronized void flush() {
+        try {
+            save();
+        } catch (IOException ex) {
+            throw new JackanException("Error while saving resource cache index in " + dir, ex);
+        }
+    }
+
+    private Path blobPath(String sha256) {
+        return dir.resolve(BLOBS_DIR)
+                  .resolve(sha256.substring(0, 2))
+                  .resolve(sha256);
+    }
+
+    private Path touch(String url, Entry entry) {
+        entry.lastAccess = System.currentTimeMillis();
+        index.put(url, entry);
+        blobs.get(entry.sha256);
+        return blobPath(entry.sha256);
+    }
+
+    /**
+     * Deletes least recently used blobs until the budget is respected.
+     *
+     * @param keep
+     *            blob not to delete
+     */
+    private void evict(String keep) throws IOException {
+        Iterator<Map.Entry<String, Long>> iter = blobs.entrySet()
+                                                      .iterator();
+        Set<String> removed = new HashSet();
+        while (totalBytes > maxBytes && iter.hasNext()) {
+            Map.Entry<String, Long> blob = iter.next();
+            if (blob.getKey()
+                    .equals(keep)) {
+                continue;
+            }
+            Files.deleteIfExists(blobPath(blob.getKey()));
+            totalBytes -= blob.getValue();
+            removed.add(blob.getKey());
+            iter.remove();
+            evicted++;
+        }
+        if (!removed.isEmpty()) {
+            Iterator<Entry> entries = index.values()
+                                           .iterator();
+            while (entries.hasNext()) {
+                if (removed.contains(entries.next().sha256)) {
+                    entries.remove();
+                }
+            }
+            LOG.log(Level.FINE, "Evicted {0} files from resource cache", removed.size());
+        }
+    }
+
+    private void load() throws IOException {
+        Path indexFile = dir.resolve(INDEX_FILE);
+        List<Map.Entry<String, Entry>> loaded = new ArrayList();
+        if (Files.exists(indexFile)) {
+            JsonNode root = CkanClient.getObjectMapper()
+                                      .readTree(indexFile.toFile());
+            for (JsonNode node : root.path("entries")) {
+                Entry entry = Entry.of(node);
+                String url = node.path("url")
+                                 .asText();
+                if (entry.sha256 != null && !url.isEmpty() && Files.exists(blobPath(entry.sha256))) {
+                    loaded.add(new SimpleEntry(url, entry));
+                }
+            }
+        }
+        Collections.sort(loaded, new Comparator<Map.Entry<String, Entry>>() {
+            @Override
+            public int compare(Map.Entry<String, Entry> a, Map.Entry<String, Entry> b) {
+                return Long.compare(a.getValue().lastAccess, b.getValue().lastAccess);
+            }
+        });
+        for (Map.Entry<String, Entry> e : loaded) {
+            index.put(e.getKey(), e.getValue());
+            String sha256 = e.getValue().sha256;
+            if (!blobs.containsKey(sha256)) {
+                long size = Files.size(blobPath(sha256));
+                blobs.put(sha256, size);
+                totalBytes += size;
+            } else {
+                blobs.get(sha256);
+            }
+        }
+
+        // files not in index are leftovers of interrupted runs
+        try (DirectoryStream<Path> prefixes = Files.newDirectoryStream(dir.resolve(BLOBS_DIR))) {
+            for (Path prefix : prefixes) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(prefix)) {
+                    for (Path file : files) {
+                        if (!blobs.containsKey(file.getFileName()
+                                                   .toString())) {
+                            Files.delete(file);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void save() throws IOException {
+        ObjectNode root = CkanClient.getObjectMapper()
+                                    .createObjectNode();
+        ArrayNode entries = root.putArray("entries");
+        for (Map.Entry<String, Entry> e : index.entrySet()) {
+            e.getValue()
+             .toJson(entries.addObject()
+                            .put("url", e.getKey()));
+        }
+        Path tmp = dir.resolve(INDEX_FILE + ".tmp");
+        CkanClient.getObjectMapper()
+                  .writeValue(tmp.toFile(), root);
+        Files.move(tmp, dir.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * What is known about a resource url
+     */
+    private static final class Entry {
+
+        final String sha256;
+        @Nullable
+        final String etag;
+        @Nullable
+        final String lastModified;
+        @Nullable
+        final String ckanHash;
+        @Nullable
+        final String ckanLastModified;
+        @Nullable
+        final String ckanSize;
+        long lastAccess;
+
+        Entry(String sha256, @Nullable String etag, @Nullable String lastModified, @Nullable String ckanHash,
+                @Nullable String ckanLastModified, @Nullable String ckanSize) {
+            this.sha256 = sha256;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.ckanHash = ckanHash;
+            this.ckanLastModified = ckanLastModified;
+            this.ckanSize = ckanSize;
+        }
+
+        Entry(String sha256, @Nullable String etag, @Nullable String lastModified, CkanResourceBase resource) {
+            this(sha256, etag, lastModified, resource.getHash(), resource.getLastModified(), resource.getSize());
+        }
+
+        /**
+         * True if CKAN fields of the resource say data didn't change. If CKAN
+         * has none of them, as usual for linked files which get an empty hash,
+         * we can't tell.
+         */
+        boolean matches(CkanResourceBase resource) {
+            if (Strings.isNullOrEmpty(resource.getHash()) && Strings.isNullOrEmpty(resource.getLastModified())) {
+                return false;
+            }
+            return Objects.equal(ckanHash, resource.getHash())
+                    && Objects.equal(ckanLastModified, resource.getLastModified())
+                    && Objects.equal(ckanSize, resource.getSize());
+        }
+
+        static Entry of(JsonNode node) {
+            Entry ret = new Entry(text(node, "sha256"), text(node, "etag"), text(node, "last_modified"),
+                    text(node, "ckan_hash"), text(node, "ckan_last_modified"), text(node, "ckan_size"));
+            ret.lastAccess = node.path("last_access")
+                                 .asLong();
+            return ret;
+        }
+
+        void toJson(ObjectNode node) {
+            node.put("sha256", sha256)
+                .put("etag", etag)
+                .put("last_modified", lastModified)
+                .put("ckan_hash", ckanHash)
+                .put("ckan_last_modified", ckanLastModified)
+                .put("ckan_size", ckanSize)
+                .put("last_access", lastAccess);
+        }
+
+        @Nullable
+        private static String text(JsonNode node, String field) {
+            JsonNode n = node.get(field);
+            return n == null || n.isNull() ? null : n.asText();
+        }
+    }
+}
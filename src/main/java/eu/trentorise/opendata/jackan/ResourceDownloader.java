@@ -0,0 +1,891 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.google.common.io.BaseEncoding;
+import eu.trentorise.opendata.jackan.exceptions.JackanException;
+import eu.trentorise.opendata.jackan.model.CkanResourceBase;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.fluent.Request;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
+
+/**
+ * Downloads resource data files. Connections are taken from the pool shared
+ * by Jackan http requests.
+ *
+ * <ul>
+ * <li>Downloads to a file are written to a {@code .part} file in the same
+ * directory, which is moved to the target once complete. If a previous
+ * {@code .part} file is found and the server supports it, download is resumed
+ * with an HTTP Range request.</li>
+ * <li>Big files are split in segments fetched in parallel when the server
+ * supports ranges.</li>
+ * <li>Interrupted transfers are retried from the last received byte when
+ * possible.</li>
+ * <li>The resource {@link CkanResourceBase#getSize() size} and
+ * {@link CkanResourceBase#getHash() hash} are checked. Supported hashes are
+ * MD5, SHA-1, SHA-256 and SHA-512 in hex format, optionally prefixed by the
+ * algorithm name like 'sha256:...'. Other hashes are ignored. Hashes of
+ * sequential downloads are computed on the fly, while segmented ones are
+ * hashed after assembly.</li>
+ * </ul>
+ *
+ * The authorization token of the client is only sent to the catalog host.
+ *
+ * A downloader holds the conditional headers of its downloads, so it is not
+ * thread safe: create one per download or per thread with
+ * {@link CkanClient#newResourceDownloader()}, which is cheap.
+ *
+ * @since 0.4.3
+ */
+public final class ResourceDownloader {
+
+    private static final Logger LOG = Logger.getLogger(ResourceDownloader.class.getName());
+
+    public static final int DEFAULT_SEGMENTS = 4;
+
+    public static final long DEFAULT_MIN_SEGMENT_SIZE = 8L * 1024 * 1024;
+
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    /**
+     * Suffix of files holding incomplete downloads
+     */
+    public static final String PART_SUFFIX = ".part";
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CkanClient client;
+    private int segments;
+    private long minSegmentSize;
+    private int maxRetries;
+    private boolean verify;
+    private boolean computeSha256;
+    @Nullable
+    private String ifNoneMatch;
+    @Nullable
+    private String ifModifiedSince;
+
+    ResourceDownloader(CkanClient client) {
+        checkNotNull(client);
+        this.client = client;
+        this.segments = DEFAULT_SEGMENTS;
+        this.minSegmentSize = DEFAULT_MIN_SEGMENT_SIZE;
+        this.maxRetries = DEFAULT_MAX_RETRIES;
+        this.verify = true;
+        this.computeSha256 = false;
+    }
+
+    /**
+     * Maximum number of parallel segments for a single file download. 1
+     * disables segmented downloads. Default is {@link #DEFAULT_SEGMENTS}.
+     */
+    public ResourceDownloader setSegments(int segments) {
+        checkArgument(segments > 0, "Segments must be > 0, found instead %s", segments);
+        this.segments = segments;
+        return this;
+    }
+
+    /**
+     * Files are split in segments not smaller than this. Default is
+     * {@link #DEFAULT_MIN_SEGMENT_SIZE}.
+     */
+    public ResourceDownloader setMinSegmentSize(long minSegmentSize) {
+        checkArgument(minSegmentSize > 0, "Min segment size must be > 0, found instead %s", minSegmentSize);
+        this.minSegmentSize = minSegmentSize;
+        return this;
+    }
+
+    /**
+     * How many times an interrupted transfer is retried. Default is
+     * {@link #DEFAULT_MAX_RETRIES}.
+     */
+    public ResourceDownloader setMaxRetries(int maxRetries) {
+        checkArgument(maxRetries >= 0, "Max retries must be >= 0, found instead %s", maxRetries);
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Whether to check data against resource size and hash. Default is true.
+     */
+    public ResourceDownloader setVerify(boolean verify) {
+        this.verify = verify;
+        return this;
+    }
+
+    /**
+     * If true, SHA-256 of the data is computed and returned in
+     * {@link DownloadResult#getSha256()}. Default is false.
+     */
+    public ResourceDownloader setComputeSha256(boolean computeSha256) {
+        this.computeSha256 = computeSha256;
+        return this;
+    }
+
+    /**
+     * Makes downloads conditional: if the server reports the ETag is
+     * unchanged, nothing is downloaded and
+     * {@link DownloadResult#isNotModified()} is true.
+     *
+     * @param etag
+     *            an ETag previously returned by
+     *            {@link DownloadResult#getEtag()}, or null to disable.
+     */
+    public ResourceDownloader setIfNoneMatch(@Nullable String etag) {
+        this.ifNoneMatch = etag;
+        return this;
+    }
+
+    /**
+     * Makes downloads conditional: if the server reports data wasn't modified
+     * since the given date, nothing is downloaded and
+     * {@link DownloadResult#isNotModified()} is true.
+     *
+     * @param httpDate
+     *            a date in HTTP format, like those returned by
+     *            {@link DownloadResult#getLastModified()}, or null to
+     *            disable.
+     */
+    public ResourceDownloader setIfModifiedSince(@Nullable String httpDate) {
+        this.ifModifiedSince = httpDate;
+        return this;
+    }
+
+    /**
+     * Downloads the resource data into target file, see class description.
+     *
+     * @throws JackanException
+     *             on error, or if verification fails. In the latter case
+     *             the downloaded data is deleted.
+     */
+    public DownloadResult download(CkanResourceBase resource, Path target, @Nullable TransferListener listener) {
+        checkNotNull(resource, "Invalid resource!");
+        return download(resource.getUrl(), resource.getHash(), parseSize(resource.getSize()), target, listener);
+    }
+
+    /**
+     * Downloads the resource data into target channel, which is not closed.
+     * Segments are not used, and interrupted transfers are resumed only if the
+     * server supports ranges.
+     *
+     * @throws JackanException
+     *             on error, or if verification fails. Note in the latter
+     *             case data has already been written to the channel.
+     */
+    public DownloadResult download(CkanResourceBase resource, WritableByteChannel target,
+            @Nullable TransferListener listener) {
+        checkNotNull(resource, "Invalid resource!");
+        return download(resource.getUrl(), resource.getHash(), parseSize(resource.getSize()), target, listener);
+    }
+
+    /**
+     * Downloads data at given url into target file, see class description.
+     *
+     * @param expectedHash
+     *            if not null and in a supported format, data is checked
+     *            against it.
+     * @param expectedSize
+     *            if not negative, data length is checked against it.
+     * @throws JackanException
+     *             on error, or if verification fails. In the latter case
+     *             the downloaded data is deleted.
+     */
+    public DownloadResult download(String url, @Nullable String expectedHash, long expectedSize, Path target,
+            @Nullable TransferListener listener) {
+        checkNotEmpty(url, "Invalid url!");
+        checkNotNull(target, "Invalid target!");
+
+        long startNanos = System.nanoTime();
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        Digests digests = new Digests(verify ? expectedHash : null, computeSha256);
+
+        try {
+            Head head = head(url);
+            if (head != null && head.status == 304) {
+                return new DownloadResult(url, 0, head.etag, head.lastModified, true, false, null, 0,
+                        System.nanoTime() - startNanos);
+            }
+            long length = head == null ? -1 : head.length;
+            boolean ranges = head != null && head.acceptsRanges;
+
+            long existing = Files.exists(part) ? Files.size(part) : 0;
+            if (!ranges || (length >= 0 && existing > length)) {
+                existing = 0;
+            }
+
+            int n = 1;
+            if (head != null && ranges && length > 0 && existing == 0) {
+                n = (int) Math.max(1, Math.min(segments, length / minSegmentSize));
+            }
+
+            Head getHead;
+            TransferMeter meter = new TransferMeter(length, existing, listener);
+            if (n > 1) {
+                getHead = segmented(url, head, part, n, length, meter);
+                digests.updateFromFile(part);
+            } else {
+                try (FileChannel fc = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.READ)) {
+                    if (existing == 0) {
+                        fc.truncate(0);
+                    } else {
+                        LOG.log(Level.INFO, "Resuming download of {0} from byte {1}", new Object[] { url, existing });
+                        digests.updateFromChannel(fc, existing);
+                    }
+                    fc.position(existing);
+                    Sink sink = new Sink(fc, digests, meter, existing);
+                    getHead = sequential(url, sink, existing == 0, head == null ? null : head.validator());
+                }
+                if (getHead.status == 304) {
+                    return new DownloadResult(url, 0, getHead.etag, getHead.lastModified, true, false, null, 1,
+                            System.nanoTime() - startNanos);
+                }
+            }
+
+            meter.done();
+            long bytes = Files.size(part);
+            if (length >= 0 && bytes != length) {
+                throw new IOException("Expected " + length + " bytes from server, got " + bytes);
+            }
+            boolean verified = checkDownload(url, digests, expectedSize, bytes, part);
+
+            moveReplacing(part, target);
+            Head meta = head == null ? getHead : head;
+            return new DownloadResult(url, bytes, meta.etag, meta.lastModified, false, verified,
+                    digests.sha256Hex(), n, System.nanoTime() - startNanos);
+
+        } catch (IOException ex) {
+            throw new JackanException("Error while downloading " + url + " to " + target, ex);
+        }
+    }
+
+    /**
+     * Downloads data at given url into target channel, which is not closed.
+     *
+     * @see #download(eu.trentorise.opendata.jackan.model.CkanResourceBase,
+     *      java.nio.channels.WritableByteChannel, TransferListener)
+     */
+    public DownloadResult download(String url, @Nullable String expectedHash, long expectedSize,
+            WritableByteChannel target, @Nullable TransferListener listener) {
+        checkNotEmpty(url, "Invalid url!");
+        checkNotNull(target, "Invalid target!");
+
+        long startNanos = System.nanoTime();
+        Digests digests = new Digests(verify ? expectedHash : null, computeSha256);
+
+        try {
+            Sink sink = new Sink(target, digests, new TransferMeter(TransferProgress.UNKNOWN_LENGTH, listener), 0);
+            Head head = sequential(url, sink, true, null);
+            sink.meter.done();
+            if (head.status == 304) {
+                return new DownloadResult(url, 0, head.etag, head.lastModified, true, false, null, 1,
+                        System.nanoTime() - startNanos);
+            }
+            boolean verified = checkDownload(url, digests, expectedSize, sink.position, null);
+            return new DownloadResult(url, sink.position, head.etag, head.lastModified, false, verified,
+                    digests.sha256Hex(), 1, System.nanoTime() - startNanos);
+        } catch (IOException ex) {
+            throw new JackanException("Error while downloading " + url, ex);
+        }
+    }
+
+    /**
+     * Checks size and hash.
+     *
+     * @param file
+     *            if verification fails and file is not null, it is deleted.
+     * @return true if hash was checked.
+     * @throws JackanException
+     *             if verification fails
+     */
+    private boolean checkDownload(String url, Digests digests, long expectedSize, long bytes, @Nullable Path file)
+            throws IOException {
+        String error = null;
+        if (verify && expectedSize >= 0 && bytes != expectedSize) {
+            error = "Expected size " + expectedSize + " for " + url + ", found instead " + bytes;
+        } else if (digests.expected != null && !digests.expectedHex.equals(digests.expectedHex())) {
+            error = "Expected " + digests.expected.getAlgorithm() + " hash " + digests.expectedHex + " for " + url
+                    + ", found instead " + digests.expectedHex();
+        }
+        if (error != null) {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+            throw new JackanException(error);
+        }
+        if (digests.expected == null) {
+            LOG.log(Level.FINE, "No supported hash to verify download of {0}", url);
+        }
+        return digests.expected != null;
+    }
+
+    private static void moveReplacing(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Downloads sequentially into the sink, retrying from the last received
+     * byte if the server supports ranges, or from the beginning otherwise.
+     *
+     * @param conditional
+     *            if true, conditional headers are sent.
+     * @param validator
+     *            sent as If-Range header when resuming, if not null
+     */
+    private Head sequential(final String url, final Sink sink, boolean conditional, @Nullable String validator)
+            throws IOException {
+        int attempt = 0;
+        while (true) {
+            final long from = sink.position;
+            try {
+                Head head = fetch(url, from, -1, validator, conditional && from == 0, new BodyConsumer() {
+                    @Override
+                    public void consume(Head head, InputStream in) throws IOException {
+                        sink.acceptsRanges = head.acceptsRanges;
+                        if (from > 0 && head.status == 200) {
+                            LOG.log(Level.INFO, "Server didn't resume download of {0}, starting from scratch", url);
+                            sink.restart();
+                        }
+                        copy(in, sink);
+                    }
+                });
+                if (head.status == 416 && from > 0) {
+                    // partial file was already complete
+                    return head;
+                }
+                if (head.status >= 500) {
+                    throw new IOException("Server returned status " + head.status);
+                }
+                checkStatus(url, head);
+                return head;
+            } catch (IOException ex) {
+                attempt++;
+                if (attempt > maxRetries) {
+                    throw ex;
+                }
+                if (!sink.acceptsRanges) {
+                    sink.restart();
+                }
+                LOG.log(Level.WARNING, "Download of " + url + " failed at byte " + sink.position + ", retrying", ex);
+            }
+        }
+    }
+
+    /**
+     * Downloads the file in parallel segments with positional writes.
+     */
+    private Head segmented(final String url, final Head head, Path part, int n, long length,
+            final TransferMeter meter) throws IOException {
+        LOG.log(Level.FINE, "Downloading {0} in {1} segments", new Object[] { url, n });
+        ExecutorService executor = Executors.newFixedThreadPool(n);
+        try (final FileChannel fc = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long segmentLength = (length + n - 1) / n;
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                final long start = i * segmentLength;
+                final long end = Math.min(length, start + segmentLength) - 1;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        downloadSegment(url, head.validator(), fc, start, end, meter);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            return head;
+        } catch (InterruptedException ex) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new JackanException("Interrupted while downloading " + url, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new JackanException("Error while downloading " + url, ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Downloads bytes from start to end included, retrying from the last
+     * received byte on failure.
+     */
+    private void downloadSegment(final String url, @Nullable String validator, final FileChannel fc, long start,
+            long end, final TransferMeter meter) throws IOException {
+        final long[] position = { start };
+        int attempt = 0;
+        while (true) {
+            try {
+                Head head = fetch(url, position[0], end, validator, false, new BodyConsumer() {
+                    @Override
+                    public void consume(Head head, InputStream in) throws IOException {
+                        if (head.status != 206) {
+                            throw new JackanException("Server didn't honour range request for " + url
+                                    + ", maybe data changed during download");
+                        }
+                        ReadableByteChannel rc = Channels.newChannel(in);
+                        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                        while (rc.read(buffer) != -1) {
+                            buffer.flip();
+                            int n = buffer.remaining();
+                            while (buffer.hasRemaining()) {
+                                position[0] += fc.write(buffer, position[0]);
+                            }
+                            meter.add(n);
+                            buffer.clear();
+                        }
+                    }
+                });
+                if (head.status >= 500) {
+                    throw new IOException("Server returned status " + head.status);
+                }
+                checkStatus(url, head);
+                if (position[0] != end + 1) {
+                    throw new IOException("Segment " + start + "-" + end + " ended prematurely at " + position[0]);
+                }
+                return;
+            } catch (IOException ex) {
+                attempt++;
+                if (attempt > maxRetries) {
+                    throw ex;
+                }
+                LOG.log(Level.WARNING, "Download of " + url + " failed at byte " + position[0] + ", retrying", ex);
+            }
+        }
+    }
+
+    private static void checkStatus(String url, Head head) {
+        if (head.status != 200 && head.status != 206 && head.status != 304) {
+            throw new JackanException("Error while downloading " + url + ", server returned status " + head.status);
+        }
+    }
+
+    private static void copy(InputStream in, Sink sink) throws IOException {
+        ReadableByteChannel rc = Channels.newChannel(in);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        while (rc.read(buffer) != -1) {
+            buffer.flip();
+            sink.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Issues a HEAD request, returning null if it fails (some servers don't
+     * support it).
+     */
+    @Nullable
+    private Head head(String url) {
+        try {
+            Request request = prepare(Request.Head(url), url);
+            addConditionalHeaders(request);
+            Head ret = Head.of(request.execute()
+                                      .returnResponse());
+            if (ret.status >= 400) {
+                LOG.log(Level.FINE, "HEAD request for {0} returned status {1}", new Object[] { url, ret.status });
+                return null;
+            }
+            return ret;
+        } catch (Exception ex) {
+            LOG.log(Level.FINE, "HEAD request failed for " + url, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Performs a GET, passing the body to consumer if status is 200 or 206.
+     *
+     * @param to
+     *            last byte included, or -1 for the end of data
+     */
+    private Head fetch(String url, long from, long to, @Nullable String validator, boolean conditional,
+            final BodyConsumer consumer) throws IOException {
+        Request request = prepare(Request.Get(url), url);
+        if (from > 0 || to >= 0) {
+            request.addHeader("Range", "bytes=" + from + "-" + (to >= 0 ? Long.toString(to) : ""));
+            if (validator != null) {
+                request.addHeader("If-Range", validator);
+            }
+        }
+        if (conditional) {
+            addConditionalHeaders(request);
+        }
+        return request.execute()
+                      .handleResponse(new ResponseHandler<Head>() {
+                          @Override
+                          public Head handleResponse(HttpResponse response) throws IOException {
+                              Head head = Head.of(response);
+                              if ((head.status == 200 || head.status == 206) && response.getEntity() != null) {
+                                  try (InputStream in = response.getEntity()
+                                                                .getContent()) {
+                                      consumer.consume(head, in);
+                                  }
+                              }
+                              return head;
+                          }
+                      });
+    }
+
+    private void addConditionalHeaders(Request request) {
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        if (ifModifiedSince != null) {
+            request.addHeader("If-Modified-Since", ifModifiedSince);
+        }
+    }
+
+    /**
+     * Sets proxy and timeouts of the client. Authorization token is only added
+     * for urls on the catalog host.
+     */
+    private Request prepare(Request request, String url) {
+        if (client.getCkanToken() != null && isCatalogHost(url)) {
+            request.addHeader("Authorization", client.getCkanToken());
+        }
+        if (client.getProxy() != null) {
+            request.viaProxy(client.getProxy());
+        }
+        request.socketTimeout(client.getTimeout())
+               .connectTimeout(client.getTimeout());
+        return request;
+    }
+
+    boolean isCatalogHost(String url) {
+        try {
+            String host = new URI(url).getHost();
+            String catalogHost = new URI(client.getCatalogUrl()).getHost();
+            return host != null && host.equalsIgnoreCase(catalogHost);
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses CKAN resource size, returning -1 if it is missing or invalid.
+     */
+    static long parseSize(@Nullable String size) {
+        if (size == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(size.trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the Java name of the algorithm of given hash, or null if not
+     * recognized.
+     */
+    @Nullable
+    static String hashAlgorithm(@Nullable String hash) {
+        String hex = hashHex(hash);
+        if (hex == null) {
+            return null;
+        }
+        switch (hex.length()) {
+        case 32:
+            return "MD5";
+        case 40:
+            return "SHA-1";
+        case 64:
+            return "SHA-256";
+        case 128:
+            return "SHA-512";
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Returns the lowercase hex part of given hash, or null if it is not hex.
+     */
+    @Nullable
+    static String hashHex(@Nullable String hash) {
+        if (hash == null) {
+            return null;
+        }
+        String ret = hash.trim()
+                         .toLowerCase();
+        int colon = ret.indexOf(':');
+        if (colon >= 0) {
+            ret = ret.substring(colon + 1);
+        }
+        if (ret.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < ret.length(); i++) {
+            char c = ret.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return null;
+            }
+        }
+        return ret;
+    }
+
+    private interface BodyConsumer {
+
+        void consume(Head head, InputStream in) throws IOException;
+    }
+
+    /**
+     * Status and headers of a response
+     */
+    private static final class Head {
+
+        int status;
+        long length = -1;
+        boolean acceptsRanges;
+        @Nullable
+        String etag;
+        @Nullable
+        String lastModified;
+
+        static Head of(HttpResponse response) {
+            Head ret = new Head();
+            ret.status = response.getStatusLine()
+                                 .getStatusCode();
+            Header h = response.getFirstHeader("Content-Length");
+            if (h != null && ret.status == 200) {
+                ret.length = parseSize(h.getValue());
+            }
+            h = response.getFirstHeader("Accept-Ranges");
+            ret.acceptsRanges = (h != null && h.getValue()
+                                               .toLowerCase()
+                                               .contains("bytes"))
+                    || ret.status == 206;
+            h = response.getFirstHeader("ETag");
+            ret.etag = h == null ? null : h.getValue();
+            h = response.getFirstHeader("Last-Modified");
+            ret.lastModified = h == null ? null : h.getValue();
+            return ret;
+        }
+
+        /**
+         * Strong validator for If-Range headers, or null
+         */
+        @Nullable
+        String validator() {
+            if (etag != null && !etag.startsWith("W/")) {
+                return etag;
+            }
+            return lastModified;
+        }
+    }
+
+    /**
+     * Sequential destination of data, keeping digests and meter updated.
+     */
+    private static final class Sink {
+
+        final WritableByteChannel channel;
+        final Digests digests;
+        final TransferMeter meter;
+        long position;
+        boolean acceptsRanges;
+
+        Sink(WritableByteChannel channel, Digests digests, TransferMeter meter, long position) {
+            this.channel = channel;
+            this.digests = digests;
+            this.meter = meter;
+            this.position = position;
+            this.acceptsRanges = position > 0;
+        }
+
+        void write(ByteBuffer buffer) throws IOException {
+            digests.update(buffer);
+            int n = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            position += n;
+            meter.add(n);
+        }
+
+        /**
+         * Discards written data, if possible.
+         *
+         * @throws IOException
+         *             if data was already written to a channel which is not a
+         *             file
+         */
+        void restart() throws IOException {
+            if (position == 0) {
+                return;
+            }
+            if (!(channel instanceof FileChannel)) {
+                throw new IOException("Can't restart download, data was already written to target channel");
+            }
+            FileChannel fc = (FileChannel) channel;
+            fc.truncate(0);
+            fc.position(0);
+            digests.reset();
+            position = 0;
+        }
+    }
+
+    /**
+     * Digests for verification and content addressing.
+     */
+    private static final class Digests {
+
+        @Nullable
+        final MessageDigest expected;
+        @Nullable
+        final String expectedHex;
+        @Nullable
+        final MessageDigest sha256;
+        @Nullable
+        private String computedExpectedHex;
+
+        Digests(@Nullable String expectedHash, boolean computeSha256) {
+            String algorithm = hashAlgorithm(expectedHash);
+            this.expected = algorithm == null ? null : newDigest(algorithm);
+            this.expectedHex = algorithm == null ? null : hashHex(expectedHash);
+            this.sha256 = computeSha256 ? newDigest("SHA-256") : null;
+        }
+
+        private static MessageDigest newDigest(String algorithm) {
+            try {
+                return MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException ex) {
+                throw new JackanException("Missing digest algorithm " + algorithm, ex);
+            }
+        }
+
+        boolean isEmpty() {
+            return expected == null && sha256 == null;
+        }
+
+        void update(ByteBuffer buffer) {
+            if (expected != null) {
+                expected.update(buffer.duplicate());
+            }
+            if (sha256 != null) {
+                sha256.update(buffer.duplicate());
+            }
+        }
+
+        void reset() {
+            if (expected != null) {
+                expected.reset();
+            }
+            if (sha256 != null) {
+                sha256.reset();
+            }
+        }
+
+        void updateFromFile(Path file) throws IOException {
+            if (isEmpty()) {
+                return;
+            }
+            try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+                updateFromChannel(fc, fc.size());
+            }
+        }
+
+        /**
+         * Updates digests with the first {@code length} bytes of the file.
+         */
+        void updateFromChannel(FileChannel fc, long length) throws IOException {
+            if (isEmpty()) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long pos = 0;
+            while (pos < length) {
+                buffer.limit((int) Math.min(buffer.capacity(), length - pos));
+                int n = fc.read(buffer, pos);
+                if (n < 0) {
+                    break;
+                }
+                buffer.flip();
+                update(buffer);
+                buffer.clear();
+                pos += n;
+            }
+        }
+
+        /**
+         * Hex of the expected algorithm digest, computed once.
+         */
+        @Nullable
+        String expectedHex() {
+            if (expected == null) {
+                return null;
+            }
+            if (computedExpectedHex == null) {
+                computedExpectedHex = BaseEncoding.base16()
+                                                  .lowerCase()
+                                                  .encode(expected.digest());
+            }
+            return computedExpectedHex;
+        }
+
+        @Nullable
+        String sha256Hex() {
+            return sha256 == null ? null
+                    : BaseEncoding.base16()
+                                  .lowerCase()
+                                  .encode(sha256.digest());
+        }
+    }
+}
@@ -38,7 +38,7 @@ public class SearchResults<T> {
         this.results = results;
     }
 
-    private SearchResults() {
+    protected SearchResults() {
     }
 
     /**
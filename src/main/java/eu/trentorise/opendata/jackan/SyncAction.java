@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.google.common.collect.ImmutableList;
+import eu.trentorise.opendata.jackan.model.CkanDatasetBase;
+import eu.trentorise.opendata.jackan.model.CkanResourceBase;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A single server call planned by {@link CatalogSync}.
+ *
+ * @since 0.4.3
+ */
+@Immutable
+public final class SyncAction {
+
+    /**
+     * Kind of server call
+     */
+    public enum Type {
+        CREATE_DATASET, UPDATE_DATASET, DELETE_DATASET, CREATE_RESOURCE, UPDATE_RESOURCE, DELETE_RESOURCE
+    }
+
+    private final Type type;
+    private final String datasetName;
+    @Nullable
+    private final String id;
+    private final ImmutableList<String> changedFields;
+    @Nullable
+    private final CkanDatasetBase dataset;
+    @Nullable
+    private final CkanResourceBase resource;
+
+    SyncAction(Type type, String datasetName, @Nullable String id, List<String> changedFields,
+            @Nullable CkanDatasetBase dataset, @Nullable CkanResourceBase resource) {
+        this.type = type;
+        this.datasetName = datasetName;
+        this.id = id;
+        this.changedFields = ImmutableList.copyOf(changedFields);
+        this.dataset = dataset;
+        this.resource = resource;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Name of the dataset the action is about, also for resource actions.
+     */
+    public String getDatasetName() {
+        return datasetName;
+    }
+
+    /**
+     * Id on the server of the updated or deleted dataset or resource, null for
+     * creations.
+     */
+    @Nullable
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Json names of changed fields of updates, empty for other actions.
+     */
+    public ImmutableList<String> getChangedFields() {
+        return changedFields;
+    }
+
+    /**
+     * The dataset to send for dataset creations and updates, null otherwise.
+     * For updates it is the dataset on the server merged with the
+     * {@link #getChangedFields() changed fields}, of which only the latter are
+     * sent if the server supports patching.
+     */
+    @Nullable
+    public CkanDatasetBase getDataset() {
+        return dataset;
+    }
+
+    /**
+     * The resource to send for resource creations and updates, null
+     * otherwise.
+     */
+    @Nullable
+    public CkanResourceBase getResource() {
+        return resource;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + datasetName + (id == null ? "" : " (" + id + ")")
+                + (changedFields.isEmpty() ? "" : " " + changedFields);
+    }
+
+}
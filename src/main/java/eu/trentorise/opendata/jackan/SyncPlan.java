@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Server calls needed to bring the catalog to a desired state, as computed by
+ * {@link CatalogSync#plan(Iterable)}. Actions of the same dataset are
+ * contiguous and in execution order.
+ *
+ * @since 0.4.3
+ */
+@Immutable
+public final class SyncPlan {
+
+    private final ImmutableList<SyncAction> actions;
+    private final ImmutableList<String> unchanged;
+    private final ImmutableMap<String, String> fingerprints;
+
+    /**
+     * @param fingerprints
+     *            fingerprints of desired datasets, by name
+     */
+    SyncPlan(List<SyncAction> actions, List<String> unchanged, Map<String, String> fingerprints) {
+        this.actions = ImmutableList.copyOf(actions);
+        this.unchanged = ImmutableList.copyOf(unchanged);
+        this.fingerprints = ImmutableMap.copyOf(fingerprints);
+    }
+
+    public ImmutableList<SyncAction> getActions() {
+        return actions;
+    }
+
+    /**
+     * Returns the actions of given type
+     */
+    public ImmutableList<SyncAction> getActions(SyncAction.Type type) {
+        ImmutableList.Builder<SyncAction> ret = ImmutableList.builder();
+        for (SyncAction action : actions) {
+            if (action.getType() == type) {
+                ret.add(action);
+            }
+        }
+        return ret.build();
+    }
+
+    /**
+     * Names of desired datasets which are already up to date on the server.
+     */
+    public ImmutableList<String> getUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * True if the catalog is already in the desired state
+     */
+    public boolean isEmpty() {
+        return actions.isEmpty();
+    }
+
+    ImmutableMap<String, String> getFingerprints() {
+        return fingerprints;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("SyncPlan{unchanged=" + unchanged.size());
+        for (SyncAction.Type type : SyncAction.Type.values()) {
+            int n = getActions(type).size();
+            if (n > 0) {
+                sb.append(", ")
+                  .append(type.name()
+                              .toLowerCase())
+                  .append('=')
+                  .append(n);
+            }
+        }
+        return sb.append('}')
+                 .toString();
+    }
+
+}
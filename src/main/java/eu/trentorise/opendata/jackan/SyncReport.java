@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import eu.trentorise.opendata.jackan.exceptions.CkanException;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Outcome of {@link CatalogSync#apply(SyncPlan)}. When an action fails, the
+ * following actions of the same dataset are not executed and are reported as
+ * skipped.
+ *
+ * @since 0.4.3
+ */
+@Immutable
+public final class SyncReport {
+
+    private final ImmutableList<SyncAction> applied;
+    private final ImmutableMap<SyncAction, CkanException> failures;
+    private final ImmutableList<SyncAction> skipped;
+    private final long elapsedNanos;
+
+    SyncReport(List<SyncAction> applied, Map<SyncAction, CkanException> failures, List<SyncAction> skipped,
+            long elapsedNanos) {
+        this.applied = ImmutableList.copyOf(applied);
+        this.failures = ImmutableMap.copyOf(failures);
+        this.skipped = ImmutableList.copyOf(skipped);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Successful actions, in completion order
+     */
+    public ImmutableList<SyncAction> getApplied() {
+        return applied;
+    }
+
+    /**
+     * Failed actions with their errors
+     */
+    public ImmutableMap<SyncAction, CkanException> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Actions not executed because a previous action of the same dataset
+     * failed
+     */
+    public ImmutableList<SyncAction> getSkipped() {
+        return skipped;
+    }
+
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "SyncReport{" + "applied=" + applied.size() + ", failed=" + failures.size() + ", skipped="
+                + skipped.size() + ", elapsedNanos=" + elapsedNanos + '}';
+    }
+
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+/**
+ * Receives progress reports of resource data transfers. Reports are sent
+ * from the transferring threads roughly every megabyte and once more at the
+ * end, so implementations should be thread safe and return quickly.
+ *
+ * @since 0.4.3
+ */
+public interface TransferListener {
+
+    void onProgress(TransferProgress progress);
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * Counts transferred bytes and notifies a {@link TransferListener}. Can be
+ * shared by threads transferring parts of the same data.
+ *
+ * @since 0.4.3
+ */
+final class TransferMeter {
+
+    /**
+     * Listeners are notified at most once each time this amount of bytes is
+     * transferred.
+     */
+    static final long REPORT_INTERVAL_BYTES = 1024 * 1024;
+
+    private final long totalBytes;
+    @Nullable
+    private final TransferListener listener;
+    private final long startNanos;
+    private final AtomicLong bytes;
+    private final AtomicLong nextReport;
+
+    /**
+     * @param totalBytes
+     *            total length, or {@link TransferProgress#UNKNOWN_LENGTH}
+     * @param listener
+     *            if null nothing is reported
+     */
+    TransferMeter(long totalBytes, @Nullable TransferListener listener) {
+        this(totalBytes, 0, listener);
+    }
+
+    /**
+     * @param alreadyTransferred
+     *            bytes transferred before this meter was created, i.e. on
+     *            resumed transfers
+     */
+    TransferMeter(long totalBytes, long alreadyTransferred, @Nullable TransferListener listener) {
+        this.totalBytes = totalBytes;
+        this.listener = listener;
+        this.startNanos = System.nanoTime();
+        this.bytes = new AtomicLong(alreadyTransferred);
+        this.nextReport = new AtomicLong(alreadyTransferred + REPORT_INTERVAL_BYTES);
+    }
+
+    void add(long n) {
+        long current = bytes.addAndGet(n);
+        if (listener != null) {
+            long next = nextReport.get();
+            if (current >= next && nextReport.compareAndSet(next, current + REPORT_INTERVAL_BYTES)) {
+                listener.onProgress(new TransferProgress(current, totalBytes, System.nanoTime() - startNanos, false));
+            }
+        }
+    }
+
+    long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Returns the final progress, reporting it to the listener.
+     */
+    TransferProgress done() {
+        TransferProgress ret = new TransferProgress(bytes.get(), totalBytes, System.nanoTime() - startNanos, true);
+        if (listener != null) {
+            listener.onProgress(ret);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Snapshot of the progress of a data transfer, see {@link TransferListener}
+ *
+ * @since 0.4.3
+ */
+@Immutable
+public final class TransferProgress {
+
+    /**
+     * Total bytes value when the length of the transfer is not known in
+     * advance.
+     */
+    public static final long UNKNOWN_LENGTH = -1;
+
+    private final long bytesTransferred;
+    private final long totalBytes;
+    private final long elapsedNanos;
+    private final boolean done;
+
+    public TransferProgress(long bytesTransferred, long totalBytes, long elapsedNanos, boolean done) {
+        this.bytesTransferred = bytesTransferred;
+        this.totalBytes = totalBytes;
+        this.elapsedNanos = elapsedNanos;
+        this.done = done;
+    }
+
+    /**
+     * Bytes transferred so far
+     */
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    /**
+     * Total bytes to transfer, or {@link #UNKNOWN_LENGTH} if not known.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Nanoseconds elapsed since the transfer started
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * True if this is the last report of a completed transfer
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Average throughput since the transfer started, in bytes per second.
+     */
+    public double getBytesPerSecond() {
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return bytesTransferred * 1000000000.0 / elapsedNanos;
+    }
+
+    /**
+     * Fraction of transferred bytes, between 0 and 1, or -1 if the total
+     * length is not known.
+     */
+    public double getFraction() {
+        if (totalBytes < 0) {
+            return -1;
+        }
+        if (totalBytes == 0) {
+            return 1;
+        }
+        return (double) bytesTransferred / totalBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferProgress{" + "bytesTransferred=" + bytesTransferred + ", totalBytes=" + totalBytes
+                + ", elapsedNanos=" + elapsedNanos + ", done=" + done + '}';
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import eu.trentorise.opendata.jackan.exceptions.JackanException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
+
+/**
+ * The data to upload as resource file, see
+ * {@link CkanClient#updateResourceData(eu.trentorise.opendata.jackan.model.CkanResourceBase, UploadSource, TransferListener)}.
+ * Data can come from a file, which is sent with {@code FileChannel} transfers,
+ * or be streamed from an {@code InputStream} or a
+ * {@code ReadableByteChannel}, so there is no need to spool generated content
+ * to disk. Streams and channels are read only once and are not closed by
+ * Jackan.
+ *
+ * @since 0.4.3
+ */
+@Immutable
+public final class UploadSource {
+
+    private final String fileName;
+    private final long length;
+    @Nullable
+    private final Path path;
+    @Nullable
+    private final InputStream inputStream;
+    @Nullable
+    private final ReadableByteChannel channel;
+
+    private UploadSource(String fileName, long length, @Nullable Path path, @Nullable InputStream inputStream,
+            @Nullable ReadableByteChannel channel) {
+        checkNotEmpty(fileName, "Invalid file name!");
+        checkArgument(length >= 0 || length == TransferProgress.UNKNOWN_LENGTH, "Invalid length: %s", length);
+        this.fileName = fileName;
+        this.length = length;
+        this.path = path;
+        this.inputStream = inputStream;
+        this.channel = channel;
+    }
+
+    /**
+     * Uploads data from given file
+     *
+     * @throws JackanException
+     *             if file size can't be read
+     */
+    public static UploadSource of(Path path) {
+        checkNotNull(path, "Invalid path!");
+        try {
+            return new UploadSource(path.getFileName()
+                                        .toString(),
+                    Files.size(path), path, null, null);
+        } catch (IOException ex) {
+            throw new JackanException("Couldn't read size of file " + path, ex);
+        }
+    }
+
+    /**
+     * Uploads data from given file
+     *
+     * @throws JackanException
+     *             if file size can't be read
+     */
+    public static UploadSource of(File file) {
+        checkNotNull(file, "Invalid file!");
+        return of(file.toPath());
+    }
+
+    /**
+     * Uploads data read from given stream.
+     *
+     * @param length
+     *            the number of bytes the stream will provide, or
+     *            {@link TransferProgress#UNKNOWN_LENGTH} to send data in
+     *            chunked mode
+     * @param fileName
+     *            the file name to show on the server, i.e. "export.csv"
+     */
+    public static UploadSource of(InputStream inputStream, long length, String fileName) {
+        checkNotNull(inputStream, "Invalid input stream!");
+        return new UploadSource(fileName, length, null, inputStream, null);
+    }
+
+    /**
+     * Uploads data read from given channel.
+     *
+     * @param length
+     *            the number of bytes the channel will provide, or
+     *            {@link TransferProgress#UNKNOWN_LENGTH} to send data in
+     *            chunked mode
+     * @param fileName
+     *            the file name to show on the server, i.e. "export.csv"
+     */
+    public static UploadSource of(ReadableByteChannel channel, long length, String fileName) {
+        checkNotNull(channel, "Invalid channel!");
+        return new UploadSource(fileName, length, null, null, channel);
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Returns the data length, or {@link TransferProgress#UNKNOWN_LENGTH}
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * The file to read from, if the source is a file.
+     */
+    @Nullable
+    public Path getPath() {
+        return path;
+    }
+
+    @Nullable
+    InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Nullable
+    ReadableByteChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns true if data can be read more than once, which is only the case
+     * for files.
+     */
+    public boolean isRepeatable() {
+        return path != null;
+    }
+
+    @Override
+    public String toString() {
+        return "UploadSource{" + "fileName=" + fileName + ", length=" + length + ", path=" + path + '}';
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import javax.annotation.Nullable;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+/**
+ * Multipart body streaming an {@link UploadSource} in chunks of
+ * {@link #CHUNK_SIZE} bytes, so data is never held in memory all at once.
+ * Files are sent with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}; as the
+ * target is the http client output stream, each chunk still goes through a
+ * temporary buffer on the heap.
+ *
+ * @since 0.4.3
+ */
+class UploadSourceBody extends AbstractContentBody {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private final UploadSource source;
+    @Nullable
+    private final TransferListener listener;
+
+    UploadSourceBody(UploadSource source, ContentType contentType, @Nullable TransferListener listener) {
+        super(contentType);
+        this.source = source;
+        this.listener = listener;
+    }
+
+    @Override
+    public String getFilename() {
+        return source.getFileName();
+    }
+
+    @Override
+    public String getTransferEncoding() {
+        return MIME.ENC_BINARY;
+    }
+
+    @Override
+    public long getContentLength() {
+        return source.getLength();
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        TransferMeter meter = new TransferMeter(source.getLength(), listener);
+        WritableByteChannel target = Channels.newChannel(out);
+
+        if (source.getPath() != null) {
+            try (FileChannel fc = FileChannel.open(source.getPath(), StandardOpenOption.READ)) {
+                long size = source.getLength();
+                long pos = 0;
+                while (pos < size) {
+                    long n = fc.transferTo(pos, Math.min(CHUNK_SIZE, size - pos), target);
+                    if (n <= 0) {
+                        break;
+                    }
+                    pos += n;
+                    meter.add(n);
+                }
+            }
+        } else if (source.getChannel() != null) {
+            ReadableByteChannel channel = source.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                int n = buffer.remaining();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+                meter.add(n);
+            }
+        } else {
+            InputStream in = source.getInputStream();
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+                meter.add(n);
+            }
+        }
+        out.flush();
+
+        if (source.getLength() != TransferProgress.UNKNOWN_LENGTH && meter.getBytes() != source.getLength()) {
+            throw new IOException("Upload source " + source.getFileName() + " declared " + source.getLength()
+                    + " bytes but provided " + meter.getBytes());
+        }
+        meter.done();
+    }
+
+}
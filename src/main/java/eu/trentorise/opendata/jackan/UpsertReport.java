@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Per-dataset results of a bulk upsert, in input order.
+ *
+ * @see CkanClient#bulkUpsertDatasets(Iterable)
+ * @since 0.4.3
+ */
+@Immutable
+public final class UpsertReport {
+
+    private final ImmutableList<UpsertResult> results;
+    private final int created;
+    private final int updated;
+    private final int failed;
+    private final long elapsedNanos;
+
+    UpsertReport(List<UpsertResult> results, long elapsedNanos) {
+        this.results = ImmutableList.copyOf(results);
+        int c = 0;
+        int u = 0;
+        int f = 0;
+        for (UpsertResult r : results) {
+            switch (r.getOutcome()) {
+            case CREATED:
+                c++;
+                break;
+            case UPDATED:
+                u++;
+                break;
+            default:
+                f++;
+            }
+        }
+        this.created = c;
+        this.updated = u;
+        this.failed = f;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Results in the same order of the input datasets
+     */
+    public ImmutableList<UpsertResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Results of failed upserts
+     */
+    public ImmutableList<UpsertResult> getFailures() {
+        ImmutableList.Builder<UpsertResult> ret = ImmutableList.builder();
+        for (UpsertResult r : results) {
+            if (!r.isSuccess()) {
+                ret.add(r);
+            }
+        }
+        return ret.build();
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "UpsertReport{" + "total=" + results.size() + ", created=" + created + ", updated=" + updated
+                + ", failed=" + failed + ", elapsedNanos=" + elapsedNanos + '}';
+    }
+
+}
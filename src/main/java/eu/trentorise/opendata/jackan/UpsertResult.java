@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import eu.trentorise.opendata.jackan.exceptions.CkanException;
+import eu.trentorise.opendata.jackan.model.CkanDataset;
+import eu.trentorise.opendata.jackan.model.CkanDatasetBase;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Outcome of the upsert of a single dataset in a bulk operation.
+ *
+ * @see CkanClient#bulkUpsertDatasets(Iterable)
+ * @since 0.4.3
+ */
+@Immutable
+public final class UpsertResult {
+
+    public enum Outcome {
+        CREATED, UPDATED, FAILED
+    }
+
+    private final int index;
+    private final CkanDatasetBase input;
+    private final Outcome outcome;
+    @Nullable
+    private final CkanDataset dataset;
+    @Nullable
+    private final CkanException error;
+    private final int attempts;
+
+    UpsertResult(int index, CkanDatasetBase input, Outcome outcome, @Nullable CkanDataset dataset,
+            @Nullable CkanException error, int attempts) {
+        this.index = index;
+        this.input = input;
+        this.outcome = outcome;
+        this.dataset = dataset;
+        this.error = error;
+        this.attempts = attempts;
+    }
+
+    /**
+     * Position of the dataset in the input sequence
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * The dataset which was sent
+     */
+    public CkanDatasetBase getInput() {
+        return input;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * The dataset returned by the server, or null on failure
+     */
+    @Nullable
+    public CkanDataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * The error of the last attempt, or null on success
+     */
+    @Nullable
+    public CkanException getError() {
+        return error;
+    }
+
+    /**
+     * Number of requests attempted, retries included
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public boolean isSuccess() {
+        return outcome != Outcome.FAILED;
+    }
+
+    @Override
+    public String toString() {
+        return "UpsertResult{" + "index=" + index + ", name=" + input.getName() + ", outcome=" + outcome
+                + ", attempts=" + attempts + ", error=" + (error == null ? null : error.getMessage()) + '}';
+    }
+
+}
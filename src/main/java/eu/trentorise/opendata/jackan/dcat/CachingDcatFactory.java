@@ -0,0 +1,676 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan.dcat;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.KeyDeserializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.annotations.Beta;
+import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.jackan.CkanClient;
+import eu.trentorise.opendata.jackan.exceptions.JackanException;
+import eu.trentorise.opendata.jackan.model.CkanDataset;
+import eu.trentorise.opendata.jackan.model.CkanResource;
+import eu.trentorise.opendata.traceprov.TraceProvModule;
+import eu.trentorise.opendata.traceprov.dcat.DcatDataset;
+import eu.trentorise.opendata.traceprov.dcat.DcatDistribution;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Wraps a {@link DcatFactory} caching the datasets it makes, so when a
+ * catalog is converted again only datasets which actually changed are
+ * converted anew. Datasets are cached by id, metadata modified timestamp,
+ * locale, catalog url, class and mapping profile fields of the wrapped
+ * factory: CKAN updates metadata_modified whenever a dataset or any of its
+ * resources changes. Datasets without id or metadata modified timestamp are
+ * never cached.
+ *
+ * <p>
+ * Least recently used datasets are kept in memory. If a spill directory is
+ * given, datasets evicted from memory are written there as JSON and read back
+ * when needed again. To make the cache survive restarts, call
+ * {@link #flush()} to also write the datasets still in memory. There is a
+ * single file per dataset and mapping profile, replaced when the dataset
+ * changes. File names hold the metadata modified timestamp and are listed
+ * only once, when the factory is created, so changed and new datasets are
+ * converted without touching the disk. Datasets spilled meanwhile by other
+ * factories sharing the directory are not seen.
+ * </p>
+ *
+ * <p>
+ * The cache has a single lock, so that eviction is exactly least recently
+ * used, and evicted datasets are written to the spill directory by the thread
+ * converting the dataset which caused the eviction. Parallel
+ * {@link #makeDatasets(Iterable, String, Locale) batch conversions} hitting
+ * the cache contend on that lock, and when datasets don't fit in memory each
+ * worker also waits for a file write per converted dataset, so a maximum size
+ * fitting the whole catalog should be preferred to spilling. Reading a
+ * dataset back from the spill directory also costs more than converting it
+ * again with the bundled factories (see DcatCacheBenchmarkApp in the tests),
+ * so the directory only pays off with factories whose conversions are
+ * expensive, i.e. extractors looking up external services.
+ * </p>
+ *
+ * <p>
+ * Since this class extends {@link DcatFactory}, it can be used wherever a
+ * factory is expected, i.e. by {@link DcatExporter} or for
+ * {@link #makeDatasets(Iterable, String, Locale) batch conversions}. All
+ * other conversions and the configuration are delegated to the wrapped
+ * factory. Cached datasets don't go through the wrapped factory, so their
+ * field extractions are not counted again in the
+ * {@link #getConversionReport() conversion report}. If the configuration of
+ * the wrapped factory other than its mapping profile, i.e. its object mapper,
+ * is changed, {@link #invalidateAll()} should be called.
+ * </p>
+ *
+ * @since 0.4.3
+ */
+@Beta
+@ThreadSafe
+public class CachingDcatFactory extends DcatFactory {
+
+    private static final Logger LOG = Logger.getLogger(CachingDcatFactory.class.getName());
+
+    /**
+     * Default maximum number of datasets kept in memory
+     */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private static final String SPILL_SUFFIX = ".json";
+
+    /**
+     * Separates in spill file names the hash of the dataset identity from its
+     * metadata modified timestamp
+     */
+    private static final char SPILL_SEPARATOR = '-';
+
+    /**
+     * The identity of a conversion. Catalog url is included as it ends up in
+     * dataset and distribution uris.
+     */
+    private static final class Key {
+
+        private final String id;
+        private final Timestamp metadataModified;
+        private final Locale locale;
+        private final String catalogUrl;
+        private final Class<?> factoryClass;
+        private final String profile;
+
+        private Key(String id, Timestamp metadataModified, Locale locale, String catalogUrl,
+                Class<?> factoryClass, String profile) {
+            this.id = id;
+            this.metadataModified = metadataModified;
+            this.locale = locale;
+            this.catalogUrl = catalogUrl;
+            this.factoryClass = factoryClass;
+            this.profile = profile;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return id.equals(other.id) && metadataModified.equals(other.metadataModified)
+                    && locale.equals(other.locale) && catalogUrl.equals(other.catalogUrl)
+                    && factoryClass.equals(other.factoryClass) && profile.equals(other.profile);
+        }
+
+        @Override
+        public int hashCode() {
+            int ret = id.hashCode();
+            ret = 31 * ret + metadataModified.hashCode();
+            ret = 31 * ret + locale.hashCode();
+            ret = 31 * ret + catalogUrl.hashCode();
+            ret = 31 * ret + factoryClass.hashCode();
+            return 31 * ret + profile.hashCode();
+        }
+    }
+
+    /**
+     * Reads dicts straight from the parser. The default deserializer builds
+     * the type of the multimap at each call, which takes a large part of the time
+     * needed to read a dataset.
+     */
+    private static final class DictDeserializer extends StdDeserializer<Dict> {
+
+        private static final long serialVersionUID = 1L;
+
+        private DictDeserializer() {
+            super(Dict.class);
+        }
+
+        @Override
+        public Dict deserialize(JsonParser parser, DeserializationContext ctxt) throws IOException {
+            if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                throw ctxt.mappingException(Dict.class);
+            }
+            KeyDeserializer locales = ctxt.findKeyDeserializer(ctxt.constructType(Locale.class), null);
+            ImmutableListMultimap.Builder<Locale, String> builder = ImmutableListMultimap.builder();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Locale locale = (Locale) locales.deserializeKey(parser.getCurrentName(), ctxt);
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw ctxt.mappingException(Dict.class);
+                }
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    builder.put(locale, parser.getText());
+                }
+            }
+            return Dict.of(builder.build());
+        }
+    }
+
+    private final DcatFactory delegate;
+
+    private final int maxSize;
+
+    @Nullable
+    private final Path spillDirectory;
+
+    private final Cache<Key, DcatDataset> cache;
+
+    /**
+     * Names of the files in the spill directory, indexed by the hash of the
+     * dataset identity they start with
+     */
+    private final ConcurrentMap<String, String> spilled = new ConcurrentHashMap();
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectReader datasetReader;
+
+    /**
+     * The last mapping profile of the wrapped factory and its fingerprint
+     */
+    private volatile Map.Entry<DcatMappingProfile, String> profileFingerprint;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong diskHits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Caches in memory at most {@link #DEFAULT_MAX_SIZE} datasets made by
+     * given factory
+     */
+    public CachingDcatFactory(DcatFactory delegate) {
+        this(delegate, DEFAULT_MAX_SIZE, null);
+    }
+
+    /**
+     * @param delegate
+     *            the factory actually converting datasets
+     * @param maxSize
+     *            maximum number of datasets kept in memory. When regenerating
+     *            whole catalogs, it should be at least the number of datasets
+     *            times the number of locales, otherwise datasets are evicted
+     *            before they are needed again.
+     * @param spillDirectory
+     *            existing directory where to store datasets evicted from
+     *            memory, or null to only cache them in memory.
+     */
+    public CachingDcatFactory(DcatFactory delegate, int maxSize, @Nullable Path spillDirectory) {
+        super();
+        checkNotNull(delegate);
+        checkArgument(!(delegate instanceof CachingDcatFactory), "Delegate factory is already caching!");
+        checkArgument(maxSize > 0, "Cache size must be > 0 ! Found instead %s", maxSize);
+        if (spillDirectory != null) {
+            checkArgument(Files.isDirectory(spillDirectory), "Spill directory %s doesn't exist!", spillDirectory);
+        }
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.spillDirectory = spillDirectory;
+        // a single segment, so eviction is exactly least recently used: with
+        // more segments a catalog as big as maxSize wouldn't fit in memory
+        // and each regeneration would evict datasets about to be converted
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                                                           .concurrencyLevel(1)
+                                                           .maximumSize(maxSize);
+        if (spillDirectory == null) {
+            this.cache = builder.build();
+        } else {
+            this.cache = builder.removalListener(new RemovalListener<Key, DcatDataset>() {
+                @Override
+                public void onRemoval(RemovalNotification<Key, DcatDataset> notification) {
+                    if (notification.wasEvicted()) {
+                        writeSpill(notification.getKey(), notification.getValue());
+                    }
+                }
+            })
+                                .build();
+        }
+        this.objectMapper = new ObjectMapper();
+        TraceProvModule.registerModulesInto(this.objectMapper);
+        this.objectMapper.registerModule(new SimpleModule("jackan-dcat-cache").addDeserializer(Dict.class,
+                new DictDeserializer()));
+        this.datasetReader = objectMapper.reader(DcatDataset.class);
+        if (spillDirectory != null) {
+            loadSpilled();
+        }
+    }
+
+    /**
+     * Lists the datasets in the spill directory
+     *
+     * @throws JackanException
+     *             if the directory can't be read
+     */
+    private void loadSpilled() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDirectory, "*" + SPILL_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName()
+                                  .toString();
+                int i = name.indexOf(SPILL_SEPARATOR);
+                if (i > 0) {
+                    spilled.put(name.substring(0, i), name);
+                }
+            }
+        } catch (IOException ex) {
+            throw new JackanException("Error while listing cached dcat datasets in " + spillDirectory, ex);
+        }
+    }
+
+    /**
+     * Returns the dataset cached for given CKAN dataset if it didn't change
+     * since it was cached, otherwise converts it with the wrapped factory and
+     * caches the result.
+     */
+    @Override
+    public DcatDataset makeDataset(CkanDataset dataset, String catalogUrl, Locale locale) {
+        checkNotNull(dataset, "invalid ckan dataset");
+        checkNotNull(catalogUrl, "invalid dcat dataset catalog URL");
+        checkNotNull(locale, "invalid dcat dataset locale");
+
+        if (dataset.getId() == null || dataset.getMetadataModified() == null) {
+            misses.incrementAndGet();
+            return delegate.makeDataset(dataset, catalogUrl, locale);
+        }
+
+        Key key = new Key(dataset.getId(), dataset.getMetadataModified(), locale, catalogUrl, delegate.getClass(),
+                profileFingerprint());
+        DcatDataset ret = cache.getIfPresent(key);
+        if (ret != null) {
+            hits.incrementAndGet();
+            return ret;
+        }
+
+        if (spillDirectory != null) {
+            String identity = spillIdentity(key);
+            String name = spillName(identity, key);
+            ret = name.equals(spilled.get(identity)) ? readSpill(key, identity, name) : null;
+            if (ret != null) {
+                diskHits.incrementAndGet();
+                cache.put(key, ret);
+                return ret;
+            }
+        }
+
+        misses.incrementAndGet();
+        ret = delegate.makeDataset(dataset, catalogUrl, locale);
+        cache.put(key, ret);
+        return ret;
+    }
+
+    /**
+     * Returns a hash of the fields of the mapping profile of the wrapped
+     * factory, computed again only when the profile is replaced. The profile
+     * name is left out, as it doesn't affect conversions.
+     */
+    private String profileFingerprint() {
+        DcatMappingProfile profile = delegate.getMappingProfile();
+        Map.Entry<DcatMappingProfile, String> last = profileFingerprint;
+        if (last != null && last.getKey() == profile) {
+            return last.getValue();
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<DcatMappingProfile.Property, ImmutableList<String>> entry : profile.asMap()
+                                                                                          .entrySet()) {
+            sb.append(entry.getKey()
+                           .getJsonName())
+              .append('=');
+            Joiner.on(',')
+                  .appendTo(sb, entry.getValue())
+                  .append('\n');
+        }
+        String ret = Hashing.sha1()
+                            .hashString(sb, StandardCharsets.UTF_8)
+                            .toString();
+        profileFingerprint = Maps.immutableEntry(profile, ret);
+        return ret;
+    }
+
+    /**
+     * Returns a hash of all the fields of given key but the metadata modified
+     * timestamp, which is the same for all the files storing the dataset.
+     */
+    private static String spillIdentity(Key key) {
+        return Hashing.sha1()
+                      .hashString(Joiner.on('\n')
+                                        .join(key.factoryClass.getName(), key.profile, key.catalogUrl, key.id,
+                                                key.locale.toLanguageTag()),
+                              StandardCharsets.UTF_8)
+                      .toString();
+    }
+
+    /**
+     * Returns the name of the file where the dataset of given key is stored.
+     */
+    private static String spillName(String identity, Key key) {
+        return identity + SPILL_SEPARATOR + key.metadataModified.getTime() + '_' + key.metadataModified.getNanos()
+                + SPILL_SUFFIX;
+    }
+
+    /**
+     * Returns the stored dataset of given key, or null if it is missing or
+     * can't be read.
+     */
+    @Nullable
+    private DcatDataset readSpill(Key key, String identity, String name) {
+        Path file = spillDirectory.resolve(name);
+        // header fields are written before the dataset, which is bound
+        // straight from the parser without building a tree first
+        try (JsonParser parser = objectMapper.getFactory()
+                                             .createParser(Files.readAllBytes(file))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a json object");
+            }
+            Map<String, String> header = new HashMap();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("dataset".equals(field)) {
+                    if (!key.factoryClass.getName()
+                                         .equals(header.get("factory"))
+                            || !key.profile.equals(header.get("profile"))
+                            || !key.catalogUrl.equals(header.get("catalogUrl"))
+                            || !key.id.equals(header.get("id"))
+                            || !key.locale.toLanguageTag()
+                                          .equals(header.get("locale"))) {
+                        return null;
+                    }
+                    return datasetReader.readValue(parser);
+                }
+                header.put(field, parser.getValueAsString());
+                parser.skipChildren();
+            }
+            throw new IOException("Missing dataset");
+        } catch (NoSuchFileException ex) {
+            spilled.remove(identity, name);
+            return null;
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Couldn't read cached dcat dataset from " + file + ", will convert it again",
+                    ex);
+            return null;
+        }
+    }
+
+    /**
+     * Stores dataset of given key, replacing any dataset stored with the same
+     * id. Failures are only logged, as the dataset is still cached in memory.
+     */
+    private void writeSpill(Key key, DcatDataset dataset) {
+        String identity = spillIdentity(key);
+        String name = spillName(identity, key);
+        Path file = spillDirectory.resolve(name);
+        Path tmp = null;
+        try {
+            ObjectNode node = objectMapper.createObjectNode();
+            node.put("factory", key.factoryClass.getName());
+            node.put("profile", key.profile);
+            node.put("catalogUrl", key.catalogUrl);
+            node.put("id", key.id);
+            node.put("locale", key.locale.toLanguageTag());
+            node.put("metadataModified", CkanClient.formatTimestamp(key.metadataModified));
+            node.set("dataset", objectMapper.valueToTree(dataset));
+
+            tmp = Files.createTempFile(spillDirectory, file.getFileName()
+                                                           .toString(),
+                    ".tmp");
+            Files.write(tmp, objectMapper.writeValueAsBytes(node));
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String stale = spilled.put(identity, name);
+            if (stale != null && !stale.equals(name)) {
+                Files.deleteIfExists(spillDirectory.resolve(stale));
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Couldn't store cached dcat dataset to " + file, ex);
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the datasets in memory to the spill directory, so a factory
+     * created with the same directory, i.e. after a restart, finds them. Does
+     * nothing if there is no spill directory.
+     */
+    public void flush() {
+        if (spillDirectory != null) {
+            for (Map.Entry<Key, DcatDataset> entry : cache.asMap()
+                                                         .entrySet()) {
+                writeSpill(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Removes all cached datasets, also from the spill directory. Statistics
+     * are kept.
+     *
+     * @throws JackanException
+     *             if stored datasets can't be deleted
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+        spilled.clear();
+        if (spillDirectory != null) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDirectory, "*" + SPILL_SUFFIX)) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+            } catch (IOException ex) {
+                throw new JackanException("Error while deleting cached dcat datasets in " + spillDirectory, ex);
+            }
+        }
+    }
+
+    /**
+     * Returns the wrapped factory
+     */
+    public DcatFactory getDelegate() {
+        return delegate;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the directory where converted datasets are stored, or null if
+     * they are only cached in memory
+     */
+    @Nullable
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Number of datasets found in memory
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Number of datasets read from the spill directory
+     */
+    public long getDiskHitCount() {
+        return diskHits.get();
+    }
+
+    /**
+     * Number of datasets converted by the wrapped factory
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Number of datasets kept in memory
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Not cached, delegates to the wrapped factory.
+     */
+    @Override
+    public ImmutableMap<Locale, DcatDataset> makeDatasetVariants(CkanDataset dataset, String catalogUrl,
+            Iterable<Locale> locales) {
+        return delegate.makeDatasetVariants(dataset, catalogUrl, locales);
+    }
+
+    /**
+     * Not cached, delegates to the wrapped factory.
+     */
+    @Override
+    public DcatDataset makeMultilingualDataset(CkanDataset dataset, String catalogUrl, Iterable<Locale> locales) {
+        return delegate.makeMultilingualDataset(dataset, catalogUrl, locales);
+    }
+
+    /**
+     * Not cached, delegates to the wrapped factory.
+     */
+    @Override
+    public DcatDistribution makeDistribution(CkanResource resource, String catalogURL, String datasetIdOrName,
+            String license, Locale locale) {
+        return delegate.makeDistribution(resource, catalogURL, datasetIdOrName, license, locale);
+    }
+
+    /**
+     * Returns the conversion report of the wrapped factory
+     */
+    @Override
+    public ConversionReport getConversionReport() {
+        return delegate.getConversionReport();
+    }
+
+    @Override
+    public void setConversionReport(ConversionReport conversionReport) {
+        delegate.setConversionReport(conversionReport);
+    }
+
+    /**
+     * Returns the mapping profile of the wrapped factory
+     */
+    @Override
+    public DcatMappingProfile getMappingProfile() {
+        return delegate.getMappingProfile();
+    }
+
+    /**
+     * Sets the mapping profile of the wrapped factory and
+     * {@link #invalidateAll() invalidates} all cached datasets. Datasets made
+     * with another profile are never returned anyway, this only frees the
+     * memory and disk they take.
+     */
+    @Override
+    public void setMappingProfile(DcatMappingProfile mappingProfile) {
+        delegate.setMappingProfile(mappingProfile);
+        invalidateAll();
+    }
+
+    @Override
+    public ParsedFieldCache getParsedFieldCache() {
+        return delegate.getParsedFieldCache();
+    }
+
+    @Override
+    public void setParsedFieldCache(ParsedFieldCache parsedFieldCache) {
+        delegate.setParsedFieldCache(parsedFieldCache);
+    }
+
+    @Override
+    @Nullable
+    public CanonicalPool getCanonicalPool() {
+        return delegate.getCanonicalPool();
+    }
+
+    @Override
+    public void setCanonicalPool(@Nullable CanonicalPool canonicalPool) {
+        delegate.setCanonicalPool(canonicalPool);
+    }
+
+    @Override
+    public String toString() {
+        return "CachingDcatFactory{" + "delegate=" + delegate.getClass()
+                                                             .getName()
+                + ", size=" + size() + ", hits=" + hits + ", diskHits=" + diskHits + ", misses=" + misses + '}';
+    }
+
+}
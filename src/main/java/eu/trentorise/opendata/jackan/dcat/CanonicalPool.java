@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan.dcat;
+
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Bounded pool of canonical immutable values, so that equal publishers,
+ * contact points and themes of the datasets made by a {@link DcatFactory} are
+ * all the same instance. Useful when holding whole DCAT catalogs in memory,
+ * where most datasets of an organization share the same publisher and themes.
+ *
+ * <p>
+ * When the pool is full least recently used values are evicted, and equal
+ * values made afterwards are not shared with the evicted ones anymore.
+ * </p>
+ *
+ * @see DcatFactory#setCanonicalPool(CanonicalPool)
+ * @since 0.4.3
+ */
+@ThreadSafe
+public final class CanonicalPool {
+
+    /**
+     * Default maximum number of pooled values
+     */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    private final int maxSize;
+
+    private final ConcurrentMap<Object, Object> pool;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a pool holding at most {@link #DEFAULT_MAX_SIZE} values
+     */
+    public CanonicalPool() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a pool holding at most maxSize values
+     */
+    public CanonicalPool(int maxSize) {
+        checkArgument(maxSize > 0, "Pool size must be > 0 ! Found instead %s", maxSize);
+        this.maxSize = maxSize;
+        this.pool = CacheBuilder.newBuilder()
+                                .maximumSize(maxSize)
+                                .build()
+                                .asMap();
+    }
+
+    /**
+     * Returns the pooled instance equal to given value, pooling the value
+     * itself if there is none. The value must be immutable and properly
+     * implement equals and hashCode.
+     */
+    public <T> T canonical(T value) {
+        checkNotNull(value);
+        Object ret = pool.putIfAbsent(value, value);
+        if (ret == null) {
+            misses.incrementAndGet();
+            return value;
+        } else {
+            hits.incrementAndGet();
+            return (T) ret;
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Number of values which were replaced by an equal pooled instance
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Number of values which were pooled
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Number of pooled values
+     */
+    public int size() {
+        return pool.size();
+    }
+
+    /**
+     * Removes all pooled values. Statistics are kept.
+     */
+    public void clear() {
+        pool.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "CanonicalPool{" + "size=" + size() + ", maxSize=" + maxSize + ", hits=" + hits + ", misses="
+                + misses + '}';
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan.dcat;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Collects the outcomes of the field extractions done by a {@link DcatFactory},
+ * aggregated across all the conversions of a batch. Counting is cheap enough
+ * to be always on, while per-record logging is only done at
+ * {@link java.util.logging.Level#FINE FINE} level.
+ *
+ * <p>
+ * To forward outcomes to some other metrics system, extend this class and
+ * override {@link #record(String, String, Outcome)} and
+ * {@link #recordConversion(String)}.
+ * </p>
+ *
+ * @see DcatFactory#setConversionReport(ConversionReport)
+ * @since 0.4.3
+ */
+@ThreadSafe
+public class ConversionReport {
+
+    /**
+     * Outcome of the extraction of a field
+     */
+    public enum Outcome {
+        FOUND, MISSING, ERROR
+    }
+
+    /**
+     * Item kind of dataset conversions
+     */
+    public static final String DATASET = "dataset";
+
+    /**
+     * Item kind of distribution conversions
+     */
+    public static final String DISTRIBUTION = "distribution";
+
+    private final ConcurrentMap<String, ConcurrentMap<String, AtomicLongArray>> counters = new ConcurrentHashMap();
+
+    private final ConcurrentMap<String, AtomicLong> conversions = new ConcurrentHashMap();
+
+    /**
+     * Counts an outcome of the extraction of an attribute
+     *
+     * @param kind
+     *            the kind of converted item, i.e. {@link #DATASET}
+     * @param attribute
+     *            i.e. "publisher"
+     */
+    public void record(String kind, String attribute, Outcome outcome) {
+        checkNotNull(outcome);
+        ConcurrentMap<String, AtomicLongArray> kindCounters = counters.get(kind);
+        if (kindCounters == null) {
+            counters.putIfAbsent(kind, new ConcurrentHashMap<String, AtomicLongArray>());
+            kindCounters = counters.get(kind);
+        }
+        AtomicLongArray attributeCounters = kindCounters.get(attribute);
+        if (attributeCounters == null) {
+            kindCounters.putIfAbsent(attribute, new AtomicLongArray(Outcome.values().length));
+            attributeCounters = kindCounters.get(attribute);
+        }
+        attributeCounters.incrementAndGet(outcome.ordinal());
+    }
+
+    /**
+     * Counts a completed conversion of an item of given kind, i.e.
+     * {@link #DATASET}
+     */
+    public void recordConversion(String kind) {
+        AtomicLong count = conversions.get(kind);
+        if (count == null) {
+            conversions.putIfAbsent(kind, new AtomicLong());
+            count = conversions.get(kind);
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of extractions of an attribute with given outcome
+     */
+    public long getCount(String kind, String attribute, Outcome outcome) {
+        Map<String, AtomicLongArray> kindCounters = counters.get(kind);
+        if (kindCounters == null) {
+            return 0;
+        }
+        AtomicLongArray attributeCounters = kindCounters.get(attribute);
+        return attributeCounters == null ? 0 : attributeCounters.get(outcome.ordinal());
+    }
+
+    /**
+     * Returns the number of converted items of given kind, i.e.
+     * {@link #DATASET}
+     */
+    public long getConversions(String kind) {
+        AtomicLong count = conversions.get(kind);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Returns all the counters as metrics sorted by name. Conversions are
+     * named like "dataset.count" and outcomes like "dataset.publisher.missing"
+     */
+    public ImmutableMap<String, Long> getMetrics() {
+        TreeMap<String, Long> ret = new TreeMap();
+        for (Map.Entry<String, AtomicLong> entry : conversions.entrySet()) {
+            ret.put(entry.getKey() + ".count", entry.getValue()
+                                                    .get());
+        }
+        for (Map.Entry<String, ConcurrentMap<String, AtomicLongArray>> kindEntry : counters.entrySet()) {
+            for (Map.Entry<String, AtomicLongArray> entry : kindEntry.getValue()
+                                                                     .entrySet()) {
+                for (Outcome outcome : Outcome.values()) {
+                    ret.put(kindEntry.getKey() + "." + entry.getKey() + "." + outcome.name()
+                                                                                   .toLowerCase(Locale.ROOT),
+                            entry.getValue()
+                                 .get(outcome.ordinal()));
+                }
+            }
+        }
+        return ImmutableMap.copyOf(ret);
+    }
+
+    /**
+     * Sets all counters to zero. Outcomes recorded by concurrent conversions
+     * while resetting may be lost.
+     */
+    public void reset() {
+        counters.clear();
+        conversions.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "ConversionReport" + getMetrics();
+    }
+
+}
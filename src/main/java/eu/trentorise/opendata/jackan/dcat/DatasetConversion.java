@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan.dcat;
+
+import eu.trentorise.opendata.jackan.model.CkanDataset;
+import eu.trentorise.opendata.traceprov.dcat.DcatDataset;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Outcome of the conversion of a single dataset in a batch.
+ *
+ * @see DcatFactory#makeDatasets(Iterable, String, java.util.Locale)
+ * @since 0.4.3
+ */
+@Immutable
+public final class DatasetConversion {
+
+    private final int index;
+    @Nullable
+    private final CkanDataset input;
+    @Nullable
+    private final DcatDataset dataset;
+    @Nullable
+    private final RuntimeException error;
+
+    DatasetConversion(int index, @Nullable CkanDataset input, @Nullable DcatDataset dataset,
+            @Nullable RuntimeException error) {
+        this.index = index;
+        this.input = input;
+        this.dataset = dataset;
+        this.error = error;
+    }
+
+    /**
+     * Position of the dataset in the input sequence
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * The converted CKAN dataset, which may be null if a null was found in
+     * input.
+     */
+    @Nullable
+    public CkanDataset getInput() {
+        return input;
+    }
+
+    /**
+     * The DCAT dataset, or null on failure
+     */
+    @Nullable
+    public DcatDataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * The error which stopped the conversion, or null on success
+     */
+    @Nullable
+    public RuntimeException getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return "DatasetConversion{" + "index=" + index + ", name=" + (input == null ? null : input.getName())
+                + ", error=" + (error == null ? null : error.getMessage()) + '}';
+    }
+
+}
@@ -0,0 +1,761 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan.dcat;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.io.CountingOutputStream;
+import eu.trentorise.opendata.commons.Dict;
+import eu.trentorise.opendata.commons.PeriodOfTime;
+import eu.trentorise.opendata.jackan.CkanClient;
+import eu.trentorise.opendata.jackan.CkanQuery;
+import eu.trentorise.opendata.jackan.SearchResults;
+import eu.trentorise.opendata.jackan.exceptions.JackanException;
+import eu.trentorise.opendata.jackan.model.CkanDataset;
+import eu.trentorise.opendata.traceprov.TraceProvModule;
+import eu.trentorise.opendata.traceprov.dcat.AFoafAgent;
+import eu.trentorise.opendata.traceprov.dcat.DcatDataset;
+import eu.trentorise.opendata.traceprov.dcat.DcatDistribution;
+import eu.trentorise.opendata.traceprov.dcat.FoafAgent;
+import eu.trentorise.opendata.traceprov.dcat.SkosConcept;
+import eu.trentorise.opendata.traceprov.dcat.VCard;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Exports a whole CKAN catalog as DCAT in constant memory: datasets are
+ * fetched from a {@link CkanClient} one search page at a time, converted with
+ * a {@link DcatFactory} and written incrementally, either as a JSON-LD
+ * document with the datasets in its '@graph' or as N-Triples, optionally
+ * gzipped.
+ *
+ * <p>
+ * Datasets whose conversion fails are skipped and counted in the returned
+ * {@link ExportReport}. Empty attributes are not written, and uris which are
+ * not absolute become blank nodes or plain literals.
+ * </p>
+ *
+ * @since 0.4.3
+ */
+public final class DcatExporter {
+
+    /**
+     * Output formats
+     */
+    public enum Format {
+        /**
+         * A single JSON-LD document with the datasets in its '@graph'
+         */
+        JSON_LD,
+        /**
+         * One triple per line
+         */
+        N_TRIPLES
+    }
+
+    /**
+     * Number of datasets per search call
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Logger LOG = Logger.getLogger(DcatExporter.class.getName());
+
+    private static final ImmutableMap<String, String> PREFIXES = ImmutableMap.<String, String> builder()
+            .put("dcat", "http://www.w3.org/ns/dcat#")
+            .put("dct", "http://purl.org/dc/terms/")
+            .put("foaf", "http://xmlns.com/foaf/0.1/")
+            .put("locn", "http://www.w3.org/ns/locn#")
+            .put("skos", "http://www.w3.org/2004/02/skos/core#")
+            .put("vcard", "http://www.w3.org/2006/vcard/ns#")
+            .put("xsd", "http://www.w3.org/2001/XMLSchema#")
+            .build();
+
+    private static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+
+    private static final String GEOJSON_TYPE = "https://www.iana.org/assignments/media-types/application/vnd.geo+json";
+
+    private static final DcatDataset EMPTY_DATASET = DcatDataset.of();
+
+    private static final PeriodOfTime UNKNOWN_PERIOD = PeriodOfTime.of();
+
+    private final CkanClient client;
+    private final DcatFactory factory;
+    private final ObjectMapper objectMapper;
+    private CkanQuery query = CkanQuery.filter();
+    private Locale locale = Locale.ROOT;
+    private Format format = Format.JSON_LD;
+    private boolean gzip = false;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    @Nullable
+    private Executor executor;
+    private int parallelism = 1;
+
+    /**
+     * @param client
+     *            the client to fetch datasets with. Its catalog url is used as
+     *            DCAT catalog url.
+     * @param factory
+     *            the factory to convert datasets with
+     */
+    public DcatExporter(CkanClient client, DcatFactory factory) {
+        checkNotNull(client);
+        checkNotNull(factory);
+        this.client = client;
+        this.factory = factory;
+        this.objectMapper = new ObjectMapper();
+        TraceProvModule.registerModulesInto(objectMapper);
+    }
+
+    /**
+     * Sets the query selecting the datasets to export, by default all the
+     * public datasets of the catalog. The query is copied, and its sort is
+     * ignored as datasets are fetched by ascending id.
+     */
+    public DcatExporter setQuery(CkanQuery query) {
+        checkNotNull(query);
+        this.query = CkanQuery.copyOf(query);
+        return this;
+    }
+
+    /**
+     * Sets the locale of metadata text, by default {@link Locale#ROOT}
+     */
+    public DcatExporter setLocale(Locale locale) {
+        checkNotNull(locale);
+        this.locale = locale;
+        return this;
+    }
+
+    /**
+     * Sets the output format, by default {@link Format#JSON_LD}
+     */
+    public DcatExporter setFormat(Format format) {
+        checkNotNull(format);
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * If true output is gzipped. Default is false.
+     */
+    public DcatExporter setGzip(boolean gzip) {
+        this.gzip = gzip;
+        return this;
+    }
+
+    /**
+     * Sets the number of datasets fetched and converted at once, by default
+     * {@link #DEFAULT_PAGE_SIZE}
+     */
+    public DcatExporter setPageSize(int pageSize) {
+        checkArgument(pageSize > 0, "Page size must be > 0, found instead %s", pageSize);
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Converts the datasets of each page in parallel on given executor, see
+     * {@link DcatFactory#makeDatasets(Iterable, String, Locale, Executor, int, boolean)}.
+     * If executor is null (the default), datasets are converted in the
+     * exporting thread.
+     */
+    public DcatExporter setExecutor(@Nullable Executor executor, int parallelism) {
+        checkArgument(parallelism > 0, "Parallelism must be > 0, found instead %s", parallelism);
+        this.executor = executor;
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Exports the catalog to target file, which is overwritten if it already
+     * exists.
+     *
+     * @throws JackanException
+     *             on error
+     */
+    public ExportReport export(Path target) {
+        return exportPages(catalogPages(), target);
+    }
+
+    /**
+     * Exports the catalog to given stream, which is not closed.
+     *
+     * @throws JackanException
+     *             on error
+     */
+    public ExportReport export(OutputStream out) {
+        return exportPages(catalogPages(), out);
+    }
+
+    /**
+     * Exports given datasets instead of fetching them from the catalog. The
+     * stream is not closed.
+     *
+     * @throws JackanException
+     *             on error
+     */
+    public ExportReport export(Iterable<CkanDataset> datasets, OutputStream out) {
+        checkNotNull(datasets);
+        return exportPages(Iterables.partition(datasets, pageSize), out);
+    }
+
+    /**
+     * Exports given datasets instead of fetching them from the catalog to
+     * target file, which is overwritten if it already exists.
+     *
+     * @throws JackanException
+     *             on error
+     */
+    public ExportReport export(Iterable<CkanDataset> datasets, Path target) {
+        checkNotNull(datasets);
+        return exportPages(Iterables.partition(datasets, pageSize), target);
+    }
+
+    /**
+     * Lazily fetches the datasets matching the query one page at a time. Pages
+     * are fetched by ascending id starting after the last id seen instead of
+     * by offset, so datasets created or deleted during a long export can't
+     * make other ones be skipped or exported twice.
+     */
+    private Iterable<List<CkanDataset>> catalogPages() {
+        return new Iterable<List<CkanDataset>>() {
+            @Override
+            public Iterator<List<CkanDataset>> iterator() {
+                return new AbstractIterator<List<CkanDataset>>() {
+
+                    @Nullable
+                    private String lastId = null;
+                    private boolean lastPage = false;
+
+                    @Override
+                    protected List<CkanDataset> computeNext() {
+                        if (lastPage) {
+                            return endOfData();
+                        }
+                        CkanQuery pageQuery = CkanQuery.copyOf(query);
+                        pageQuery.getSort()
+                                 .clear();
+                        pageQuery.sortBy("id", true);
+                        if (lastId != null) {
+                            pageQuery.byRawFilter("id:{" + CkanQuery.phrase(lastId) + " TO *]");
+                        }
+                        SearchResults<CkanDataset> page = client.searchDatasets(pageQuery, pageSize, 0);
+                        if (page.getResults()
+                                .isEmpty()) {
+                            return endOfData();
+                        }
+                        lastId = page.getResults()
+                                     .get(page.getResults()
+                                              .size() - 1)
+                                     .getId();
+                        lastPage = page.getResults()
+                                       .size() < pageSize;
+                        return page.getResults();
+                    }
+                };
+            }
+        };
+    }
+
+    private ExportReport exportPages(Iterable<? extends List<CkanDataset>> pages, Path target) {
+        checkNotNull(target);
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return exportPages(pages, Channels.newOutputStream(channel));
+        } catch (IOException ex) {
+            throw new JackanException("Error while exporting DCAT catalog to " + target, ex);
+        }
+    }
+
+    private ExportReport exportPages(Iterable<? extends List<CkanDataset>> pages, OutputStream out) {
+        checkNotNull(out);
+        long start = System.nanoTime();
+        CountingOutputStream counting = new CountingOutputStream(out);
+        long exported = 0;
+        long failed = 0;
+        try {
+            GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(counting, BUFFER_SIZE) : null;
+            OutputStream stream = new BufferedOutputStream(gzipStream == null ? counting : gzipStream, BUFFER_SIZE);
+            RdfWriter writer = format == Format.JSON_LD ? new JsonLdWriter(stream) : new NTriplesWriter(stream);
+            writer.start();
+            for (List<CkanDataset> page : pages) {
+                for (DatasetConversion conversion : convert(page)) {
+                    if (conversion.isSuccess()) {
+                        writeDataset(writer, conversion.getDataset());
+                        exported++;
+                    } else {
+                        failed++;
+                        LOG.log(Level.FINE, "Skipping dataset " + conversion, conversion.getError());
+                    }
+                }
+                if (LOG.isLoggable(Level.FINE)) {
+                    LOG.fine(String.format("Exported %d datasets, %.1f datasets/s", exported,
+                            exported * 1e9 / (System.nanoTime() - start)));
+                }
+            }
+            writer.end();
+            stream.flush();
+            if (gzipStream != null) {
+                gzipStream.finish();
+            }
+            counting.flush();
+        } catch (IOException ex) {
+            throw new JackanException("Error while exporting DCAT catalog!", ex);
+        }
+        return new ExportReport(exported, failed, counting.getCount(), System.nanoTime() - start);
+    }
+
+    private List<DatasetConversion> convert(List<CkanDataset> page) {
+        String catalogUrl = client.getCatalogUrl();
+        if (executor != null) {
+            return factory.makeDatasets(page, catalogUrl, locale, executor, parallelism, true);
+        }
+        List<DatasetConversion> ret = new ArrayList(page.size());
+        for (int i = 0; i < page.size(); i++) {
+            CkanDataset dataset = page.get(i);
+            try {
+                ret.add(new DatasetConversion(i, dataset, factory.makeDataset(dataset, catalogUrl, locale), null));
+            } catch (RuntimeException ex) {
+                ret.add(new DatasetConversion(i, dataset, null, ex));
+            }
+        }
+        return ret;
+    }
+
+    private void writeDataset(RdfWriter w, DcatDataset dataset) throws IOException {
+        w.startNode(dataset.getUri(), "dcat:Dataset");
+        writeDict(w, "dct:title", dataset.getTitle());
+        writeDict(w, "dct:description", dataset.getDescription());
+        writeLiteral(w, "dct:identifier", dataset.getIdentifier());
+        writeLiteral(w, "dct:issued", dataset.getIssued());
+        writeLiteral(w, "dct:modified", dataset.getModified());
+        writeLiteral(w, "dct:accrualPeriodicity", dataset.getAccrualPeriodicity());
+        writeIri(w, "dcat:landingPage", dataset.getLandingPage());
+
+        if (!dataset.getKeywords()
+                    .isEmpty()) {
+            w.startProperty("dcat:keyword");
+            for (String keyword : dataset.getKeywords()) {
+                w.literal(keyword, null, null);
+            }
+            w.endProperty();
+        }
+
+        if (!dataset.getLanguages()
+                    .isEmpty()) {
+            w.startProperty("dct:language");
+            for (Locale language : dataset.getLanguages()) {
+                w.literal(language.toLanguageTag(), null, null);
+            }
+            w.endProperty();
+        }
+
+        AFoafAgent publisher = dataset.getPublisher();
+        if (!FoafAgent.of()
+                      .equals(publisher)) {
+            w.startProperty("dct:publisher");
+            w.startNode(publisher.getUri(), "foaf:Agent");
+            writeDict(w, "foaf:name", publisher.getName());
+            writeIri(w, "foaf:mbox", mailto(publisher.getMbox()));
+            writeIri(w, "foaf:homepage", publisher.getHomepage());
+            w.endNode();
+            w.endProperty();
+        }
+
+        VCard contactPoint = dataset.getContactPoint();
+        if (!VCard.of()
+                  .equals(contactPoint)) {
+            w.startProperty("dcat:contactPoint");
+            w.startNode(contactPoint.getUri(), "vcard:Kind");
+            writeLiteral(w, "vcard:fn", contactPoint.getFn());
+            writeIri(w, "vcard:hasEmail", mailto(contactPoint.getEmail()));
+            w.endNode();
+            w.endProperty();
+        }
+
+        if (!dataset.getThemes()
+                    .isEmpty()) {
+            w.startProperty("dcat:theme");
+            for (SkosConcept theme : dataset.getThemes()) {
+                w.startNode(theme.getUri(), "skos:Concept");
+                writeDict(w, "skos:prefLabel", theme.getPrefLabel());
+                w.endNode();
+            }
+            w.endProperty();
+        }
+
+        if (!EMPTY_DATASET.getSpatial()
+                          .equals(dataset.getSpatial())) {
+            w.startProperty("dct:spatial");
+            w.startNode("", "dct:Location");
+            w.startProperty("locn:geometry");
+            w.literal(objectMapper.writeValueAsString(dataset.getSpatial()), null, GEOJSON_TYPE);
+            w.endProperty();
+            w.endNode();
+            w.endProperty();
+        }
+
+        PeriodOfTime temporal = dataset.getTemporal();
+        if (isKnownDate(temporal.getStartDate()) || isKnownDate(temporal.getEndDate())) {
+            w.startProperty("dct:temporal");
+            w.startNode("", "dct:PeriodOfTime");
+            if (isKnownDate(temporal.getStartDate())) {
+                writeLiteral(w, "dcat:startDate", temporal.getStartDate());
+            }
+            if (isKnownDate(temporal.getEndDate())) {
+                writeLiteral(w, "dcat:endDate", temporal.getEndDate());
+            }
+            w.endNode();
+            w.endProperty();
+        }
+
+        if (!dataset.getDistributions()
+                    .isEmpty()) {
+            w.startProperty("dcat:distribution");
+            for (DcatDistribution distribution : dataset.getDistributions()) {
+                writeDistribution(w, distribution);
+            }
+            w.endProperty();
+        }
+        w.endNode();
+    }
+
+    private static void writeDistribution(RdfWriter w, DcatDistribution distribution) throws IOException {
+        w.startNode(distribution.getUri(), "dcat:Distribution");
+        writeDict(w, "dct:title", distribution.getTitle());
+        writeDict(w, "dct:description", distribution.getDescription());
+        writeIri(w, "dcat:accessURL", distribution.getAccessURL());
+        writeIri(w, "dcat:downloadURL", distribution.getDownloadURL());
+        writeLiteral(w, "dct:format", distribution.getFormat());
+        writeLiteral(w, "dcat:mediaType", distribution.getMediaType());
+        writeIri(w, "dct:license", distribution.getLicense());
+        writeLiteral(w, "dct:rights", distribution.getRights());
+        writeLiteral(w, "dct:issued", distribution.getIssued());
+        writeLiteral(w, "dct:modified", distribution.getModified());
+        if (distribution.getByteSize() > 0) {
+            w.startProperty("dcat:byteSize");
+            w.literal(Integer.toString(distribution.getByteSize()), null, "xsd:decimal");
+            w.endProperty();
+        }
+        w.endNode();
+    }
+
+    private static boolean isKnownDate(String date) {
+        return !date.isEmpty() && !date.equals(UNKNOWN_PERIOD.getStartDate());
+    }
+
+    private static String mailto(String email) {
+        return email.isEmpty() || email.startsWith("mailto:") ? email : "mailto:" + email;
+    }
+
+    /**
+     * Writes the non empty strings of a dict as literals tagged with their
+     * language
+     */
+    private static void writeDict(RdfWriter w, String term, Dict dict) throws IOException {
+        boolean started = false;
+        for (Locale loc : dict.locales()) {
+            for (String s : dict.get(loc)) {
+                if (!s.isEmpty()) {
+                    if (!started) {
+                        w.startProperty(term);
+                        started = true;
+                    }
+                    w.literal(s, Locale.ROOT.equals(loc) ? null : loc, null);
+                }
+            }
+        }
+        if (started) {
+            w.endProperty();
+        }
+    }
+
+    private static void writeLiteral(RdfWriter w, String term, String value) throws IOException {
+        if (!value.isEmpty()) {
+            w.startProperty(term);
+            w.literal(value, null, null);
+            w.endProperty();
+        }
+    }
+
+    /**
+     * Writes value as iri if absolute, otherwise as a plain literal
+     */
+    private static void writeIri(RdfWriter w, String term, String value) throws IOException {
+        if (!value.isEmpty()) {
+            w.startProperty(term);
+            if (isAbsoluteIri(value)) {
+                w.iri(value);
+            } else {
+                w.literal(value, null, null);
+            }
+            w.endProperty();
+        }
+    }
+
+    private static boolean isAbsoluteIri(String s) {
+        if (s.isEmpty()) {
+            return false;
+        }
+        try {
+            return new URI(s).isAbsolute();
+        } catch (URISyntaxException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Expands a prefixed term like "dct:title" to a full iri
+     */
+    private static String expand(String term) {
+        int i = term.indexOf(':');
+        String namespace = PREFIXES.get(term.substring(0, i));
+        return namespace == null ? term : namespace + term.substring(i + 1);
+    }
+
+    /**
+     * Receives the nodes and properties of an RDF graph in depth-first order.
+     * Values of the same property are given together.
+     */
+    private abstract static class RdfWriter {
+
+        abstract void start() throws IOException;
+
+        abstract void end() throws IOException;
+
+        /**
+         * Starts a node, at top level or as a value of the current property
+         *
+         * @param iri
+         *            if not absolute, the node is blank
+         * @param type
+         *            a prefixed term, i.e. "dcat:Dataset"
+         */
+        abstract void startNode(String iri, String type) throws IOException;
+
+        abstract void endNode() throws IOException;
+
+        abstract void startProperty(String term) throws IOException;
+
+        abstract void endProperty() throws IOException;
+
+        abstract void iri(String iri) throws IOException;
+
+        abstract void literal(String value, @Nullable Locale language, @Nullable String datatype)
+                throws IOException;
+    }
+
+    private static final class JsonLdWriter extends RdfWriter {
+
+        private final JsonGenerator gen;
+
+        private JsonLdWriter(OutputStream out) throws IOException {
+            this.gen = new JsonFactory().createGenerator(out, JsonEncoding.UTF8);
+        }
+
+        @Override
+        void start() throws IOException {
+            gen.writeStartObject();
+            gen.writeObjectFieldStart("@context");
+            for (Map.Entry<String, String> prefix : PREFIXES.entrySet()) {
+                gen.writeStringField(prefix.getKey(), prefix.getValue());
+            }
+            gen.writeEndObject();
+            gen.writeArrayFieldStart("@graph");
+        }
+
+        @Override
+        void end() throws IOException {
+            gen.writeEndArray();
+            gen.writeEndObject();
+            gen.flush();
+        }
+
+        @Override
+        void startNode(String iri, String type) throws IOException {
+            gen.writeStartObject();
+            if (isAbsoluteIri(iri)) {
+                gen.writeStringField("@id", iri);
+            }
+            gen.writeStringField("@type", type);
+        }
+
+        @Override
+        void endNode() throws IOException {
+            gen.writeEndObject();
+        }
+
+        @Override
+        void startProperty(String term) throws IOException {
+            gen.writeArrayFieldStart(term);
+        }
+
+        @Override
+        void endProperty() throws IOException {
+            gen.writeEndArray();
+        }
+
+        @Override
+        void iri(String iri) throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField("@id", iri);
+            gen.writeEndObject();
+        }
+
+        @Override
+        void literal(String value, @Nullable Locale language, @Nullable String datatype) throws IOException {
+            if (language == null && datatype == null) {
+                gen.writeString(value);
+                return;
+            }
+            gen.writeStartObject();
+            gen.writeStringField("@value", value);
+            if (language != null) {
+                gen.writeStringField("@language", language.toLanguageTag());
+            } else {
+                gen.writeStringField("@type", datatype);
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    private static final class NTriplesWriter extends RdfWriter {
+
+        private final Writer out;
+        private final ArrayDeque<String> subjects = new ArrayDeque();
+        private final ArrayDeque<String> predicates = new ArrayDeque();
+        private long blankNodes = 0;
+
+        private NTriplesWriter(OutputStream out) {
+            this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        }
+
+        private void triple(String subject, String predicate, String object) throws IOException {
+            out.write(subject);
+            out.write(' ');
+            out.write(predicate);
+            out.write(' ');
+            out.write(object);
+            out.write(" .\n");
+        }
+
+        @Override
+        void start() {
+        }
+
+        @Override
+        void end() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        void startNode(String iri, String type) throws IOException {
+            String node = isAbsoluteIri(iri) ? "<" + iri + ">" : "_:b" + (++blankNodes);
+            if (!subjects.isEmpty()) {
+                triple(subjects.peek(), predicates.peek(), node);
+            }
+            subjects.push(node);
+            triple(node, "<" + RDF_TYPE + ">", "<" + expand(type) + ">");
+        }
+
+        @Override
+        void endNode() {
+            subjects.pop();
+        }
+
+        @Override
+        void startProperty(String term) {
+            predicates.push("<" + expand(term) + ">");
+        }
+
+        @Override
+        void endProperty() {
+            predicates.pop();
+        }
+
+        @Override
+        void iri(String iri) throws IOException {
+            triple(subjects.peek(), predicates.peek(), "<" + iri + ">");
+        }
+
+        @Override
+        void literal(String value, @Nullable Locale language, @Nullable String datatype) throws IOException {
+            StringBuilder sb = new StringBuilder(value.length() + 16);
+            sb.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                default:
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+            if (language != null) {
+                sb.append('@')
+                  .append(language.toLanguageTag());
+            } else if (datatype != null) {
+                sb.append("^^<")
+                  .append(expand(datatype))
+                  .append('>');
+            }
+            triple(subjects.peek(), predicates.peek(), sb.toString());
+        }
+    }
+
+}
@@ -18,14 +18,20 @@ package eu.trentorise.opendata.jackan.dcat;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import eu.trentorise.opendata.jackan.CkanClient;
+import eu.trentorise.opendata.jackan.dcat.ConversionReport.Outcome;
+import eu.trentorise.opendata.jackan.dcat.DcatMappingProfile.Property;
 import eu.trentorise.opendata.jackan.model.CkanResource;
 import eu.trentorise.opendata.commons.Dict;
 import eu.trentorise.opendata.traceprov.dcat.DcatDistribution;
 import java.util.Locale;
 import java.util.logging.Level;
 import com.google.common.annotations.Beta;
+import com.google.common.base.Optional;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import eu.trentorise.opendata.commons.TodUtils;
 import eu.trentorise.opendata.commons.PeriodOfTime;
 
@@ -34,6 +40,7 @@ import static eu.trentorise.opendata.commons.TodUtils.isNotEmpty;
 import eu.trentorise.opendata.jackan.exceptions.JackanException;
 import eu.trentorise.opendata.jackan.exceptions.JackanNotFoundException;
 import eu.trentorise.opendata.jackan.model.CkanDataset;
+import eu.trentorise.opendata.jackan.model.CkanPair;
 import eu.trentorise.opendata.jackan.model.CkanTag;
 import eu.trentorise.opendata.traceprov.TraceProvModule;
 import eu.trentorise.opendata.traceprov.dcat.DcatDataset;
@@ -43,9 +50,27 @@ import eu.trentorise.opendata.traceprov.dcat.SkosConceptScheme;
 import eu.trentorise.opendata.traceprov.dcat.VCard;
 import eu.trentorise.opendata.traceprov.geojson.Feature;
 import eu.trentorise.opendata.traceprov.geojson.GeoJson;
+import java.lang.reflect.Method;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
 
@@ -63,6 +88,29 @@ import javax.annotation.Nullable;
  * {@link GreedyDcatFactory} or extend this class and override the extract*
  * and/or postProcess* methods.
  *
+ * <p>
+ * Internally the factory looks up fields with find* methods, which return an
+ * absent value for missing fields instead of throwing
+ * {@link JackanNotFoundException}, as sparse catalogs would otherwise throw
+ * dozens of exceptions per dataset. When a subclass overrides an extract*
+ * method the factory calls it in place of the matching find* method, and when
+ * it overrides one of the extractField* methods all the extractors go through
+ * them.
+ * </p>
+ *
+ * <p>
+ * The CKAN fields searched for each DCAT property can be configured with a
+ * {@link DcatMappingProfile}. Outcomes of field extractions are counted in a {@link ConversionReport},
+ * while per-record messages are only logged at FINE level.
+ * </p>
+ *
+ * <p>
+ * Once configured, a factory can be shared among threads: the object mapper is
+ * only used for reading, conversion state is kept per thread and the report is
+ * thread safe. See {@link #makeDatasets(Iterable, String, Locale)} for
+ * parallel conversions.
+ * </p>
+ *
  * @author David Leoni
  * @since 0.4.1
  */
@@ -74,9 +122,68 @@ public class DcatFactory {
 	protected static final String URI_FIELD = "uri";
 	protected static final String TITLE = "title";
 
-	private Logger logger;
+	private static final TypeReference<List<Locale>> LOCALE_LIST = new TypeReference<List<Locale>>() {
+	};
+
+	private static final TypeReference<List<String>> STRING_LIST = new TypeReference<List<String>>() {
+	};
+
+	/**
+	 * Signatures of the extract* methods overridden by each factory class, see
+	 * {@link #findOverriddenExtractors(Class)}
+	 */
+	private static final ConcurrentMap<Class<?>, ImmutableSet<String>> OVERRIDDEN_EXTRACTORS = new ConcurrentHashMap();
+
+	private volatile Logger logger;
+
+	private volatile ObjectMapper objectMapper;
+
+	private final ImmutableSet<String> overriddenExtractors;
+
+	private final boolean fieldExtractorsOverridden;
+
+	/**
+	 * Index of the string fields of the dataset each thread is converting, see
+	 * {@link #makeDataset(CkanDataset, String, Locale)}
+	 */
+	private final ThreadLocal<DatasetFields> currentFields = new ThreadLocal();
+
+	private volatile ConversionReport conversionReport = new ConversionReport();
+
+	private volatile DcatMappingProfile mappingProfile = DcatMappingProfile.of();
+
+	private volatile ParsedFieldCache parsedFieldCache = new ParsedFieldCache();
+
+	@Nullable
+	private volatile CanonicalPool canonicalPool;
+
+	private final AtomicBoolean experimentalWarned = new AtomicBoolean();
+
+	/**
+	 * The merged 'others' and 'extras' string fields of a dataset
+	 */
+	private static final class DatasetFields {
+
+		private final CkanDataset dataset;
+		private final Map<String, String> fields;
 
-	private ObjectMapper objectMapper;
+		private DatasetFields(CkanDataset dataset) {
+			this.dataset = dataset;
+			this.fields = new HashMap();
+			if (dataset.getExtras() != null) {
+				for (CkanPair pair : dataset.getExtras()) {
+					fields.put(pair.getKey(), pair.getValue());
+				}
+			}
+			if (dataset.getOthers() != null) {
+				for (Map.Entry<String, Object> entry : dataset.getOthers().entrySet()) {
+					if (entry.getValue() instanceof String) {
+						fields.put(entry.getKey(), (String) entry.getValue());
+					}
+				}
+			}
+		}
+	}
 
 	/**
 	 * Creates a factory with default configuration.
@@ -85,6 +192,64 @@ public class DcatFactory {
 		this.logger = Logger.getLogger(DcatFactory.class.getName());
 		this.objectMapper = new ObjectMapper();
 		TraceProvModule.registerModulesInto(this.objectMapper);
+
+		ImmutableSet<String> overridden = OVERRIDDEN_EXTRACTORS.get(getClass());
+		if (overridden == null) {
+			overridden = findOverriddenExtractors(getClass());
+			OVERRIDDEN_EXTRACTORS.put(getClass(), overridden);
+		}
+		this.overriddenExtractors = overridden;
+		boolean fieldsOverridden = false;
+		for (String signature : overridden) {
+			fieldsOverridden = fieldsOverridden || signature.startsWith("extractField");
+		}
+		this.fieldExtractorsOverridden = fieldsOverridden;
+	}
+
+	/**
+	 * Returns the signatures (i.e. "extractModified(CkanResource)") of the
+	 * extract* and makeDistribution methods of this class overridden by given
+	 * subclass.
+	 *
+	 * @since 0.4.3
+	 */
+	static ImmutableSet<String> findOverriddenExtractors(Class<?> clazz) {
+		Set<String> ret = new HashSet();
+		for (Class<?> c = clazz; c != null && !DcatFactory.class.equals(c); c = c.getSuperclass()) {
+			for (Method method : c.getDeclaredMethods()) {
+				if ((method.getName().startsWith("extract") || method.getName().equals("makeDistribution"))
+						&& !method.isBridge() && !method.isSynthetic()) {
+					try {
+						DcatFactory.class.getDeclaredMethod(method.getName(), method.getParameterTypes());
+						ret.add(signature(method.getName(), method.getParameterTypes()));
+					} catch (NoSuchMethodException ex) {
+						// not an extractor of this class
+					}
+				}
+			}
+		}
+		return ImmutableSet.copyOf(ret);
+	}
+
+	private static String signature(String name, Class<?>[] parameterTypes) {
+		StringBuilder sb = new StringBuilder(name).append('(');
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(parameterTypes[i].getSimpleName());
+		}
+		return sb.append(')').toString();
+	}
+
+	/**
+	 * Returns true if the runtime class of this factory overrides the extract*
+	 * method with given signature, i.e. "extractModified(CkanResource)"
+	 *
+	 * @since 0.4.3
+	 */
+	private boolean isOverridden(String extractorSignature) {
+		return overriddenExtractors.contains(extractorSignature);
 	}
 
 	/**
@@ -101,6 +266,115 @@ public class DcatFactory {
 		this.logger = logger;
 	}
 
+	/**
+	 * Returns the collector of the outcomes of field extractions.
+	 *
+	 * @since 0.4.3
+	 */
+	public ConversionReport getConversionReport() {
+		return conversionReport;
+	}
+
+	/**
+	 * Sets the collector of the outcomes of field extractions, i.e. to share
+	 * one across several factories or to plug in a custom one.
+	 *
+	 * @since 0.4.3
+	 */
+	public void setConversionReport(ConversionReport conversionReport) {
+		checkNotNull(conversionReport);
+		this.conversionReport = conversionReport;
+	}
+
+	/**
+	 * Returns the profile telling in which CKAN fields to look for DCAT
+	 * properties. By default it is {@link DcatMappingProfile#of()}.
+	 *
+	 * @since 0.4.3
+	 */
+	public DcatMappingProfile getMappingProfile() {
+		return mappingProfile;
+	}
+
+	/**
+	 * Sets the profile telling in which CKAN fields to look for DCAT
+	 * properties, i.e. one loaded with
+	 * {@link DcatMappingProfile#fromJson(String)}
+	 *
+	 * @since 0.4.3
+	 */
+	public void setMappingProfile(DcatMappingProfile mappingProfile) {
+		checkNotNull(mappingProfile);
+		this.mappingProfile = mappingProfile;
+	}
+
+	/**
+	 * Returns the memo of values parsed from JSON in CKAN string fields.
+	 *
+	 * @since 0.4.3
+	 */
+	public ParsedFieldCache getParsedFieldCache() {
+		return parsedFieldCache;
+	}
+
+	/**
+	 * Sets the memo of values parsed from JSON in CKAN string fields, which
+	 * may be shared among factories with the same object mapper. To disable
+	 * memoization, pass a cache with zero size.
+	 *
+	 * @since 0.4.3
+	 */
+	public void setParsedFieldCache(ParsedFieldCache parsedFieldCache) {
+		checkNotNull(parsedFieldCache);
+		this.parsedFieldCache = parsedFieldCache;
+	}
+
+	/**
+	 * Returns the pool of shared publishers, contact points and themes, or
+	 * null if canonicalization is disabled (the default).
+	 *
+	 * @since 0.4.3
+	 */
+	@Nullable
+	public CanonicalPool getCanonicalPool() {
+		return canonicalPool;
+	}
+
+	/**
+	 * Makes the datasets created by this factory share equal publishers,
+	 * contact points and themes taken from given pool, which may also be
+	 * shared among factories. Pass null to disable canonicalization.
+	 *
+	 * @since 0.4.3
+	 */
+	public void setCanonicalPool(@Nullable CanonicalPool canonicalPool) {
+		this.canonicalPool = canonicalPool;
+	}
+
+	/**
+	 * Returns the instance of the {@link #getCanonicalPool() canonical pool}
+	 * equal to value, or value itself if there is no pool.
+	 */
+	private <T> T canonical(T value) {
+		CanonicalPool pool = canonicalPool;
+		return pool == null ? value : pool.canonical(value);
+	}
+
+	/**
+	 * @see #canonical(Object)
+	 */
+	private List<SkosConcept> canonicalThemes(List<SkosConcept> themes) {
+		CanonicalPool pool = canonicalPool;
+		if (pool == null) {
+			return themes;
+		}
+		List<SkosConcept> ret = new ArrayList(themes.size());
+		for (SkosConcept theme : themes) {
+			ret.add(theme == null ? null : pool.canonical(theme));
+		}
+		return ret;
+	}
+
 	/**
 	 * Returns internal object mapper
 	 */
@@ -115,6 +389,38 @@ public class DcatFactory {
 	protected void setObjectMapper(ObjectMapper objectMapper) {
 		this.objectMapper = objectMapper;
 		TraceProvModule.registerModulesInto(this.objectMapper);
+		parsedFieldCache.invalidateAll();
+	}
+
+	/**
+	 * Parses json with the object mapper. Lists of locales and strings are
+	 * memoized in the {@link #getParsedFieldCache() parsed field cache}, so
+	 * they are returned unmodifiable and shared: protected methods must hand
+	 * out {@link #mutableCopy(Object) copies} of them.
+	 */
+	private <T> T readJson(final String json, final TypeReference<T> toType) throws Exception {
+		if (toType != LOCALE_LIST && toType != STRING_LIST) {
+			return objectMapper.readValue(json, toType);
+		}
+		return parsedFieldCache.get(toType, json, new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				List<?> list = (List<?>) objectMapper.readValue(json, toType);
+				return list == null ? null : (T) Collections.unmodifiableList(new ArrayList(list));
+			}
+		});
+	}
+
+	/**
+	 * Returns a modifiable copy of lists returned by
+	 * {@link #readJson(String, TypeReference)}, so subclasses can edit
+	 * extracted values without touching the memoized ones.
+	 */
+	private static <T> T mutableCopy(T value) {
+		if (value instanceof List) {
+			return (T) new ArrayList((List) value);
+		}
+		return value;
 	}
 
 	/**
@@ -132,6 +438,18 @@ public class DcatFactory {
 		}
 	}
 
+	/**
+	 * Returns the value of given optional or throws JackanNotFoundException
+	 * with given message if it is absent.
+	 */
+	private static <T> T orNotFound(Optional<T> optional, String msg) {
+		if (optional.isPresent()) {
+			return optional.get();
+		} else {
+			throw new JackanNotFoundException(msg);
+		}
+	}
+
 	/**
 	 * i.e. "[\"ca\", \"en\", \"es\"]"
 	 *
@@ -141,14 +459,20 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected List<Locale> extractLanguages(CkanDataset dataset) {
+		return orNotFound(findLanguages(dataset), "Couldn't find valid non-empty field language in CkanDataset");
+	}
 
-		String string = extractFieldAsNonEmptyString(dataset, "language");
-		try {
-			return objectMapper.readValue(string, new TypeReference<List<Locale>>() {
-			});
-		} catch (Exception ex) {
-			throw new JackanException("Couldn't deserialize locales: " + string, ex);
-		}
+	/**
+	 * Like {@link #extractLanguages(CkanDataset)}, but returns an absent value
+	 * when not found.
+	 *
+	 * @throws JackanException
+	 *             on generic error
+	 * @since 0.4.3
+	 */
+	protected Optional<List<Locale>> findLanguages(CkanDataset dataset) {
+		Optional<List<Locale>> ret = parsedField(dataset, Property.LANGUAGE, LOCALE_LIST);
+		return ret.isPresent() ? Optional.of(mutableCopy(ret.get())) : ret;
 	}
 
 	/**
@@ -170,6 +494,23 @@ public class DcatFactory {
 		}
 	}
 
+	/**
+	 * Like {@link #extractFieldAsNonEmptyString(CkanDataset, String)}, but
+	 * returns an absent value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findFieldAsNonEmptyString(CkanDataset dataset, String field) {
+		Optional<String> ret = findFieldAsString(dataset, field);
+		if (ret.isPresent()) {
+			String trimmed = ret.get().trim();
+			if (!trimmed.isEmpty()) {
+				return Optional.of(trimmed);
+			}
+		}
+		return Optional.absent();
+	}
+
 	/**
 	 * Like {@link #extractFieldAsString(CkanResource, String)} but also checks
 	 * for trimmed non-emptiness.
@@ -189,6 +530,23 @@ public class DcatFactory {
 		}
 	}
 
+	/**
+	 * Like {@link #extractFieldAsNonEmptyString(CkanResource, String)}, but
+	 * returns an absent value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findFieldAsNonEmptyString(CkanResource resource, String field) {
+		Optional<String> ret = findFieldAsString(resource, field);
+		if (ret.isPresent()) {
+			String trimmed = ret.get().trim();
+			if (!trimmed.isEmpty()) {
+				return Optional.of(trimmed);
+			}
+		}
+		return Optional.absent();
+	}
+
 	/**
 	 * Searches a field in {@link CkanDataset#getOthers() } and then in
 	 * {@link CkanDataset#getExtras() }. If search fails throws
@@ -200,9 +558,26 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected String extractFieldAsString(CkanDataset dataset, String field) {
+		return orNotFound(findFieldAsString(dataset, field), "Can't find string field " + field + "!");
+	}
+
+	/**
+	 * Like {@link #extractFieldAsString(CkanDataset, String)}, but returns an
+	 * absent value when not found. While the dataset is being converted by
+	 * {@link #makeDataset(CkanDataset, String, Locale) makeDataset} fields are
+	 * looked up in an index built once per conversion.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findFieldAsString(CkanDataset dataset, String field) {
 		checkNotNull(dataset);
 		checkNotEmpty(field, "Invalid field to search!");
 
+		DatasetFields indexed = currentFields.get();
+		if (indexed != null && indexed.dataset == dataset) {
+			return Optional.fromNullable(indexed.fields.get(field));
+		}
+
 		String candidateString = null;
 
 		if (dataset.getOthers() != null) {
@@ -216,10 +591,7 @@ public class DcatFactory {
 			candidateString = dataset.getExtrasAsHashMap().get(field);
 		}
 
-		if (candidateString == null) {
-			throw new JackanNotFoundException("Can't find string field " + field + "!");
-		}
-		return candidateString;
+		return Optional.fromNullable(candidateString);
 	}
 
 	/**
@@ -232,22 +604,26 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected String extractFieldAsString(CkanResource resource, String field) {
+		return orNotFound(findFieldAsString(resource, field), "Can't find string field " + field + "!");
+	}
+
+	/**
+	 * Like {@link #extractFieldAsString(CkanResource, String)}, but returns an
+	 * absent value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findFieldAsString(CkanResource resource, String field) {
 		checkNotNull(resource);
 		checkNotEmpty(field, "Invalid field to search!");
 
-		String candidateString = null;
-
 		if (resource.getOthers() != null) {
 			Object candidateObject = resource.getOthers().get(field);
 			if (candidateObject instanceof String) {
-				candidateString = (String) candidateObject;
+				return Optional.of((String) candidateObject);
 			}
 		}
-
-		if (candidateString == null) {
-			throw new JackanNotFoundException("Can't find string field " + field + "!");
-		}
-		return candidateString;
+		return Optional.absent();
 	}
 
 	/**
@@ -271,8 +647,12 @@ public class DcatFactory {
 		}
 
 		if (candidateObject == null && dataset.getExtras() != null) {
-			candidateObject = dataset.getExtrasAsHashMap().get(field);
-
+			DatasetFields indexed = currentFields.get();
+			if (indexed != null && indexed.dataset == dataset) {
+				candidateObject = indexed.fields.get(field);
+			} else {
+				candidateObject = dataset.getExtrasAsHashMap().get(field);
+			}
 		}
 
 		if (candidateObject == null) {
@@ -293,7 +673,36 @@ public class DcatFactory {
 	protected <T> T extractField(CkanDataset dataset, String field, TypeReference<T> toType) {
 		String json = extractFieldAsNonEmptyString(dataset, field);
 		try {
-			return objectMapper.readValue(json, toType);
+			return mutableCopy(readJson(json, toType));
+		} catch (Exception ex) {
+			throw new JackanException("Error while extracting field " + field + " into type " + toType.toString(), ex);
+		}
+	}
+
+	/**
+	 * Like {@link #extractField(CkanDataset, String, TypeReference)}, but
+	 * returns an absent value when not found.
+	 *
+	 * @throws JackanException
+	 *             on generic error
+	 * @since 0.4.3
+	 */
+	protected <T> Optional<T> findField(CkanDataset dataset, String field, TypeReference<T> toType) {
+		Optional<T> ret = sharedField(dataset, field, toType);
+		return ret.isPresent() ? Optional.of(mutableCopy(ret.get())) : ret;
+	}
+
+	/**
+	 * Like {@link #findField(CkanDataset, String, TypeReference)}, but
+	 * returns memoized lists as they are.
+	 */
+	private <T> Optional<T> sharedField(CkanDataset dataset, String field, TypeReference<T> toType) {
+		Optional<String> json = findFieldAsNonEmptyString(dataset, field);
+		if (!json.isPresent()) {
+			return Optional.absent();
+		}
+		try {
+			return Optional.fromNullable(readJson(json.get(), toType));
 		} catch (Exception ex) {
 			throw new JackanException("Error while extracting field " + field + " into type " + toType.toString(), ex);
 		}
@@ -317,6 +726,146 @@ public class DcatFactory {
 		}
 	}
 
+	/**
+	 * Looks up a trimmed non-empty dataset field for the find* methods, going
+	 * through {@link #extractFieldAsNonEmptyString(CkanDataset, String)} if a
+	 * subclass overrides the field extractors.
+	 */
+	private Optional<String> nonEmptyField(CkanDataset dataset, String field) {
+		if (fieldExtractorsOverridden) {
+			try {
+				return Optional.fromNullable(extractFieldAsNonEmptyString(dataset, field));
+			} catch (JackanNotFoundException ex) {
+				return Optional.absent();
+			}
+		}
+		return findFieldAsNonEmptyString(dataset, field);
+	}
+
+	/**
+	 * @see #nonEmptyField(CkanDataset, String)
+	 */
+	private Optional<String> field(CkanDataset dataset, String field) {
+		if (fieldExtractorsOverridden) {
+			try {
+				return Optional.fromNullable(extractFieldAsString(dataset, field));
+			} catch (JackanNotFoundException ex) {
+				return Optional.absent();
+			}
+		}
+		return findFieldAsString(dataset, field);
+	}
+
+	/**
+	 * @see #nonEmptyField(CkanDataset, String)
+	 */
+	private Optional<String> nonEmptyField(CkanResource resource, String field) {
+		if (fieldExtractorsOverridden) {
+			try {
+				return Optional.fromNullable(extractFieldAsNonEmptyString(resource, field));
+			} catch (JackanNotFoundException ex) {
+				return Optional.absent();
+			}
+		}
+		return findFieldAsNonEmptyString(resource, field);
+	}
+
+	/**
+	 * @see #nonEmptyField(CkanDataset, String)
+	 */
+	private Optional<String> field(CkanResource resource, String field) {
+		if (fieldExtractorsOverridden) {
+			try {
+				return Optional.fromNullable(extractFieldAsString(resource, field));
+			} catch (JackanNotFoundException ex) {
+				return Optional.absent();
+			}
+		}
+		return findFieldAsString(resource, field);
+	}
+
+	/**
+	 * @see #nonEmptyField(CkanDataset, String)
+	 */
+	private <T> Optional<T> parsedField(CkanDataset dataset, String field, TypeReference<T> toType) {
+		if (fieldExtractorsOverridden) {
+			try {
+				return Optional.fromNullable(extractField(dataset, field, toType));
+			} catch (JackanNotFoundException ex) {
+				return Optional.absent();
+			}
+		}
+		return sharedField(dataset, field, toType);
+	}
+
+	/**
+	 * Looks up the first trimmed non-empty dataset field of the
+	 * {@link #getMappingProfile() mapping profile} chain of given property.
+	 */
+	private Optional<String> nonEmptyField(CkanDataset dataset, Property property) {
+		for (String field : mappingProfile.getFields(property)) {
+			Optional<String> ret = nonEmptyField(dataset, field);
+			if (ret.isPresent()) {
+				return ret;
+			}
+		}
+		return Optional.absent();
+	}
+
+	/**
+	 * Looks up the first dataset field of the {@link #getMappingProfile()
+	 * mapping profile} chain of given property.
+	 */
+	private Optional<String> field(CkanDataset dataset, Property property) {
+		for (String field : mappingProfile.getFields(property)) {
+			Optional<String> ret = field(dataset, field);
+			if (ret.isPresent()) {
+				return ret;
+			}
+		}
+		return Optional.absent();
+	}
+
+	/**
+	 * @see #nonEmptyField(CkanDataset, Property)
+	 */
+	private Optional<String> nonEmptyField(CkanResource resource, Property property) {
+		for (String field : mappingProfile.getFields(property)) {
+			Optional<String> ret = nonEmptyField(resource, field);
+			if (ret.isPresent()) {
+				return ret;
+			}
+		}
+		return Optional.absent();
+	}
+
+	/**
+	 * @see #field(CkanDataset, Property)
+	 */
+	private Optional<String> field(CkanResource resource, Property property) {
+		for (String field : mappingProfile.getFields(property)) {
+			Optional<String> ret = field(resource, field);
+			if (ret.isPresent()) {
+				return ret;
+			}
+		}
+		return Optional.absent();
+	}
+
+	/**
+	 * Parses the first trimmed non-empty dataset field of the
+	 * {@link #getMappingProfile() mapping profile} chain of given property.
+	 */
+	private <T> Optional<T> parsedField(CkanDataset dataset, Property property, TypeReference<T> toType) {
+		for (String field : mappingProfile.getFields(property)) {
+			Optional<T> ret = parsedField(dataset, field, toType);
+			if (ret.isPresent()) {
+				return ret;
+			}
+		}
+		return Optional.absent();
+	}
+
 	/**
 	 * Formats CKAN timestamp according to ISO 8601. Differently from CKAN, it
 	 * adds a 'Z' for clarity.
@@ -327,7 +876,7 @@ public class DcatFactory {
 
 	/**
 	 * Returns a GeoJson made only with textual, possibly low-quality
-	 * information.
+	 * information, or an absent value if there is no text at all.
 	 *
 	 * @param name
 	 *            the name of the geometry, if not known use empty string
@@ -339,21 +888,22 @@ public class DcatFactory {
 	 *            the geometry in any format, could even be an unparseable json
 	 *            or xml dump
 	 */
-	private GeoJson calcGeoJson(String name, String description, String id, String spatialDump) {
+	private Optional<GeoJson> calcGeoJson(String name, String description, String id, String spatialDump) {
 		if (name.isEmpty() && description.isEmpty()) {
-			throw new JackanNotFoundException("Could not find valid dataset spatial field nor natural language name!");
+			return Optional.absent();
 		}
 		if (name.isEmpty() && !description.isEmpty()) {
-			return Feature.builder().setProperties(ImmutableMap.of("description", spatialDump)).setId(id).build();
+			return Optional.<GeoJson> of(Feature.builder().setProperties(ImmutableMap.of("description", spatialDump))
+					.setId(id).build());
 		}
 
-		logger.log(Level.INFO, "Putting found natural language name in Feature.properties['name']");
+		logger.log(Level.FINE, "Putting found natural language name in Feature.properties['name']");
 		if (!name.isEmpty() && description.isEmpty()) {
-			return Feature.ofName(name).withId(id);
+			return Optional.<GeoJson> of(Feature.ofName(name).withId(id));
 		}
 		if (!name.isEmpty() && !description.isEmpty()) {
-			return Feature.builder().setProperties(ImmutableMap.of("name", name, "description", spatialDump)).setId(id)
-					.build();
+			return Optional.<GeoJson> of(Feature.builder()
+					.setProperties(ImmutableMap.of("name", name, "description", spatialDump)).setId(id).build());
 		}
 		throw new JackanException(
 				"Internal error, reached a supposedly unreachable place while extracting spatial attribute from CkanDataset.");
@@ -366,6 +916,18 @@ public class DcatFactory {
 	 *             for other errors.
 	 */
 	protected GeoJson extractSpatial(CkanDataset dataset) {
+		return orNotFound(findSpatial(dataset), "Could not find valid dataset spatial field nor natural language name!");
+	}
+
+	/**
+	 * Like {@link #extractSpatial(CkanDataset)}, but returns an absent value
+	 * when not found.
+	 *
+	 * @throws JackanException
+	 *             for errors other than missing fields.
+	 * @since 0.4.3
+	 */
+	protected Optional<GeoJson> findSpatial(CkanDataset dataset) {
 
 		String name = "";
 		String description = "";
@@ -375,31 +937,39 @@ public class DcatFactory {
 		@Nullable
 		GeoJson geoJson = null;
 
-		try {
-			id = extractFieldAsNonEmptyString(dataset, "spatial_uri").trim();
-			logger.info("Found dataset 'spatial_uri' field, will set it to '@id' field of GeoJSON-LD");
-		} catch (JackanNotFoundException ex) {
-			logger.info("Couldn't find dataset 'spatial_uri' field");
+		Optional<String> candidateId = nonEmptyField(dataset, Property.SPATIAL_URI);
+		if (candidateId.isPresent()) {
+			id = candidateId.get();
+			logger.fine("Found dataset 'spatial_uri' field, will set it to '@id' field of GeoJSON-LD");
+		} else {
+			logger.fine("Couldn't find dataset 'spatial_uri' field");
 		}
 
-		try {
-			name = extractFieldAsNonEmptyString(dataset, "spatial_text").trim();
-		} catch (JackanNotFoundException ex) {
-			logger.info(
+		Optional<String> candidateName = nonEmptyField(dataset, Property.SPATIAL_TEXT);
+		if (candidateName.isPresent()) {
+			name = candidateName.get();
+		} else {
+			logger.fine(
 					"Couldn't find dataset 'spatial_text' field (should hold the natural language name of the place)");
 		}
 
-		try {
-			spatial = extractFieldAsNonEmptyString(dataset, "spatial");
-		} catch (JackanNotFoundException ex) {
-			logger.info("Could not find dataset 'spatial' field");
-
+		Optional<String> candidateSpatial = nonEmptyField(dataset, Property.SPATIAL);
+		if (candidateSpatial.isPresent()) {
+			spatial = candidateSpatial.get();
+		} else {
+			logger.fine("Could not find dataset 'spatial' field");
 		}
 		if (!spatial.isEmpty()) {
+			final String json = spatial;
 			try {
-				geoJson = objectMapper.readValue(spatial, GeoJson.class);
+				geoJson = parsedFieldCache.get(GeoJson.class, json, new Callable<GeoJson>() {
+					@Override
+					public GeoJson call() throws Exception {
+						return objectMapper.readValue(json, GeoJson.class);
+					}
+				});
 			} catch (Exception ex) {
-				logger.log(Level.SEVERE,
+				logger.log(Level.FINE,
 						"Error while parsing dataset 'spatial' field as GeoJson, will put the problematic json into Feature.properties['description'] ",
 						ex);
 				description = spatial;
@@ -407,7 +977,7 @@ public class DcatFactory {
 		}
 
 		if (geoJson != null) {
-			return geoJson;
+			return Optional.of(geoJson);
 		} else {
 			return calcGeoJson(name, description, id, spatial);
 		}
@@ -428,17 +998,59 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected List<SkosConcept> extractThemes(CkanDataset dataset, Locale locale, String catalogUrl) {
+		return findThemes(dataset, locale, catalogUrl);
+	}
+
+	/**
+	 * Same as {@link #extractThemes(CkanDataset, Locale, String)}, which
+	 * already returns an empty collection when nothing is found.
+	 *
+	 * @throws JackanException
+	 *             on generic error
+	 * @since 0.4.3
+	 */
+	protected List<SkosConcept> findThemes(CkanDataset dataset, final Locale locale, String catalogUrl) {
 
 		List<SkosConcept> ret = new ArrayList();
 
-		List<String> candidateLabels;
-		try {
-			candidateLabels = extractField(dataset, "theme", new TypeReference<List<String>>() {
-			});
-		} catch (JackanNotFoundException ex) {
+		if (fieldExtractorsOverridden) {
+			Optional<List<String>> candidateLabels = parsedField(dataset, Property.THEME, STRING_LIST);
+			if (candidateLabels.isPresent()) {
+				ret.addAll(makeThemes(candidateLabels.get(), locale));
+			}
+			return ret;
+		}
+
+		Optional<String> candidateJson = nonEmptyField(dataset, Property.THEME);
+		if (!candidateJson.isPresent()) {
 			return ret;
 		}
-		for (String s : candidateLabels) {
+		final String json = candidateJson.get();
+		List<SkosConcept> themes;
+		try {
+			themes = parsedFieldCache.get(ImmutableList.of(SkosConcept.class, locale), json,
+					new Callable<List<SkosConcept>>() {
+						@Override
+						public List<SkosConcept> call() throws Exception {
+							List<String> labels = objectMapper.readValue(json, STRING_LIST);
+							return labels == null ? null : makeThemes(labels, locale);
+						}
+					});
+		} catch (Exception ex) {
+			throw new JackanException("Error while extracting field theme into type " + STRING_LIST.toString(), ex);
+		}
+		if (themes != null) {
+			ret.addAll(themes);
+		}
+		return ret;
+	}
+
+	/**
+	 * Makes immutable theme concepts out of labels, which may be uris.
+	 */
+	private static ImmutableList<SkosConcept> makeThemes(List<String> labels, Locale locale) {
+		ImmutableList.Builder<SkosConcept> ret = ImmutableList.builder();
+		for (String s : labels) {
 			String ts = s == null ? "" : s.trim();
 			if (!ts.isEmpty()) {
 				String uri;
@@ -455,7 +1067,7 @@ public class DcatFactory {
 			}
 		}
 
-		return ret;
+		return ret.build();
 	}
 
 	/**
@@ -469,21 +1081,25 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected String extractUri(CkanDataset dataset, String catalogUrl) {
+		return orNotFound(findUri(dataset, catalogUrl), "Couldn't find any valid dataset uri!");
+	}
 
-		String uri = "";
-		try {
-			uri = extractFieldAsNonEmptyString(dataset, URI_FIELD);
-		} catch (JackanNotFoundException ex) {
-		}
+	/**
+	 * Like {@link #extractUri(CkanDataset, String)}, but returns an absent
+	 * value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findUri(CkanDataset dataset, String catalogUrl) {
 
-		if (isTrimmedEmpty(uri)) {
-			if (!isTrimmedEmpty(dataset.getId())) {
-				return CkanClient.makeDatasetUrl(catalogUrl, dataset.getId());
-			} else {
-				throw new JackanNotFoundException("Couldn't find any valid dataset uri!");
-			}
-		} else {
+		Optional<String> uri = nonEmptyField(dataset, Property.URI);
+
+		if (uri.isPresent()) {
 			return uri;
+		} else if (!isTrimmedEmpty(dataset.getId())) {
+			return Optional.of(CkanClient.makeDatasetUrl(catalogUrl, dataset.getId()));
+		} else {
+			return Optional.absent();
 		}
 	}
 
@@ -497,29 +1113,34 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected PeriodOfTime extractTemporal(CkanDataset dataset) {
-		String start = "";
-		String end = "";
+		return orNotFound(findTemporal(dataset), "Couldn't find any valid temporal information!");
+	}
 
-		try {
-			start = extractFieldAsNonEmptyString(dataset, "temporal_start").trim();
-		} catch (JackanNotFoundException ex) {
-			logger.info("Couldn't find valid dataset field 'temporal_start'");
+	/**
+	 * Like {@link #extractTemporal(CkanDataset)}, but returns an absent value
+	 * when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<PeriodOfTime> findTemporal(CkanDataset dataset) {
+		Optional<String> start = nonEmptyField(dataset, Property.TEMPORAL_START);
+		if (!start.isPresent()) {
+			logger.fine("Couldn't find valid dataset field 'temporal_start'");
 		}
-		try {
-			end = extractFieldAsNonEmptyString(dataset, "temporal_end").trim();
-		} catch (JackanNotFoundException ex) {
-			logger.info("Couldn't find valid dataset field 'temporal_end'");
+		Optional<String> end = nonEmptyField(dataset, Property.TEMPORAL_END);
+		if (!end.isPresent()) {
+			logger.fine("Couldn't find valid dataset field 'temporal_end'");
 		}
 
-		if (start.isEmpty() && end.isEmpty()) {
-			throw new JackanNotFoundException("Couldn't find any valid temporal information!");
+		if (!start.isPresent() && !end.isPresent()) {
+			return Optional.absent();
 		}
 
 		try {
-			return PeriodOfTime.of(start, end);
+			return Optional.of(PeriodOfTime.of(start.or(""), end.or("")));
 		} catch (IllegalStateException ex) {
-			logger.info("Couldn't find valid ISO8061 temporal_start/end fields, storing raw string.'");
-			return PeriodOfTime.of(start + PeriodOfTime.SEP + end);
+			logger.fine("Couldn't find valid ISO8061 temporal_start/end fields, storing raw string.'");
+			return Optional.of(PeriodOfTime.of(start.or("") + PeriodOfTime.SEP + end.or("")));
 		}
 	}
 
@@ -531,21 +1152,27 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected String extractIdentifier(CkanDataset dataset) {
+		return orNotFound(findIdentifier(dataset), "Couldn't find any valid identifier in the dataset!");
+	}
 
-		try {
-			return extractFieldAsNonEmptyString(dataset, "identifier");
-		} catch (JackanNotFoundException ex) {
-		}
-		try {
-			return extractFieldAsNonEmptyString(dataset, "guid");
-		} catch (JackanNotFoundException ex) {
+	/**
+	 * Like {@link #extractIdentifier(CkanDataset)}, but returns an absent value
+	 * when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findIdentifier(CkanDataset dataset) {
+
+		Optional<String> ret = nonEmptyField(dataset, Property.IDENTIFIER);
+		if (ret.isPresent()) {
+			return ret;
 		}
 
 		if (!isTrimmedEmpty(dataset.getId())) {
-			return dataset.getId().trim();
+			return Optional.of(dataset.getId().trim());
 		}
 
-		throw new JackanNotFoundException("Couldn't find any valid identifier in the dataset!");
+		return Optional.absent();
 	}
 
 	/**
@@ -556,14 +1183,24 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected String extractIssued(CkanDataset dataset) {
-		try {
-			return extractFieldAsNonEmptyString(dataset, ISSUED);
-		} catch (JackanNotFoundException ex) {
-			if (dataset.getMetadataCreated() != null) {
-				return CkanClient.formatTimestamp(dataset.getMetadataCreated());
-			}
+		return orNotFound(findIssued(dataset), "Couldn't find valid 'issued' field");
+	}
+
+	/**
+	 * Like {@link #extractIssued(CkanDataset)}, but returns an absent value
+	 * when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findIssued(CkanDataset dataset) {
+		Optional<String> ret = nonEmptyField(dataset, Property.ISSUED);
+		if (ret.isPresent()) {
+			return ret;
+		}
+		if (dataset.getMetadataCreated() != null) {
+			return Optional.of(CkanClient.formatTimestamp(dataset.getMetadataCreated()));
 		}
-		throw new JackanNotFoundException("Couldn't find valid 'issued' field");
+		return Optional.absent();
 	}
 
 	/**
@@ -574,14 +1211,24 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected String extractModified(CkanDataset dataset) {
-		try {
-			return extractFieldAsString(dataset, MODIFIED);
-		} catch (JackanNotFoundException ex) {
-			if (dataset.getMetadataModified() != null) {
-				return CkanClient.formatTimestamp(dataset.getMetadataModified());
-			}
+		return orNotFound(findModified(dataset), "Couldn't find valid 'modified' field");
+	}
+
+	/**
+	 * Like {@link #extractModified(CkanDataset)}, but returns an absent value
+	 * when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findModified(CkanDataset dataset) {
+		Optional<String> ret = field(dataset, Property.MODIFIED);
+		if (ret.isPresent()) {
+			return ret;
+		}
+		if (dataset.getMetadataModified() != null) {
+			return Optional.of(CkanClient.formatTimestamp(dataset.getMetadataModified()));
 		}
-		throw new JackanNotFoundException("Couldn't find valid 'modified' field");
+		return Optional.absent();
 	}
 
 	/**
@@ -595,49 +1242,63 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected FoafAgent extractPublisher(CkanDataset dataset, Locale locale) {
+		return orNotFound(findPublisher(dataset, locale), "Couldn't find any valid field for a publisher!");
+	}
+
+	/**
+	 * Like {@link #extractPublisher(CkanDataset, Locale)}, but returns an
+	 * absent value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<FoafAgent> findPublisher(CkanDataset dataset, Locale locale) {
 
 		FoafAgent.Builder pubBuilder = FoafAgent.builder();
 
-		try {
-			pubBuilder.setUri(extractFieldAsNonEmptyString(dataset, "publisher_uri").trim());
-		} catch (JackanNotFoundException ex) {
-			logger.info("Couldn't find valid field 'publisher_uri'");
+		Optional<String> uri = nonEmptyField(dataset, Property.PUBLISHER_URI);
+		if (uri.isPresent()) {
+			pubBuilder.setUri(uri.get());
+		} else {
+			logger.fine("Couldn't find valid field 'publisher_uri'");
 		}
 
-		try {
-			pubBuilder.setName(Dict.of(locale, extractFieldAsNonEmptyString(dataset, "publisher_name").trim()));
-		} catch (JackanNotFoundException ex) {
-			logger.info("Couldn't find valid field 'publisher_name'");
+		Optional<String> name = nonEmptyField(dataset, Property.PUBLISHER_NAME);
+		if (name.isPresent()) {
+			pubBuilder.setName(Dict.of(locale, name.get()));
+		} else {
+			logger.fine("Couldn't find valid field 'publisher_name'");
 		}
 
-		try {
-			pubBuilder.setMbox(extractFieldAsNonEmptyString(dataset, "publisher_email").trim());
-		} catch (JackanNotFoundException ex) {
-			logger.info("Couldn't find valid field 'publisher_email'");
+		Optional<String> email = nonEmptyField(dataset, Property.PUBLISHER_MBOX);
+		if (email.isPresent()) {
+			pubBuilder.setMbox(email.get());
+		} else {
+			logger.fine("Couldn't find valid field 'publisher_email'");
 
 			String candidateTitle = "";
 			if (dataset.getOrganization() != null && dataset.getOrganization().getTitle() != null) {
 				candidateTitle = dataset.getOrganization().getTitle().trim();
 			}
 			if (candidateTitle.isEmpty()) {
-				logger.info("Couldn't find valid organization:title to use as publisher MBox");
+				logger.fine("Couldn't find valid organization:title to use as publisher MBox");
 			} else {
 				pubBuilder.setMbox(candidateTitle);
 			}
 		}
 
-		try {
-			pubBuilder.setHomepage(extractFieldAsNonEmptyString(dataset, "publisher_url").trim());
-		} catch (JackanNotFoundException ex) {
-			logger.info("Couldn't find valid field 'publisher_url' for publisher homepage");
+		Optional<String> homepage = nonEmptyField(dataset, Property.PUBLISHER_HOMEPAGE);
+		if (homepage.isPresent()) {
+			pubBuilder.setHomepage(homepage.get());
+		} else {
+			logger.fine("Couldn't find valid field 'publisher_url' for publisher homepage");
 		}
 
 		FoafAgent ret = pubBuilder.build();
 
 		if (ret.equals(FoafAgent.of())) {
-			throw new JackanNotFoundException("Couldn't find any valid field for a publisher!");
+			return Optional.absent();
 		} else {
-			return ret;
+			return Optional.of(ret);
 		}
 	}
 
@@ -649,52 +1310,59 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected VCard extractContactPoint(CkanDataset dataset) {
+		return orNotFound(findContactPoint(dataset), "Couldn't find any valid contact info in dataset!");
+	}
+
+	/**
+	 * Like {@link #extractContactPoint(CkanDataset)}, but returns an absent
+	 * value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<VCard> findContactPoint(CkanDataset dataset) {
 
 		VCard.Builder cpb = VCard.builder();
 
-		try {
-			cpb.setUri(extractFieldAsNonEmptyString(dataset, "contact_uri"));
-		} catch (JackanNotFoundException ex) {
-			logger.info("Couldn't find valid dataset contact uri, skipping it.");
+		Optional<String> uri = nonEmptyField(dataset, Property.CONTACT_POINT_URI);
+		if (uri.isPresent()) {
+			cpb.setUri(uri.get());
+		} else {
+			logger.fine("Couldn't find valid dataset contact uri, skipping it.");
 		}
 
-		String candidateContactName = "";
-		try {
-			candidateContactName = extractFieldAsNonEmptyString(dataset, "contact_name");
-		} catch (JackanNotFoundException ex) {
-			if (dataset.getMaintainer() != null && !dataset.getMaintainer().trim().isEmpty()) {
+		String candidateContactName = nonEmptyField(dataset, Property.CONTACT_POINT_FN).or("");
+		if (candidateContactName.isEmpty()) {
+			if (!isTrimmedEmpty(dataset.getMaintainer())) {
 				candidateContactName = dataset.getMaintainer().trim();
-			} else if (dataset.getAuthor() != null && !dataset.getAuthor().trim().isEmpty()) {
+			} else if (!isTrimmedEmpty(dataset.getAuthor())) {
 				candidateContactName = dataset.getAuthor().trim();
 			}
 		}
 		if (candidateContactName.isEmpty()) {
-			logger.info("Couldn't find valid dataset contact fn, skipping it.");
+			logger.fine("Couldn't find valid dataset contact fn, skipping it.");
 		} else {
 			cpb.setFn(candidateContactName);
 		}
 
-		String candidateContactEmail = "";
-		try {
-			candidateContactEmail = extractFieldAsNonEmptyString(dataset, "contact_email");
-		} catch (JackanNotFoundException ex) {
-			if (dataset.getMaintainer() != null && !dataset.getMaintainer().trim().isEmpty()) {
-				candidateContactEmail = dataset.getMaintainerEmail().trim();
-			} else if (dataset.getAuthor() != null && !dataset.getAuthor().trim().isEmpty()) {
-				candidateContactEmail = dataset.getAuthorEmail().trim();
+		String candidateContactEmail = nonEmptyField(dataset, Property.CONTACT_POINT_EMAIL).or("");
+		if (candidateContactEmail.isEmpty()) {
+			if (!isTrimmedEmpty(dataset.getMaintainer())) {
+				candidateContactEmail = trim(dataset.getMaintainerEmail());
+			} else if (!isTrimmedEmpty(dataset.getAuthor())) {
+				candidateContactEmail = trim(dataset.getAuthorEmail());
 			}
 		}
 		if (candidateContactEmail.isEmpty()) {
-			logger.info("Couldn't find valid dataset contact email, skipping it.");
+			logger.fine("Couldn't find valid dataset contact email, skipping it.");
 		} else {
 			cpb.setEmail(candidateContactEmail);
 		}
 
 		VCard ret = cpb.build();
 		if (ret.equals(VCard.of())) {
-			throw new JackanNotFoundException("Couldn't find any valid contact info in dataset!");
+			return Optional.absent();
 		} else {
-			return ret;
+			return Optional.of(ret);
 		}
 	}
 
@@ -706,18 +1374,27 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected List<String> extractKeywords(CkanDataset dataset) {
+		return orNotFound(findKeywords(dataset), "Found null tags!");
+	}
+
+	/**
+	 * Like {@link #extractKeywords(CkanDataset)}, but returns an absent value
+	 * when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<List<String>> findKeywords(CkanDataset dataset) {
 
-		List<String> ret = new ArrayList();
 		if (dataset.getTags() == null) {
-			throw new JackanNotFoundException("Found null tags!");
-		} else {
-			for (CkanTag tag : dataset.getTags()) {
-				if (tag != null && !isTrimmedEmpty(tag.getName())) {
-					ret.add(tag.getName().trim());
-				}
+			return Optional.absent();
+		}
+		List<String> ret = new ArrayList();
+		for (CkanTag tag : dataset.getTags()) {
+			if (tag != null && !isTrimmedEmpty(tag.getName())) {
+				ret.add(tag.getName().trim());
 			}
 		}
-		return ret;
+		return Optional.of(ret);
 	}
 
 	/**
@@ -732,6 +1409,19 @@ public class DcatFactory {
 		}
 	}
 
+	/**
+	 * Returns the trimmed string in the given locale, or an absent value if
+	 * the trimmed string is empty.
+	 */
+	private static Optional<Dict> dict(Locale locale, @Nullable String s) {
+		String trimmed = trim(s);
+		if (trimmed.isEmpty()) {
+			return Optional.absent();
+		} else {
+			return Optional.of(Dict.of(locale, trimmed));
+		}
+	}
+
 	/**
 	 *
 	 * @throws JackanNotFoundException
@@ -740,13 +1430,17 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected Dict extractTitle(CkanDataset dataset, Locale locale) {
-		String s = trim(dataset.getTitle());
+		return orNotFound(findTitle(dataset, locale), "Couldn't find valid title!");
+	}
 
-		if (s.isEmpty()) {
-			throw new JackanNotFoundException("Couldn't find valid title!");
-		} else {
-			return Dict.of(locale, s);
-		}
+	/**
+	 * Like {@link #extractTitle(CkanDataset, Locale)}, but returns an absent
+	 * value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<Dict> findTitle(CkanDataset dataset, Locale locale) {
+		return dict(locale, dataset.getTitle());
 	}
 
 	/**
@@ -758,42 +1452,106 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected Dict extractDescription(CkanDataset dataset, Locale locale) {
-		String s = trim(dataset.getNotes());
+		return orNotFound(findDescription(dataset, locale), "Couldn't find valid notes!");
+	}
 
-		if (s.isEmpty()) {
-			throw new JackanNotFoundException("Couldn't find valid notes!");
-		} else {
-			return Dict.of(locale, s);
-		}
+	/**
+	 * Like {@link #extractDescription(CkanDataset, Locale)}, but returns an
+	 * absent value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<Dict> findDescription(CkanDataset dataset, Locale locale) {
+		return dict(locale, dataset.getNotes());
 	}
 
 	protected String extractAccrualPeriodicity(CkanDataset dataset) {
+		return orNotFound(findAccrualPeriodicity(dataset),
+				"Couldn't find valid non-empty field frequency in CkanDataset");
+	}
+
+	/**
+	 * Like {@link #extractAccrualPeriodicity(CkanDataset)}, but returns an
+	 * absent value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findAccrualPeriodicity(CkanDataset dataset) {
 		// todo frequency would probably need further checking
-		return extractFieldAsNonEmptyString(dataset, "frequency");
+		return nonEmptyField(dataset, Property.ACCRUAL_PERIODICITY);
 	}
 
 	protected String extractLandingPage(CkanDataset dataset) {
+		return orNotFound(findLandingPage(dataset), "Couldn't find valid url field in dataset!");
+	}
+
+	/**
+	 * Like {@link #extractLandingPage(CkanDataset)}, but returns an absent
+	 * value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findLandingPage(CkanDataset dataset) {
 		if (isTrimmedEmpty(dataset.getUrl())) {
-			throw new JackanNotFoundException("Couldn't find valid url field in dataset!");
+			return Optional.absent();
 		} else {
-			return dataset.getUrl();
+			return Optional.of(dataset.getUrl());
 		}
 	}
 
+	/**
+	 * Records an attribute was not found in the
+	 * {@link #getConversionReport() conversion report}, and logs it at FINE
+	 * level.
+	 */
 	protected void logCantFind(String clazz, String attribute) {
-		logger.log(Level.INFO, "Couldn''t find any valid " + clazz + " {0}, skipping it", attribute);
+		conversionReport.record(clazz, attribute, Outcome.MISSING);
+		if (logger.isLoggable(Level.FINE)) {
+			logger.log(Level.FINE, "Couldn''t find any valid " + clazz + " {0}, skipping it", attribute);
+		}
 	}
 
+	/**
+	 * Records an error while extracting an attribute in the
+	 * {@link #getConversionReport() conversion report}, and logs it at FINE
+	 * level.
+	 */
 	protected void logCantExtract(String clazz, String attribute, Throwable ex) {
-		logger.log(Level.SEVERE, "Error while extracting " + clazz + " " + attribute + ", skipping it", ex);
+		conversionReport.record(clazz, attribute, Outcome.ERROR);
+		if (logger.isLoggable(Level.FINE)) {
+			logger.log(Level.FINE, "Error while extracting " + clazz + " " + attribute + ", skipping it", ex);
+		}
+	}
+
+	/**
+	 * Records an attribute was found in the {@link #getConversionReport()
+	 * conversion report}
+	 *
+	 * @since 0.4.3
+	 */
+	protected void logFound(String clazz, String attribute) {
+		conversionReport.record(clazz, attribute, Outcome.FOUND);
+	}
+
+	/**
+	 * Logs once per factory that conversion is experimental
+	 */
+	private void warnExperimental() {
+		if (!experimentalWarned.getAndSet(true)) {
+			logger.warning("TODO - CONVERSION FROM CKAN TO DCAT IS STILL EXPERIMENTAL, IT MIGHT BE INCOMPLETE!!!");
+		}
 	}
 
 	protected void logDatasetCantFind(String attribute) {
-		logCantFind("dataset", attribute);
+		logCantFind(ConversionReport.DATASET, attribute);
 	}
 
 	protected void logDatasetCantExtract(String attribute, Throwable ex) {
-		logCantExtract("dataset", attribute, ex);
+		logCantExtract(ConversionReport.DATASET, attribute, ex);
+	}
+
+	protected void logDatasetFound(String attribute) {
+		logFound(ConversionReport.DATASET, attribute);
 	}
 
 	/**
@@ -811,12 +1569,79 @@ public class DcatFactory {
 	 */
 	@Beta
 	public DcatDataset makeDataset(CkanDataset dataset, String catalogUrl, Locale locale) {
+		checkNotNull(locale, "invalid dcat dataset locale");
+		return makeVariants(dataset, catalogUrl, ImmutableList.of(locale)).get(0);
+	}
+
+	/**
+	 * Converts a CkanDataset to a DcatDataset for each of the given locales in
+	 * a single pass: attributes which don't depend on the locale are extracted
+	 * only once, while the title, description, publisher and themes are
+	 * extracted and {@link #postProcessDataset(DcatDataset.Builder, String, Locale)
+	 * postProcessDataset} is called for each locale. Their outcomes are
+	 * counted once per locale in the {@link #getConversionReport() report}.
+	 *
+	 * <p>
+	 * Likewise, locale independent attributes of distributions are extracted
+	 * only once, while their title and description are extracted and
+	 * {@link #postProcessDistribution(DcatDistribution.Builder, CkanResource, String, String, String, Locale)
+	 * postProcessDistribution} is called for each locale, so each variant
+	 * equals the one returned by
+	 * {@link #makeDataset(CkanDataset, String, Locale) makeDataset} for its
+	 * locale.
+	 * </p>
+	 *
+	 * @param locales
+	 *            the locales of metadata text, at least one.
+	 * @return the datasets by locale, in the order of given locales
+	 * @see #makeDataset(CkanDataset, String, Locale)
+	 * @since 0.4.3
+	 */
+	@Beta
+	public ImmutableMap<Locale, DcatDataset> makeDatasetVariants(CkanDataset dataset, String catalogUrl,
+			Iterable<Locale> locales) {
+		ImmutableList<Locale> sanitizedLocales = sanitizeLocales(locales);
+		ImmutableList<DcatDataset> variants = makeVariants(dataset, catalogUrl, sanitizedLocales);
+		ImmutableMap.Builder<Locale, DcatDataset> ret = ImmutableMap.builder();
+		for (int i = 0; i < sanitizedLocales.size(); i++) {
+			ret.put(sanitizedLocales.get(i), variants.get(i));
+		}
+		return ret.build();
+	}
+
+	/**
+	 * Converts a CkanDataset to a single DcatDataset whose title, description,
+	 * publisher name, theme labels and distribution titles and descriptions
+	 * hold the text of each of the given locales, and whose languages are those of all the locales when the
+	 * dataset doesn't declare any. Other attributes are taken from the
+	 * variant of the first locale.
+	 *
+	 * @param locales
+	 *            the locales of metadata text, at least one.
+	 * @see #makeDatasetVariants(CkanDataset, String, Iterable)
+	 * @since 0.4.3
+	 */
+	@Beta
+	public DcatDataset makeMultilingualDataset(CkanDataset dataset, String catalogUrl, Iterable<Locale> locales) {
+		return mergeVariants(makeVariants(dataset, catalogUrl, sanitizeLocales(locales)));
+	}
+
+	private static ImmutableList<Locale> sanitizeLocales(Iterable<Locale> locales) {
+		checkNotNull(locales, "invalid dcat dataset locales");
+		ImmutableList<Locale> ret = ImmutableSet.copyOf(locales).asList();
+		checkArgument(!ret.isEmpty(), "Expected at least one locale!");
+		return ret;
+	}
+
+	/**
+	 * Converts a dataset to a variant for each of the given locales
+	 */
+	private ImmutableList<DcatDataset> makeVariants(CkanDataset dataset, String catalogUrl,
+			ImmutableList<Locale> locales) {
 
-		logger.warning(
-				"CONVERSION FROM CKAN DATASET TO DCAT DATASET IS STILL EXPERIMENTAIL, IT MIGHT BE INCOMPLETE!!!");
+		warnExperimental();
 
 		TodUtils.checkNotEmpty(catalogUrl, "invalid dcat dataset catalog URL");
-		checkNotNull(locale, "invalid dcat dataset locale");
 		checkNotNull(dataset, "Invalid dataset!");
 
 		String sanitizedCatalogUrl = TodUtils.removeTrailingSlash(catalogUrl);
@@ -824,13 +1649,37 @@ public class DcatFactory {
 
 		String sanitizedLicenceId = dataset.getLicenseId() == null ? "" : dataset.getLicenseId();
 
-		logger.warning(
-				"TODO - CONVERSION FROM CKAN DATASET TO DCAT DATASET IS STILL EXPERIMENTAL, IT MIGHT BE INCOMPLETE!!!");
+		DatasetFields previousFields = currentFields.get();
+		currentFields.set(new DatasetFields(dataset));
+		try {
+			return convertDataset(dataset, sanitizedCatalogUrl, sanitizedId, sanitizedLicenceId, catalogUrl, locales);
+		} finally {
+			if (previousFields == null) {
+				currentFields.remove();
+			} else {
+				currentFields.set(previousFields);
+			}
+		}
+	}
+
+	/**
+	 * Does the conversion of {@link #makeDataset(CkanDataset, String, Locale)}
+	 * once dataset fields are indexed, making a variant for each locale.
+	 */
+	private ImmutableList<DcatDataset> convertDataset(CkanDataset dataset, String sanitizedCatalogUrl,
+			String sanitizedId, String sanitizedLicenceId, String catalogUrl, ImmutableList<Locale> locales) {
 
 		DcatDataset.Builder ddb = DcatDataset.builder();
 
 		try {
-			ddb.setAccrualPeriodicity(extractAccrualPeriodicity(dataset));
+			Optional<String> accrualPeriodicity = isOverridden("extractAccrualPeriodicity(CkanDataset)")
+					? Optional.fromNullable(extractAccrualPeriodicity(dataset)) : findAccrualPeriodicity(dataset);
+			if (accrualPeriodicity.isPresent()) {
+				ddb.setAccrualPeriodicity(accrualPeriodicity.get());
+				logDatasetFound("accrualPeriodicity");
+			} else {
+				logDatasetCantFind("accrualPeriodicity");
+			}
 		} catch (JackanNotFoundException ex) {
 			logDatasetCantFind("accrualPeriodicity");
 		} catch (Exception ex) {
@@ -838,26 +1687,38 @@ public class DcatFactory {
 		}
 
 		try {
-			ddb.setContactPoint(extractContactPoint(dataset));
+			Optional<VCard> contactPoint = isOverridden("extractContactPoint(CkanDataset)")
+					? Optional.fromNullable(extractContactPoint(dataset)) : findContactPoint(dataset);
+			if (contactPoint.isPresent()) {
+				ddb.setContactPoint(canonical(contactPoint.get()));
+				logDatasetFound("contactPoint");
+			} else {
+				logDatasetCantFind("contactPoint");
+			}
 		} catch (JackanNotFoundException ex) {
 			logDatasetCantFind("contactPoint");
 		} catch (Exception ex) {
 			logDatasetCantExtract("contactPoint", ex);
 		}
 
-		try {
-			ddb.setDescription(extractDescription(dataset, locale));
-		} catch (JackanNotFoundException ex) {
-			logDatasetCantFind("description");
-		} catch (Exception ex) {
-			logDatasetCantExtract("description", ex);
-		}
-
+		// distributions of each resource, by locale
+		List<ImmutableList<DcatDistribution>> distributions = new ArrayList();
 		if (dataset.getResources() != null) {
+			boolean distributionOverridden = isOverridden(
+					"makeDistribution(CkanResource,String,String,String,Locale)");
 			for (CkanResource cr : dataset.getResources()) {
 				try {
-					ddb.addDistributions(
-							makeDistribution(cr, sanitizedCatalogUrl, sanitizedId, sanitizedLicenceId, locale));
+					if (distributionOverridden) {
+						ImmutableList.Builder<DcatDistribution> resourceDistributions = ImmutableList.builder();
+						for (Locale locale : locales) {
+							resourceDistributions.add(
+									makeDistribution(cr, sanitizedCatalogUrl, sanitizedId, sanitizedLicenceId, locale));
+						}
+						distributions.add(resourceDistributions.build());
+					} else {
+						distributions.add(
+								makeDistributions(cr, sanitizedCatalogUrl, sanitizedId, sanitizedLicenceId, locales));
+					}
 				} catch (Exception ex) {
 					logDatasetCantExtract("distribution", ex);
 				}
@@ -865,7 +1726,14 @@ public class DcatFactory {
 		}
 
 		try {
-			ddb.setIdentifier(extractIdentifier(dataset));
+			Optional<String> identifier = isOverridden("extractIdentifier(CkanDataset)")
+					? Optional.fromNullable(extractIdentifier(dataset)) : findIdentifier(dataset);
+			if (identifier.isPresent()) {
+				ddb.setIdentifier(identifier.get());
+				logDatasetFound("identifier");
+			} else {
+				logDatasetCantFind("identifier");
+			}
 		} catch (JackanNotFoundException ex) {
 			logDatasetCantFind("identifier");
 		} catch (Exception ex) {
@@ -873,7 +1741,14 @@ public class DcatFactory {
 		}
 
 		try {
-			ddb.setIssued(extractIssued(dataset));
+			Optional<String> issued = isOverridden("extractIssued(CkanDataset)") ? Optional.fromNullable(extractIssued(dataset))
+					: findIssued(dataset);
+			if (issued.isPresent()) {
+				ddb.setIssued(issued.get());
+				logDatasetFound(ISSUED);
+			} else {
+				logDatasetCantFind(ISSUED);
+			}
 		} catch (JackanNotFoundException ex) {
 			logDatasetCantFind(ISSUED);
 		} catch (Exception ex) {
@@ -881,7 +1756,14 @@ public class DcatFactory {
 		}
 
 		try {
-			ddb.setKeywords(extractKeywords(dataset));
+			Optional<List<String>> keywords = isOverridden("extractKeywords(CkanDataset)")
+					? Optional.fromNullable(extractKeywords(dataset)) : findKeywords(dataset);
+			if (keywords.isPresent()) {
+				ddb.setKeywords(keywords.get());
+				logDatasetFound("keywords");
+			} else {
+				logDatasetCantFind("keywords");
+			}
 		} catch (JackanNotFoundException ex) {
 			logDatasetCantFind("keywords");
 		} catch (Exception ex) {
@@ -890,31 +1772,45 @@ public class DcatFactory {
 		}
 
 		try {
-			ddb.setLandingPage(extractLandingPage(dataset));
+			Optional<String> landingPage = isOverridden("extractLandingPage(CkanDataset)")
+					? Optional.fromNullable(extractLandingPage(dataset)) : findLandingPage(dataset);
+			if (landingPage.isPresent()) {
+				ddb.setLandingPage(landingPage.get());
+				logDatasetFound("landingPage");
+			} else {
+				logDatasetCantFind("landingPage");
+			}
 		} catch (JackanNotFoundException ex) {
 			logDatasetCantFind("landingPage");
 		} catch (Exception ex) {
 			logDatasetCantExtract("landingPage", ex);
 		}
 
+		boolean languagesFound = false;
 		try {
-			ddb.setLanguages(extractLanguages(dataset));
+			Optional<List<Locale>> languages = isOverridden("extractLanguages(CkanDataset)")
+					? Optional.fromNullable(extractLanguages(dataset)) : findLanguages(dataset);
+			if (languages.isPresent()) {
+				ddb.setLanguages(languages.get());
+				logDatasetFound("language");
+				languagesFound = true;
+			} else {
+				logDatasetCantFind("language");
+			}
 		} catch (JackanNotFoundException ex) {
 			logDatasetCantFind("language");
-			if (!Locale.ROOT.equals(locale)) {
-				logger.log(Level.INFO, "Setting language field to provided locale {0}", locale);
-				ddb.addLanguages(locale);
-			}
 		} catch (Exception ex) {
 			logDatasetCantExtract("language", ex);
-			if (!Locale.ROOT.equals(locale)) {
-				logger.log(Level.INFO, "Setting language field to provided locale {0}", locale);
-				ddb.addLanguages(locale);
-			}
 		}
-
 		try {
-			ddb.setModified(extractModified(dataset));
+			Optional<String> modified = isOverridden("extractModified(CkanDataset)")
+					? Optional.fromNullable(extractModified(dataset)) : findModified(dataset);
+			if (modified.isPresent()) {
+				ddb.setModified(modified.get());
+				logDatasetFound(MODIFIED);
+			} else {
+				logDatasetCantFind(MODIFIED);
+			}
 		} catch (JackanNotFoundException ex) {
 			logDatasetCantFind(MODIFIED);
 		} catch (Exception ex) {
@@ -922,31 +1818,117 @@ public class DcatFactory {
 		}
 
 		try {
-			ddb.setPublisher(extractPublisher(dataset, locale));
+			Optional<GeoJson> spatial = isOverridden("extractSpatial(CkanDataset)")
+					? Optional.fromNullable(extractSpatial(dataset)) : findSpatial(dataset);
+			if (spatial.isPresent()) {
+				ddb.setSpatial(spatial.get());
+				logDatasetFound("spatial");
+			} else {
+				logDatasetCantFind("spatial");
+			}
 		} catch (JackanNotFoundException ex) {
-			logDatasetCantFind("publisher");
+			logDatasetCantFind("spatial");
 		} catch (Exception ex) {
-			logDatasetCantExtract("publisher", ex);
+			logDatasetCantExtract("spatial", ex);
 		}
 
 		try {
-			ddb.setSpatial(extractSpatial(dataset));
+			Optional<PeriodOfTime> temporal = isOverridden("extractTemporal(CkanDataset)")
+					? Optional.fromNullable(extractTemporal(dataset)) : findTemporal(dataset);
+			if (temporal.isPresent()) {
+				ddb.setTemporal(temporal.get());
+				logDatasetFound("temporal");
+			} else {
+				logDatasetCantFind("temporal");
+			}
 		} catch (JackanNotFoundException ex) {
-			logDatasetCantFind("spatial");
+			logDatasetCantFind("temporal");
 		} catch (Exception ex) {
-			logDatasetCantExtract("spatial", ex);
+			logDatasetCantExtract("temporal", ex);
 		}
 
 		try {
-			ddb.setTemporal(extractTemporal(dataset));
+			Optional<String> uri = isOverridden("extractUri(CkanDataset,String)")
+					? Optional.fromNullable(extractUri(dataset, sanitizedCatalogUrl)) : findUri(dataset, sanitizedCatalogUrl);
+			if (uri.isPresent()) {
+				ddb.setUri(uri.get());
+				logDatasetFound(URI_FIELD);
+			} else {
+				logDatasetCantFind(URI_FIELD);
+			}
 		} catch (JackanNotFoundException ex) {
-			logDatasetCantFind("temporal");
+			logDatasetCantFind(URI_FIELD);
 		} catch (Exception ex) {
-			logDatasetCantExtract("temporal", ex);
+			logDatasetCantExtract(URI_FIELD, ex);
+		}
+
+		// with one locale there's no need to copy the common fields
+		DcatDataset common = locales.size() == 1 ? null : ddb.build();
+		ImmutableList.Builder<DcatDataset> ret = ImmutableList.builder();
+		for (int i = 0; i < locales.size(); i++) {
+			Locale locale = locales.get(i);
+			DcatDataset.Builder localizedBuilder = common == null ? ddb : DcatDataset.builder().from(common);
+			for (ImmutableList<DcatDistribution> resourceDistributions : distributions) {
+				localizedBuilder.addDistributions(resourceDistributions.get(i));
+			}
+			localizeDataset(localizedBuilder, dataset, sanitizedCatalogUrl, locale);
+			if (!languagesFound && !Locale.ROOT.equals(locale)) {
+				logger.log(Level.FINE, "Setting language field to provided locale {0}", locale);
+				localizedBuilder.addLanguages(locale);
+			}
+			postProcessDataset(localizedBuilder, catalogUrl, locale);
+			ret.add(localizedBuilder.build());
+		}
+		conversionReport.recordConversion(ConversionReport.DATASET);
+		return ret.build();
+	}
+
+	/**
+	 * Sets the attributes of a dataset depending on the locale.
+	 */
+	private void localizeDataset(DcatDataset.Builder ddb, CkanDataset dataset, String sanitizedCatalogUrl,
+			Locale locale) {
+
+		try {
+			Optional<Dict> description = isOverridden("extractDescription(CkanDataset,Locale)")
+					? Optional.fromNullable(extractDescription(dataset, locale)) : findDescription(dataset, locale);
+			if (description.isPresent()) {
+				ddb.setDescription(description.get());
+				logDatasetFound("description");
+			} else {
+				logDatasetCantFind("description");
+			}
+		} catch (JackanNotFoundException ex) {
+			logDatasetCantFind("description");
+		} catch (Exception ex) {
+			logDatasetCantExtract("description", ex);
+		}
+
+		try {
+			Optional<FoafAgent> publisher = isOverridden("extractPublisher(CkanDataset,Locale)")
+					? Optional.fromNullable(extractPublisher(dataset, locale)) : findPublisher(dataset, locale);
+			if (publisher.isPresent()) {
+				ddb.setPublisher(canonical(publisher.get()));
+				logDatasetFound("publisher");
+			} else {
+				logDatasetCantFind("publisher");
+			}
+		} catch (JackanNotFoundException ex) {
+			logDatasetCantFind("publisher");
+		} catch (Exception ex) {
+			logDatasetCantExtract("publisher", ex);
 		}
 
 		try {
-			ddb.setThemes(extractThemes(dataset, locale, sanitizedCatalogUrl));
+			List<SkosConcept> themes = isOverridden("extractThemes(CkanDataset,Locale,String)")
+					? extractThemes(dataset, locale, sanitizedCatalogUrl)
+					: findThemes(dataset, locale, sanitizedCatalogUrl);
+			ddb.setThemes(canonicalThemes(themes));
+			if (themes.isEmpty()) {
+				logDatasetCantFind("theme");
+			} else {
+				logDatasetFound("theme");
+			}
 		} catch (JackanNotFoundException ex) {
 			logDatasetCantFind("theme");
 		} catch (Exception ex) {
@@ -954,24 +1936,205 @@ public class DcatFactory {
 		}
 
 		try {
-			ddb.setTitle(extractTitle(dataset, locale));
+			Optional<Dict> title = isOverridden("extractTitle(CkanDataset,Locale)")
+					? Optional.fromNullable(extractTitle(dataset, locale)) : findTitle(dataset, locale);
+			if (title.isPresent()) {
+				ddb.setTitle(title.get());
+				logDatasetFound(TITLE);
+			} else {
+				logDatasetCantFind(TITLE);
+			}
 		} catch (JackanNotFoundException ex) {
 			logDatasetCantFind(TITLE);
 		} catch (Exception ex) {
 			logDatasetCantExtract(TITLE, ex);
 		}
+	}
+
+	/**
+	 * Merges in a dataset the variants of the same dataset in different
+	 * locales, see {@link #makeMultilingualDataset(CkanDataset, String, Iterable)}
+	 */
+	private DcatDataset mergeVariants(List<DcatDataset> variants) {
+		DcatDataset first = variants.get(0);
+		if (variants.size() == 1) {
+			return first;
+		}
+		List<Dict> titles = new ArrayList();
+		List<Dict> descriptions = new ArrayList();
+		List<Dict> publisherNames = new ArrayList();
+		Set<Locale> languages = new LinkedHashSet();
+		boolean themesAligned = true;
+		for (DcatDataset variant : variants) {
+			titles.add(variant.getTitle());
+			descriptions.add(variant.getDescription());
+			publisherNames.add(variant.getPublisher().getName());
+			languages.addAll(variant.getLanguages());
+			themesAligned = themesAligned && sameThemeUris(first.getThemes(), variant.getThemes());
+		}
+
+		List<SkosConcept> themes = new ArrayList();
+		if (themesAligned) {
+			for (int i = 0; i < first.getThemes().size(); i++) {
+				List<Dict> prefLabels = new ArrayList();
+				for (DcatDataset variant : variants) {
+					prefLabels.add(variant.getThemes().get(i).getPrefLabel());
+				}
+				themes.add(first.getThemes().get(i).withPrefLabel(mergeDicts(prefLabels)));
+			}
+		} else {
+			Set<SkosConcept> allThemes = new LinkedHashSet();
+			for (DcatDataset variant : variants) {
+				allThemes.addAll(variant.getThemes());
+			}
+			themes.addAll(allThemes);
+		}
+
+		// variants have the distributions of the same resources, in the same order
+		List<DcatDistribution> distributions = new ArrayList();
+		for (int i = 0; i < first.getDistributions().size(); i++) {
+			List<Dict> distributionTitles = new ArrayList();
+			List<Dict> distributionDescriptions = new ArrayList();
+			for (DcatDataset variant : variants) {
+				distributionTitles.add(variant.getDistributions().get(i).getTitle());
+				distributionDescriptions.add(variant.getDistributions().get(i).getDescription());
+			}
+			distributions.add(first.getDistributions().get(i)
+					.withTitle(mergeDicts(distributionTitles))
+					.withDescription(mergeDicts(distributionDescriptions)));
+		}
+
+		DcatDataset ret = first.withTitle(mergeDicts(titles))
+				.withDescription(mergeDicts(descriptions))
+				.withLanguages(languages)
+				.withThemes(canonicalThemes(themes))
+				.withDistributions(distributions);
+		if (first.getPublisher() instanceof FoafAgent) {
+			ret = ret.withPublisher(canonical(((FoafAgent) first.getPublisher()).withName(mergeDicts(publisherNames))));
+		}
+		return ret;
+	}
+
+	/**
+	 * Merges the dicts of a value in different locales
+	 */
+	private static Dict mergeDicts(List<Dict> dicts) {
+		return dicts.size() == 1 ? dicts.get(0) : Dict.ofDicts(dicts);
+	}
+
+	private static boolean sameThemeUris(List<SkosConcept> themes1, List<SkosConcept> themes2) {
+		if (themes1.size() != themes2.size()) {
+			return false;
+		}
+		for (int i = 0; i < themes1.size(); i++) {
+			if (!themes1.get(i).getUri().equals(themes2.get(i).getUri())) {
+				return false;
+			}
+		}
+		return true;
+	}
 
+	/**
+	 * Converts many datasets in parallel with one thread per available
+	 * processor, returning results in input order.
+	 *
+	 * @see #makeDatasets(Iterable, String, Locale, Executor, int, boolean)
+	 * @since 0.4.3
+	 */
+	@Beta
+	public List<DatasetConversion> makeDatasets(Iterable<CkanDataset> datasets, String catalogUrl, Locale locale) {
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
 		try {
-			ddb.setUri(extractUri(dataset, sanitizedCatalogUrl));
-		} catch (JackanNotFoundException ex) {
-			logDatasetCantFind(URI_FIELD);
-		} catch (Exception ex) {
-			logDatasetCantExtract(URI_FIELD, ex);
+			return makeDatasets(datasets, catalogUrl, locale, executor, parallelism, true);
+		} finally {
+			executor.shutdownNow();
 		}
+	}
 
-		postProcessDataset(ddb, catalogUrl, locale);
+	/**
+	 * Converts many datasets in parallel with
+	 * {@link #makeDataset(CkanDataset, String, Locale) makeDataset}, so
+	 * overridden extract* and postProcess* methods are used as for single
+	 * conversions.
+	 *
+	 * <p>
+	 * Input datasets are consumed only as conversions complete, with at most
+	 * {@code parallelism} conversions submitted at once. Note the returned
+	 * list holds each input dataset together with its result, so memory grows
+	 * with the input: to convert huge sequences, call this method on batches
+	 * of them, as {@link DcatExporter} does. A failed conversion (i.e. of a null
+	 * dataset, or because a postProcess* method threw an exception) doesn't
+	 * stop the others: its error is reported in its result.
+	 * </p>
+	 *
+	 * @param executor
+	 *            runs the conversions, i.e. a fixed thread pool or a
+	 *            {@link java.util.concurrent.ForkJoinPool}. It is not shut
+	 *            down.
+	 * @param parallelism
+	 *            maximum number of conversions submitted at once, usually the
+	 *            number of threads of the executor
+	 * @param ordered
+	 *            if true results are in input order, otherwise in completion
+	 *            order
+	 * @return a result for each input dataset
+	 * @since 0.4.3
+	 */
+	@Beta
+	public List<DatasetConversion> makeDatasets(Iterable<CkanDataset> datasets, final String catalogUrl,
+			final Locale locale, Executor executor, int parallelism, boolean ordered) {
+		checkNotNull(datasets, "Invalid datasets!");
+		TodUtils.checkNotEmpty(catalogUrl, "invalid dcat dataset catalog URL");
+		checkNotNull(locale, "invalid dcat dataset locale");
+		checkNotNull(executor, "Invalid executor!");
+		checkArgument(parallelism > 0, "Parallelism must be > 0, found instead %s", parallelism);
+
+		CompletionService<DatasetConversion> completion = new ExecutorCompletionService(executor);
+		List<DatasetConversion> ret = new ArrayList();
+		int pending = 0;
+		int i = 0;
+		for (final CkanDataset dataset : datasets) {
+			if (pending == parallelism) {
+				ret.add(takeConversion(completion));
+				pending--;
+			}
+			final int index = i++;
+			completion.submit(new Callable<DatasetConversion>() {
+				@Override
+				public DatasetConversion call() {
+					try {
+						return new DatasetConversion(index, dataset, makeDataset(dataset, catalogUrl, locale), null);
+					} catch (RuntimeException ex) {
+						return new DatasetConversion(index, dataset, null, ex);
+					}
+				}
+			});
+			pending++;
+		}
+		for (; pending > 0; pending--) {
+			ret.add(takeConversion(completion));
+		}
+		if (ordered) {
+			Collections.sort(ret, new Comparator<DatasetConversion>() {
+				@Override
+				public int compare(DatasetConversion o1, DatasetConversion o2) {
+					return Integer.compare(o1.getIndex(), o2.getIndex());
+				}
+			});
+		}
+		return ret;
+	}
 
-		return ddb.build();
+	private static DatasetConversion takeConversion(CompletionService<DatasetConversion> completion) {
+		try {
+			return completion.take().get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new JackanException("Interrupted while converting datasets!", ex);
+		} catch (ExecutionException ex) {
+			throw new JackanException("Unexpected error while converting datasets!", ex.getCause());
+		}
 	}
 
 	/**
@@ -988,11 +2151,15 @@ public class DcatFactory {
 	}
 
 	protected void logDistribCantFind(String attribute) {
-		logCantFind("distribution", attribute);
+		logCantFind(ConversionReport.DISTRIBUTION, attribute);
 	}
 
 	protected void logDistribCantExtract(String attribute, Throwable ex) {
-		logCantExtract("distribution", attribute, ex);
+		logCantExtract(ConversionReport.DISTRIBUTION, attribute, ex);
+	}
+
+	protected void logDistribFound(String attribute) {
+		logFound(ConversionReport.DISTRIBUTION, attribute);
 	}
 
 	/**
@@ -1008,23 +2175,27 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected String extractUri(CkanResource resource, String catalogUrl, String datasetId) {
+		return orNotFound(findUri(resource, catalogUrl, datasetId), "Couldn't find valid 'uri' for resource!");
+	}
 
-		String candidateUri = "";
-
-		try {
-			candidateUri = extractFieldAsString(resource, URI_FIELD).trim();
-		} catch (JackanNotFoundException ex) {
+	/**
+	 * Like {@link #extractUri(CkanResource, String, String)}, but returns an
+	 * absent value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findUri(CkanResource resource, String catalogUrl, String datasetId) {
 
-		}
+		String candidateUri = field(resource, Property.DISTRIBUTION_URI).or("").trim();
 
 		if (candidateUri.isEmpty()) {
 			if (isNotEmpty(catalogUrl) && isNotEmpty(datasetId) && isNotEmpty(resource.getId())) {
-				return CkanClient.makeResourceUrl(catalogUrl, datasetId, resource.getId());
+				return Optional.of(CkanClient.makeResourceUrl(catalogUrl, datasetId, resource.getId()));
 			} else {
-				throw new JackanNotFoundException("Couldn't find valid 'uri' for resource!");
+				return Optional.absent();
 			}
 		} else {
-			return candidateUri;
+			return Optional.of(candidateUri);
 		}
 	}
 
@@ -1059,7 +2230,18 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected String extractModified(CkanResource resource) {
-		return extractFieldAsString(resource, MODIFIED).trim();
+		return orNotFound(findModified(resource), "Can't find string field " + MODIFIED + "!");
+	}
+
+	/**
+	 * Like {@link #extractModified(CkanResource)}, but returns an absent value
+	 * when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findModified(CkanResource resource) {
+		Optional<String> ret = field(resource, Property.DISTRIBUTION_MODIFIED);
+		return ret.isPresent() ? Optional.of(ret.get().trim()) : ret;
 	}
 
 	/**
@@ -1069,7 +2251,18 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected String extractIssued(CkanResource resource) {
-		return extractFieldAsString(resource, ISSUED).trim();
+		return orNotFound(findIssued(resource), "Can't find string field " + ISSUED + "!");
+	}
+
+	/**
+	 * Like {@link #extractIssued(CkanResource)}, but returns an absent value
+	 * when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findIssued(CkanResource resource) {
+		Optional<String> ret = field(resource, Property.DISTRIBUTION_ISSUED);
+		return ret.isPresent() ? Optional.of(ret.get().trim()) : ret;
 	}
 
 	/**
@@ -1079,10 +2272,20 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected String extractAccessUrl(CkanResource resource) {
+		return orNotFound(findAccessUrl(resource), "Couldn't find valid access url!");
+	}
+
+	/**
+	 * Like {@link #extractAccessUrl(CkanResource)}, but returns an absent
+	 * value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findAccessUrl(CkanResource resource) {
 		if (!isTrimmedEmpty(resource.getUrl())) {
-			return resource.getUrl().trim();
+			return Optional.of(resource.getUrl().trim());
 		} else {
-			throw new JackanNotFoundException("Couldn't find valid access url!");
+			return Optional.absent();
 		}
 	}
 
@@ -1093,7 +2296,18 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected String extractDownloadUrl(CkanResource resource) {
-		return extractFieldAsNonEmptyString(resource, "download_url");
+		return orNotFound(findDownloadUrl(resource),
+				"Couldn't find valid non-empty field download_url in CkanResource!");
+	}
+
+	/**
+	 * Like {@link #extractDownloadUrl(CkanResource)}, but returns an absent
+	 * value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findDownloadUrl(CkanResource resource) {
+		return nonEmptyField(resource, Property.DISTRIBUTION_DOWNLOAD_URL);
 	}
 
 	/**
@@ -1103,11 +2317,23 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected int extractByteSize(CkanResource resource) {
+		return orNotFound(findByteSize(resource), "Couldn't find valid size in resource!");
+	}
+
+	/**
+	 * Like {@link #extractByteSize(CkanResource)}, but returns an absent value
+	 * when not found.
+	 *
+	 * @throws JackanException
+	 *             if size is not an integer
+	 * @since 0.4.3
+	 */
+	protected Optional<Integer> findByteSize(CkanResource resource) {
 		if (isTrimmedEmpty(resource.getSize())) {
-			throw new JackanNotFoundException("Couldn't find valid size in resource!");
+			return Optional.absent();
 		}
 		try {
-			return Integer.parseInt(resource.getSize());
+			return Optional.of(Integer.parseInt(resource.getSize()));
 		} catch (NumberFormatException ex) {
 			throw new JackanException("COULDN'T CONVERT CKAN RESOURCE SIZE TO DCAT! " + "REQUIRED AN INTEGER, FOUND "
 					+ resource.getSize() + " (ALTHOUGH STRINGS ARE VALID CKAN SIZES)", ex);
@@ -1123,13 +2349,17 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected Dict extractDescription(CkanResource dataset, Locale locale) {
-		String s = trim(dataset.getDescription());
+		return orNotFound(findDescription(dataset, locale), "Couldn't find valid description!");
+	}
 
-		if (s.isEmpty()) {
-			throw new JackanNotFoundException("Couldn't find valid description!");
-		} else {
-			return Dict.of(locale, s);
-		}
+	/**
+	 * Like {@link #extractDescription(CkanResource, Locale)}, but returns an
+	 * absent value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<Dict> findDescription(CkanResource resource, Locale locale) {
+		return dict(locale, resource.getDescription());
 	}
 
 	/**
@@ -1140,10 +2370,20 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected String extractFormat(CkanResource resource) {
+		return orNotFound(findFormat(resource), "Couldn't find a valid format!");
+	}
+
+	/**
+	 * Like {@link #extractFormat(CkanResource)}, but returns an absent value
+	 * when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findFormat(CkanResource resource) {
 		if (isTrimmedEmpty(resource.getFormat())) {
-			throw new JackanNotFoundException("Couldn't find a valid format!");
+			return Optional.absent();
 		} else {
-			return resource.getFormat().trim();
+			return Optional.of(resource.getFormat().trim());
 		}
 	}
 
@@ -1157,19 +2397,27 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected String extractLicense(CkanResource resource, String license) {
-		try {
-			extractFieldAsNonEmptyString(resource, "license");
-		} catch (JackanNotFoundException ex) {
+		return orNotFound(findLicense(resource, license), "Couldn't find a valid license!");
+	}
+
+	/**
+	 * Like {@link #extractLicense(CkanResource, String)}, but returns an
+	 * absent value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findLicense(CkanResource resource, String license) {
+		if (!nonEmptyField(resource, Property.DISTRIBUTION_LICENSE).isPresent()) {
 			if (isNotEmpty(license)) {
-				return license;
+				return Optional.of(license);
 			} else {
-				throw new JackanNotFoundException("Couldn't find valid license in resource!", ex);
+				return Optional.absent();
 			}
 		}
 		if (isTrimmedEmpty(license)) {
-			throw new JackanNotFoundException("Couldn't find a valid license!");
+			return Optional.absent();
 		} else {
-			return license.trim();
+			return Optional.of(license.trim());
 		}
 
 	}
@@ -1182,10 +2430,20 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected String extractMediaType(CkanResource resource) {
+		return orNotFound(findMediaType(resource), "Couldn't find a valid media type!");
+	}
+
+	/**
+	 * Like {@link #extractMediaType(CkanResource)}, but returns an absent
+	 * value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findMediaType(CkanResource resource) {
 		if (isTrimmedEmpty(resource.getMimetype())) {
-			throw new JackanNotFoundException("Couldn't find a valid media type!");
+			return Optional.absent();
 		} else {
-			return resource.getMimetype();
+			return Optional.of(resource.getMimetype());
 		}
 
 	}
@@ -1198,7 +2456,17 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected String extractRights(CkanResource resource) {
-		return extractFieldAsNonEmptyString(resource, "rights");
+		return orNotFound(findRights(resource), "Couldn't find valid non-empty field rights in CkanResource!");
+	}
+
+	/**
+	 * Like {@link #extractRights(CkanResource)}, but returns an absent value
+	 * when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<String> findRights(CkanResource resource) {
+		return nonEmptyField(resource, Property.DISTRIBUTION_RIGHTS);
 	}
 
 	/**
@@ -1210,18 +2478,29 @@ public class DcatFactory {
 	 *             on generic error
 	 */
 	protected Dict extractTitle(CkanResource resource, Locale locale) {
-		if (isTrimmedEmpty(resource.getName())) {
-			logger.info("Couldn't find valid distribution title, skipping it");
-			throw new JackanNotFoundException("Couldn't find a valid title!");
-		} else {
-			return Dict.of(locale, resource.getName().trim());
+		return orNotFound(findTitle(resource, locale), "Couldn't find a valid title!");
+	}
+
+	/**
+	 * Like {@link #extractTitle(CkanResource, Locale)}, but returns an absent
+	 * value when not found.
+	 *
+	 * @since 0.4.3
+	 */
+	protected Optional<Dict> findTitle(CkanResource resource, Locale locale) {
+		Optional<Dict> ret = dict(locale, resource.getName());
+		if (!ret.isPresent()) {
+			logger.fine("Couldn't find valid distribution title, skipping it");
 		}
+		return ret;
 	}
 
 	/**
 	 * Converts a Ckan resource to a DcatDistribution. If the resource contains
 	 * erroneus fields the converter should just skip them without throwing
-	 * exceptions.
+	 * exceptions. Dataset conversions call it once per resource and locale if
+	 * a subclass overrides it, otherwise they convert each resource for all
+	 * the locales at once.
 	 *
 	 *
 	 * @param resource
@@ -1245,8 +2524,18 @@ public class DcatFactory {
 	@Beta
 	public DcatDistribution makeDistribution(CkanResource resource, String catalogURL, String datasetIdOrName,
 			String license, Locale locale) {
-		logger.warning(
-				"CONVERSION FROM CKAN RESOURCE TO DCAT DISTRIBUTION IS STILL EXPERIMENTAIL, IT MIGHT BE INCOMPLETE!!!");
+		checkNotNull(locale, "invalid distribution locale");
+		return makeDistributions(resource, catalogURL, datasetIdOrName, license, ImmutableList.of(locale)).get(0);
+	}
+
+	/**
+	 * Converts a Ckan resource to a DcatDistribution for each of the given
+	 * locales, extracting only once the attributes which don't depend on the
+	 * locale.
+	 */
+	private ImmutableList<DcatDistribution> makeDistributions(CkanResource resource, String catalogURL,
+			String datasetIdOrName, String license, ImmutableList<Locale> locales) {
+		warnExperimental();
 
 		checkNotNull(resource, "invalid ckan resource");
 		checkNotEmpty(catalogURL, "invalid catalog URL");
@@ -1258,7 +2547,15 @@ public class DcatFactory {
 		DcatDistribution.Builder ddb = DcatDistribution.builder();
 
 		try {
-			ddb.setUri(extractUri(resource, sanitizedCatalogUrl, datasetIdOrName));
+			Optional<String> uri = isOverridden("extractUri(CkanResource,String,String)")
+					? Optional.fromNullable(extractUri(resource, sanitizedCatalogUrl, datasetIdOrName))
+					: findUri(resource, sanitizedCatalogUrl, datasetIdOrName);
+			if (uri.isPresent()) {
+				ddb.setUri(uri.get());
+				logDistribFound(URI_FIELD);
+			} else {
+				logDistribCantFind(URI_FIELD);
+			}
 		} catch (JackanNotFoundException ex) {
 			logDistribCantFind(URI_FIELD);
 		} catch (Exception ex) {
@@ -1266,7 +2563,14 @@ public class DcatFactory {
 		}
 
 		try {
-			ddb.setAccessURL(extractAccessUrl(resource));
+			Optional<String> accessUrl = isOverridden("extractAccessUrl(CkanResource)")
+					? Optional.fromNullable(extractAccessUrl(resource)) : findAccessUrl(resource);
+			if (accessUrl.isPresent()) {
+				ddb.setAccessURL(accessUrl.get());
+				logDistribFound("accessURL");
+			} else {
+				logDistribCantFind("accessURL");
+			}
 		} catch (JackanNotFoundException ex) {
 			logDistribCantFind("accessURL");
 		} catch (Exception ex) {
@@ -1274,7 +2578,14 @@ public class DcatFactory {
 		}
 
 		try {
-			ddb.setDownloadURL(extractDownloadUrl(resource));
+			Optional<String> downloadUrl = isOverridden("extractDownloadUrl(CkanResource)")
+					? Optional.fromNullable(extractDownloadUrl(resource)) : findDownloadUrl(resource);
+			if (downloadUrl.isPresent()) {
+				ddb.setDownloadURL(downloadUrl.get());
+				logDistribFound("downloadURL");
+			} else {
+				logDistribCantFind("downloadURL");
+			}
 		} catch (JackanNotFoundException ex) {
 			logDistribCantFind("downloadURL");
 		} catch (Exception ex) {
@@ -1282,7 +2593,14 @@ public class DcatFactory {
 		}
 
 		try {
-			ddb.setByteSize(extractByteSize(resource));
+			Optional<Integer> byteSize = isOverridden("extractByteSize(CkanResource)")
+					? Optional.fromNullable(extractByteSize(resource)) : findByteSize(resource);
+			if (byteSize.isPresent()) {
+				ddb.setByteSize(byteSize.get());
+				logDistribFound("byteSize");
+			} else {
+				logDistribCantFind("byteSize");
+			}
 		} catch (JackanNotFoundException ex) {
 			logDistribCantFind("byteSize");
 		} catch (Exception ex) {
@@ -1292,15 +2610,14 @@ public class DcatFactory {
 		ddb.setDatasetUri(CkanClient.makeDatasetUrl(sanitizedCatalogUrl, datasetIdOrName));
 
 		try {
-			ddb.setDescription(extractDescription(resource, locale));
-		} catch (JackanNotFoundException ex) {
-			logDistribCantFind("description");
-		} catch (Exception ex) {
-			logDistribCantExtract("description", ex);
-		}
-
-		try {
-			ddb.setFormat(extractFormat(resource));
+			Optional<String> format = isOverridden("extractFormat(CkanResource)")
+					? Optional.fromNullable(extractFormat(resource)) : findFormat(resource);
+			if (format.isPresent()) {
+				ddb.setFormat(format.get());
+				logDistribFound("format");
+			} else {
+				logDistribCantFind("format");
+			}
 		} catch (JackanNotFoundException ex) {
 			logDistribCantFind("format");
 		} catch (Exception ex) {
@@ -1308,7 +2625,14 @@ public class DcatFactory {
 		}
 
 		try {
-			ddb.setIssued(extractIssued(resource));
+			Optional<String> issued = isOverridden("extractIssued(CkanResource)")
+					? Optional.fromNullable(extractIssued(resource)) : findIssued(resource);
+			if (issued.isPresent()) {
+				ddb.setIssued(issued.get());
+				logDistribFound(ISSUED);
+			} else {
+				logDistribCantFind(ISSUED);
+			}
 		} catch (JackanNotFoundException ex) {
 			logDistribCantFind(ISSUED);
 		} catch (Exception ex) {
@@ -1316,7 +2640,14 @@ public class DcatFactory {
 		}
 
 		try {
-			ddb.setLicense(extractLicense(resource, license));
+			Optional<String> candidateLicense = isOverridden("extractLicense(CkanResource,String)")
+					? Optional.fromNullable(extractLicense(resource, license)) : findLicense(resource, license);
+			if (candidateLicense.isPresent()) {
+				ddb.setLicense(candidateLicense.get());
+				logDistribFound("license");
+			} else {
+				logDistribCantFind("license");
+			}
 		} catch (JackanNotFoundException ex) {
 			logDistribCantFind("license");
 		} catch (Exception ex) {
@@ -1324,7 +2655,14 @@ public class DcatFactory {
 		}
 
 		try {
-			ddb.setModified(extractModified(resource));
+			Optional<String> modified = isOverridden("extractModified(CkanResource)")
+					? Optional.fromNullable(extractModified(resource)) : findModified(resource);
+			if (modified.isPresent()) {
+				ddb.setModified(modified.get());
+				logDistribFound(MODIFIED);
+			} else {
+				logDistribCantFind(MODIFIED);
+			}
 		} catch (JackanNotFoundException ex) {
 			logDistribCantFind(MODIFIED);
 		} catch (Exception ex) {
@@ -1332,7 +2670,14 @@ public class DcatFactory {
 		}
 
 		try {
-			ddb.setMediaType(extractMediaType(resource));
+			Optional<String> mediaType = isOverridden("extractMediaType(CkanResource)")
+					? Optional.fromNullable(extractMediaType(resource)) : findMediaType(resource);
+			if (mediaType.isPresent()) {
+				ddb.setMediaType(mediaType.get());
+				logDistribFound("mediaType");
+			} else {
+				logDistribCantFind("mediaType");
+			}
 		} catch (JackanNotFoundException ex) {
 			logDistribCantFind("mediaType");
 		} catch (Exception ex) {
@@ -1340,24 +2685,66 @@ public class DcatFactory {
 		}
 
 		try {
-			ddb.setRights(extractRights(resource));
+			Optional<String> rights = isOverridden("extractRights(CkanResource)")
+					? Optional.fromNullable(extractRights(resource)) : findRights(resource);
+			if (rights.isPresent()) {
+				ddb.setRights(rights.get());
+				logDistribFound("rights");
+			} else {
+				logDistribCantFind("rights");
+			}
 		} catch (JackanNotFoundException ex) {
 			logDistribCantFind("rights");
 		} catch (Exception ex) {
 			logDistribCantExtract("rights", ex);
 		}
 
+		// with one locale there's no need to copy the common fields
+		DcatDistribution common = locales.size() == 1 ? null : ddb.build();
+		ImmutableList.Builder<DcatDistribution> ret = ImmutableList.builder();
+		for (Locale locale : locales) {
+			DcatDistribution.Builder localizedBuilder = common == null ? ddb : DcatDistribution.builder().from(common);
+			localizeDistribution(localizedBuilder, resource, locale);
+			postProcessDistribution(localizedBuilder, resource, sanitizedCatalogUrl, datasetIdOrName, license, locale);
+			ret.add(localizedBuilder.build());
+		}
+		conversionReport.recordConversion(ConversionReport.DISTRIBUTION);
+		return ret.build();
+	}
+
+	/**
+	 * Sets the attributes of a distribution depending on the locale.
+	 */
+	private void localizeDistribution(DcatDistribution.Builder ddb, CkanResource resource, Locale locale) {
+		try {
+			Optional<Dict> description = isOverridden("extractDescription(CkanResource,Locale)")
+					? Optional.fromNullable(extractDescription(resource, locale)) : findDescription(resource, locale);
+			if (description.isPresent()) {
+				ddb.setDescription(description.get());
+				logDistribFound("description");
+			} else {
+				logDistribCantFind("description");
+			}
+		} catch (JackanNotFoundException ex) {
+			logDistribCantFind("description");
+		} catch (Exception ex) {
+			logDistribCantExtract("description", ex);
+		}
+
 		try {
-			ddb.setTitle(extractTitle(resource, locale));
+			Optional<Dict> title = isOverridden("extractTitle(CkanResource,Locale)")
+					? Optional.fromNullable(extractTitle(resource, locale)) : findTitle(resource, locale);
+			if (title.isPresent()) {
+				ddb.setTitle(title.get());
+				logDistribFound(TITLE);
+			} else {
+				logDistribCantFind(TITLE);
+			}
 		} catch (JackanNotFoundException ex) {
 			logDistribCantFind(TITLE);
 		} catch (Exception ex) {
 			logDistribCantExtract(TITLE, ex);
 		}
-
-		postProcessDistribution(ddb, resource, sanitizedCatalogUrl, datasetIdOrName, license, locale);
-
-		return ddb.build();
 	}
 
 }
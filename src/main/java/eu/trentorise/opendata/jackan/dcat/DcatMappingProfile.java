@@ -0,0 +1,298 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan.dcat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import eu.trentorise.opendata.jackan.exceptions.JackanException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import javax.annotation.concurrent.Immutable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
+
+/**
+ * Tells in which CKAN fields {@link DcatFactory} looks for each DCAT property.
+ * Each property has a chain of CKAN field names, searched in order in dataset
+ * (or resource) 'others' and extras until a non-empty value is found.
+ * Properties taken from regular CKAN attributes (i.e. title) and fallbacks on
+ * them (i.e. maintainer for contact point) are not part of the profile.
+ *
+ * <p>
+ * The {@link #of() default profile} follows the <a href=
+ * "https://github.com/ckan/ckanext-dcat#rdf-dcat-to-ckan-dataset-mapping"
+ * target="_blank">ckanext-dcat mapping</a>. Profiles for other catalogs can be
+ * derived from it with {@link #with(Property, String...)} or loaded from JSON
+ * like this:
+ * </p>
+ *
+ * <pre>
+ * {
+ *     "name": "my-catalog",
+ *     "fields": {
+ *         "publisher.name": ["publisher_name", "holder_name"],
+ *         "spatial.text": "geographical_name"
+ *     }
+ * }
+ * </pre>
+ *
+ * Properties not listed keep their default fields. A profile is resolved once
+ * into an array of field chains, so conversions only do map lookups.
+ *
+ * @see DcatFactory#setMappingProfile(DcatMappingProfile)
+ * @since 0.4.3
+ */
+@Immutable
+public final class DcatMappingProfile {
+
+    /**
+     * DCAT properties whose CKAN fields can be configured
+     */
+    public enum Property {
+        ACCRUAL_PERIODICITY("accrualPeriodicity", "frequency"),
+        CONTACT_POINT_URI("contactPoint.uri", "contact_uri"),
+        CONTACT_POINT_FN("contactPoint.fn", "contact_name"),
+        CONTACT_POINT_EMAIL("contactPoint.email", "contact_email"),
+        IDENTIFIER("identifier", "identifier", "guid"),
+        ISSUED("issued", "issued"),
+        LANGUAGE("language", "language"),
+        MODIFIED("modified", "modified"),
+        PUBLISHER_URI("publisher.uri", "publisher_uri"),
+        PUBLISHER_NAME("publisher.name", "publisher_name"),
+        PUBLISHER_MBOX("publisher.mbox", "publisher_email"),
+        PUBLISHER_HOMEPAGE("publisher.homepage", "publisher_url"),
+        SPATIAL("spatial", "spatial"),
+        SPATIAL_URI("spatial.uri", "spatial_uri"),
+        SPATIAL_TEXT("spatial.text", "spatial_text"),
+        TEMPORAL_START("temporal.start", "temporal_start"),
+        TEMPORAL_END("temporal.end", "temporal_end"),
+        THEME("theme", "theme"),
+        URI("uri", "uri"),
+        DISTRIBUTION_URI("distribution.uri", "uri"),
+        DISTRIBUTION_DOWNLOAD_URL("distribution.downloadURL", "download_url"),
+        DISTRIBUTION_ISSUED("distribution.issued", "issued"),
+        DISTRIBUTION_LICENSE("distribution.license", "license"),
+        DISTRIBUTION_MODIFIED("distribution.modified", "modified"),
+        DISTRIBUTION_RIGHTS("distribution.rights", "rights");
+
+        private final String jsonName;
+        private final ImmutableList<String> defaultFields;
+
+        private Property(String jsonName, String... defaultFields) {
+            this.jsonName = jsonName;
+            this.defaultFields = ImmutableList.copyOf(defaultFields);
+        }
+
+        /**
+         * The name of the property in JSON profiles, i.e. "publisher.name"
+         */
+        public String getJsonName() {
+            return jsonName;
+        }
+
+        /**
+         * Returns the property with given JSON name
+         *
+         * @throws JackanException
+         *             if there is no such property
+         */
+        public static Property ofJsonName(String jsonName) {
+            for (Property property : values()) {
+                if (property.jsonName.equals(jsonName)) {
+                    return property;
+                }
+            }
+            throw new JackanException("Unknown DCAT mapping property: " + jsonName);
+        }
+    }
+
+    private static final DcatMappingProfile DEFAULT = new DcatMappingProfile("ckanext-dcat", defaultChains());
+
+    private final String name;
+
+    /**
+     * Field chains indexed by property ordinal
+     */
+    private final ImmutableList<String>[] chains;
+
+    private DcatMappingProfile(String name, ImmutableList<String>[] chains) {
+        this.name = name;
+        this.chains = chains;
+    }
+
+    private static ImmutableList<String>[] defaultChains() {
+        ImmutableList<String>[] ret = new ImmutableList[Property.values().length];
+        for (Property property : Property.values()) {
+            ret[property.ordinal()] = property.defaultFields;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the default profile, following the ckanext-dcat mapping
+     */
+    public static DcatMappingProfile of() {
+        return DEFAULT;
+    }
+
+    /**
+     * Loads a profile from JSON, see class documentation for the format.
+     *
+     * @throws JackanException
+     *             if the JSON is not a valid profile
+     */
+    public static DcatMappingProfile fromJson(String json) {
+        checkNotNull(json);
+        try {
+            return fromJson(new ObjectMapper().readTree(json));
+        } catch (IOException ex) {
+            throw new JackanException("Couldn't parse DCAT mapping profile!", ex);
+        }
+    }
+
+    /**
+     * Loads a profile from a JSON stream.
+     *
+     * @throws JackanException
+     *             if the JSON is not a valid profile
+     * @see #fromJson(String)
+     */
+    public static DcatMappingProfile fromJson(InputStream json) {
+        checkNotNull(json);
+        try {
+            return fromJson(new ObjectMapper().readTree(json));
+        } catch (IOException ex) {
+            throw new JackanException("Couldn't parse DCAT mapping profile!", ex);
+        }
+    }
+
+    private static DcatMappingProfile fromJson(JsonNode root) {
+        if (root == null || !root.isObject()) {
+            throw new JackanException("DCAT mapping profile must be a JSON object, found instead: " + root);
+        }
+        ImmutableList<String>[] chains = defaultChains();
+        JsonNode fields = root.path("fields");
+        if (!fields.isMissingNode() && !fields.isObject()) {
+            throw new JackanException("DCAT mapping profile 'fields' must be a JSON object, found instead: " + fields);
+        }
+        Iterator<Map.Entry<String, JsonNode>> iter = fields.fields();
+        while (iter.hasNext()) {
+            Map.Entry<String, JsonNode> entry = iter.next();
+            Property property = Property.ofJsonName(entry.getKey());
+            ImmutableList.Builder<String> chain = ImmutableList.builder();
+            if (entry.getValue()
+                     .isTextual()) {
+                chain.add(entry.getValue()
+                               .asText());
+            } else if (entry.getValue()
+                            .isArray()) {
+                for (JsonNode field : entry.getValue()) {
+                    if (!field.isTextual()) {
+                        throw new JackanException("Invalid CKAN field for DCAT property " + entry.getKey() + ": "
+                                + field);
+                    }
+                    chain.add(field.asText());
+                }
+            } else {
+                throw new JackanException("Invalid CKAN fields for DCAT property " + entry.getKey() + ": "
+                        + entry.getValue());
+            }
+            chains[property.ordinal()] = checkChain(chain.build());
+        }
+        return new DcatMappingProfile(root.path("name")
+                                          .asText("custom"),
+                chains);
+    }
+
+    private static ImmutableList<String> checkChain(ImmutableList<String> chain) {
+        for (String field : chain) {
+            checkNotEmpty(field, "Invalid CKAN field in DCAT mapping profile!");
+        }
+        return chain;
+    }
+
+    /**
+     * Returns a copy of this profile where given property is searched in given
+     * CKAN fields, in order. Passing no field disables the property.
+     */
+    public DcatMappingProfile with(Property property, String... fields) {
+        checkNotNull(property);
+        ImmutableList<String>[] newChains = chains.clone();
+        newChains[property.ordinal()] = checkChain(ImmutableList.copyOf(fields));
+        return new DcatMappingProfile(name, newChains);
+    }
+
+    /**
+     * Returns a copy of this profile with given name
+     */
+    public DcatMappingProfile withName(String name) {
+        checkNotEmpty(name, "Invalid profile name!");
+        return new DcatMappingProfile(name, chains);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the CKAN fields to search for given property, in order
+     */
+    public ImmutableList<String> getFields(Property property) {
+        return chains[property.ordinal()];
+    }
+
+    /**
+     * Returns the fields of all the properties
+     */
+    public ImmutableMap<Property, ImmutableList<String>> asMap() {
+        EnumMap<Property, ImmutableList<String>> ret = new EnumMap(Property.class);
+        for (Property property : Property.values()) {
+            ret.put(property, chains[property.ordinal()]);
+        }
+        return Maps.immutableEnumMap(ret);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof DcatMappingProfile)) {
+            return false;
+        }
+        DcatMappingProfile other = (DcatMappingProfile) obj;
+        return name.equals(other.name) && Arrays.equals(chains, other.chains);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * name.hashCode() + Arrays.hashCode(chains);
+    }
+
+    @Override
+    public String toString() {
+        return "DcatMappingProfile{" + "name=" + name + ", fields=" + asMap() + '}';
+    }
+
+}
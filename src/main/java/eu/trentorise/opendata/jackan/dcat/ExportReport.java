@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan.dcat;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Totals and throughput of a DCAT catalog export.
+ *
+ * @see DcatExporter
+ * @since 0.4.3
+ */
+@Immutable
+public final class ExportReport {
+
+    private final long exported;
+    private final long failed;
+    private final long bytes;
+    private final long elapsedNanos;
+
+    ExportReport(long exported, long failed, long bytes, long elapsedNanos) {
+        this.exported = exported;
+        this.failed = failed;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Number of datasets written
+     */
+    public long getExported() {
+        return exported;
+    }
+
+    /**
+     * Number of datasets skipped because their conversion failed
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Number of bytes written, after compression if any
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Exported datasets per second
+     */
+    public double getDatasetsPerSecond() {
+        return elapsedNanos == 0 ? 0 : exported * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ExportReport{" + "exported=" + exported + ", failed=" + failed + ", bytes=" + bytes
+                + ", elapsedNanos=" + elapsedNanos + ", datasetsPerSecond="
+                + String.format("%.1f", getDatasetsPerSecond()) + '}';
+    }
+
+}
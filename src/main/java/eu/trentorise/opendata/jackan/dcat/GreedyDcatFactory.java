@@ -68,10 +68,10 @@ public class GreedyDcatFactory extends DcatFactory {
         }
 
         ArrayList<SkosConcept> ret = new ArrayList();
-        LOG.info("Couldn't fine 'theme' field in dataset, will try to extract themes froum groups");
+        LOG.fine("Couldn't fine 'theme' field in dataset, will try to extract themes froum groups");
 
         if (dataset.getGroups() != null) {
-            LOG.warning("TODO - USING EMPTY SkosConceptTheme.of() WHILE CONVERTING FROM CKAN TO DCAT DATASET");
+            LOG.fine("TODO - USING EMPTY SkosConceptTheme.of() WHILE CONVERTING FROM CKAN TO DCAT DATASET");
 
             for (CkanGroup cg : dataset.getGroups()) {
                 if (cg != null && !isTrimmedEmpty(cg.getTitle())) {
@@ -84,8 +84,8 @@ public class GreedyDcatFactory extends DcatFactory {
         }
 
         if (ret.isEmpty() && dataset.getGroups() != null) {
-            LOG.warning("TODO - USING EMPTY SkosConceptTheme.of() WHILE CONVERTING FROM CKAN TO DCAT DATASET");
-            LOG.info("Couldn't fine 'groups' field in dataset, will try to extract themes froum organization");
+            LOG.fine("TODO - USING EMPTY SkosConceptTheme.of() WHILE CONVERTING FROM CKAN TO DCAT DATASET");
+            LOG.fine("Couldn't fine 'groups' field in dataset, will try to extract themes froum organization");
 
             CkanOrganization cg = dataset.getOrganization();
             if (cg != null && !isTrimmedEmpty(cg.getTitle())) {
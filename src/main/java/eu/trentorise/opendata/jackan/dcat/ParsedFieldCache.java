@@ -0,0 +1,255 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan.dcat;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Bounded memo of the values {@link DcatFactory} parses out of JSON stored in
+ * CKAN string fields, like spatial GeoJSON, language and theme lists, which
+ * in real catalogs repeat across thousands of datasets. Values are keyed by
+ * the raw JSON string and must be immutable, as they are shared among
+ * conversions.
+ *
+ * <p>
+ * The cache is bounded by the total length of the cached JSON strings, and
+ * strings longer than {@link #getMaxKeyLength() a maximum length} are
+ * always parsed anew.
+ * </p>
+ *
+ * @see DcatFactory#setParsedFieldCache(ParsedFieldCache)
+ * @since 0.4.3
+ */
+@ThreadSafe
+public final class ParsedFieldCache {
+
+    /**
+     * Default total length of cached JSON strings
+     */
+    public static final long DEFAULT_MAX_CHARS = 4L * 1024 * 1024;
+
+    /**
+     * Default maximum length of a cached JSON string
+     */
+    public static final int DEFAULT_MAX_KEY_LENGTH = 64 * 1024;
+
+    /**
+     * The raw JSON together with the kind of value it is parsed into
+     */
+    private static final class Key {
+
+        private final Object kind;
+        private final String json;
+
+        private Key(Object kind, String json) {
+            this.kind = kind;
+            this.json = json;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return kind.equals(other.kind) && json.equals(other.json);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * kind.hashCode() + json.hashCode();
+        }
+    }
+
+    private final long maxChars;
+
+    private final int maxKeyLength;
+
+    private final Cache<Key, Object> cache;
+
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * Creates a cache with {@link #DEFAULT_MAX_CHARS} and
+     * {@link #DEFAULT_MAX_KEY_LENGTH}
+     */
+    public ParsedFieldCache() {
+        this(DEFAULT_MAX_CHARS, DEFAULT_MAX_KEY_LENGTH);
+    }
+
+    /**
+     * @param maxChars
+     *            maximum total length of cached JSON strings. If zero, nothing
+     *            is cached.
+     * @param maxKeyLength
+     *            JSON strings longer than this are not cached
+     */
+    public ParsedFieldCache(long maxChars, int maxKeyLength) {
+        checkArgument(maxChars >= 0, "Cache size must be >= 0 ! Found instead %s", maxChars);
+        checkArgument(maxKeyLength >= 0, "Maximum key length must be >= 0 ! Found instead %s", maxKeyLength);
+        this.maxChars = maxChars;
+        this.maxKeyLength = maxKeyLength;
+        this.cache = CacheBuilder.newBuilder()
+                                 .maximumWeight(maxChars)
+                                 .weigher(new Weigher<Key, Object>() {
+                                     @Override
+                                     public int weigh(Key key, Object value) {
+                                         return key.json.length();
+                                     }
+                                 })
+                                 .recordStats()
+                                 .build();
+    }
+
+    /**
+     * Returns the value parsed from given json, calling the parser only if it
+     * is not cached. Values the parser returns are cached unless null.
+     *
+     * @param kind
+     *            identifies the kind of parsed value, i.e. a TypeReference
+     *            constant. Must properly implement equals and hashCode.
+     * @throws Exception
+     *             thrown by the parser
+     */
+    <T> T get(Object kind, String json, final Callable<T> parser) throws Exception {
+        checkNotNull(kind);
+        if (maxChars == 0 || json.length() > maxKeyLength) {
+            skipped.incrementAndGet();
+            return parser.call();
+        }
+        try {
+            Object ret = cache.get(new Key(kind, json), new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    T value = parser.call();
+                    if (value == null) {
+                        throw new NullValueException();
+                    }
+                    return value;
+                }
+            });
+            return (T) ret;
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError ex) {
+            if (ex.getCause() instanceof NullValueException) {
+                return null;
+            }
+            if (ex.getCause() instanceof Exception) {
+                throw (Exception) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Signals a null value, which Guava caches can't hold
+     */
+    private static final class NullValueException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private NullValueException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Maximum total length of cached JSON strings
+     */
+    public long getMaxChars() {
+        return maxChars;
+    }
+
+    /**
+     * JSON strings longer than this are not cached
+     */
+    public int getMaxKeyLength() {
+        return maxKeyLength;
+    }
+
+    /**
+     * Number of parsed values found in the cache
+     */
+    public long getHitCount() {
+        return cache.stats()
+                    .hitCount();
+    }
+
+    /**
+     * Number of parsed values not found in the cache, excluding the
+     * {@link #getSkippedCount() skipped} ones
+     */
+    public long getMissCount() {
+        return cache.stats()
+                    .missCount();
+    }
+
+    /**
+     * Number of JSON strings parsed without looking in the cache because too
+     * long
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    /**
+     * Ratio of lookups found in the cache, among all lookups including the
+     * skipped ones. Returns 1.0 if there were no lookups.
+     */
+    public double getHitRate() {
+        CacheStats stats = cache.stats();
+        long total = stats.requestCount() + skipped.get();
+        return total == 0 ? 1.0 : (double) stats.hitCount() / total;
+    }
+
+    /**
+     * Number of cached values
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Removes all cached values. Statistics are kept.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public String toString() {
+        return "ParsedFieldCache{" + "size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", skipped=" + getSkippedCount() + ", hitRate=" + getHitRate() + '}';
+    }
+
+}
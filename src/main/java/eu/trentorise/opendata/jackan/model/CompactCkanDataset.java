@@ -0,0 +1,500 @@
+/*
+ * Copyright 2015 Trento Rise.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import eu.trentorise.opendata.jackan.CkanClient;
+import eu.trentorise.opendata.jackan.exceptions.JackanException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A compact, read-only snapshot of a {@link CkanDataset}, meant for holding
+ * large catalog mirrors in memory.
+ *
+ * Frequently accessed fields are kept as plain strings, timestamps are stored
+ * as primitive microseconds since the epoch, and tags, extras and resource
+ * headers are packed into flat arrays. Everything else (groups, organization,
+ * relationships, {@link CkanDatasetBase#getOthers() others} and the remaining
+ * resource fields) is kept as a serialized JSON blob which is decoded only
+ * when asked for. Low-cardinality strings like license ids, tag names, extra
+ * keys and formats are interned.
+ *
+ * Use {@link #of(CkanDataset)} to build it and {@link #toCkanDataset()} to get
+ * back a regular, mutable dataset. Timestamps are kept with microsecond
+ * precision, which is the precision CKAN uses.
+ *
+ * @since 0.4.3
+ */
+@Immutable
+public final class CompactCkanDataset {
+
+    /**
+     * Value returned by timestamp getters when the timestamp is missing.
+     */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final int TAG_STRIDE = 4;
+    private static final int RESOURCE_STRIDE = 4;
+
+    private static final String[] HOT_DATASET_FIELDS = {"id", "name", "title", "notes", "license_id",
+        "owner_org", "state", "metadata_created", "metadata_modified", "extras", "tags"};
+    private static final String[] HOT_RESOURCE_FIELDS = {"id", "name", "url", "format"};
+
+    private static final Interner<String> INTERNER = Interners.newWeakInterner();
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    static {
+        CkanClient.configureObjectMapper(OBJECT_MAPPER);
+        OBJECT_MAPPER.setSerializationInclusion(Include.NON_NULL);
+    }
+
+    private final String id;
+    private final String name;
+    private final String title;
+    private final String notes;
+    private final String licenseId;
+    private final String ownerOrg;
+    @Nullable
+    private final CkanState state;
+    private final long metadataCreated;
+    private final long metadataModified;
+
+    /**
+     * Tags as id, name, vocabulary id, display name quadruples, or null
+     */
+    @Nullable
+    private final String[] tags;
+    @Nullable
+    private final CkanState[] tagStates;
+    @Nullable
+    private final long[] tagRevisionTimestamps;
+
+    /**
+     * Extras as interleaved key/value pairs, or null
+     */
+    @Nullable
+    private final String[] extras;
+
+    /**
+     * Resources as id, name, url, format quadruples, or null
+     */
+    @Nullable
+    private final String[] resources;
+
+    /**
+     * JSON of all the fields not stored above, or null if there are none.
+     */
+    @Nullable
+    private final byte[] cold;
+
+    private CompactCkanDataset(CkanDataset dataset) {
+        this.id = dataset.getId();
+        this.name = dataset.getName();
+        this.title = dataset.getTitle();
+        this.notes = dataset.getNotes();
+        this.licenseId = intern(dataset.getLicenseId());
+        this.ownerOrg = intern(dataset.getOwnerOrg());
+        this.state = dataset.getState();
+        this.metadataCreated = toMicros(dataset.getMetadataCreated());
+        this.metadataModified = toMicros(dataset.getMetadataModified());
+
+        List<CkanTag> datasetTags = dataset.getTags();
+        if (datasetTags == null) {
+            this.tags = null;
+            this.tagStates = null;
+            this.tagRevisionTimestamps = null;
+        } else {
+            this.tags = new String[datasetTags.size() * TAG_STRIDE];
+            this.tagStates = new CkanState[datasetTags.size()];
+            this.tagRevisionTimestamps = new long[datasetTags.size()];
+            for (int i = 0; i < datasetTags.size(); i++) {
+                CkanTag tag = datasetTags.get(i);
+                int base = i * TAG_STRIDE;
+                tags[base] = tag.getId();
+                tags[base + 1] = intern(tag.getName());
+                tags[base + 2] = intern(tag.getVocabularyId());
+                tags[base + 3] = intern(tag.getDisplayName());
+                tagStates[i] = tag.getState();
+                tagRevisionTimestamps[i] = toMicros(tag.getRevisionTimestamp());
+            }
+        }
+
+        List<CkanPair> datasetExtras = dataset.getExtras();
+        if (datasetExtras == null) {
+            this.extras = null;
+        } else {
+            this.extras = new String[datasetExtras.size() * 2];
+            for (int i = 0; i < datasetExtras.size(); i++) {
+                CkanPair pair = datasetExtras.get(i);
+                extras[i * 2] = intern(pair.getKey());
+                extras[i * 2 + 1] = pair.getValue();
+            }
+        }
+
+        List<CkanResource> datasetResources = dataset.getResources();
+        if (datasetResources == null) {
+            this.resources = null;
+        } else {
+            this.resources = new String[datasetResources.size() * RESOURCE_STRIDE];
+            for (int i = 0; i < datasetResources.size(); i++) {
+                CkanResource resource = datasetResources.get(i);
+                int base = i * RESOURCE_STRIDE;
+                resources[base] = resource.getId();
+                resources[base + 1] = resource.getName();
+                resources[base + 2] = resource.getUrl();
+                resources[base + 3] = intern(resource.getFormat());
+            }
+        }
+
+        this.cold = encodeCold(dataset);
+    }
+
+    /**
+     * Creates a compact snapshot of the provided dataset. The dataset is not
+     * modified and later changes to it won't be reflected in the snapshot.
+     *
+     * @throws JackanException
+     *             if the dataset couldn't be serialized.
+     */
+    public static CompactCkanDataset of(CkanDataset dataset) {
+        checkNotNull(dataset, "Invalid dataset!");
+        return new CompactCkanDataset(dataset);
+    }
+
+    /**
+     * Rebuilds a new, independent {@link CkanDataset} holding all the fields of
+     * the original one.
+     *
+     * @throws JackanException
+     *             if the stored JSON couldn't be decoded.
+     */
+    public CkanDataset toCkanDataset() {
+        CkanDataset ret;
+        if (cold == null) {
+            ret = new CkanDataset();
+        } else {
+            try {
+                ret = OBJECT_MAPPER.readValue(cold, CkanDataset.class);
+            } catch (Exception ex) {
+                throw new JackanException("Couldn't decode compact dataset " + id, ex);
+            }
+        }
+
+        ret.setId(id);
+        ret.setName(name);
+        ret.setTitle(title);
+        ret.setNotes(notes);
+        ret.setLicenseId(licenseId);
+        ret.setOwnerOrg(ownerOrg);
+        ret.setState(state);
+        ret.setMetadataCreated(toTimestamp(metadataCreated));
+        ret.setMetadataModified(toTimestamp(metadataModified));
+        ret.setTags(getTags());
+        ret.setExtras(getExtras());
+
+        if (resources != null) {
+            List<CkanResource> rets = ret.getResources();
+            if (rets == null) {
+                rets = new ArrayList<>(getResourcesCount());
+                ret.setResources(rets);
+            }
+            while (rets.size() < getResourcesCount()) {
+                rets.add(new CkanResource());
+            }
+            for (int i = 0; i < getResourcesCount(); i++) {
+                CkanResource resource = rets.get(i);
+                int base = i * RESOURCE_STRIDE;
+                resource.setId(resources[base]);
+                resource.setName(resources[base + 1]);
+                resource.setUrl(resources[base + 2]);
+                resource.setFormat(resources[base + 3]);
+            }
+        }
+        return ret;
+    }
+
+    @Nullable
+    public String getId() {
+        return id;
+    }
+
+    @Nullable
+    public String getName() {
+        return name;
+    }
+
+    @Nullable
+    public String getTitle() {
+        return title;
+    }
+
+    @Nullable
+    public String getNotes() {
+        return notes;
+    }
+
+    @Nullable
+    public String getLicenseId() {
+        return licenseId;
+    }
+
+    @Nullable
+    public String getOwnerOrg() {
+        return ownerOrg;
+    }
+
+    @Nullable
+    public CkanState getState() {
+        return state;
+    }
+
+    /**
+     * Returns the creation time in microseconds since the epoch, or
+     * {@link #NO_TIMESTAMP} if missing.
+     */
+    public long getMetadataCreatedMicros() {
+        return metadataCreated;
+    }
+
+    /**
+     * Returns the last modification time in microseconds since the epoch, or
+     * {@link #NO_TIMESTAMP} if missing.
+     */
+    public long getMetadataModifiedMicros() {
+        return metadataModified;
+    }
+
+    /**
+     * Returns the number of tags (0 if tags are missing)
+     */
+    public int getTagsCount() {
+        return tagStates == null ? 0 : tagStates.length;
+    }
+
+    /**
+     * Returns the name of the i-th tag
+     */
+    public String getTagName(int i) {
+        checkIndex(i, getTagsCount());
+        return tags[i * TAG_STRIDE + 1];
+    }
+
+    /**
+     * Returns newly built tags, or null if the original dataset had no tag
+     * list.
+     */
+    @Nullable
+    public List<CkanTag> getTags() {
+        if (tagStates == null) {
+            return null;
+        }
+        List<CkanTag> ret = new ArrayList<>(tagStates.length);
+        for (int i = 0; i < tagStates.length; i++) {
+            int base = i * TAG_STRIDE;
+            CkanTag tag = new CkanTag(tags[base + 1]);
+            tag.setId(tags[base]);
+            tag.setVocabularyId(tags[base + 2]);
+            tag.setDisplayName(tags[base + 3]);
+            tag.setState(tagStates[i]);
+            tag.setRevisionTimestamp(toTimestamp(tagRevisionTimestamps[i]));
+            ret.add(tag);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the value of the first extra with given key, or null if not
+     * found. Doesn't allocate anything.
+     */
+    @Nullable
+    public String getExtra(String key) {
+        if (extras != null) {
+            for (int i = 0; i < extras.length; i += 2) {
+                if (key.equals(extras[i])) {
+                    return extras[i + 1];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns newly built extras, or null if the original dataset had no extras
+     * list.
+     */
+    @Nullable
+    public List<CkanPair> getExtras() {
+        if (extras == null) {
+            return null;
+        }
+        List<CkanPair> ret = new ArrayList<>(extras.length / 2);
+        for (int i = 0; i < extras.length; i += 2) {
+            ret.add(new CkanPair(extras[i], extras[i + 1]));
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of resources (0 if resources are missing)
+     */
+    public int getResourcesCount() {
+        return resources == null ? 0 : resources.length / RESOURCE_STRIDE;
+    }
+
+    public String getResourceId(int i) {
+        checkIndex(i, getResourcesCount());
+        return resources[i * RESOURCE_STRIDE];
+    }
+
+    public String getResourceName(int i) {
+        checkIndex(i, getResourcesCount());
+        return resources[i * RESOURCE_STRIDE + 1];
+    }
+
+    public String getResourceUrl(int i) {
+        checkIndex(i, getResourcesCount());
+        return resources[i * RESOURCE_STRIDE + 2];
+    }
+
+    public String getResourceFormat(int i) {
+        checkIndex(i, getResourcesCount());
+        return resources[i * RESOURCE_STRIDE + 3];
+    }
+
+    /**
+     * Decodes and returns the custom properties of the dataset (see
+     * {@link CkanDatasetBase#getOthers()}). Each call decodes them anew, so
+     * callers needing them often should keep the result.
+     *
+     * @return an unmodifiable map, possibly empty.
+     * @throws JackanException
+     *             if the stored JSON couldn't be decoded.
+     */
+    public Map<String, Object> getOthers() {
+        if (cold == null) {
+            return Collections.emptyMap();
+        }
+        try {
+            Map<String, Object> others = OBJECT_MAPPER.readValue(cold, CkanDataset.class).getOthers();
+            if (others == null) {
+                return Collections.emptyMap();
+            } else {
+                return Collections.unmodifiableMap(others);
+            }
+        } catch (Exception ex) {
+            throw new JackanException("Couldn't decode compact dataset " + id, ex);
+        }
+    }
+
+    /**
+     * Returns the size in bytes of the lazily decoded part.
+     */
+    public int getColdSize() {
+        return cold == null ? 0 : cold.length;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactCkanDataset{" + "id=" + id + ", name=" + name + ", tags=" + getTagsCount()
+                + ", resources=" + getResourcesCount() + ", coldSize=" + getColdSize() + '}';
+    }
+
+    private static byte[] encodeCold(CkanDataset dataset) {
+        try {
+            ObjectNode tree = OBJECT_MAPPER.valueToTree(dataset);
+            tree.remove(Arrays.asList(HOT_DATASET_FIELDS));
+            JsonNode resourcesNode = tree.get("resources");
+            if (resourcesNode instanceof ArrayNode) {
+                for (JsonNode resourceNode : resourcesNode) {
+                    if (resourceNode instanceof ObjectNode) {
+                        ((ObjectNode) resourceNode).remove(Arrays.asList(HOT_RESOURCE_FIELDS));
+                    }
+                }
+            }
+            if (tree.size() == 0) {
+                return null;
+            }
+            return OBJECT_MAPPER.writeValueAsBytes(tree);
+        } catch (Exception ex) {
+            throw new JackanException("Couldn't encode dataset " + dataset.getId() + " into compact form", ex);
+        }
+    }
+
+    @Nullable
+    private static String intern(@Nullable String s) {
+        return s == null ? null : INTERNER.intern(s);
+    }
+
+    private static void checkIndex(int i, int size) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds, size is " + size);
+        }
+    }
+
+    /**
+     * Converts a timestamp into microseconds since the epoch, dropping
+     * sub-microsecond precision.
+     *
+     * @return microseconds or {@link #NO_TIMESTAMP} if timestamp is null
+     */
+    static long toMicros(@Nullable Timestamp timestamp) {
+        if (timestamp == null) {
+            return NO_TIMESTAMP;
+        }
+        long millis = timestamp.getTime();
+        long secs = millis / 1000;
+        if (millis % 1000 < 0) {
+            secs--;
+        }
+        return secs * 1000000L + timestamp.getNanos() / 1000;
+    }
+
+    /**
+     * Inverse of {@link #toMicros(java.sql.Timestamp)}
+     */
+    @Nullable
+    static Timestamp toTimestamp(long micros) {
+        if (micros == NO_TIMESTAMP) {
+            return null;
+        }
+        long secs = micros / 1000000L;
+        long rem = micros % 1000000L;
+        if (rem < 0) {
+            secs--;
+            rem += 1000000L;
+        }
+        Timestamp ret = new Timestamp(secs * 1000);
+        ret.setNanos((int) rem * 1000);
+        return ret;
+    }
+
+}
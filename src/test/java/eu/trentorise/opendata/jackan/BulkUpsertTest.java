@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import eu.trentorise.opendata.jackan.exceptions.CkanValidationException;
+import eu.trentorise.opendata.jackan.model.CkanDatasetBase;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests bulk upserts against a local server mimicking CKAN dataset actions.
+ */
+public class BulkUpsertTest {
+
+    private HttpServer server;
+    private CkanClient client;
+    private final Map<String, String> idsByName = new ConcurrentHashMap();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/api/3/action/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                int n = inFlight.incrementAndGet();
+                synchronized (maxInFlight) {
+                    maxInFlight.set(Math.max(maxInFlight.get(), n));
+                }
+                try {
+                    serve(ex);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+        server.start();
+        client = new CkanClient("http://localhost:" + server.getAddress()
+                                                            .getPort(),
+                "token");
+    }
+
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    private void serve(HttpExchange ex) throws IOException {
+        String action = ex.getRequestURI()
+                          .getPath()
+                          .substring("/api/3/action/".length());
+        String ret;
+        if ("package_show".equals(action)) {
+            String name = ex.getRequestURI()
+                            .getQuery()
+                            .substring("id=".length());
+            String id = idsByName.get(name);
+            ret = id == null ? error("Not Found Error") : success(id, name);
+        } else {
+            JsonNode body = CkanClient.getObjectMapper()
+                                      .readTree(ex.getRequestBody());
+            String name = body.path("name")
+                              .asText();
+            if (name.startsWith("flaky") && dropped.getAndIncrement() == 0) {
+                // no answer at all
+                ex.close();
+                return;
+            }
+            if (name.startsWith("bad")) {
+                ret = error("Validation Error");
+            } else if ("package_create".equals(action)) {
+                if (idsByName.containsKey(name)) {
+                    ret = error("Validation Error");
+                } else {
+                    String id = UUID.randomUUID()
+                                    .toString();
+                    idsByName.put(name, id);
+                    ret = success(id, name);
+                }
+            } else {
+                ret = success(body.path("id")
+                                  .asText(),
+                        name);
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException iex) {
+                Thread.currentThread()
+                      .interrupt();
+            }
+        }
+        byte[] bytes = ret.getBytes(Charsets.UTF_8);
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String success(String id, String name) {
+        ObjectNode ret = CkanClient.getObjectMapper()
+                                   .createObjectNode();
+        ret.put("success", true);
+        ret.putObject("result")
+           .put("id", id)
+           .put("name", name);
+        return ret.toString();
+    }
+
+    private static String error(String type) {
+        ObjectNode ret = CkanClient.getObjectMapper()
+                                   .createObjectNode();
+        ret.put("success", false);
+        ret.putObject("error")
+           .put("__type", type)
+           .put("message", type);
+        return ret.toString();
+    }
+
+    @Test
+    public void testUpsert() {
+        idsByName.put("existing", "existing-id");
+
+        CkanDatasetBase withId = new CkanDatasetBase("with-id");
+        withId.setId("some-id");
+
+        List<CkanDatasetBase> datasets = new ArrayList();
+        datasets.add(new CkanDatasetBase("new"));
+        datasets.add(new CkanDatasetBase("existing"));
+        datasets.add(withId);
+        datasets.add(new CkanDatasetBase("bad"));
+        datasets.add(new CkanDatasetBase("flaky"));
+
+        UpsertReport report = client.bulkUpsertDatasets(datasets, 2, 1);
+
+        assertEquals(5, report.getResults()
+                              .size());
+        for (int i = 0; i < datasets.size(); i++) {
+            assertEquals(i, report.getResults()
+                                  .get(i)
+                                  .getIndex());
+            assertSame(datasets.get(i), report.getResults()
+                                              .get(i)
+                                              .getInput());
+        }
+        List<UpsertResult> r = report.getResults();
+        assertEquals(UpsertResult.Outcome.CREATED, r.get(0)
+                                                    .getOutcome());
+        assertEquals(idsByName.get("new"), r.get(0)
+                                            .getDataset()
+                                            .getId());
+        assertEquals(UpsertResult.Outcome.UPDATED, r.get(1)
+                                                    .getOutcome());
+        assertEquals("existing-id", r.get(1)
+                                     .getDataset()
+                                     .getId());
+        assertEquals(UpsertResult.Outcome.UPDATED, r.get(2)
+                                                    .getOutcome());
+        assertEquals(UpsertResult.Outcome.FAILED, r.get(3)
+                                                   .getOutcome());
+        assertTrue(r.get(3)
+                    .getError() instanceof CkanValidationException);
+        assertEquals(UpsertResult.Outcome.CREATED, r.get(4)
+                                                    .getOutcome());
+        assertEquals(2, r.get(4)
+                         .getAttempts());
+
+        assertEquals(2, report.getCreated());
+        assertEquals(2, report.getUpdated());
+        assertEquals(1, report.getFailed());
+        assertEquals(1, report.getFailures()
+                              .size());
+    }
+
+    @Test
+    public void testBoundedConcurrency() {
+        List<CkanDatasetBase> datasets = new ArrayList();
+        for (int i = 0; i < 40; i++) {
+            datasets.add(new CkanDatasetBase("dataset-" + i));
+        }
+        UpsertReport report = client.bulkUpsertDatasets(datasets, 3, 0);
+        assertEquals(40, report.getCreated());
+        assertTrue(maxInFlight.get() <= 3);
+        assertTrue(maxInFlight.get() > 1);
+    }
+}
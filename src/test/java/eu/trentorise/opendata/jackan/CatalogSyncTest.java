@@ -0,0 +1,367 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import eu.trentorise.opendata.jackan.model.CkanDataset;
+import eu.trentorise.opendata.jackan.model.CkanDatasetBase;
+import eu.trentorise.opendata.jackan.model.CkanPair;
+import eu.trentorise.opendata.jackan.model.CkanResource;
+import eu.trentorise.opendata.jackan.model.CkanTag;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests catalog synchronization against a local server mimicking CKAN
+ * dataset actions.
+ */
+public class CatalogSyncTest {
+
+    private HttpServer server;
+    private CkanClient client;
+    private final Map<String, ObjectNode> datasets = new ConcurrentHashMap();
+    private final List<String> actions = new ArrayList();
+    private final List<String> searches = new ArrayList();
+    private final List<ObjectNode> patches = new ArrayList();
+    private String ckanVersion = "2.2";
+
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/api/3/action/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                serve(ex);
+            }
+        });
+        server.start();
+        client = new CkanClient("http://localhost:" + server.getAddress()
+                                                            .getPort(),
+                "token");
+    }
+
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    private void serve(HttpExchange ex) throws IOException {
+        String action = ex.getRequestURI()
+                          .getPath()
+                          .substring("/api/3/action/".length());
+        synchronized (actions) {
+            actions.add(action);
+        }
+        ObjectNode ret = CkanClient.getObjectMapper()
+                                   .createObjectNode();
+        ret.put("success", true);
+        if ("status_show".equals(action)) {
+            ret.putObject("result")
+               .put("ckan_version", ckanVersion);
+        } else if ("package_search".equals(action)) {
+            synchronized (searches) {
+                searches.add(ex.getRequestURI()
+                               .getQuery());
+            }
+            ObjectNode result = ret.putObject("result");
+            result.put("count", datasets.size());
+            ArrayNode results = result.putArray("results");
+            for (ObjectNode dataset : datasets.values()) {
+                results.addObject()
+                       .put("id", dataset.get("id")
+                                         .asText())
+                       .put("name", dataset.get("name")
+                                           .asText());
+            }
+        } else if ("package_show".equals(action)) {
+            String id = ex.getRequestURI()
+                          .getQuery()
+                          .substring("id=".length());
+            for (ObjectNode dataset : datasets.values()) {
+                if (dataset.get("id")
+                           .asText()
+                           .equals(id)) {
+                    ret.set("result", dataset);
+                }
+            }
+        } else {
+            ObjectNode body = (ObjectNode) CkanClient.getObjectMapper()
+                                                     .readTree(ex.getRequestBody());
+            if ("package_create".equals(action)) {
+                body.put("id", body.get("name")
+                                   .asText()
+                        + "-id");
+                datasets.put(body.get("name")
+                                 .asText(),
+                        body);
+            } else if ("package_update".equals(action)) {
+                datasets.put(body.get("name")
+                                 .asText(),
+                        body);
+            } else if ("package_patch".equals(action)) {
+                synchronized (patches) {
+                    patches.add(body.deepCopy());
+                }
+                for (ObjectNode dataset : datasets.values()) {
+                    if (dataset.get("id")
+                               .asText()
+                               .equals(body.get("id")
+                                           .asText())) {
+                        dataset.setAll(body);
+                        body = dataset;
+                    }
+                }
+            } else if ("package_delete".equals(action)) {
+                for (ObjectNode dataset : datasets.values()) {
+                    if (dataset.get("id")
+                               .asText()
+                               .equals(body.get("id")
+                                           .asText())) {
+                        datasets.remove(dataset.get("name")
+                                               .asText());
+                    }
+                }
+            }
+            ret.set("result", body);
+        }
+        byte[] bytes = ret.toString()
+                          .getBytes(Charsets.UTF_8);
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void putRemote(String name, String title) {
+        ObjectNode dataset = CkanClient.getObjectMapper()
+                                       .createObjectNode();
+        dataset.put("id", name + "-id");
+        dataset.put("name", name);
+        dataset.put("title", title);
+        dataset.put("metadata_modified", "2015-01-01T00:00:00.000000");
+        dataset.putArray("resources");
+        datasets.put(name, dataset);
+    }
+
+    private static CkanDatasetBase desired(String name, String title) {
+        CkanDatasetBase ret = new CkanDatasetBase(name);
+        ret.setTitle(title);
+        return ret;
+    }
+
+    private List<String> writes() {
+        List<String> ret = new ArrayList();
+        synchronized (actions) {
+            for (String action : actions) {
+                if (!action.equals("package_search") && !action.equals("package_show")
+                        && !action.equals("status_show")) {
+                    ret.add(action);
+                }
+            }
+        }
+        return ret;
+    }
+
+    @Test
+    public void testDiff() {
+        CkanDataset remote = new CkanDataset("ds");
+        remote.setId("ds-id");
+        remote.setTitle("Title");
+        remote.setNotes("Remote notes");
+        remote.setTags(new ArrayList(Arrays.asList(new CkanTag("b"), new CkanTag("a"))));
+        remote.setExtras(new ArrayList(Arrays.asList(new CkanPair("k", "v"))));
+        CkanResource same = new CkanResource("http://example.org/same.csv", "ds-id");
+        same.setId("r1");
+        same.setFormat("CSV");
+        CkanResource changed = new CkanResource("http://example.org/changed.csv", "ds-id");
+        changed.setId("r2");
+        CkanResource stale = new CkanResource("http://example.org/stale.csv", "ds-id");
+        stale.setId("r3");
+        remote.setResources(new ArrayList(Arrays.asList(same, changed, stale)));
+
+        CkanDatasetBase desired = new CkanDatasetBase("ds");
+        desired.setTitle("Title");
+        desired.setTags(new ArrayList(Arrays.asList(new CkanTag("a"), new CkanTag("b"))));
+        desired.setExtras(new ArrayList(Arrays.asList(new CkanPair("k", "v"))));
+        desired.setResources(new ArrayList(Arrays.asList(new CkanResource("http://example.org/same.csv", null),
+                new CkanResource("http://example.org/new.csv", null))));
+        CkanResource changedDesired = new CkanResource("http://example.org/changed.csv", null);
+        changedDesired.setDescription("New description");
+        desired.getResources()
+               .add(changedDesired);
+
+        List<SyncAction> actions = CatalogSync.diff(desired, remote);
+        assertEquals(3, actions.size());
+        assertEquals(SyncAction.Type.CREATE_RESOURCE, actions.get(0)
+                                                            .getType());
+        assertEquals("ds-id", actions.get(0)
+                                     .getResource()
+                                     .getPackageId());
+        assertEquals(SyncAction.Type.UPDATE_RESOURCE, actions.get(1)
+                                                            .getType());
+        assertEquals("r2", actions.get(1)
+                                  .getId());
+        assertEquals(Arrays.asList("description"), actions.get(1)
+                                                         .getChangedFields());
+        assertEquals(SyncAction.Type.DELETE_RESOURCE, actions.get(2)
+                                                            .getType());
+        assertEquals("r3", actions.get(2)
+                                  .getId());
+
+        desired.setResources(null);
+        desired.setNotes("Desired notes");
+        desired.getTags()
+               .add(new CkanTag("c"));
+        actions = CatalogSync.diff(desired, remote);
+        assertEquals(1, actions.size());
+        SyncAction update = actions.get(0);
+        assertEquals(SyncAction.Type.UPDATE_DATASET, update.getType());
+        assertEquals(Arrays.asList("notes", "tags"), update.getChangedFields());
+        // fields not managed by the desired state are kept
+        assertEquals("ds-id", update.getDataset()
+                                    .getId());
+        assertEquals(3, update.getDataset()
+                              .getResources()
+                              .size());
+        assertEquals("Desired notes", update.getDataset()
+                                            .getNotes());
+    }
+
+    @Test
+    public void testPlanAndApply() {
+        putRemote("same", "Same");
+        putRemote("changed", "Old title");
+        putRemote("missing", "Missing");
+
+        CatalogSync sync = client.newCatalogSync()
+                                 .setDeleteMissing(true)
+                                 .setConcurrency(2);
+        List<CkanDatasetBase> desired = Arrays.asList(desired("same", "Same"), desired("changed", "New title"),
+                desired("new", "New"));
+
+        SyncPlan plan = sync.plan(desired);
+        assertTrue(writes().isEmpty());
+        assertEquals(Arrays.asList("same"), plan.getUnchanged());
+        assertEquals(3, plan.getActions()
+                            .size());
+        assertEquals("new", plan.getActions(SyncAction.Type.CREATE_DATASET)
+                                .get(0)
+                                .getDatasetName());
+        assertEquals(Arrays.asList("title"), plan.getActions(SyncAction.Type.UPDATE_DATASET)
+                                                 .get(0)
+                                                 .getChangedFields());
+        assertEquals("missing-id", plan.getActions(SyncAction.Type.DELETE_DATASET)
+                                       .get(0)
+                                       .getId());
+
+        SyncReport report = sync.apply(plan);
+        assertTrue(report.isSuccess());
+        assertEquals(3, report.getApplied()
+                              .size());
+        assertEquals(3, writes().size());
+        assertEquals("New title", datasets.get("changed")
+                                          .get("title")
+                                          .asText());
+        assertFalse(datasets.containsKey("missing"));
+
+        // everything is now known, nothing gets fetched
+        actions.clear();
+        SyncPlan next = sync.plan(desired);
+        assertTrue(next.isEmpty());
+        assertEquals(3, next.getUnchanged()
+                            .size());
+        assertEquals(Arrays.asList("package_search"), actions);
+
+        // unless told otherwise
+        actions.clear();
+        sync.setTrustKnownFingerprints(false);
+        assertTrue(sync.plan(desired)
+                       .isEmpty());
+        assertEquals(4, actions.size());
+    }
+
+    @Test
+    public void testApplyPatch() {
+        ckanVersion = "2.5.2";
+        putRemote("changed", "Old title");
+        datasets.get("changed")
+                .put("notes", "Edited meanwhile");
+        CatalogSync sync = client.newCatalogSync();
+
+        SyncReport report = sync.apply(sync.plan(Arrays.asList(desired("changed", "New title"))));
+        assertTrue(report.isSuccess());
+        assertEquals(Arrays.asList("package_patch"), writes());
+        // only the changed field is sent
+        ObjectNode patch = patches.get(0);
+        assertEquals(2, patch.size());
+        assertEquals("changed-id", patch.get("id")
+                                        .asText());
+        assertEquals("New title", patch.get("title")
+                                       .asText());
+        assertEquals("Edited meanwhile", datasets.get("changed")
+                                                 .get("notes")
+                                                 .asText());
+    }
+
+    @Test
+    public void testListRemote() {
+        putRemote("a", "A");
+        client = CkanClient.builder()
+                           .setCatalogUrl(client.getCatalogUrl())
+                           .setCkanToken("token")
+                           .setSearchCache(1000000, 60000)
+                           .build();
+        CkanQuery scope = CkanQuery.filter()
+                                   .byTagNames("t")
+                                   .sortBy("title", true);
+        CatalogSync sync = client.newCatalogSync()
+                                 .setScope(scope);
+
+        sync.plan(Arrays.asList(desired("a", "A")));
+        sync.plan(Arrays.asList(desired("a", "A")));
+
+        // planning doesn't reuse cached search pages
+        assertEquals(2, searches.size());
+        String search = searches.get(0);
+        assertTrue(search.contains("sort=id asc"));
+        assertFalse(search.contains("title"));
+        assertTrue(search.contains("include_private=True"));
+        assertTrue(search.contains("include_drafts=True"));
+        assertTrue(search.contains("tags:\"t\""));
+        // the caller query is not changed
+        assertTrue(scope.getFields()
+                        .isEmpty());
+        assertEquals(Arrays.asList("title asc"), scope.getSort());
+    }
+}
@@ -23,11 +23,14 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import eu.trentorise.opendata.commons.TodConfig;
 import eu.trentorise.opendata.commons.internal.org.apache.commons.lang3.time.FastDateFormat;
 import eu.trentorise.opendata.jackan.model.CkanDatasetBase;
+import eu.trentorise.opendata.jackan.model.CkanResourceBase;
+import com.google.common.collect.ImmutableMap;
 import eu.trentorise.opendata.jackan.model.CkanOrganization;
 
 import java.io.*;
 import java.sql.Timestamp;
 import java.text.ParseException;
+import java.util.Map;
 import java.util.Random;
 import java.util.TimeZone;
 import java.util.UUID;
@@ -321,4 +324,42 @@ public class CkanJacksonTest {
         assertEquals(1, cd.getOthers().get("z"));
     }
 
+    /**
+     * Fields sent when creating a resource with a file in a single multipart
+     * call
+     */
+    @Test
+    public void testMultipartFields() throws IOException {
+        CkanResource r = new CkanResource("http://x.org", "some-package");
+        r.setName("n");
+        r.setUpload(new File("a.csv"));
+        r.putOthers("o", ImmutableMap.of("b", 1));
+        Map<String, String> fields = CkanClient.makeMultipartFields(
+                CkanClient.getObjectMapperForPosting(CkanResourceBase.class), r);
+        assertEquals("n", fields.get("name"));
+        assertEquals("some-package", fields.get("package_id"));
+        assertEquals("upload", fields.get("url"));
+        assertEquals("{\"b\":1}", fields.get("o"));
+        assertFalse(fields.containsKey("upload"));
+        assertFalse(fields.containsKey("description"));
+    }
+
+    /**
+     * Only answers telling uploads are not accepted make the client fall back
+     * to two step resource creation
+     */
+    @Test
+    public void testUploadNotAccepted() {
+        assertTrue(CkanClient.isUploadNotAccepted("Bad request - JSON Error: Error decoding JSON data."));
+        assertTrue(CkanClient.isUploadNotAccepted(
+                "{\"success\":false,\"error\":{\"__type\":\"Validation Error\",\"upload\":[\"Unexpected field\"]}}"));
+        assertFalse(CkanClient.isUploadNotAccepted(
+                "{\"success\":false,\"error\":{\"__type\":\"Validation Error\",\"name\":[\"Missing value\"]}}"));
+        assertFalse(CkanClient.isUploadNotAccepted(
+                "{\"success\":false,\"error\":{\"__type\":\"Validation Error\",\"upload\":[\"x\"],\"url\":[\"Missing value\"]}}"));
+        assertFalse(CkanClient.isUploadNotAccepted(
+                "{\"success\":false,\"error\":{\"__type\":\"Authorization Error\",\"message\":\"no\"}}"));
+        assertFalse(CkanClient.isUploadNotAccepted("<html>502 Bad Gateway</html>"));
+    }
+
 }
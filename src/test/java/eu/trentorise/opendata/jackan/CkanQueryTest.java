@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import java.net.URLDecoder;
+import java.sql.Timestamp;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * White box testing of package_search parameters
+ */
+public class CkanQueryTest {
+
+    @Test
+    public void testDefaultParams() {
+        assertEquals("rows=10&start=0", CkanClient.makeSearchParams(CkanQuery.filter(), 10, 0, false));
+    }
+
+    @Test
+    public void testFields() {
+        CkanQuery query = CkanQuery.filter()
+                                   .byText("a b")
+                                   .withFields("id", "metadata_modified");
+        assertEquals("rows=5&start=2&q=a%20b", CkanClient.makeSearchParams(query, 5, 2, false));
+        assertEquals("rows=5&start=2&q=a%20b&fl=id%20metadata_modified",
+                CkanClient.makeSearchParams(query, 5, 2, true));
+    }
+
+    @Test
+    public void testFieldsResponse() throws Exception {
+        DatasetFieldsSearchResponse r = CkanClient.getObjectMapper()
+                                                  .readValue("{\"success\":true,\"result\":{\"count\":3,"
+                                                          + "\"results\":[{\"id\":\"a\",\"num_resources\":2}]}}",
+                                                          DatasetFieldsSearchResponse.class);
+        assertEquals(3, r.result.getCount());
+        assertEquals("a", r.result.getResults()
+                                  .get(0)
+                                  .get("id")
+                                  .asText());
+    }
+
+    @Test
+    public void testNamesLists() {
+        CkanQuery query = CkanQuery.filter()
+                                   .byTagNames("t1", "t2")
+                                   .byLicenseId("cc-by");
+        assertEquals("rows=1&start=0&fq=" + "%28%28tags%3A%22t1%22%20AND%20tags%3A%22t2%22%29"
+                + "%20AND%20%28license_id%3A%22cc-by%22%29%29", CkanClient.makeSearchParams(query, 1, 0, false));
+    }
+
+    @Test
+    public void testFacetParams() {
+        CkanQuery query = CkanQuery.filter()
+                                   .withFacetFields("organization", "license_id")
+                                   .withFacetLimit(-5);
+        assertEquals("rows=0&start=0&facet.field=%5B%22license_id%22%2C%22organization%22%5D&facet.limit=-1",
+                CkanClient.makeSearchParams(query, 0, 0, false));
+    }
+
+    @Test
+    public void testFacetsResponse() throws Exception {
+        DatasetSearchResponse r = CkanClient.getObjectMapper()
+                                            .readValue("{\"success\":true,\"result\":{\"count\":7,\"results\":[],"
+                                                    + "\"facets\":{\"license_id\":{\"cc-by\":5,\"cc-zero\":2}}}}",
+                                                    DatasetSearchResponse.class);
+        assertEquals(7, r.result.getCount());
+        assertEquals(Integer.valueOf(5), r.result.getFacet("license_id")
+                                                 .get("cc-by"));
+        assertTrue(r.result.getFacet("organization")
+                           .isEmpty());
+    }
+
+    /**
+     * Returns the decoded fq parameter of the search params for given query
+     */
+    private static String fq(CkanQuery query) throws Exception {
+        String params = CkanClient.makeSearchParams(query, 10, 0, false);
+        for (String param : params.split("&")) {
+            if (param.startsWith("fq=")) {
+                return URLDecoder.decode(param.substring(3), "UTF-8");
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testEscape() {
+        assertEquals("a\\:b\\ c\\\\", CkanQuery.escape("a:b c\\"));
+        assertEquals("\"my \\\"big\\\" data\\\\\"", CkanQuery.phrase("my \"big\" data\\"));
+    }
+
+    @Test
+    public void testAndThenSkippedList() throws Exception {
+        // an empty list in the middle must not eat the AND
+        assertEquals("((groups:\"g\") AND (tags:\"t\"))", fq(CkanQuery.filter()
+                                                                  .byGroupNames("g")
+                                                                  .byTagNames("t")));
+    }
+
+    @Test
+    public void testAnyAndExcluding() throws Exception {
+        assertEquals("((tags:\"a\" OR tags:\"b\") AND (*:* -license_id:\"x\" -license_id:\"y\"))",
+                fq(CkanQuery.filter()
+                            .byAnyTagNames("a", "b")
+                            .excludingLicenseIds("x", "y")));
+    }
+
+    @Test
+    public void testRangesExtrasRaw() throws Exception {
+        Timestamp from = CkanClient.parseTimestamp("2015-01-02T03:04:05.006000");
+        assertEquals("(metadata_modified:[2015-01-02T03:04:05.006Z TO *] AND extras_freq\\ uency:\"mon\\\"thly\""
+                + " AND (num_resources:[2 TO *]))",
+                fq(CkanQuery.filter()
+                            .byMetadataModified(from, null)
+                            .byExtra("freq uency", "mon\"thly")
+                            .byRawFilter("num_resources:[2 TO *]")));
+    }
+
+    @Test
+    public void testCanonicalParams() {
+        CkanQuery q1 = CkanQuery.filter()
+                                .byTagNames("b", "a")
+                                .byAnyGroupNames("y", "x")
+                                .withFacetFields("tags", "organization");
+        CkanQuery q2 = CkanQuery.filter()
+                                .withFacetFields("organization", "tags")
+                                .byAnyGroupNames("x", "y")
+                                .byTagNames("a", "b");
+        assertEquals(CkanClient.makeSearchParams(q1, 10, 20, false), CkanClient.makeSearchParams(q2, 10, 20, false));
+        assertNotEquals(CkanClient.makeSearchParams(q1, 10, 20, false), CkanClient.makeSearchParams(q2, 10, 0, false));
+    }
+
+    @Test
+    public void testSort() {
+        assertEquals("rows=10&start=0&sort=metadata_modified%20desc%2C%20name%20asc",
+                CkanClient.makeSearchParams(CkanQuery.filter()
+                                                     .sortBy("metadata_modified", false)
+                                                     .sortBy("name", true),
+                        10, 0, false));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.jackan.model.CkanDataset;
+import eu.trentorise.opendata.jackan.model.CkanGroup;
+import eu.trentorise.opendata.jackan.model.CkanOrganization;
+import eu.trentorise.opendata.jackan.model.CkanPair;
+import eu.trentorise.opendata.jackan.model.CkanResource;
+import eu.trentorise.opendata.jackan.model.CkanState;
+import eu.trentorise.opendata.jackan.model.CkanTag;
+import eu.trentorise.opendata.jackan.model.CompactCkanDataset;
+import java.sql.Timestamp;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompactCkanDatasetTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        TodConfig.loadLogConfig(CompactCkanDatasetTest.class);
+    }
+
+    private static CkanDataset makeDataset() {
+        CkanDataset dataset = new CkanDataset("test-dataset");
+        dataset.setId("c4577b8f-5603-4098-917e-da03e8ddf461");
+        dataset.setTitle("Test dataset");
+        dataset.setNotes("Some notes");
+        dataset.setLicenseId("cc-zero");
+        dataset.setState(CkanState.active);
+        dataset.setMetadataCreated(CkanClient.parseTimestamp("2014-11-05T10:24:51.123456"));
+        dataset.setMetadataModified(CkanClient.parseTimestamp("1969-12-31T23:59:59.999999"));
+        dataset.setPriv(false);
+        dataset.setNumResources(1);
+        dataset.addExtras(new CkanPair("a", "1"), new CkanPair("b", null));
+        CkanTag tag = new CkanTag("tag1", "voc");
+        tag.setState(CkanState.active);
+        tag.setRevisionTimestamp(CkanClient.parseTimestamp("2014-11-05T10:24:51.000001"));
+        dataset.addTags(tag);
+        CkanResource resource = new CkanResource("http://example.org/a.csv", "some-id");
+        resource.setFormat("CSV");
+        resource.setDescription("a description");
+        resource.putOthers("x", "y");
+        dataset.addCkanResources(resource);
+        dataset.addGroups(new CkanGroup("group1"));
+        CkanOrganization org = new CkanOrganization("org1");
+        dataset.setOrganization(org);
+        dataset.putOthers("custom", "value");
+        return dataset;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ObjectMapper om = new ObjectMapper();
+        CkanClient.configureObjectMapper(om);
+
+        CkanDataset dataset = makeDataset();
+        CompactCkanDataset compact = CompactCkanDataset.of(dataset);
+
+        assertEquals(om.readTree(om.writeValueAsString(dataset)),
+                om.readTree(om.writeValueAsString(compact.toCkanDataset())));
+        assertEquals(dataset.getMetadataCreated(), compact.toCkanDataset().getMetadataCreated());
+        assertEquals(dataset.getMetadataModified(), compact.toCkanDataset().getMetadataModified());
+    }
+
+    @Test
+    public void testAccessors() {
+        CkanDataset dataset = makeDataset();
+        CompactCkanDataset compact = CompactCkanDataset.of(dataset);
+
+        assertEquals("test-dataset", compact.getName());
+        assertEquals(1, compact.getTagsCount());
+        assertEquals("tag1", compact.getTagName(0));
+        assertEquals("1", compact.getExtra("a"));
+        assertNull(compact.getExtra("b"));
+        assertNull(compact.getExtra("z"));
+        assertEquals(1, compact.getResourcesCount());
+        assertEquals("http://example.org/a.csv", compact.getResourceUrl(0));
+        assertEquals("CSV", compact.getResourceFormat(0));
+        assertEquals("value", compact.getOthers().get("custom"));
+        assertEquals(1415183091123456L, compact.getMetadataCreatedMicros());
+        assertEquals(-1L, compact.getMetadataModifiedMicros());
+    }
+
+    @Test
+    public void testEmpty() {
+        CompactCkanDataset compact = CompactCkanDataset.of(new CkanDataset());
+        CkanDataset dataset = compact.toCkanDataset();
+        assertNull(dataset.getName());
+        assertNull(dataset.getTags());
+        assertNull(dataset.getExtras());
+        assertNull(dataset.getResources());
+        assertNull(dataset.getMetadataCreated());
+        assertEquals(CompactCkanDataset.NO_TIMESTAMP, compact.getMetadataCreatedMicros());
+        assertTrue(compact.getOthers().isEmpty());
+    }
+
+    @Test
+    public void testIndependentCopies() {
+        CompactCkanDataset compact = CompactCkanDataset.of(makeDataset());
+        CkanDataset d1 = compact.toCkanDataset();
+        d1.getResources().get(0).setUrl("changed");
+        d1.setMetadataCreated(new Timestamp(0));
+        assertEquals("http://example.org/a.csv", compact.toCkanDataset().getResources().get(0).getUrl());
+        assertEquals("http://example.org/a.csv", compact.getResourceUrl(0));
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import eu.trentorise.opendata.jackan.model.CkanDataset;
+import eu.trentorise.opendata.jackan.model.CkanDatasetBase;
+import eu.trentorise.opendata.jackan.model.CkanResource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests dataset fingerprints and skipping of unchanged updates.
+ */
+public class FingerprintTest {
+
+    private HttpServer server;
+    private final List<String> actions = new ArrayList();
+
+    private CkanClient start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/3/action/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                synchronized (actions) {
+                    actions.add(ex.getRequestURI()
+                                  .getPath()
+                                  .substring("/api/3/action/".length()));
+                }
+                byte[] ret = "{\"success\":true,\"result\":{\"id\":\"d1\",\"name\":\"ds\",\"package_id\":\"d1\",\"resources\":[]}}".getBytes(
+                        Charsets.UTF_8);
+                ex.sendResponseHeaders(200, ret.length);
+                try (OutputStream out = ex.getResponseBody()) {
+                    out.write(ret);
+                }
+            }
+        });
+        server.start();
+        return new CkanClient("http://localhost:" + server.getAddress()
+                                                          .getPort(),
+                "token");
+    }
+
+    @After
+    public void after() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private static CkanDataset makeDataset() {
+        CkanDataset ret = new CkanDataset("ds");
+        ret.setTitle("Title");
+        CkanResource resource = new CkanResource("http://example.org/a.csv", "d1");
+        resource.setId("r1");
+        ret.setResources(new ArrayList(Arrays.asList(resource)));
+        return ret;
+    }
+
+    @Test
+    public void testFingerprint() {
+        CkanDataset dataset = makeDataset();
+        String fingerprint = CkanClient.fingerprint(dataset);
+        assertEquals(64, fingerprint.length());
+
+        CkanDataset fetched = makeDataset();
+        fetched.setRevisionId("rev");
+        fetched.setMetadataModified(new Timestamp(1000));
+        fetched.getResources()
+               .get(0)
+               .setRevisionId("rev");
+        assertEquals(fingerprint, CkanClient.fingerprint(fetched));
+
+        CkanDataset changed = makeDataset();
+        changed.setTitle("Other title");
+        assertNotEquals(fingerprint, CkanClient.fingerprint(changed));
+    }
+
+    @Test
+    public void testKeyOrder() {
+        Map<String, Object> others1 = new LinkedHashMap();
+        others1.put("a", "1");
+        others1.put("b", "2");
+        Map<String, Object> others2 = new LinkedHashMap();
+        others2.put("b", "2");
+        others2.put("a", "1");
+        others2.put("c", null);
+
+        CkanDatasetBase dataset1 = makeDataset();
+        dataset1.setOthers(others1);
+        CkanDatasetBase dataset2 = makeDataset();
+        dataset2.setOthers(others2);
+        assertEquals(CkanClient.fingerprint(dataset1), CkanClient.fingerprint(dataset2));
+    }
+
+    @Test
+    public void testUpdateIfChanged() throws IOException {
+        CkanClient client = start();
+
+        assertNotNull(client.updateDatasetIfChanged(makeDataset()));
+        assertNull(client.updateDatasetIfChanged(makeDataset()));
+        assertEquals(1, actions.size());
+        assertEquals(1, client.getSentWrites());
+        assertEquals(1, client.getSkippedWrites());
+
+        // fingerprint is also known by the id returned by the server
+        assertEquals(client.getKnownFingerprints()
+                           .get("ds"),
+                client.getKnownFingerprints()
+                      .get("d1"));
+
+        CkanDataset changed = makeDataset();
+        changed.setTitle("Other title");
+        assertNotNull(client.updateDatasetIfChanged(changed));
+        assertNull(client.updateDatasetIfChanged(changed));
+        assertEquals(2, actions.size());
+
+        // other writes make remote content unknown
+        client.updateDataset(makeDataset());
+        assertTrue(client.getKnownFingerprints()
+                         .isEmpty());
+        assertNotNull(client.updateDatasetIfChanged(changed));
+        assertEquals(4, actions.size());
+        assertEquals(3, client.getSentWrites());
+        assertEquals(2, client.getSkippedWrites());
+    }
+
+    @Test
+    public void testRestoredFingerprints() throws IOException {
+        CkanClient client = start();
+        client.putKnownFingerprint("ds", CkanClient.fingerprint(makeDataset()));
+        assertNull(client.updateDatasetIfChanged(makeDataset()));
+        assertTrue(actions.isEmpty());
+
+        client.putKnownFingerprint("ds", null);
+        assertNotNull(client.updateDatasetIfChanged(makeDataset()));
+        assertEquals(1, actions.size());
+
+        // a key moved to another fingerprint is not forgotten with the old one
+        client.putKnownFingerprint("a", "f1");
+        client.putKnownFingerprint("b", "f1");
+        client.putKnownFingerprint("a", "f2");
+        client.putKnownFingerprint("b", null);
+        assertEquals("f2", client.getKnownFingerprints()
+                                 .get("a"));
+        assertFalse(client.getKnownFingerprints()
+                          .containsKey("b"));
+    }
+
+    @Test
+    public void testResourceWritesForgetDataset() throws IOException {
+        CkanClient client = start();
+
+        assertNotNull(client.updateDatasetIfChanged(makeDataset()));
+        client.createResource(new CkanResource("http://example.org/b.csv", "d1"));
+        assertTrue(client.getKnownFingerprints()
+                         .isEmpty());
+        assertNotNull(client.updateDatasetIfChanged(makeDataset()));
+        assertEquals(3, actions.size());
+
+        // package id may only be known from the server answer
+        client.putKnownFingerprint("d1", CkanClient.fingerprint(makeDataset()));
+        CkanResource withoutPackage = new CkanResource("http://example.org/b.csv", null);
+        withoutPackage.setId("r1");
+        client.updateResource(withoutPackage);
+        assertTrue(client.getKnownFingerprints()
+                         .isEmpty());
+
+        // resource deletion looks up the owning dataset
+        client.putKnownFingerprint("d1", CkanClient.fingerprint(makeDataset()));
+        client.deleteResource("r1");
+        assertTrue(client.getKnownFingerprints()
+                         .isEmpty());
+        assertEquals(Arrays.asList("package_update", "resource_create", "package_update", "resource_update",
+                "resource_show", "resource_delete"), actions);
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import eu.trentorise.opendata.jackan.KnownIdsIndex.Kind;
+import eu.trentorise.opendata.jackan.KnownIdsIndex.Presence;
+import eu.trentorise.opendata.jackan.exceptions.CkanValidationException;
+import eu.trentorise.opendata.jackan.model.CkanDatasetBase;
+import eu.trentorise.opendata.jackan.model.CkanResource;
+import eu.trentorise.opendata.jackan.model.CkanResourceBase;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the known ids index and its use in {@link CheckedCkanClient}
+ */
+public class KnownIdsIndexTest {
+
+    private static final String EXISTING = "5b5a9e5a-6a5f-4b4a-9d5e-2f1c4b7a0001";
+
+    private HttpServer server;
+    private final List<String> actions = new ArrayList();
+    private final List<String> searches = new ArrayList();
+    private final Set<String> resourceIds = new HashSet();
+
+    @After
+    public void after() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testIndex() {
+        KnownIdsIndex index = new KnownIdsIndex();
+        List<String> seeded = new ArrayList();
+        for (int i = 0; i < 1000; i++) {
+            seeded.add(UUID.randomUUID()
+                           .toString());
+        }
+        String created = UUID.randomUUID()
+                             .toString();
+
+        assertFalse(index.isSeeded(Kind.RESOURCE));
+        assertEquals(Presence.UNKNOWN, index.check(Kind.RESOURCE, created));
+
+        index.seed(Kind.RESOURCE, seeded);
+        assertTrue(index.isSeeded(Kind.RESOURCE));
+        for (String id : seeded) {
+            assertEquals(Presence.UNKNOWN, index.check(Kind.RESOURCE, id));
+        }
+        int absent = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (index.check(Kind.RESOURCE, UUID.randomUUID()
+                                               .toString()) == Presence.ABSENT) {
+                absent++;
+            }
+        }
+        assertTrue(absent > 950);
+
+        index.add(Kind.RESOURCE, created);
+        assertEquals(Presence.PRESENT, index.check(Kind.RESOURCE, created));
+        assertEquals(Presence.UNKNOWN, index.check(Kind.GROUP, created));
+        index.remove(Kind.RESOURCE, created);
+        assertEquals(Presence.UNKNOWN, index.check(Kind.RESOURCE, created));
+
+        index.confirm(Kind.RESOURCE, "false-positive", false);
+        assertEquals(1, index.getFalsePositives());
+    }
+
+    private CheckedCkanClient start() throws IOException {
+        resourceIds.add(EXISTING);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/3/action/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                serve(ex);
+            }
+        });
+        server.start();
+        return new CheckedCkanClient("http://localhost:" + server.getAddress()
+                                                                 .getPort(),
+                "token");
+    }
+
+    private void serve(HttpExchange ex) throws IOException {
+        String action = ex.getRequestURI()
+                          .getPath()
+                          .substring("/api/3/action/".length());
+        actions.add(action);
+        ObjectNode ret = CkanClient.getObjectMapper()
+                                   .createObjectNode();
+        ret.put("success", true);
+        if ("organization_list".equals(action) || "group_list".equals(action)) {
+            ret.putArray("result");
+        } else if ("package_search".equals(action)) {
+            searches.add(ex.getRequestURI()
+                           .getQuery());
+            ObjectNode result = ret.putObject("result");
+            result.put("count", 1);
+            ArrayNode resources = result.putArray("results")
+                                        .addObject()
+                                        .put("id", "d1")
+                                        .put("name", "ds")
+                                        .putArray("resources");
+            for (String id : resourceIds) {
+                resources.addObject()
+                         .put("id", id)
+                         .put("url", "http://example.org");
+            }
+        } else if ("resource_show".equals(action)) {
+            String id = ex.getRequestURI()
+                          .getQuery()
+                          .substring("id=".length());
+            if (resourceIds.contains(id)) {
+                ret.putObject("result")
+                   .put("id", id);
+            } else {
+                ret.put("success", false);
+                ret.putObject("error")
+                   .put("__type", "Not Found Error")
+                   .put("message", "Not found");
+            }
+        } else if ("package_create".equals(action)) {
+            ObjectNode body = (ObjectNode) CkanClient.getObjectMapper()
+                                                     .readTree(ex.getRequestBody());
+            for (JsonNode resource : body.get("resources")) {
+                resourceIds.add(resource.get("id")
+                                        .asText());
+            }
+            ret.set("result", body.put("id", "d2"));
+        } else if ("resource_create".equals(action)) {
+            ObjectNode body = (ObjectNode) CkanClient.getObjectMapper()
+                                                     .readTree(ex.getRequestBody());
+            resourceIds.add(body.get("id")
+                                .asText());
+            ret.set("result", body);
+        }
+        byte[] bytes = ret.toString()
+                          .getBytes(Charsets.UTF_8);
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static CkanResourceBase resource(String id) {
+        CkanResourceBase ret = new CkanResourceBase("http://example.org/a.csv", "d1");
+        ret.setId(id);
+        return ret;
+    }
+
+    @Test
+    public void testCheckedCreate() throws IOException {
+        CheckedCkanClient client = start();
+        KnownIdsIndex index = client.seedKnownIds();
+        assertSame(index, client.getKnownIdsIndex());
+        actions.clear();
+
+        // free id, no existence check
+        String id = UUID.randomUUID()
+                        .toString();
+        client.createResource(resource(id));
+        assertEquals(1, actions.size());
+
+        // just created, rejected without calls
+        try {
+            client.createResource(resource(id));
+            fail();
+        } catch (CkanValidationException ex) {
+
+        }
+        assertEquals(1, actions.size());
+
+        // seeded, confirmed remotely
+        try {
+            client.createResource(resource(EXISTING));
+            fail();
+        } catch (CkanValidationException ex) {
+
+        }
+        assertEquals(2, actions.size());
+        assertEquals("resource_show", actions.get(1));
+        assertEquals(1, index.getRemoteChecks());
+
+        // without index, every creation checks the server
+        client.setKnownIdsIndex(null);
+        client.createResource(resource(UUID.randomUUID()
+                                           .toString()));
+        assertEquals("resource_show", actions.get(2));
+    }
+
+    @Test
+    public void testSeedAndDatasetWrites() throws IOException {
+        CheckedCkanClient client = start();
+        client.seedKnownIds();
+
+        // private and draft datasets are seeded too, in a stable order
+        assertEquals(1, searches.size());
+        assertTrue(searches.get(0)
+                           .contains("include_private=True"));
+        assertTrue(searches.get(0)
+                           .contains("include_drafts=True"));
+        assertTrue(searches.get(0)
+                           .contains("sort=id asc"));
+
+        // resources created along with a dataset are known
+        String id = UUID.randomUUID()
+                        .toString();
+        CkanResource resource = new CkanResource("http://example.org/a.csv", null);
+        resource.setId(id);
+        CkanDatasetBase dataset = new CkanDatasetBase("ds2");
+        dataset.setResources(new ArrayList(Arrays.asList(resource)));
+        client.createDataset(dataset);
+        actions.clear();
+        try {
+            client.createResource(resource(id));
+            fail();
+        } catch (CkanValidationException ex) {
+
+        }
+        assertTrue(actions.isEmpty());
+    }
+}
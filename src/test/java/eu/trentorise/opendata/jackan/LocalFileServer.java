@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.google.common.hash.Hashing;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local http server of in-memory files supporting ranges, ETags and
+ * conditional requests, for download tests.
+ */
+class LocalFileServer {
+
+    private final HttpServer server;
+    private final Map<String, byte[]> files = new ConcurrentHashMap();
+    final AtomicInteger gets = new AtomicInteger();
+    final AtomicInteger rangeGets = new AtomicInteger();
+
+    LocalFileServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                serve(ex);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Serves data at given path, returning its url
+     */
+    String put(String path, byte[] data) {
+        files.put(path, data);
+        return url(path);
+    }
+
+    String url(String path) {
+        return "http://localhost:" + server.getAddress()
+                                           .getPort()
+                + path;
+    }
+
+    static String etag(byte[] data) {
+        return "\"" + Hashing.md5()
+                             .hashBytes(data)
+                             .toString()
+                + "\"";
+    }
+
+    void stop() {
+        server.stop(0);
+    }
+
+    private void serve(HttpExchange ex) throws IOException {
+        byte[] data = files.get(ex.getRequestURI()
+                                  .getPath());
+        if (data == null) {
+            ex.sendResponseHeaders(404, -1);
+            ex.close();
+            return;
+        }
+        String etag = etag(data);
+        ex.getResponseHeaders()
+          .add("Accept-Ranges", "bytes");
+        ex.getResponseHeaders()
+          .add("ETag", etag);
+        if (etag.equals(ex.getRequestHeaders()
+                          .getFirst("If-None-Match"))) {
+            ex.sendResponseHeaders(304, -1);
+            ex.close();
+            return;
+        }
+        int from = 0;
+        int to = data.length - 1;
+        int status = 200;
+        String range = ex.getRequestHeaders()
+                         .getFirst("Range");
+        if (range != null) {
+            String[] bounds = range.substring("bytes=".length())
+                                   .split("-", -1);
+            from = Integer.parseInt(bounds[0]);
+            if (!bounds[1].isEmpty()) {
+                to = Integer.parseInt(bounds[1]);
+            }
+            status = 206;
+            ex.getResponseHeaders()
+              .add("Content-Range", "bytes " + from + "-" + to + "/" + data.length);
+        }
+        int length = to - from + 1;
+        if ("HEAD".equals(ex.getRequestMethod())) {
+            ex.getResponseHeaders()
+              .add("Content-Length", Integer.toString(length));
+            ex.sendResponseHeaders(status, -1);
+        } else {
+            gets.incrementAndGet();
+            if (range != null) {
+                rangeGets.incrementAndGet();
+            }
+            ex.sendResponseHeaders(status, length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(data, from, length);
+            }
+        }
+        ex.close();
+    }
+}
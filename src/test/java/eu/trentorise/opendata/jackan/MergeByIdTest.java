@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.google.common.base.Function;
+import eu.trentorise.opendata.jackan.model.CkanTag;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests merging of lists in patch updates
+ */
+public class MergeByIdTest {
+
+    private static final Function<CkanTag, String> ID = new Function<CkanTag, String>() {
+        @Override
+        public String apply(CkanTag input) {
+            return input.getId();
+        }
+    };
+
+    private static CkanTag tag(String name, String id) {
+        CkanTag ret = new CkanTag(name);
+        ret.setId(id);
+        return ret;
+    }
+
+    private static List<String> names(List<CkanTag> tags) {
+        List<String> ret = new ArrayList();
+        for (CkanTag tag : tags) {
+            ret.add(tag.getName());
+        }
+        return ret;
+    }
+
+    @Test
+    public void testMerge() {
+        List<CkanTag> target = new ArrayList();
+        CkanClient.mergeById(Arrays.asList(tag("a", "1"), tag("b", null), tag("c", "3"), tag("c2", "3")), target, ID);
+        assertEquals(Arrays.asList("a", "b", "c2"), names(target));
+
+        CkanClient.mergeById(Arrays.asList(tag("x", null), tag("c3", "3"), tag("d", "4"), tag("a2", "1")), target,
+                ID);
+        assertEquals(Arrays.asList("a2", "b", "c3", "x", "d"), names(target));
+    }
+
+    @Test
+    public void testDuplicatesInTarget() {
+        List<CkanTag> target = new ArrayList(Arrays.asList(tag("a", "1"), tag("a-dup", "1")));
+        CkanClient.mergeById(Arrays.asList(tag("a2", "1")), target, ID);
+        assertEquals(Arrays.asList("a2", "a-dup"), names(target));
+    }
+
+    @Test
+    public void testNull() {
+        List<CkanTag> target = new ArrayList(Arrays.asList(tag("a", "1")));
+        CkanClient.mergeById(null, target, ID);
+        assertEquals(Arrays.asList("a"), names(target));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import eu.trentorise.opendata.jackan.model.CkanDatasetBase;
+import eu.trentorise.opendata.jackan.model.CkanResourceBase;
+import eu.trentorise.opendata.jackan.model.CkanTag;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests patch updates against a local server mimicking CKAN actions.
+ */
+public class PatchUpdateTest {
+
+    private static final String DATASET = "{\"id\":\"d1\",\"name\":\"ds\",\"resources\":[],\"tags\":[{\"name\":\"old\"}]}";
+    private static final String RESOURCE = "{\"id\":\"r1\",\"url\":\"http://example.org/a.csv\"}";
+
+    private HttpServer server;
+    private final Map<String, String> results = new HashMap();
+    private final List<String> actions = new ArrayList();
+    private final List<JsonNode> bodies = new ArrayList();
+
+    private CkanClient start(String ckanVersion) throws IOException {
+        results.put("status_show", "{\"ckan_version\":\"" + ckanVersion + "\"}");
+        results.put("package_show", DATASET);
+        results.put("package_patch", DATASET);
+        results.put("package_update", DATASET);
+        results.put("resource_show", RESOURCE);
+        results.put("resource_patch", RESOURCE);
+        results.put("resource_update", RESOURCE);
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/3/action/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                String action = ex.getRequestURI()
+                                  .getPath()
+                                  .substring("/api/3/action/".length());
+                byte[] body = ByteStreams.toByteArray(ex.getRequestBody());
+                synchronized (actions) {
+                    actions.add(action);
+                    bodies.add(body.length == 0 ? null
+                            : CkanClient.getObjectMapper()
+                                        .readTree(body));
+                }
+                byte[] ret = ("{\"success\":true,\"result\":" + results.get(action) + "}").getBytes(Charsets.UTF_8);
+                ex.sendResponseHeaders(200, ret.length);
+                try (OutputStream out = ex.getResponseBody()) {
+                    out.write(ret);
+                }
+            }
+        });
+        server.start();
+        return new CkanClient("http://localhost:" + server.getAddress()
+                                                          .getPort(),
+                "token");
+    }
+
+    @After
+    public void after() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testPatchVersion() {
+        assertTrue(CkanClient.isPatchVersion("2.3"));
+        assertTrue(CkanClient.isPatchVersion("2.5.2"));
+        assertTrue(CkanClient.isPatchVersion("2.10.1"));
+        assertTrue(CkanClient.isPatchVersion("3.0"));
+        assertTrue(CkanClient.isPatchVersion("2.3a"));
+        assertFalse(CkanClient.isPatchVersion("2.2a"));
+        assertFalse(CkanClient.isPatchVersion("1.8"));
+        assertFalse(CkanClient.isPatchVersion("2"));
+        assertFalse(CkanClient.isPatchVersion(""));
+        assertFalse(CkanClient.isPatchVersion(null));
+    }
+
+    @Test
+    public void testPatchDatasetFields() throws IOException {
+        CkanClient client = start("2.5.2");
+        CkanDatasetBase dataset = new CkanDatasetBase();
+        dataset.setId("d1");
+        dataset.setTitle("New title");
+        client.patchUpdateDataset(dataset);
+
+        CkanDatasetBase other = new CkanDatasetBase("ds");
+        other.setNotes("notes");
+        client.patchUpdateDataset(other);
+
+        assertEquals(Arrays.asList("status_show", "package_patch", "package_patch"), actions);
+        assertEquals("New title", bodies.get(1)
+                                        .get("title")
+                                        .asText());
+        assertFalse(bodies.get(1)
+                          .has("resources"));
+        assertFalse(bodies.get(1)
+                          .has("tags"));
+        assertEquals("ds", bodies.get(2)
+                                 .get("id")
+                                 .asText());
+    }
+
+    @Test
+    public void testPatchDatasetMergesLists() throws IOException {
+        CkanClient client = start("2.3");
+        CkanDatasetBase dataset = new CkanDatasetBase("ds");
+        dataset.setTags(new ArrayList(Arrays.asList(new CkanTag("new"))));
+        client.patchUpdateDataset(dataset);
+
+        assertEquals(Arrays.asList("status_show", "package_show", "package_patch"), actions);
+        JsonNode sent = bodies.get(2);
+        assertEquals("d1", sent.get("id")
+                               .asText());
+        assertEquals(2, sent.get("tags")
+                            .size());
+        assertFalse(sent.has("resources"));
+    }
+
+    @Test
+    public void testPatchResource() throws IOException {
+        CkanClient client = start("2.4.1");
+        CkanResourceBase resource = new CkanResourceBase();
+        resource.setId("r1");
+        resource.setName("new name");
+        client.patchUpdateResource(resource);
+        assertEquals(Arrays.asList("status_show", "resource_patch"), actions);
+        assertFalse(bodies.get(1)
+                          .has("url"));
+    }
+
+    @Test
+    public void testOldCkan() throws IOException {
+        CkanClient client = start("2.2a");
+        assertFalse(client.isPatchSupported());
+        CkanResourceBase resource = new CkanResourceBase();
+        resource.setId("r1");
+        resource.setName("new name");
+        client.patchUpdateResource(resource);
+        assertEquals(Arrays.asList("status_show", "resource_show", "resource_update"), actions);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.google.common.hash.Hashing;
+import eu.trentorise.opendata.jackan.model.CkanResource;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the resource cache against a local http server.
+ */
+public class ResourceCacheTest {
+
+    private LocalFileServer server;
+    private CkanClient client;
+    private Path dir;
+
+    @Before
+    public void before() throws IOException {
+        server = new LocalFileServer();
+        client = new CkanClient("http://localhost:1");
+        dir = Files.createTempDirectory("jackan-cache");
+    }
+
+    @After
+    public void after() throws IOException {
+        server.stop();
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException ex) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static byte[] makeData(int seed) {
+        byte[] ret = new byte[10000];
+        new Random(seed).nextBytes(ret);
+        return ret;
+    }
+
+    private CkanResource makeResource(String path, byte[] data) {
+        CkanResource ret = new CkanResource(server.put(path, data), "dataset-id");
+        ret.setHash(Hashing.md5()
+                           .hashBytes(data)
+                           .toString());
+        ret.setLastModified("2015-01-01T00:00:00");
+        return ret;
+    }
+
+    @Test
+    public void testDeduplicate() throws IOException {
+        byte[] data = makeData(1);
+        ResourceCache cache = new ResourceCache(client, dir, 1000000);
+        Path a = cache.fetch(makeResource("/a.csv", data));
+        Path b = cache.fetch(makeResource("/b.csv", data));
+        assertEquals(a, b);
+        assertArrayEquals(data, Files.readAllBytes(a));
+        assertEquals(2, cache.getDownloaded());
+        assertEquals(1, cache.getDeduplicated());
+        assertEquals(data.length, cache.getTotalBytes());
+    }
+
+    @Test
+    public void testSkipUnchanged() throws IOException {
+        byte[] data = makeData(1);
+        ResourceCache cache = new ResourceCache(client, dir, 1000000);
+        CkanResource res = makeResource("/a.csv", data);
+        cache.fetch(res);
+        cache.fetch(res);
+        assertEquals(1, cache.getSkipped());
+        assertEquals(1, server.gets.get());
+
+        res.setLastModified("2015-02-01T00:00:00");
+        Path p = cache.fetch(res);
+        assertEquals(1, cache.getRevalidated());
+        assertEquals(1, server.gets.get());
+        assertArrayEquals(data, Files.readAllBytes(p));
+
+        byte[] newData = makeData(2);
+        CkanResource changed = makeResource("/a.csv", newData);
+        assertArrayEquals(newData, Files.readAllBytes(cache.fetch(changed)));
+        assertEquals(2, cache.getDownloaded());
+    }
+
+    @Test
+    public void testRevalidateLinked() throws IOException {
+        byte[] data = makeData(1);
+        ResourceCache cache = new ResourceCache(client, dir, 1000000);
+        // CKAN fields of externally hosted files can't tell if data changed
+        CkanResource res = makeResource("/a.csv", data);
+        res.setHash("");
+        res.setLastModified(null);
+        cache.fetch(res);
+        cache.fetch(res);
+        assertEquals(0, cache.getSkipped());
+        assertEquals(1, cache.getRevalidated());
+        assertEquals(1, server.gets.get());
+
+        byte[] newData = makeData(2);
+        server.put("/a.csv", newData);
+        assertArrayEquals(newData, Files.readAllBytes(cache.fetch(res)));
+        assertEquals(2, cache.getDownloaded());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        ResourceCache cache = new ResourceCache(client, dir, 25000);
+        CkanResource a = makeResource("/a.csv", makeData(1));
+        CkanResource b = makeResource("/b.csv", makeData(2));
+        CkanResource c = makeResource("/c.csv", makeData(3));
+        cache.fetch(a);
+        cache.fetch(b);
+        cache.fetch(a);
+        cache.fetch(c);
+        assertEquals(1, cache.getEvicted());
+        assertEquals(20000, cache.getTotalBytes());
+        assertNotNull(cache.getCached(a.getUrl()));
+        assertNull(cache.getCached(b.getUrl()));
+        assertNotNull(cache.getCached(c.getUrl()));
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        byte[] data = makeData(1);
+        CkanResource res = makeResource("/a.csv", data);
+        new ResourceCache(client, dir, 1000000).fetch(res);
+
+        ResourceCache cache = new ResourceCache(client, dir, 1000000);
+        assertEquals(data.length, cache.getTotalBytes());
+        assertArrayEquals(data, Files.readAllBytes(cache.fetch(res)));
+        assertEquals(1, cache.getSkipped());
+        assertEquals(1, server.gets.get());
+    }
+}
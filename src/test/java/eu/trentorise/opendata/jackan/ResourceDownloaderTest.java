@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import com.google.common.hash.Hashing;
+import eu.trentorise.opendata.jackan.exceptions.JackanException;
+import eu.trentorise.opendata.jackan.model.CkanResource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests downloads against a local http server supporting ranges.
+ */
+public class ResourceDownloaderTest {
+
+    private byte[] data;
+    private String etag;
+    private LocalFileServer server;
+    private String url;
+    private Path dir;
+
+    @Before
+    public void before() throws IOException {
+        data = new byte[300000];
+        new Random(1).nextBytes(data);
+        etag = LocalFileServer.etag(data);
+        server = new LocalFileServer();
+        url = server.put("/data.bin", data);
+        dir = Files.createTempDirectory("jackan-download");
+    }
+
+    @After
+    public void after() throws IOException {
+        server.stop();
+        for (Path p : Files.newDirectoryStream(dir)) {
+            Files.delete(p);
+        }
+        Files.delete(dir);
+    }
+
+    private CkanResource makeResource(String hash) {
+        CkanResource ret = new CkanResource(url, "dataset-id");
+        ret.setHash(hash);
+        ret.setSize(Integer.toString(data.length));
+        return ret;
+    }
+
+    private ResourceDownloader makeDownloader() {
+        return new CkanClient("http://localhost:1").newResourceDownloader();
+    }
+
+    @Test
+    public void testHashAlgorithm() {
+        assertEquals("MD5", ResourceDownloader.hashAlgorithm(Hashing.md5()
+                                                                    .hashBytes(data)
+                                                                    .toString()));
+        assertEquals("SHA-1", ResourceDownloader.hashAlgorithm(Hashing.sha1()
+                                                                      .hashBytes(data)
+                                                                      .toString()));
+        assertEquals("SHA-256", ResourceDownloader.hashAlgorithm("sha256:" + Hashing.sha256()
+                                                                                     .hashBytes(data)
+                                                                                     .toString()
+                                                                                     .toUpperCase()));
+        assertNull(ResourceDownloader.hashAlgorithm(null));
+        assertNull(ResourceDownloader.hashAlgorithm(""));
+        assertNull(ResourceDownloader.hashAlgorithm("not a hash"));
+        assertNull(ResourceDownloader.hashAlgorithm("abc"));
+    }
+
+    @Test
+    public void testParseSize() {
+        assertEquals(-1, ResourceDownloader.parseSize(null));
+        assertEquals(-1, ResourceDownloader.parseSize("big"));
+        assertEquals(12, ResourceDownloader.parseSize(" 12 "));
+    }
+
+    @Test
+    public void testSegmented() throws IOException {
+        Path target = dir.resolve("data.bin");
+        DownloadResult result = makeDownloader().setMinSegmentSize(50000)
+                                                .setComputeSha256(true)
+                                                .download(makeResource(Hashing.md5()
+                                                                              .hashBytes(data)
+                                                                              .toString()),
+                                                        target, null);
+        assertEquals(4, result.getSegments());
+        assertTrue(result.isHashVerified());
+        assertEquals(data.length, result.getBytes());
+        assertEquals(etag, result.getEtag());
+        assertEquals(Hashing.sha256()
+                            .hashBytes(data)
+                            .toString(),
+                result.getSha256());
+        assertArrayEquals(data, Files.readAllBytes(target));
+        assertFalse(Files.exists(dir.resolve("data.bin" + ResourceDownloader.PART_SUFFIX)));
+    }
+
+    @Test
+    public void testSmallerThanSegment() throws IOException {
+        Path target = dir.resolve("data.bin");
+        DownloadResult result = makeDownloader().download(makeResource(null), target, null);
+        assertEquals(1, result.getSegments());
+        assertEquals(0, server.rangeGets.get());
+        assertArrayEquals(data, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        Path target = dir.resolve("data.bin");
+        Files.write(dir.resolve("data.bin" + ResourceDownloader.PART_SUFFIX), Arrays.copyOf(data, 1000));
+        DownloadResult result = makeDownloader().download(makeResource(Hashing.sha1()
+                                                                              .hashBytes(data)
+                                                                              .toString()),
+                target, null);
+        assertEquals(1, result.getSegments());
+        assertEquals(1, server.rangeGets.get());
+        assertTrue(result.isHashVerified());
+        assertArrayEquals(data, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void testWrongHash() throws IOException {
+        Path target = dir.resolve("data.bin");
+        try {
+            makeDownloader().download(makeResource(Hashing.md5()
+                                                          .hashBytes(new byte[] { 1 })
+                                                          .toString()),
+                    target, null);
+            fail();
+        } catch (JackanException ex) {
+
+        }
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(dir.resolve("data.bin" + ResourceDownloader.PART_SUFFIX)));
+    }
+
+    @Test
+    public void testChannel() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DownloadResult result = makeDownloader().download(makeResource(null), Channels.newChannel(out), null);
+        assertFalse(result.isHashVerified());
+        assertArrayEquals(data, out.toByteArray());
+    }
+
+    @Test
+    public void testNotModified() {
+        Path target = dir.resolve("data.bin");
+        DownloadResult result = makeDownloader().setIfNoneMatch(etag)
+                                                .download(makeResource(null), target, null);
+        assertTrue(result.isNotModified());
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    public void testCatalogHost() {
+        ResourceDownloader downloader = makeDownloader();
+        assertTrue(downloader.isCatalogHost("http://LOCALHOST:8080/a.csv"));
+        assertFalse(downloader.isCatalogHost("http://example.org/a.csv"));
+        assertFalse(downloader.isCatalogHost("not a url"));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.http.entity.ContentType;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * White box testing of upload bodies
+ */
+public class UploadSourceTest {
+
+    private static byte[] makeData(int size) {
+        byte[] ret = new byte[size];
+        new Random(1).nextBytes(ret);
+        return ret;
+    }
+
+    private static class RecordingListener implements TransferListener {
+
+        List<TransferProgress> reports = new ArrayList();
+
+        @Override
+        public void onProgress(TransferProgress progress) {
+            reports.add(progress);
+        }
+
+        TransferProgress last() {
+            return reports.get(reports.size() - 1);
+        }
+    }
+
+    private static byte[] write(UploadSource source, TransferListener listener) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new UploadSourceBody(source, ContentType.APPLICATION_OCTET_STREAM, listener).writeTo(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        byte[] data = makeData(3 * 1024 * 1024 + 17);
+        Path path = Files.createTempFile("jackan-upload", ".bin");
+        try {
+            Files.write(path, data);
+            UploadSource source = UploadSource.of(path);
+            assertTrue(source.isRepeatable());
+            assertEquals(data.length, source.getLength());
+
+            RecordingListener listener = new RecordingListener();
+            assertArrayEquals(data, write(source, listener));
+            assertTrue(listener.reports.size() >= 3);
+            assertTrue(listener.last()
+                               .isDone());
+            assertEquals(data.length, listener.last()
+                                              .getBytesTransferred());
+            assertEquals(1.0, listener.last()
+                                      .getFraction(), 0.0);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testChunkedStream() throws IOException {
+        byte[] data = makeData(100000);
+        UploadSource source = UploadSource.of(new ByteArrayInputStream(data), TransferProgress.UNKNOWN_LENGTH,
+                "a.csv");
+        assertFalse(source.isRepeatable());
+        RecordingListener listener = new RecordingListener();
+        assertArrayEquals(data, write(source, listener));
+        assertEquals(-1, listener.last()
+                                 .getFraction(), 0.0);
+    }
+
+    @Test
+    public void testChannel() throws IOException {
+        byte[] data = makeData(100000);
+        UploadSource source = UploadSource.of(Channels.newChannel(new ByteArrayInputStream(data)), data.length,
+                "a.csv");
+        assertArrayEquals(data, write(source, null));
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrongLength() throws IOException {
+        write(UploadSource.of(new ByteArrayInputStream(makeData(10)), 11, "a.csv"), null);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan.test.benchmark;
+
+import eu.trentorise.opendata.jackan.model.CkanDataset;
+import eu.trentorise.opendata.jackan.model.CkanGroup;
+import eu.trentorise.opendata.jackan.model.CkanOrganization;
+import eu.trentorise.opendata.jackan.model.CkanPair;
+import eu.trentorise.opendata.jackan.model.CkanResource;
+import eu.trentorise.opendata.jackan.model.CkanState;
+import eu.trentorise.opendata.jackan.model.CkanTag;
+import eu.trentorise.opendata.jackan.model.CompactCkanDataset;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Measures retained heap of a synthetic catalog mirror held as
+ * {@link CkanDataset} versus {@link CompactCkanDataset}. Run it with a fixed
+ * heap, i.e. {@code -Xms2g -Xmx2g}, and optionally pass the number of datasets
+ * as first argument (default 100000).
+ */
+public class CompactDatasetFootprintApp {
+
+    private static final String[] LICENSES = {"cc-zero", "cc-by", "cc-by-sa", "odc-odbl", "other-at"};
+    private static final String[] FORMATS = {"CSV", "JSON", "XML", "PDF", "ZIP"};
+
+    static CkanDataset makeDataset(int i) {
+        CkanDataset dataset = new CkanDataset("dataset-" + i);
+        dataset.setId(UUID.randomUUID().toString());
+        dataset.setTitle("Dataset number " + i);
+        dataset.setNotes("Synthetic dataset " + i + " used to measure heap footprint of catalog mirrors.");
+        dataset.setLicenseId(new String(LICENSES[i % LICENSES.length]));
+        dataset.setOwnerOrg(new String("org-" + (i % 50)));
+        dataset.setState(CkanState.active);
+        dataset.setMetadataCreated(new Timestamp(1400000000000L + i * 1000L));
+        dataset.setMetadataModified(new Timestamp(1450000000000L + i * 1000L));
+        dataset.setNumResources(3);
+        dataset.setPriv(false);
+        dataset.setOrganization(new CkanOrganization("org-" + (i % 50)));
+        dataset.addGroups(new CkanGroup("group-" + (i % 20)));
+        for (int j = 0; j < 5; j++) {
+            CkanTag tag = new CkanTag("tag-" + ((i + j) % 300));
+            tag.setId(UUID.randomUUID().toString());
+            tag.setState(CkanState.active);
+            dataset.addTags(tag);
+        }
+        dataset.addExtras(new CkanPair("frequency", "monthly"),
+                new CkanPair("temporal_start", "2015-01-01"),
+                new CkanPair("identifier", "id-" + i));
+        for (int j = 0; j < 3; j++) {
+            CkanResource resource = new CkanResource("http://example.org/" + i + "/" + j, dataset.getId());
+            resource.setId(UUID.randomUUID().toString());
+            resource.setName("Resource " + j);
+            resource.setFormat(new String(FORMATS[(i + j) % FORMATS.length]));
+            resource.setCreated(new Timestamp(1400000000000L + i * 1000L));
+            dataset.addCkanResources(resource);
+        }
+        dataset.putOthers("holder_name", "Some holder " + (i % 10));
+        return dataset;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static long measureFull(int n, long base) {
+        List<CkanDataset> datasets = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            datasets.add(makeDataset(i));
+        }
+        long ret = usedHeap() - base;
+        System.out.println("Sample:             " + datasets.get(n - 1).getName());
+        return ret;
+    }
+
+    private static long measureCompact(int n, long base) {
+        List<CompactCkanDataset> compacts = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            compacts.add(CompactCkanDataset.of(makeDataset(i)));
+        }
+        long ret = usedHeap() - base;
+        System.out.println("Sample:             " + compacts.get(n - 1));
+        return ret;
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        // warms up static state (object mappers, interner) so it is not counted
+        CompactCkanDataset.of(makeDataset(0)).toCkanDataset();
+
+        long base = usedHeap();
+        long fullBytes = measureFull(n, base);
+        base = usedHeap();
+        long compactBytes = measureCompact(n, base);
+
+        System.out.println("Datasets:           " + n);
+        System.out.println("CkanDataset:        " + fullBytes / (1024 * 1024) + " MB ("
+                + fullBytes / n + " bytes/dataset)");
+        System.out.println("CompactCkanDataset: " + compactBytes / (1024 * 1024) + " MB ("
+                + compactBytes / n + " bytes/dataset)");
+        System.out.println("Ratio:              " + String.format("%.2f", (double) compactBytes / fullBytes));
+    }
+}
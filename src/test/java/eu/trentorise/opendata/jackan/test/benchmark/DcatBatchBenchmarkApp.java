@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan.test.benchmark;
+
+import eu.trentorise.opendata.jackan.dcat.DatasetConversion;
+import eu.trentorise.opendata.jackan.dcat.DcatFactory;
+import eu.trentorise.opendata.jackan.dcat.GreedyDcatFactory;
+import eu.trentorise.opendata.jackan.model.CkanDataset;
+import eu.trentorise.opendata.jackan.model.CkanPair;
+import eu.trentorise.opendata.jackan.model.CkanResource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures throughput of {@link DcatFactory#makeDatasets(Iterable, String, Locale)
+ * batch conversions} with 1 thread up to the number of available processors.
+ */
+public class DcatBatchBenchmarkApp {
+
+    private static final String CATALOG_URL = "http://dati.trentino.it";
+
+    private static List<CkanDataset> makeDatasets(int n) {
+        List<CkanDataset> ret = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            CkanDataset dataset = new CkanDataset("dataset-" + i);
+            dataset.setId("id-" + i);
+            dataset.setTitle("Dataset " + i);
+            dataset.setNotes("Notes");
+            List<CkanPair> extras = new ArrayList();
+            extras.add(new CkanPair("publisher_name", "Publisher"));
+            extras.add(new CkanPair("temporal_start", "2015-01-01"));
+            extras.add(new CkanPair("language", "[\"it\", \"en\"]"));
+            dataset.setExtras(extras);
+            List<CkanResource> resources = new ArrayList();
+            for (int j = 0; j < 3; j++) {
+                resources.add(new CkanResource("http://example.org/" + i + "/" + j + ".csv", dataset.getId()));
+            }
+            dataset.setResources(resources);
+            ret.add(dataset);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns converted datasets per second
+     */
+    private static double measure(DcatFactory factory, List<CkanDataset> datasets, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+            List<DatasetConversion> conversions = factory.makeDatasets(datasets, CATALOG_URL, Locale.ITALIAN,
+                    executor, threads * 4, true);
+            double ret = datasets.size() * 1e9 / (System.nanoTime() - start);
+            for (DatasetConversion conversion : conversions) {
+                if (!conversion.isSuccess()) {
+                    throw new IllegalStateException("Failed conversion!", conversion.getError());
+                }
+            }
+            return ret;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) {
+        Logger.getLogger(DcatFactory.class.getName())
+              .setLevel(Level.OFF);
+        List<CkanDataset> datasets = makeDatasets(50000);
+        DcatFactory factory = new GreedyDcatFactory();
+        int processors = Runtime.getRuntime()
+                                .availableProcessors();
+
+        // warm up
+        measure(factory, datasets, processors);
+
+        double single = measure(factory, datasets, 1);
+        for (int threads = 1;; threads = Math.min(2 * threads, processors)) {
+            double throughput = threads == 1 ? single : measure(factory, datasets, threads);
+            System.out.println(String.format("%3d threads: %,12.0f datasets/s, speedup %.1fx", threads, throughput,
+                    throughput / single));
+            if (threads == processors) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan.test.benchmark;
+
+import eu.trentorise.opendata.jackan.dcat.CachingDcatFactory;
+import eu.trentorise.opendata.jackan.dcat.DcatFactory;
+import eu.trentorise.opendata.jackan.dcat.GreedyDcatFactory;
+import eu.trentorise.opendata.jackan.model.CkanDataset;
+import eu.trentorise.opendata.jackan.model.CkanPair;
+import eu.trentorise.opendata.jackan.model.CkanResource;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures regeneration of a whole catalog where 1% of datasets changed, with
+ * and without {@link CachingDcatFactory}, also when the cache is read back from
+ * the spill directory by a new factory. The number of datasets may be given as
+ * first argument, by default it is 50000.
+ */
+public class DcatCacheBenchmarkApp {
+
+    private static final String CATALOG_URL = "http://dati.trentino.it";
+
+    private static List<CkanDataset> makeDatasets(int n, int changedEvery, long modified) {
+        List<CkanDataset> ret = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            CkanDataset dataset = new CkanDataset("dataset-" + i);
+            dataset.setId("id-" + i);
+            dataset.setTitle("Dataset " + i);
+            dataset.setNotes("Notes");
+            dataset.setMetadataModified(new Timestamp(i % changedEvery == 0 ? modified : 0));
+            List<CkanPair> extras = new ArrayList();
+            extras.add(new CkanPair("publisher_name", "Publisher"));
+            extras.add(new CkanPair("temporal_start", "2015-01-01"));
+            extras.add(new CkanPair("language", "[\"it\", \"en\"]"));
+            dataset.setExtras(extras);
+            List<CkanResource> resources = new ArrayList();
+            for (int j = 0; j < 3; j++) {
+                resources.add(new CkanResource("http://example.org/" + i + "/" + j + ".csv", dataset.getId()));
+            }
+            dataset.setResources(resources);
+            ret.add(dataset);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns elapsed milliseconds
+     */
+    private static long measure(DcatFactory factory, List<CkanDataset> datasets) {
+        // datasets cached by previous factories shouldn't slow down this one
+        System.gc();
+        long start = System.nanoTime();
+        for (CkanDataset dataset : datasets) {
+            factory.makeDataset(dataset, CATALOG_URL, Locale.ITALIAN);
+        }
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Logger.getLogger(DcatFactory.class.getName())
+              .setLevel(Level.OFF);
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        List<CkanDataset> before = makeDatasets(n, 100, 0);
+        List<CkanDataset> after = makeDatasets(n, 100, 1000);
+
+        // warm up
+        measure(new GreedyDcatFactory(), before);
+
+        System.out.println(String.format("%-40s %,8d ms", "uncached regeneration",
+                measure(new GreedyDcatFactory(), after)));
+
+        CachingDcatFactory memory = new CachingDcatFactory(new GreedyDcatFactory(), n, null);
+        measure(memory, before);
+        System.out.println(String.format("%-40s %,8d ms", "memory cached regeneration", measure(memory, after)));
+        memory.invalidateAll();
+
+        // a restarted process without spill directory converts and caches
+        // everything again
+        System.out.println(String.format("%-40s %,8d ms", "regeneration after restart, no disk",
+                measure(new CachingDcatFactory(new GreedyDcatFactory(), n, null), after)));
+
+        Path dir = Files.createTempDirectory("jackan-dcat-cache");
+        try {
+            CachingDcatFactory previous = new CachingDcatFactory(new GreedyDcatFactory(), n, dir);
+            measure(previous, before);
+            previous.flush();
+            previous = null;
+
+            // warm up reading, like conversion above
+            measure(new CachingDcatFactory(new GreedyDcatFactory(), n, dir), before);
+
+            // listing the spill directory is part of the restart
+            System.gc();
+            long start = System.nanoTime();
+            CachingDcatFactory spilled = new CachingDcatFactory(new GreedyDcatFactory(), n, dir);
+            long elapsed = (System.nanoTime() - start) / 1000000 + measure(spilled, after);
+            System.out.println(String.format("%-40s %,8d ms", "regeneration after restart from disk", elapsed));
+            System.out.println(spilled);
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan.test.benchmark;
+
+import com.google.common.base.Optional;
+import eu.trentorise.opendata.jackan.dcat.DcatFactory;
+import eu.trentorise.opendata.jackan.dcat.ParsedFieldCache;
+import eu.trentorise.opendata.jackan.model.CkanDataset;
+import eu.trentorise.opendata.jackan.model.CkanPair;
+import eu.trentorise.opendata.jackan.model.CkanResource;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares conversion of sparse datasets to DCAT through the exception-free
+ * find* path of {@link DcatFactory} and through the throwing extract* path,
+ * which the factory takes when a subclass overrides the field extractors, and
+ * with dataset fields looked up in the per-conversion index or by rebuilding
+ * the extras map at each lookup, and with JSON fields repeated across datasets
+ * parsed with and without the {@link ParsedFieldCache}, and conversion to
+ * several locales one at a time or in a single pass. Logging is turned off to
+ * measure extraction only.
+ */
+public class DcatExtractionBenchmarkApp {
+
+    private static final String CATALOG_URL = "http://dati.trentino.it";
+
+    /**
+     * Goes through the extract* field lookups, throwing an exception for each
+     * missing field as Jackan 0.4.2 did.
+     */
+    private static class ThrowingDcatFactory extends DcatFactory {
+
+        @Override
+        protected String extractFieldAsString(CkanDataset dataset, String field) {
+            return super.extractFieldAsString(dataset, field);
+        }
+
+        @Override
+        protected String extractFieldAsString(CkanResource resource, String field) {
+            return super.extractFieldAsString(resource, field);
+        }
+    }
+
+    /**
+     * Rebuilds the extras map at each lookup as Jackan 0.4.2 did.
+     */
+    private static class NonIndexedDcatFactory extends DcatFactory {
+
+        @Override
+        protected Optional<String> findFieldAsString(CkanDataset dataset, String field) {
+            Object candidate = dataset.getOthers() == null ? null : dataset.getOthers()
+                                                                           .get(field);
+            if (candidate instanceof String) {
+                return Optional.of((String) candidate);
+            }
+            return Optional.fromNullable(dataset.getExtrasAsHashMap()
+                                                .get(field));
+        }
+    }
+
+    private static List<CkanDataset> makeDatasets(int n) {
+        List<CkanDataset> ret = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            CkanDataset dataset = new CkanDataset("dataset-" + i);
+            dataset.setId("id-" + i);
+            dataset.setTitle("Dataset " + i);
+            dataset.setNotes("Notes");
+            List<CkanPair> extras = new ArrayList();
+            for (int j = 0; j < 10; j++) {
+                extras.add(new CkanPair("extra-" + j, "value " + j));
+            }
+            dataset.setExtras(extras);
+            List<CkanResource> resources = new ArrayList();
+            for (int j = 0; j < 3; j++) {
+                resources.add(new CkanResource("http://example.org/" + i + "/" + j + ".csv", dataset.getId()));
+            }
+            dataset.setResources(resources);
+            ret.add(dataset);
+        }
+        return ret;
+    }
+
+    /**
+     * Makes datasets sharing the same spatial, language and theme JSON
+     */
+    private static List<CkanDataset> makeJsonDatasets(int n) {
+        List<CkanDataset> ret = makeDatasets(n);
+        for (CkanDataset dataset : ret) {
+            dataset.getExtras()
+                   .add(new CkanPair("spatial",
+                           "{\"type\":\"Polygon\",\"coordinates\":[[[10.5, 45.7], [11.9, 45.7], [11.9, 46.5], [10.5, 46.5], [10.5, 45.7]]]}"));
+            dataset.getExtras()
+                   .add(new CkanPair("language", "[\"it\", \"en\", \"de\"]"));
+            dataset.getExtras()
+                   .add(new CkanPair("theme", "[\"http://publications.europa.eu/resource/authority/data-theme/ENVI\", \"Ambiente\"]"));
+        }
+        return ret;
+    }
+
+    private static final List<Locale> LOCALES = Arrays.asList(Locale.ITALIAN, Locale.ENGLISH, Locale.GERMAN);
+
+    /**
+     * Returns average nanoseconds of the conversion of a dataset to all
+     * {@link #LOCALES}
+     */
+    private static double measureLocales(DcatFactory factory, List<CkanDataset> datasets, int iterations,
+            boolean singlePass) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int it = 0; it < iterations; it++) {
+            for (CkanDataset dataset : datasets) {
+                if (singlePass) {
+                    checksum += factory.makeDatasetVariants(dataset, CATALOG_URL, LOCALES)
+                                       .size();
+                } else {
+                    for (Locale locale : LOCALES) {
+                        factory.makeDataset(dataset, CATALOG_URL, locale);
+                        checksum++;
+                    }
+                }
+            }
+        }
+        double ret = (double) (System.nanoTime() - start) / ((long) iterations * datasets.size());
+        if (checksum != (long) LOCALES.size() * iterations * datasets.size()) {
+            throw new IllegalStateException("Wrong conversion result!");
+        }
+        return ret;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread()
+                                                                                                                  .getId());
+    }
+
+    /**
+     * Returns average nanoseconds of a dataset conversion
+     */
+    private static double measure(DcatFactory factory, List<CkanDataset> datasets, int iterations) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int it = 0; it < iterations; it++) {
+            for (CkanDataset dataset : datasets) {
+                checksum += factory.makeDataset(dataset, CATALOG_URL, Locale.ITALIAN)
+                                   .getDistributions()
+                                   .size();
+            }
+        }
+        double ret = (double) (System.nanoTime() - start) / ((long) iterations * datasets.size());
+        if (checksum != 3L * iterations * datasets.size()) {
+            throw new IllegalStateException("Wrong conversion result!");
+        }
+        return ret;
+    }
+
+    /**
+     * Returns average bytes allocated by a dataset conversion
+     */
+    private static double measureAllocation(DcatFactory factory, List<CkanDataset> datasets) {
+        long start = allocatedBytes();
+        for (CkanDataset dataset : datasets) {
+            factory.makeDataset(dataset, CATALOG_URL, Locale.ITALIAN);
+        }
+        return (double) (allocatedBytes() - start) / datasets.size();
+    }
+
+    public static void main(String[] args) {
+        Logger.getLogger(DcatFactory.class.getName())
+              .setLevel(Level.OFF);
+        List<CkanDataset> datasets = makeDatasets(1000);
+        DcatFactory finding = new DcatFactory();
+        DcatFactory throwing = new ThrowingDcatFactory();
+        DcatFactory nonIndexed = new NonIndexedDcatFactory();
+
+        // warm up
+        measure(throwing, datasets, 20);
+        measure(finding, datasets, 20);
+        measure(nonIndexed, datasets, 20);
+
+        double throwingNanos = measure(throwing, datasets, 20);
+        double findingNanos = measure(finding, datasets, 20);
+        System.out.println(String.format("throwing extract* path %,10.0f ns/dataset, find* path %,10.0f ns/dataset, speedup %.1fx",
+                throwingNanos, findingNanos, throwingNanos / findingNanos));
+
+        double nonIndexedNanos = measure(nonIndexed, datasets, 20);
+        double nonIndexedBytes = measureAllocation(nonIndexed, datasets);
+        double indexedBytes = measureAllocation(finding, datasets);
+        System.out.println(String.format("non indexed fields %,10.0f ns/dataset %,10.0f bytes/dataset, indexed fields %,10.0f ns/dataset %,10.0f bytes/dataset",
+                nonIndexedNanos, nonIndexedBytes, findingNanos, indexedBytes));
+
+        List<CkanDataset> jsonDatasets = makeJsonDatasets(1000);
+        DcatFactory uncached = new DcatFactory();
+        uncached.setParsedFieldCache(new ParsedFieldCache(0, 0));
+        measure(uncached, jsonDatasets, 20);
+        measure(finding, jsonDatasets, 20);
+        double uncachedNanos = measure(uncached, jsonDatasets, 20);
+        finding.getParsedFieldCache()
+               .invalidateAll();
+        double cachedNanos = measure(finding, jsonDatasets, 20);
+        System.out.println(String.format("uncached JSON fields %,10.0f ns/dataset, cached JSON fields %,10.0f ns/dataset, speedup %.1fx, %s",
+                uncachedNanos, cachedNanos, uncachedNanos / cachedNanos, finding.getParsedFieldCache()));
+
+        measureLocales(finding, jsonDatasets, 10, false);
+        measureLocales(finding, jsonDatasets, 10, true);
+        double perLocaleNanos = measureLocales(finding, jsonDatasets, 10, false);
+        double singlePassNanos = measureLocales(finding, jsonDatasets, 10, true);
+        System.out.println(String.format("%d locales one at a time %,10.0f ns/dataset, in a single pass %,10.0f ns/dataset, speedup %.1fx",
+                LOCALES.size(), perLocaleNanos, singlePassNanos, perLocaleNanos / singlePassNanos));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan.test.benchmark;
+
+import com.google.common.base.Function;
+import eu.trentorise.opendata.jackan.CkanClient;
+import eu.trentorise.opendata.jackan.model.CkanResource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares resource merging of patch updates done with a nested scan (as in
+ * Jackan 0.4.2) and with {@link CkanClient#mergeById(List, List, Function)}
+ * on datasets with 10, 1000 and 10000 resources, where half of the patched
+ * resources replace existing ones.
+ */
+public class MergeResourcesBenchmarkApp {
+
+    private static final Function<CkanResource, String> ID = new Function<CkanResource, String>() {
+        @Override
+        public String apply(CkanResource input) {
+            return input.getId();
+        }
+    };
+
+    private static List<CkanResource> makeResources(int from, int n) {
+        List<CkanResource> ret = new ArrayList<>(n);
+        for (int i = from; i < from + n; i++) {
+            CkanResource resource = new CkanResource("http://example.org/" + i, "dataset");
+            resource.setId("resource-" + i);
+            ret.add(resource);
+        }
+        return ret;
+    }
+
+    private static void nestedScan(List<CkanResource> resourcesToMerge, List<CkanResource> targetResources) {
+        for (CkanResource resourceToMerge : resourcesToMerge) {
+            boolean replaced = false;
+            for (int i = 0; i < targetResources.size(); i++) {
+                if (resourceToMerge.getId() != null && resourceToMerge.getId()
+                                                                      .equals(targetResources.get(i)
+                                                                                             .getId())) {
+                    targetResources.set(i, resourceToMerge);
+                    replaced = true;
+                    break;
+                }
+            }
+            if (!replaced) {
+                targetResources.add(resourceToMerge);
+            }
+        }
+    }
+
+    /**
+     * Returns average nanoseconds of a patch merge
+     */
+    private static double measure(int n, boolean indexed, int iterations) {
+        List<CkanResource> orig = makeResources(0, n);
+        List<CkanResource> patch = makeResources(n / 2, n);
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int it = 0; it < iterations; it++) {
+            List<CkanResource> target = new ArrayList();
+            if (indexed) {
+                CkanClient.mergeById(orig, target, ID);
+                CkanClient.mergeById(patch, target, ID);
+            } else {
+                nestedScan(orig, target);
+                nestedScan(patch, target);
+            }
+            checksum += target.size();
+        }
+        double ret = (double) (System.nanoTime() - start) / iterations;
+        if (checksum != (long) iterations * (n + n - n / 2)) {
+            throw new IllegalStateException("Wrong merge result!");
+        }
+        return ret;
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = { 10, 1000, 10000 };
+        for (int n : sizes) {
+            int iterations = Math.max(3, 2000000 / (n * n / 10 + n));
+            // warm up
+            measure(n, false, iterations);
+            measure(n, true, iterations * 10);
+
+            double nested = measure(n, false, iterations);
+            double indexed = measure(n, true, iterations * 10);
+            System.out.println(String.format("%6d resources: nested scan %,14.0f ns, indexed %,12.0f ns, speedup %.1fx",
+                    n, nested, indexed, nested / indexed));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan.test.dcat;
+
+import com.google.common.collect.Lists;
+import eu.trentorise.opendata.jackan.dcat.CachingDcatFactory;
+import eu.trentorise.opendata.jackan.dcat.DcatFactory;
+import eu.trentorise.opendata.jackan.dcat.DcatMappingProfile;
+import eu.trentorise.opendata.jackan.dcat.DcatMappingProfile.Property;
+import eu.trentorise.opendata.jackan.dcat.GreedyDcatFactory;
+import eu.trentorise.opendata.jackan.model.CkanDataset;
+import eu.trentorise.opendata.jackan.model.CkanPair;
+import eu.trentorise.opendata.jackan.model.CkanResource;
+import eu.trentorise.opendata.jackan.test.JackanTestConfig;
+import eu.trentorise.opendata.traceprov.dcat.DcatDataset;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.Locale;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @since 0.4.3
+ */
+public class CachingDcatFactoryTest {
+
+    private static final String CATALOG_URL = "http://example.org";
+
+    private Path spillDirectory;
+
+    @BeforeClass
+    public static void setUpClass() {
+        JackanTestConfig.of()
+                        .loadConfig();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        spillDirectory = Files.createTempDirectory("jackan-dcat-cache");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDirectory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(spillDirectory);
+    }
+
+    private static CkanDataset makeDataset(long modified) {
+        CkanDataset dataset = new CkanDataset("dataset-1");
+        dataset.setId("id-1");
+        dataset.setTitle("Dataset " + modified);
+        dataset.setMetadataModified(new Timestamp(modified));
+        dataset.setExtras(Lists.newArrayList(new CkanPair("publisher_name", "Publisher"),
+                new CkanPair("theme", "[\"Environment and nature\"]")));
+        dataset.setResources(Lists.newArrayList(new CkanResource("http://example.org/1.csv", null)));
+        return dataset;
+    }
+
+    @Test
+    public void testMemory() {
+        CachingDcatFactory factory = new CachingDcatFactory(new DcatFactory());
+
+        DcatDataset first = factory.makeDataset(makeDataset(1000), CATALOG_URL, Locale.ITALIAN);
+        assertSame(first, factory.makeDataset(makeDataset(1000), CATALOG_URL, Locale.ITALIAN));
+        assertEquals(1, factory.getHitCount());
+        assertEquals(1, factory.getMissCount());
+
+        DcatDataset changed = factory.makeDataset(makeDataset(2000), CATALOG_URL, Locale.ITALIAN);
+        assertEquals("Dataset 2000", changed.getTitle()
+                                            .string(Locale.ITALIAN));
+        factory.makeDataset(makeDataset(2000), CATALOG_URL, Locale.ENGLISH);
+        assertEquals(3, factory.getMissCount());
+
+        CkanDataset unversioned = makeDataset(1000);
+        unversioned.setMetadataModified(null);
+        assertNotSame(factory.makeDataset(unversioned, CATALOG_URL, Locale.ITALIAN),
+                factory.makeDataset(unversioned, CATALOG_URL, Locale.ITALIAN));
+        assertEquals(5, factory.getMissCount());
+        assertEquals(1, factory.getHitCount());
+
+        // the profile of the wrapped factory is part of the key
+        factory.getDelegate()
+               .setMappingProfile(DcatMappingProfile.of()
+                                                    .with(Property.IDENTIFIER));
+        factory.makeDataset(makeDataset(1000), CATALOG_URL, Locale.ITALIAN);
+        assertEquals(6, factory.getMissCount());
+    }
+
+    @Test
+    public void testSpill() {
+        CachingDcatFactory previous = new CachingDcatFactory(new DcatFactory(), 10, spillDirectory);
+        DcatDataset first = previous.makeDataset(makeDataset(1000), CATALOG_URL, Locale.ITALIAN);
+        previous.flush();
+
+        CachingDcatFactory factory = new CachingDcatFactory(new DcatFactory(), 10, spillDirectory);
+        assertEquals(first, factory.makeDataset(makeDataset(1000), CATALOG_URL, Locale.ITALIAN));
+        assertEquals(1, factory.getDiskHitCount());
+        assertEquals(0, factory.getMissCount());
+
+        factory.makeDataset(makeDataset(2000), CATALOG_URL, Locale.ITALIAN);
+        assertEquals(1, factory.getMissCount());
+
+        // another factory class doesn't see cached datasets
+        CachingDcatFactory greedy = new CachingDcatFactory(new GreedyDcatFactory(), 10, spillDirectory);
+        greedy.makeDataset(makeDataset(2000), CATALOG_URL, Locale.ITALIAN);
+        assertEquals(0, greedy.getDiskHitCount());
+        assertEquals(1, greedy.getMissCount());
+
+        // nor does a factory with another profile
+        DcatFactory profiled = new DcatFactory();
+        profiled.setMappingProfile(DcatMappingProfile.of()
+                                                     .with(Property.IDENTIFIER));
+        CachingDcatFactory other = new CachingDcatFactory(profiled, 10, spillDirectory);
+        other.makeDataset(makeDataset(2000), CATALOG_URL, Locale.ITALIAN);
+        assertEquals(0, other.getDiskHitCount());
+        assertEquals(1, other.getMissCount());
+
+        factory.invalidateAll();
+        assertEquals(0, factory.size());
+        factory.makeDataset(makeDataset(2000), CATALOG_URL, Locale.ITALIAN);
+        assertEquals(1, factory.getDiskHitCount());
+        assertEquals(2, factory.getMissCount());
+    }
+
+    private int countSpilled() throws IOException {
+        int ret = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDirectory)) {
+            for (Path file : files) {
+                ret++;
+            }
+        }
+        return ret;
+    }
+
+    @Test
+    public void testSpillReplaced() throws IOException {
+        CachingDcatFactory previous = new CachingDcatFactory(new DcatFactory(), 10, spillDirectory);
+        previous.makeDataset(makeDataset(1000), CATALOG_URL, Locale.ITALIAN);
+        previous.flush();
+
+        CachingDcatFactory factory = new CachingDcatFactory(new DcatFactory(), 10, spillDirectory);
+        DcatDataset changed = factory.makeDataset(makeDataset(2000), CATALOG_URL, Locale.ITALIAN);
+        assertEquals(0, factory.getDiskHitCount());
+        assertEquals(1, factory.getMissCount());
+        factory.flush();
+        // the stale dataset is gone
+        assertEquals(1, countSpilled());
+
+        CachingDcatFactory next = new CachingDcatFactory(new DcatFactory(), 10, spillDirectory);
+        assertEquals(changed, next.makeDataset(makeDataset(2000), CATALOG_URL, Locale.ITALIAN));
+        assertEquals(1, next.getDiskHitCount());
+        next.makeDataset(makeDataset(1000), CATALOG_URL, Locale.ITALIAN);
+        assertEquals(1, next.getMissCount());
+    }
+
+    @Test
+    public void testSpillEvicted() {
+        CachingDcatFactory factory = new CachingDcatFactory(new DcatFactory(), 1, spillDirectory);
+        CkanDataset other = makeDataset(1000);
+        other.setId("id-2");
+
+        DcatDataset first = factory.makeDataset(makeDataset(1000), CATALOG_URL, Locale.ITALIAN);
+        factory.makeDataset(other, CATALOG_URL, Locale.ITALIAN);
+        assertEquals(1, factory.size());
+
+        assertEquals(first, factory.makeDataset(makeDataset(1000), CATALOG_URL, Locale.ITALIAN));
+        assertEquals(1, factory.getDiskHitCount());
+        assertEquals(2, factory.getMissCount());
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2015 Trento Rise  (trentorise.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.trentorise.opendata.jackan.test.dcat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import eu.trentorise.opendata.jackan.CkanClient;
+import eu.trentorise.opendata.jackan.CkanQuery;
+import eu.trentorise.opendata.jackan.dcat.DcatExporter;
+import eu.trentorise.opendata.jackan.dcat.DcatFactory;
+import eu.trentorise.opendata.jackan.dcat.ExportReport;
+import eu.trentorise.opendata.jackan.model.CkanDataset;
+import eu.trentorise.opendata.jackan.model.CkanPair;
+import eu.trentorise.opendata.jackan.model.CkanResource;
+import eu.trentorise.opendata.jackan.test.JackanTestConfig;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @since 0.4.3
+ */
+public class DcatExporterTest {
+
+    private static final String CATALOG_URL = "http://example.org";
+
+    private DcatExporter exporter;
+
+    @BeforeClass
+    public static void setUpClass() {
+        JackanTestConfig.of()
+                        .loadConfig();
+    }
+
+    @Before
+    public void setUp() {
+        exporter = new DcatExporter(new CkanClient(CATALOG_URL), new DcatFactory()).setLocale(Locale.ITALIAN)
+                                                                                   .setPageSize(2);
+    }
+
+    private static List<CkanDataset> makeDatasets() {
+        List<CkanDataset> ret = new ArrayList();
+        for (int i = 0; i < 3; i++) {
+            CkanDataset dataset = new CkanDataset("dataset-" + i);
+            dataset.setId("id-" + i);
+            dataset.setTitle("Dataset \"" + i + "\"\nline");
+            dataset.setExtras(Lists.newArrayList(new CkanPair("publisher_name", "Publisher"),
+                    new CkanPair("theme", "[\"Environment and nature\"]")));
+            dataset.setResources(Lists.newArrayList(new CkanResource("http://example.org/" + i + ".csv", null)));
+            ret.add(dataset);
+        }
+        ret.add(null);
+        return ret;
+    }
+
+    @Test
+    public void testJsonLd() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExportReport report = exporter.export(makeDatasets(), out);
+        assertEquals(3, report.getExported());
+        assertEquals(1, report.getFailed());
+        assertEquals(out.size(), report.getBytes());
+
+        JsonNode root = new ObjectMapper().readTree(out.toByteArray());
+        assertEquals("http://www.w3.org/ns/dcat#", root.get("@context")
+                                                       .get("dcat")
+                                                       .asText());
+        JsonNode graph = root.get("@graph");
+        assertEquals(3, graph.size());
+        JsonNode dataset = graph.get(1);
+        assertEquals("http://example.org/dataset/id-1", dataset.get("@id")
+                                                             .asText());
+        assertEquals("dcat:Dataset", dataset.get("@type")
+                                            .asText());
+        assertEquals("it", dataset.get("dct:title")
+                                  .get(0)
+                                  .get("@language")
+                                  .asText());
+        assertEquals("Dataset \"1\"\nline", dataset.get("dct:title")
+                                                   .get(0)
+                                                   .get("@value")
+                                                   .asText());
+        assertEquals("Environment and nature", dataset.get("dcat:theme")
+                                           .get(0)
+                                           .get("skos:prefLabel")
+                                           .get(0)
+                                           .get("@value")
+                                           .asText());
+        assertEquals("http://example.org/1.csv", dataset.get("dcat:distribution")
+                                                        .get(0)
+                                                        .get("dcat:accessURL")
+                                                        .get(0)
+                                                        .get("@id")
+                                                        .asText());
+    }
+
+    @Test
+    public void testNTriplesGzip() throws Exception {
+        Path file = Files.createTempFile("jackan-dcat", ".nt.gz");
+        try {
+            ExportReport report = exporter.setFormat(DcatExporter.Format.N_TRIPLES)
+                                          .setGzip(true)
+                                          .export(makeDatasets(), file);
+            assertEquals(3, report.getExported());
+            assertEquals(Files.size(file), report.getBytes());
+
+            String nt;
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+                nt = new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+            }
+            assertTrue(nt.contains(
+                    "<http://example.org/dataset/id-2> <http://purl.org/dc/terms/title> \"Dataset \\\"2\\\"\\nline\"@it .\n"));
+            assertTrue(nt.contains(
+                    "<http://example.org/dataset/id-0> <http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <http://www.w3.org/ns/dcat#Dataset> .\n"));
+            for (String line : nt.split("\n")) {
+                assertTrue(line, line.endsWith(" ."));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static final Pattern ROWS = Pattern.compile("rows=(\\d+)");
+
+    private static final Pattern AFTER_ID = Pattern.compile("id:\\{\"([^\"]*)\" TO \\*\\]");
+
+    /**
+     * Serves package_search pages of datasets by ascending id, honoring the
+     * rows limit and the id range filter of the exporter.
+     */
+    private static void serveSearch(HttpExchange ex, List<String> searches) throws IOException {
+        String query = ex.getRequestURI()
+                         .getQuery();
+        searches.add(query);
+        Matcher rows = ROWS.matcher(query);
+        assertTrue(rows.find());
+        Matcher afterId = AFTER_ID.matcher(query);
+        String after = afterId.find() ? afterId.group(1) : "";
+
+        ObjectNode ret = new ObjectMapper().createObjectNode();
+        ret.put("success", true);
+        ObjectNode result = ret.putObject("result");
+        result.put("count", 5);
+        ArrayNode results = result.putArray("results");
+        for (int i = 0; i < 5 && results.size() < Integer.parseInt(rows.group(1)); i++) {
+            String id = "id-" + i;
+            if (id.compareTo(after) > 0) {
+                results.addObject()
+                       .put("id", id)
+                       .put("name", "dataset-" + i)
+                       .put("title", "Dataset " + i)
+                       .putArray("resources");
+            }
+        }
+        byte[] bytes = ret.toString()
+                          .getBytes(Charsets.UTF_8);
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    public void testCatalogPages() throws Exception {
+        final List<String> searches = new ArrayList();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/3/action/package_search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                serveSearch(ex, searches);
+            }
+        });
+        server.start();
+        try {
+            CkanQuery query = CkanQuery.filter()
+                                       .sortBy("title", true);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ExportReport report = new DcatExporter(new CkanClient("http://localhost:" + server.getAddress()
+                                                                                              .getPort()),
+                    new DcatFactory()).setPageSize(2)
+                                      .setQuery(query)
+                                      .export(out);
+
+            assertEquals(5, report.getExported());
+            JsonNode graph = new ObjectMapper().readTree(out.toByteArray())
+                                               .get("@graph");
+            assertEquals(5, graph.size());
+            assertEquals("http://localhost:" + server.getAddress()
+                                                     .getPort()
+                    + "/dataset/id-4", graph.get(4)
+                                            .get("@id")
+                                            .asText());
+            assertEquals(3, searches.size());
+            for (String search : searches) {
+                assertTrue(search, search.contains("sort=id asc"));
+                assertFalse(search, search.contains("start=2"));
+            }
+            assertTrue(searches.get(2)
+                               .contains("id:{\"id-3\" TO *]"));
+            // the query given to the exporter is not changed
+            assertEquals(Lists.newArrayList("title asc"), query.getSort());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
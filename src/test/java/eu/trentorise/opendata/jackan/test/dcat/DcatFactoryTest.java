@@ -16,19 +16,38 @@
 package eu.trentorise.opendata.jackan.test.dcat;
 
 import com.google.common.collect.Lists;
+import eu.trentorise.opendata.commons.Dict;
 import eu.trentorise.opendata.jackan.model.CkanDataset;
 import eu.trentorise.opendata.jackan.model.CkanPair;
 import eu.trentorise.opendata.jackan.model.CkanResource;
+import eu.trentorise.opendata.jackan.model.CkanTag;
+import eu.trentorise.opendata.jackan.dcat.ConversionReport;
+import eu.trentorise.opendata.jackan.dcat.ConversionReport.Outcome;
+import eu.trentorise.opendata.jackan.dcat.DatasetConversion;
+import com.google.common.collect.ImmutableMap;
 import eu.trentorise.opendata.jackan.dcat.DcatFactory;
+import eu.trentorise.opendata.jackan.dcat.DcatMappingProfile;
+import eu.trentorise.opendata.jackan.dcat.DcatMappingProfile.Property;
+import eu.trentorise.opendata.jackan.dcat.GreedyDcatFactory;
+import eu.trentorise.opendata.jackan.dcat.ParsedFieldCache;
+import eu.trentorise.opendata.jackan.exceptions.JackanException;
 import eu.trentorise.opendata.jackan.test.JackanTestConfig;
 import eu.trentorise.opendata.traceprov.dcat.DcatDataset;
 import eu.trentorise.opendata.traceprov.dcat.DcatDistribution;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import eu.trentorise.opendata.jackan.test.JackanTestRunner;
 import org.junit.After;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.BeforeClass;
 
@@ -116,6 +135,326 @@ public class DcatFactoryTest {
         assertEquals(CATALOG_URL, dcatDataset.getDistributions().get(0).getAccessURL());
     }
 
+    /**
+     * Makes a dataset with some fields in extras and others, and some missing
+     * ones.
+     */
+    private static CkanDataset makeSparseDataset() {
+        CkanDataset dataset = new CkanDataset("sparse-dataset");
+        dataset.setId(makeUuid(2));
+        dataset.setTitle(" Sparse ");
+        dataset.setMaintainer("Maintainer");
+        dataset.setMetadataModified(Timestamp.valueOf("2015-01-02 03:04:05.123"));
+        dataset.setTags(Lists.newArrayList(new CkanTag("a"), new CkanTag(" ")));
+        dataset.setExtras(Lists.newArrayList(new CkanPair("temporal_start", "2015-01-01"),
+                new CkanPair("publisher_name", "Publisher"),
+                new CkanPair("spatial_text", "Trento")));
+        dataset.putOthers("frequency", "monthly");
+        CkanResource resource = new CkanResource("http://example.org/a.csv", null);
+        resource.setId(makeUuid(3));
+        resource.setSize("12");
+        resource.putOthers("rights", "all");
+        dataset.setResources(Lists.newArrayList(resource));
+        return dataset;
+    }
+
+    /**
+     * Overriding field extractors must switch conversion to the extract*
+     * path, which should give the same result of the find* one.
+     */
+    @Test
+    public void testFindPathMatchesExtractPath() {
+        DcatFactory legacyFactory = new DcatFactory() {
+            @Override
+            protected String extractFieldAsString(CkanDataset dataset, String field) {
+                return super.extractFieldAsString(dataset, field);
+            }
+        };
+
+        DcatDataset dcatDataset = dcatFactory.makeDataset(makeSparseDataset(), CATALOG_URL, Locale.ITALIAN);
+        assertEquals(legacyFactory.makeDataset(makeSparseDataset(), CATALOG_URL, Locale.ITALIAN), dcatDataset);
+        assertEquals("monthly", dcatDataset.getAccrualPeriodicity());
+        assertEquals(Dict.of(Locale.ITALIAN, "Publisher"), dcatDataset.getPublisher().getName());
+        assertEquals(Lists.newArrayList("a"), dcatDataset.getKeywords());
+        assertEquals(12, dcatDataset.getDistributions().get(0).getByteSize());
+    }
+
+    @Test
+    public void testOthersShadowExtras() {
+        CkanDataset dataset = makeSparseDataset();
+        dataset.getExtras().add(new CkanPair("frequency", "daily"));
+        dataset.getExtras().add(new CkanPair("identifier", "from-extras"));
+        dataset.putOthers("identifier", 1);
+
+        DcatDataset dcatDataset = dcatFactory.makeDataset(dataset, CATALOG_URL, Locale.ITALIAN);
+        assertEquals("monthly", dcatDataset.getAccrualPeriodicity());
+        assertEquals("from-extras", dcatDataset.getIdentifier());
+    }
+
+    @Test
+    public void testConversionReport() {
+        CkanDataset dataset = makeSparseDataset();
+        dataset.getResources().get(0).setSize("big");
+        dcatFactory.makeDataset(dataset, CATALOG_URL, Locale.ITALIAN);
+        dcatFactory.makeDataset(makeSparseDataset(), CATALOG_URL, Locale.ITALIAN);
+
+        ConversionReport report = dcatFactory.getConversionReport();
+        assertEquals(2, report.getConversions(ConversionReport.DATASET));
+        assertEquals(2, report.getConversions(ConversionReport.DISTRIBUTION));
+        assertEquals(2, report.getCount(ConversionReport.DATASET, "title", Outcome.FOUND));
+        assertEquals(2, report.getCount(ConversionReport.DATASET, "landingPage", Outcome.MISSING));
+        assertEquals(1, report.getCount(ConversionReport.DISTRIBUTION, "byteSize", Outcome.FOUND));
+        assertEquals(1, report.getCount(ConversionReport.DISTRIBUTION, "byteSize", Outcome.ERROR));
+        assertEquals(Long.valueOf(1), report.getMetrics().get("distribution.byteSize.error"));
+
+        report.reset();
+        assertTrue(report.getMetrics().isEmpty());
+    }
+
+    @Test
+    public void testMakeDatasets() {
+        DcatFactory factory = new GreedyDcatFactory() {
+            @Override
+            protected void postProcessDataset(DcatDataset.Builder datasetBuilder, String catalogUrl, Locale locale) {
+                if ("bad".equals(datasetBuilder.build().getTitle().str(locale))) {
+                    throw new IllegalStateException("Bad dataset!");
+                }
+            }
+        };
+        List<CkanDataset> datasets = new ArrayList();
+        for (int i = 0; i < 20; i++) {
+            CkanDataset dataset = makeSparseDataset();
+            dataset.setTitle("dataset " + i);
+            datasets.add(dataset);
+        }
+        datasets.get(5).setTitle("bad");
+        datasets.set(7, null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<DatasetConversion> conversions = factory.makeDatasets(datasets, CATALOG_URL, Locale.ITALIAN,
+                    executor, 4, true);
+            assertEquals(20, conversions.size());
+            for (int i = 0; i < 20; i++) {
+                DatasetConversion conversion = conversions.get(i);
+                assertEquals(i, conversion.getIndex());
+                assertSame(datasets.get(i), conversion.getInput());
+                if (i == 5 || i == 7) {
+                    assertFalse(conversion.isSuccess());
+                } else {
+                    assertEquals(Dict.of(Locale.ITALIAN, "dataset " + i), conversion.getDataset().getTitle());
+                }
+            }
+            assertTrue(conversions.get(5).getError() instanceof IllegalStateException);
+
+            assertEquals(20, factory.makeDatasets(datasets, CATALOG_URL, Locale.ITALIAN, executor, 2, false).size());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(12, factory.makeDatasets(datasets.subList(8, 20), CATALOG_URL, Locale.ITALIAN).size());
+    }
+
+    @Test
+    public void testOverriddenExtractor() {
+        DcatFactory factory = new DcatFactory() {
+            @Override
+            protected Dict extractTitle(CkanDataset dataset, Locale locale) {
+                return Dict.of(locale, "overridden");
+            }
+        };
+        DcatDataset dcatDataset = factory.makeDataset(makeSparseDataset(), CATALOG_URL, Locale.ITALIAN);
+        assertEquals(Dict.of(Locale.ITALIAN, "overridden"), dcatDataset.getTitle());
+    }
+
+    @Test
+    public void testOverriddenDistribution() {
+        DcatFactory factory = new DcatFactory() {
+            @Override
+            public DcatDistribution makeDistribution(CkanResource resource, String catalogURL,
+                    String datasetIdOrName, String license, Locale locale) {
+                return super.makeDistribution(resource, catalogURL, datasetIdOrName, license, locale)
+                            .withTitle(Dict.of(locale, "overridden"));
+            }
+        };
+        DcatDataset dcatDataset = factory.makeDataset(makeSparseDataset(), CATALOG_URL, Locale.ITALIAN);
+        assertEquals(Dict.of(Locale.ITALIAN, "overridden"), dcatDataset.getDistributions()
+                                                                       .get(0)
+                                                                       .getTitle());
+
+        DcatDataset merged = factory.makeMultilingualDataset(makeSparseDataset(), CATALOG_URL,
+                Lists.newArrayList(Locale.ITALIAN, Locale.ENGLISH));
+        assertEquals(Dict.of(Locale.ITALIAN, "overridden")
+                         .with(Locale.ENGLISH, "overridden"),
+                merged.getDistributions()
+                      .get(0)
+                      .getTitle());
+    }
+
+    @Test
+    public void testMappingProfileFromJson() {
+        DcatMappingProfile profile = DcatMappingProfile.fromJson("{\"name\":\"test\", \"fields\":{"
+                + "\"publisher.name\":[\"publisher_name\", \"holder_name\"],"
+                + "\"spatial.text\":\"geographical_name\"}}");
+        assertEquals("test", profile.getName());
+        assertEquals(Lists.newArrayList("publisher_name", "holder_name"), profile.getFields(Property.PUBLISHER_NAME));
+        assertEquals(Lists.newArrayList("geographical_name"), profile.getFields(Property.SPATIAL_TEXT));
+        assertEquals(DcatMappingProfile.of()
+                                       .getFields(Property.IDENTIFIER),
+                profile.getFields(Property.IDENTIFIER));
+        assertEquals(profile, DcatMappingProfile.of()
+                                                .with(Property.PUBLISHER_NAME, "publisher_name", "holder_name")
+                                                .with(Property.SPATIAL_TEXT, "geographical_name")
+                                                .withName("test"));
+    }
+
+    @Test(expected = JackanException.class)
+    public void testMappingProfileUnknownProperty() {
+        DcatMappingProfile.fromJson("{\"fields\":{\"publisher.nam\":\"holder_name\"}}");
+    }
+
+    @Test
+    public void testMappingProfileFallback() {
+        CkanDataset dataset = makeSparseDataset();
+        dataset.setExtras(Lists.newArrayList(new CkanPair("holder_name", "Holder"),
+                new CkanPair("guid", "my-guid")));
+
+        DcatDataset dcatDataset = dcatFactory.makeDataset(dataset, CATALOG_URL, Locale.ITALIAN);
+        assertEquals("my-guid", dcatDataset.getIdentifier());
+        assertTrue(dcatDataset.getPublisher()
+                              .getName()
+                              .isEmpty());
+
+        dcatFactory.setMappingProfile(DcatMappingProfile.of()
+                                                        .with(Property.PUBLISHER_NAME, "publisher_name",
+                                                                "holder_name")
+                                                        .with(Property.IDENTIFIER));
+        dcatDataset = dcatFactory.makeDataset(dataset, CATALOG_URL, Locale.ITALIAN);
+        assertEquals("Holder", dcatDataset.getPublisher()
+                                          .getName()
+                                          .str(Locale.ITALIAN));
+        assertFalse("my-guid".equals(dcatDataset.getIdentifier()));
+    }
+
+    @Test
+    public void testParsedFieldCache() {
+        List<DcatDataset> dcatDatasets = new ArrayList();
+        for (int i = 0; i < 3; i++) {
+            CkanDataset dataset = makeSparseDataset();
+            dataset.getExtras()
+                   .add(new CkanPair("language", "[\"it\", \"en\"]"));
+            dataset.getExtras()
+                   .add(new CkanPair("theme", "[\"http://example.org/theme\", \"Environment\"]"));
+            dataset.getExtras()
+                   .add(new CkanPair("spatial", "{\"type\":\"Point\",\"coordinates\":[11.1, 46.0]}"));
+            dcatDatasets.add(dcatFactory.makeDataset(dataset, CATALOG_URL, Locale.ITALIAN));
+        }
+
+        ParsedFieldCache cache = dcatFactory.getParsedFieldCache();
+        assertEquals(3, cache.getMissCount());
+        assertEquals(6, cache.getHitCount());
+        assertEquals(2.0 / 3, cache.getHitRate(), 0.001);
+        assertEquals(Lists.newArrayList(Locale.ITALIAN, Locale.ENGLISH), dcatDatasets.get(2)
+                                                                                 .getLanguages());
+        assertEquals(2, dcatDatasets.get(2)
+                                    .getThemes()
+                                    .size());
+        assertSame(dcatDatasets.get(0)
+                               .getThemes()
+                               .get(1),
+                dcatDatasets.get(2)
+                            .getThemes()
+                            .get(1));
+        assertEquals(dcatDatasets.get(0), dcatDatasets.get(2));
+
+        DcatFactory factory = new DcatFactory();
+        factory.setParsedFieldCache(new ParsedFieldCache(1000, 10));
+        CkanDataset dataset = makeSparseDataset();
+        dataset.getExtras()
+               .add(new CkanPair("language", "[\"it\", \"en\"]"));
+        factory.makeDataset(dataset, CATALOG_URL, Locale.ITALIAN);
+        factory.makeDataset(dataset, CATALOG_URL, Locale.ITALIAN);
+        assertEquals(2, factory.getParsedFieldCache()
+                               .getSkippedCount());
+        assertEquals(0, factory.getParsedFieldCache()
+                               .size());
+    }
+
+    @Test
+    public void testEditExtractedLanguages() {
+        DcatFactory factory = new DcatFactory() {
+            @Override
+            protected List<Locale> extractLanguages(CkanDataset dataset) {
+                List<Locale> ret = super.extractLanguages(dataset);
+                ret.add(Locale.GERMAN);
+                return ret;
+            }
+        };
+        CkanDataset dataset = makeSparseDataset();
+        dataset.getExtras()
+               .add(new CkanPair("language", "[\"it\", \"en\"]"));
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals(Lists.newArrayList(Locale.ITALIAN, Locale.ENGLISH, Locale.GERMAN),
+                    factory.makeDataset(dataset, CATALOG_URL, Locale.ITALIAN)
+                           .getLanguages());
+        }
+        assertEquals(1, factory.getParsedFieldCache()
+                               .getHitCount());
+    }
+
+    @Test
+    public void testMakeDatasetVariants() {
+        CkanDataset dataset = makeSparseDataset();
+        dataset.getResources()
+               .get(0)
+               .setName("Resource");
+        List<Locale> locales = Lists.newArrayList(Locale.ITALIAN, Locale.ENGLISH);
+
+        ImmutableMap<Locale, DcatDataset> variants = dcatFactory.makeDatasetVariants(dataset, CATALOG_URL, locales);
+        assertEquals(locales, variants.keySet()
+                                      .asList());
+        assertEquals(1, dcatFactory.getConversionReport()
+                                   .getConversions(ConversionReport.DATASET));
+        DcatDataset italian = variants.get(Locale.ITALIAN);
+        DcatDataset english = variants.get(Locale.ENGLISH);
+        assertEquals(Dict.of(Locale.ITALIAN, "Sparse"), italian.getTitle());
+        assertEquals(Dict.of(Locale.ENGLISH, "Sparse"), english.getTitle());
+        assertEquals(Lists.newArrayList(Locale.ENGLISH), english.getLanguages());
+        assertEquals(dcatFactory.makeDataset(dataset, CATALOG_URL, Locale.ITALIAN), italian);
+        assertEquals(dcatFactory.makeDataset(dataset, CATALOG_URL, Locale.ENGLISH), english);
+        assertEquals(Dict.of(Locale.ENGLISH, "Resource"), english.getDistributions()
+                                                                 .get(0)
+                                                                 .getTitle());
+        assertEquals(italian.getDistributions()
+                            .get(0)
+                            .getUri(),
+                english.getDistributions()
+                       .get(0)
+                       .getUri());
+
+        DcatDataset merged = dcatFactory.makeMultilingualDataset(dataset, CATALOG_URL, locales);
+        assertEquals(Dict.of(Locale.ITALIAN, "Sparse")
+                         .with(Locale.ENGLISH, "Sparse"),
+                merged.getTitle());
+        assertEquals(locales, merged.getLanguages());
+        assertEquals(Dict.of(Locale.ITALIAN, "Publisher")
+                         .with(Locale.ENGLISH, "Publisher"),
+                merged.getPublisher()
+                      .getName());
+        assertEquals(italian.getTemporal(), merged.getTemporal());
+        assertEquals(Dict.of(Locale.ITALIAN, "Resource")
+                         .with(Locale.ENGLISH, "Resource"),
+                merged.getDistributions()
+                      .get(0)
+                      .getTitle());
+        assertEquals(italian.getDistributions()
+                            .get(0)
+                            .getAccessURL(),
+                merged.getDistributions()
+                      .get(0)
+                      .getAccessURL());
+    }
+
     @Test
     public void exampleFactory() {
 
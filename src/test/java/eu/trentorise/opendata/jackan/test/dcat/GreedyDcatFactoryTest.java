@@ -21,6 +21,7 @@ import eu.trentorise.opendata.jackan.model.CkanDataset;
 import eu.trentorise.opendata.jackan.model.CkanGroup;
 import eu.trentorise.opendata.jackan.model.CkanPair;
 import eu.trentorise.opendata.jackan.model.CkanResource;
+import eu.trentorise.opendata.jackan.dcat.CanonicalPool;
 import eu.trentorise.opendata.jackan.dcat.GreedyDcatFactory;
 import eu.trentorise.opendata.jackan.test.JackanTestConfig;
 import eu.trentorise.opendata.traceprov.dcat.DcatDataset;
@@ -29,6 +30,8 @@ import java.util.Locale;
 import java.util.UUID;
 import org.junit.After;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -126,4 +129,35 @@ public class GreedyDcatFactoryTest {
         assertEquals(1, dcatDataset.getThemes().size());
         assertEquals(Dict.of(Locale.ENGLISH, "xyz"), dcatDataset.getThemes().get(0).getPrefLabel());
     }
+
+    private static CkanDataset makeGroupDataset(int i){
+        CkanDataset dataset = new CkanDataset();
+        dataset.setId(makeUuid(i));
+        CkanGroup group = new CkanGroup();
+        group.setTitle("xyz");
+        group.setName("abc");
+        dataset.setGroups(Lists.newArrayList(group));
+        dataset.setExtras(Lists.newArrayList(new CkanPair("publisher_name", "Publisher"),
+                new CkanPair("contact_email", "info@example.org")));
+        return dataset;
+    }
+
+    @Test
+    public void testCanonicalPool(){
+        DcatDataset dcatDataset1 = dcatFactory.makeDataset(makeGroupDataset(1), CATALOG_URL, Locale.ENGLISH);
+        DcatDataset dcatDataset2 = dcatFactory.makeDataset(makeGroupDataset(2), CATALOG_URL, Locale.ENGLISH);
+        assertEquals(dcatDataset1.getPublisher(), dcatDataset2.getPublisher());
+        assertNotSame(dcatDataset1.getPublisher(), dcatDataset2.getPublisher());
+
+        CanonicalPool pool = new CanonicalPool(10);
+        dcatFactory.setCanonicalPool(pool);
+        dcatDataset1 = dcatFactory.makeDataset(makeGroupDataset(1), CATALOG_URL, Locale.ENGLISH);
+        dcatDataset2 = dcatFactory.makeDataset(makeGroupDataset(2), CATALOG_URL, Locale.ENGLISH);
+        assertSame(dcatDataset1.getPublisher(), dcatDataset2.getPublisher());
+        assertSame(dcatDataset1.getContactPoint(), dcatDataset2.getContactPoint());
+        assertSame(dcatDataset1.getThemes().get(0), dcatDataset2.getThemes().get(0));
+        assertEquals(3, pool.size());
+        assertEquals(3, pool.getHitCount());
+        assertEquals(3, pool.getMissCount());
+    }
 }